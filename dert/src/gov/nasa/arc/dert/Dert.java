@@ -2,14 +2,18 @@ package gov.nasa.arc.dert;
 
 import gov.nasa.arc.dert.action.edit.BackgroundColorDialog;
 import gov.nasa.arc.dert.ephemeris.Ephemeris;
+import gov.nasa.arc.dert.ephemeris.EphemerisCache;
+import gov.nasa.arc.dert.io.geojson.VectorCache;
 import gov.nasa.arc.dert.landscape.DerivativeLayer;
 import gov.nasa.arc.dert.landscape.FieldLayer;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.landscape.QuadTree;
 import gov.nasa.arc.dert.landscape.QuadTreeCache;
+import gov.nasa.arc.dert.landscape.QuadTreeTileCache;
 import gov.nasa.arc.dert.lighting.Lighting;
 import gov.nasa.arc.dert.raster.proj.Proj4;
 import gov.nasa.arc.dert.render.BasicScene;
+import gov.nasa.arc.dert.render.FrameStatistics;
 import gov.nasa.arc.dert.render.SceneCanvas;
 import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
@@ -27,6 +31,7 @@ import gov.nasa.arc.dert.scene.tool.RadialGrid;
 import gov.nasa.arc.dert.scene.tool.Tools;
 import gov.nasa.arc.dert.scene.tool.fieldcamera.FieldCamera;
 import gov.nasa.arc.dert.scene.tool.fieldcamera.FieldCameraInfoManager;
+import gov.nasa.arc.dert.scenegraph.LabelManager;
 import gov.nasa.arc.dert.scenegraph.Marker;
 import gov.nasa.arc.dert.scenegraph.text.BitmapFont;
 import gov.nasa.arc.dert.scenegraph.text.Text;
@@ -36,6 +41,7 @@ import gov.nasa.arc.dert.util.ColorMap;
 import gov.nasa.arc.dert.util.StringUtil;
 import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.view.ConsoleView;
+import gov.nasa.arc.dert.view.fieldcamera.FieldCameraRenderer;
 import gov.nasa.arc.dert.view.graph.Axes;
 import gov.nasa.arc.dert.view.world.WorldView;
 import gov.nasa.arc.dert.viewpoint.ViewpointController;
@@ -250,7 +256,7 @@ public class Dert {
 		}
 		Text.FONT_SIZE = fontSize;
 		Marker.PIXEL_SIZE = hgt/7.5;
-		String fName = StringUtil.getStringValue(dertProperties, "RasterText.Font", "Courier New", false);
+		String fName = StringUtil.getStringValue(dertProperties, "RasterText.Font", BitmapFont.DEFAULT_NAME, false);
 		Console.println("Building font: "+fName+" "+fontSize);
 		BitmapFont.createInstance(fName, Font.BOLD, fontSize);
 	}
@@ -289,11 +295,16 @@ public class Dert {
 			}
 
 			SceneFramework.millisBetweenFrames = StringUtil.getIntegerValue(dertProperties, "MillisBetweenFrames", true, 33, false);
+			SceneFramework.MAX_FRAME_LOAD = StringUtil.getDoubleValue(dertProperties, "SceneFramework.MaxFrameLoad", true,
+				SceneFramework.MAX_FRAME_LOAD, false);
+			FrameStatistics.setEnabled(StringUtil.getBooleanValue(dertProperties, "FrameStatistics.Enabled", false, false));
 			World.defaultStereoEyeSeparation = StringUtil.getDoubleValue(dertProperties, "Stereo.eyeSeparation", false, World.defaultStereoEyeSeparation, false);
 			World.defaultStereoFocalDistance = StringUtil.getDoubleValue(dertProperties, "Stereo.focalDistance", false, World.defaultStereoFocalDistance, false);
 			//RasterText.setFont(StringUtil.getIntegerValue(dertProperties, "RasterText.Font", true, 18, false));
 			Lighting.loadProperties(dertProperties);
-			QuadTreeCache.MAX_CACHE_MEMORY = (long)(Runtime.getRuntime().maxMemory()*0.75);
+			QuadTreeCache.MAX_CACHE_MEMORY = (long)(Runtime.getRuntime().maxMemory()*0.65);
+			QuadTreeTileCache.MAX_CACHE_MEMORY = StringUtil.getLongValue(dertProperties, "QuadTree.MaxTileCacheSize", true,
+				(long)(Runtime.getRuntime().maxMemory()*0.1), false);
 			DerivativeLayer.defaultColorMapName = dertProperties.getProperty("ColorMap.Default", "default0");
 			FieldLayer.defaultColorMapName = DerivativeLayer.defaultColorMapName;
 			QuadTree.CELL_SIZE = StringUtil.getIntegerValue(dertProperties, "MeshCellSize", true, QuadTree.CELL_SIZE,
@@ -304,6 +315,16 @@ public class Dert {
 			Landscape.MAX_LEVELS = StringUtil.getIntegerValue(dertProperties, "Landscape.MaximumLevels", true,
 				Landscape.MAX_LEVELS, false);
 			Axes.TIC_PIXELS = StringUtil.getIntegerValue(dertProperties, "Profile.tickInterval", true, 60, false);
+			LabelManager.DECLUTTER = StringUtil.getBooleanValue(dertProperties, "LabelManager.Declutter",
+				LabelManager.DECLUTTER, false);
+			VectorCache.ENABLED = StringUtil.getBooleanValue(dertProperties, "VectorCache.Enabled",
+				VectorCache.ENABLED, false);
+			EphemerisCache.WINDOW = (long) (StringUtil.getDoubleValue(dertProperties, "EphemerisCache.WindowHours",
+				true, EphemerisCache.WINDOW / 3600000.0, false) * 3600000);
+			EphemerisCache.MAX_ERROR = StringUtil.getDoubleValue(dertProperties, "EphemerisCache.MaximumError", true,
+				EphemerisCache.MAX_ERROR, false);
+			FieldCameraRenderer.IMAGE_WIDTH = StringUtil.getIntegerValue(dertProperties, "FieldCameraRenderer.ImageWidth",
+				true, FieldCameraRenderer.IMAGE_WIDTH, false);
 
 			// Get map element preferences.
 			Placemark.setDefaultsFromProperties(dertProperties);
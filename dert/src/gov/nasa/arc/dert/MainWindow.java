@@ -12,6 +12,7 @@ import gov.nasa.arc.dert.action.file.OpenConfigAction;
 import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.lighting.Lighting;
+import gov.nasa.arc.dert.render.FrameStatistics;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scene.tapemeasure.ActivateTapeMeasureAction;
 import gov.nasa.arc.dert.state.Configuration;
@@ -19,6 +20,7 @@ import gov.nasa.arc.dert.state.ConfigurationManager;
 import gov.nasa.arc.dert.state.State;
 import gov.nasa.arc.dert.ui.CoordTextField;
 import gov.nasa.arc.dert.ui.OptionDialog;
+import gov.nasa.arc.dert.util.FileHelper;
 import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.view.lighting.LightPositionView;
 import gov.nasa.arc.dert.view.world.WorldView;
@@ -444,6 +446,36 @@ public class MainWindow extends JFrame {
 		textOverlay.setState(worldView.getScenePanel().isShowTextOverlay());
 		menu.add(textOverlay);
 
+		CheckboxMenuItem frameStatistics = new CheckboxMenuItem("Show Frame Statistics");
+		frameStatistics.addItemListener(new ItemListener() {
+			@Override
+			public void itemStateChanged(ItemEvent event) {
+				worldView.getScenePanel().setShowFrameStatistics(event.getStateChange() == ItemEvent.SELECTED);
+			}
+		});
+		frameStatistics.setState(worldView.getScenePanel().isShowFrameStatistics());
+		menu.add(frameStatistics);
+
+		MenuItemAction saveStatisticsAction = new MenuItemAction("Save Frame Statistics ...") {
+			@Override
+			protected void run() {
+				String path = FileHelper.getCSVFile();
+				if (path == null) {
+					return;
+				}
+				String jsonPath = path.substring(0, path.length() - 4) + ".json";
+				try {
+					FrameStatistics.writeCSV(path);
+					FrameStatistics.writeJSON(jsonPath);
+					Console.println("Frame statistics saved to " + path + " and " + jsonPath + ".");
+				} catch (Exception e) {
+					Console.println("Unable to save frame statistics, see log.");
+					e.printStackTrace();
+				}
+			}
+		};
+		menu.add(saveStatisticsAction);
+
 		CheckboxMenuItem scaleOverlay = new CheckboxMenuItem("Show Center Scale Overlay");
 		scaleOverlay.addItemListener(new ItemListener() {
 			@Override
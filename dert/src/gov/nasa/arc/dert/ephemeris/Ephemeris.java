@@ -172,6 +172,69 @@ public class Ephemeris {
 		}
 	}
 
+	/**
+	 * Get the vectors to a target body from a point on an observer body at a
+	 * series of times. The surface frame is computed once and SPICE is locked
+	 * once for the whole series.
+	 * 
+	 * @param observer
+	 *            the name for the observer body (Mars, for example)
+	 * @param target
+	 *            the name for the target (Sun, for example)
+	 * @param time
+	 *            the Unix times (milliseconds) at which the vectors are to be
+	 *            computed
+	 * @param lon
+	 *            the longitude on the observer surface
+	 * @param lat
+	 *            the latitude on the observer surface
+	 * @param alt
+	 *            the altitude on the observer surface
+	 * @return for each time, the unit vector to the target in the surface
+	 *         frame (east, north, up) followed by the distance in kilometers,
+	 *         or null if the vectors could not be computed
+	 */
+	public static double[][] getTargetVectors(String observer, String target, long[] time, double lon, double lat, double alt) {
+		// SPICE is not thread safe. Allow only one thread to use it at a time
+		synchronized (instance) {
+			return (instance.getTargetVectorsAtLonLatAlt(observer, target, time, lon, lat, alt));
+		}
+	}
+
+	protected double[][] getTargetVectorsAtLonLatAlt(String observer, String target, long[] time, double lon, double lat, double alt) {
+		observer = observer.toUpperCase();
+		target = target.toUpperCase();
+		alt /= 1000;
+		try {
+			// The observer surface point and frame do not change with time
+			BodyName obsBody = new BodyName(observer);
+			double[] obsRadii = CSPICE.bodvcd(obsBody.getIDCode(), "RADII");
+			double[] obsSurfacePt = CSPICE.georec(Math.toRadians(lon), Math.toRadians(lat), alt, obsRadii[0], (obsRadii[0]-obsRadii[2])/obsRadii[0]);
+			obsSurfacePt[2] += alt;
+			double[] obsSurfaceNm = CSPICE.surfnm(obsRadii[0], obsRadii[1], obsRadii[2], obsSurfacePt);
+			obsSurfaceNm = CSPICE.vhat(obsSurfaceNm);
+			double[][] obsMatrix = CSPICE.twovec(obsSurfaceNm, 3, zAxis, 2);
+
+			double[][] result = new double[time.length][];
+			double[] pos = new double[6];
+			double[] lt = new double[1];
+			String frame = "IAU_"+observer;
+			for (int i = 0; i < time.length; ++i) {
+				double et = CSPICE.str2et(time2UtcStr(time[i]));
+				CSPICE.spkpos(target, et, frame, "LT+S", observer, pos, lt);
+				double[] trgPt = new double[] {pos[0]-obsSurfacePt[0], pos[1]-obsSurfacePt[1], pos[2]-obsSurfacePt[2]};
+				trgPt = CSPICE.mxv(obsMatrix, trgPt);
+				double dist = CSPICE.vnorm(trgPt);
+				result[i] = new double[] {trgPt[0]/dist, trgPt[1]/dist, trgPt[2]/dist, dist};
+			}
+			return (result);
+		} catch (Exception e) {
+			System.out.println("Unable to get target vectors, see log.");
+			e.printStackTrace();
+			return (null);
+		}
+	}
+
 	protected double[] getTargetVectorAtLonLatAlt(String observer, String target, String time, double lon, double lat, double alt) {
 		observer = observer.toUpperCase();
 		target = target.toUpperCase();		
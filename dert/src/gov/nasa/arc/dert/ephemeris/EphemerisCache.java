@@ -0,0 +1,234 @@
+package gov.nasa.arc.dert.ephemeris;
+
+import gov.nasa.arc.dert.view.Console;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provides vectors to a target body from a location on an observer body
+ * through an EphemerisTable covering a window of time. Requests inside the
+ * window are interpolated from the table without calling SPICE. A request
+ * outside the window is computed with SPICE and a new window centered on it is
+ * built in the background, so dragging the time slider or animating the
+ * lighting stays smooth. A new window is also started when a request comes
+ * near the end of the current one.
+ *
+ * When a window is built, the table is checked against SPICE halfway between
+ * grid points. If the error is more than MAX_ERROR the grid interval is
+ * halved and the table is rebuilt.
+ *
+ */
+public class EphemerisCache {
+
+	// Length of time covered by a table (milliseconds)
+	public static long WINDOW = 4 * 86400000L;
+
+	// Initial time between table grid points (milliseconds)
+	public static long INTERVAL = 1800000;
+
+	// Smallest time between table grid points (milliseconds)
+	public static long MIN_INTERVAL = 60000;
+
+	// Maximum interpolation error (degrees)
+	public static double MAX_ERROR = 0.01;
+
+	// Number of points in a table checked against SPICE
+	public static int NUMBER_OF_CHECKS = 16;
+
+	// Location of the table
+	private String observer, target;
+	private double lon, lat, alt;
+
+	// The current table
+	private volatile EphemerisTable table;
+
+	// Builds tables in the background
+	private ExecutorService executor;
+
+	// A table is being built
+	private volatile boolean building;
+
+	// A table could not be built for the location
+	private volatile boolean failed;
+
+	/**
+	 * Constructor
+	 */
+	public EphemerisCache() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "EphemerisCache");
+				thread.setDaemon(true);
+				return (thread);
+			}
+		});
+	}
+
+	/**
+	 * Get the vector to a target body from a point on an observer body.
+	 *
+	 * @param observer
+	 *            the name for the observer body (Mars, for example)
+	 * @param target
+	 *            the name for the target (Sun, for example)
+	 * @param time
+	 *            the Unix time (milliseconds)
+	 * @param lon
+	 *            the longitude on the observer surface
+	 * @param lat
+	 *            the latitude on the observer surface
+	 * @param alt
+	 *            the altitude on the observer surface
+	 * @return the vector in the same form as Ephemeris.getTargetVector
+	 */
+	public double[] getTargetVector(String observer, String target, long time, double lon, double lat, double alt) {
+		EphemerisTable tbl = table;
+		if (!isSameLocation(observer, target, lon, lat, alt)) {
+			synchronized (this) {
+				this.observer = observer;
+				this.target = target;
+				this.lon = lon;
+				this.lat = lat;
+				this.alt = alt;
+				table = null;
+				failed = false;
+			}
+			tbl = null;
+		}
+		if ((tbl != null) && tbl.contains(time)) {
+			Vector3 vec = new Vector3();
+			tbl.getVector(time, vec);
+			double[] val = new double[6];
+			val[0] = vec.getX();
+			val[1] = vec.getY();
+			val[2] = vec.getZ();
+			val[3] = 1;
+			val[4] = Math.atan2(val[1], val[0]);
+			val[5] = Math.asin(Math.max(-1, Math.min(1, val[2])));
+			// get the next window ready
+			if ((time - tbl.getStartTime() < WINDOW / 4) || (tbl.getEndTime() - time < WINDOW / 4)) {
+				update(time);
+			}
+			return (val);
+		}
+		// outside of the window, start a new one here
+		update(time);
+		return (Ephemeris.getTargetVector(observer, target, Ephemeris.getInstance().time2UtcStr(time), lon, lat, alt));
+	}
+
+	private synchronized boolean isSameLocation(String observer, String target, double lon, double lat, double alt) {
+		return (observer.equals(this.observer) && target.equals(this.target) && (lon == this.lon) && (lat == this.lat)
+			&& (alt == this.alt));
+	}
+
+	private void update(final long time) {
+		if (building || failed) {
+			return;
+		}
+		building = true;
+		final String obs, trg;
+		final double lo, la, al;
+		synchronized (this) {
+			obs = observer;
+			trg = target;
+			lo = lon;
+			la = lat;
+			al = alt;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					EphemerisTable tbl = createTable(obs, trg, lo, la, al, time);
+					synchronized (EphemerisCache.this) {
+						if (isSameLocation(obs, trg, lo, la, al)) {
+							if (tbl == null) {
+								failed = true;
+							} else {
+								table = tbl;
+							}
+						}
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					building = false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Create a table centered on a time with a grid interval that keeps the
+	 * interpolation error within MAX_ERROR.
+	 *
+	 * @return the table or null if the error could not be met
+	 */
+	protected EphemerisTable createTable(String observer, String target, double lon, double lat, double alt, long time) {
+		long start = time - WINDOW / 2;
+		long end = time + WINDOW / 2;
+		long interval = INTERVAL;
+		while (true) {
+			EphemerisTable tbl = newTable(observer, target, lon, lat, alt, start, end, interval);
+			double error = getError(tbl, observer, target, lon, lat, alt);
+			if (error <= MAX_ERROR) {
+				return (tbl);
+			}
+			if (interval / 2 < MIN_INTERVAL) {
+				Console.println("Unable to cache " + target + " positions within " + MAX_ERROR + " degrees.");
+				return (null);
+			}
+			interval /= 2;
+		}
+	}
+
+	/**
+	 * Compute a table with SPICE.
+	 *
+	 * @return the table
+	 */
+	protected EphemerisTable newTable(String observer, String target, double lon, double lat, double alt, long start,
+		long end, long interval) {
+		return (new EphemerisTable(observer, target, lon, lat, alt, start, end, interval));
+	}
+
+	/**
+	 * Compute vectors to the target with SPICE.
+	 *
+	 * @return the vectors in the same form as Ephemeris.getTargetVectors
+	 */
+	protected double[][] getTargetVectors(String observer, String target, long[] time, double lon, double lat,
+		double alt) {
+		return (Ephemeris.getTargetVectors(observer, target, time, lon, lat, alt));
+	}
+
+	private double getError(EphemerisTable tbl, String observer, String target, double lon, double lat, double alt) {
+		long interval = tbl.getInterval();
+		long start = tbl.getStartTime();
+		int n = (int) ((tbl.getEndTime() - start) / interval);
+		int step = Math.max(1, n / NUMBER_OF_CHECKS);
+		int count = (n + step - 1) / step;
+		long[] time = new long[count];
+		for (int i = 0; i < count; ++i) {
+			time[i] = start + (i * step) * interval + interval / 2;
+		}
+		double[][] val = getTargetVectors(observer, target, time, lon, lat, alt);
+		if (val == null) {
+			return (Double.MAX_VALUE);
+		}
+		Vector3 vec = new Vector3();
+		double error = 0;
+		for (int i = 0; i < count; ++i) {
+			tbl.getVector(time[i], vec);
+			double dot = vec.getX() * val[i][0] + vec.getY() * val[i][1] + vec.getZ() * val[i][2];
+			error = Math.max(error, Math.toDegrees(Math.acos(Math.min(1, dot))));
+		}
+		return (error);
+	}
+
+}
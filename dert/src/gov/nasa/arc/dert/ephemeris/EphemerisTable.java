@@ -0,0 +1,162 @@
+package gov.nasa.arc.dert.ephemeris;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * A table of vectors to a target body (the Sun, for example) from a location
+ * on an observer body, sampled on a regular time grid. The vectors for all
+ * grid times are computed in one batch of SPICE calls. Vectors between grid
+ * times are found by cubic (Catmull-Rom) interpolation, so a table with a grid
+ * interval of an hour or less follows the apparent motion of the Sun closely
+ * while the direction is needed at many more times.
+ *
+ */
+public class EphemerisTable {
+
+	// Grid start time and interval (milliseconds)
+	protected long startTime, interval;
+
+	// Unit vectors to the target in the surface frame (east, north, up)
+	protected double[][] vector;
+
+	// Distances to the target (kilometers)
+	protected double[] distance;
+
+	/**
+	 * Constructor. Computes the table with SPICE.
+	 *
+	 * @param observer
+	 *            the name for the observer body (Mars, for example)
+	 * @param target
+	 *            the name for the target (Sun, for example)
+	 * @param lon
+	 *            the longitude on the observer surface
+	 * @param lat
+	 *            the latitude on the observer surface
+	 * @param alt
+	 *            the altitude on the observer surface
+	 * @param startTime
+	 *            the first time in the table (Unix milliseconds)
+	 * @param endTime
+	 *            the last time in the table (Unix milliseconds)
+	 * @param interval
+	 *            the time between grid points (milliseconds)
+	 */
+	public EphemerisTable(String observer, String target, double lon, double lat, double alt, long startTime,
+		long endTime, long interval) {
+		if ((interval <= 0) || (endTime < startTime)) {
+			throw new IllegalArgumentException("Invalid ephemeris table time range.");
+		}
+		// one extra point on each side for interpolation at the ends
+		int n = (int) ((endTime - startTime + interval - 1) / interval) + 3;
+		long[] time = new long[n];
+		for (int i = 0; i < n; ++i) {
+			time[i] = startTime + (i - 1) * interval;
+		}
+		double[][] result = Ephemeris.getTargetVectors(observer, target, time, lon, lat, alt);
+		if (result == null) {
+			throw new IllegalStateException("Unable to compute ephemeris table for " + target + ".");
+		}
+		set(startTime - interval, interval, result);
+	}
+
+	/**
+	 * Constructor for a table that has already been computed.
+	 *
+	 * @param startTime
+	 *            the time of the first grid point (Unix milliseconds)
+	 * @param interval
+	 *            the time between grid points (milliseconds)
+	 * @param samples
+	 *            for each grid point, the unit vector to the target followed
+	 *            by the distance
+	 */
+	public EphemerisTable(long startTime, long interval, double[][] samples) {
+		set(startTime, interval, samples);
+	}
+
+	protected void set(long startTime, long interval, double[][] samples) {
+		this.startTime = startTime;
+		this.interval = interval;
+		vector = new double[samples.length][3];
+		distance = new double[samples.length];
+		for (int i = 0; i < samples.length; ++i) {
+			vector[i][0] = samples[i][0];
+			vector[i][1] = samples[i][1];
+			vector[i][2] = samples[i][2];
+			distance[i] = samples[i][3];
+		}
+	}
+
+	/**
+	 * Get the first time that can be interpolated.
+	 *
+	 * @return
+	 */
+	public long getStartTime() {
+		return (startTime + interval);
+	}
+
+	/**
+	 * Get the last time that can be interpolated.
+	 *
+	 * @return
+	 */
+	public long getEndTime() {
+		return (startTime + (vector.length - 2) * interval);
+	}
+
+	/**
+	 * Get the grid interval.
+	 *
+	 * @return
+	 */
+	public long getInterval() {
+		return (interval);
+	}
+
+	/**
+	 * Determine if a time can be interpolated from the table.
+	 *
+	 * @param time
+	 * @return
+	 */
+	public boolean contains(long time) {
+		return ((time >= getStartTime()) && (time <= getEndTime()));
+	}
+
+	/**
+	 * Get the unit vector to the target at a time.
+	 *
+	 * @param time
+	 *            Unix milliseconds within the table range
+	 * @param store
+	 *            the vector (east, north, up)
+	 * @return the distance to the target in kilometers
+	 */
+	public double getVector(long time, Vector3 store) {
+		if (!contains(time)) {
+			throw new IllegalArgumentException("Time is outside of the ephemeris table.");
+		}
+		double t = (double) (time - startTime) / interval;
+		int i = Math.min((int) t, vector.length - 3);
+		t -= i;
+		double x = interpolate(vector[i - 1][0], vector[i][0], vector[i + 1][0], vector[i + 2][0], t);
+		double y = interpolate(vector[i - 1][1], vector[i][1], vector[i + 1][1], vector[i + 2][1], t);
+		double z = interpolate(vector[i - 1][2], vector[i][2], vector[i + 1][2], vector[i + 2][2], t);
+		store.set(x, y, z);
+		store.normalizeLocal();
+		return (interpolate(distance[i - 1], distance[i], distance[i + 1], distance[i + 2], t));
+	}
+
+	/**
+	 * Catmull-Rom interpolation between p1 and p2.
+	 */
+	protected static double interpolate(double p0, double p1, double p2, double p3, double t) {
+		double t2 = t * t;
+		double t3 = t2 * t;
+		return (0.5 * (2 * p1 + (p2 - p0) * t + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t2 + (3 * p1 - p0 + p3 - 3 * p2)
+			* t3));
+	}
+
+}
@@ -0,0 +1,101 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Fast lossless tile codec. Each row is delta encoded against the previous
+ * pixel (the PNG "sub" filter applied to every row) and the result is
+ * compressed with the fastest deflate level. Decoding skips the PNG chunk
+ * parsing and color model conversion of ImageIO and writes the pixels in the
+ * decoded layout.
+ *
+ */
+public class DeflateTileCodec extends TileCodec {
+
+	@Override
+	public String getName() {
+		return (DEFLATE);
+	}
+
+	@Override
+	public String getExtension() {
+		return (".dfl");
+	}
+
+	@Override
+	public void encode(byte[] data, int width, int height, LayerType layerType, OutputStream oStream)
+		throws IOException {
+		int bytesPerPixel = getBytesPerPixel(data, width, height);
+		if (layerType == LayerType.colorimage) {
+			toBGRA(data);
+		}
+		// delta encode each row from right to left so it can be done in place
+		int rowSize = width * bytesPerPixel;
+		for (int r = 0; r < height; ++r) {
+			int start = r * rowSize;
+			for (int i = start + rowSize - 1; i >= start + bytesPerPixel; --i) {
+				data[i] -= data[i - bytesPerPixel];
+			}
+		}
+		writeHeader(oStream, width, height, bytesPerPixel);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		DeflaterOutputStream dStream = new DeflaterOutputStream(oStream, deflater, 65536);
+		dStream.write(data);
+		dStream.finish();
+		deflater.end();
+	}
+
+	@Override
+	public QuadTreeTile decode(File file, String id, DataType dataType) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		if (bytes.length == 0) {
+			return (null);
+		}
+		int[] header = readHeader(new ByteArrayInputStream(bytes, 0, HEADER_SIZE));
+		int width = header[0];
+		int height = header[1];
+		int bytesPerPixel = header[2];
+		byte[] data = new byte[width * height * bytesPerPixel];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+			int n = 0;
+			while (n < data.length) {
+				int count = inflater.inflate(data, n, data.length - n);
+				if ((count == 0) && (inflater.finished() || inflater.needsInput())) {
+					throw new IOException("Unexpected end of tile file.");
+				}
+				n += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		// undo the delta encoding
+		int rowSize = width * bytesPerPixel;
+		for (int r = 0; r < height; ++r) {
+			int start = r * rowSize;
+			for (int i = start + bytesPerPixel; i < start + rowSize; ++i) {
+				data[i] += data[i - bytesPerPixel];
+			}
+		}
+		ByteBuffer buffer = allocate(data.length, dataType);
+		buffer.put(data);
+		return (createTile(buffer, id, width, height, bytesPerPixel, dataType));
+	}
+
+}
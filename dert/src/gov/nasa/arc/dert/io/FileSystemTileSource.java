@@ -2,26 +2,18 @@ package gov.nasa.arc.dert.io;
 
 import gov.nasa.arc.dert.landscape.QuadTreeTile;
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
-import gov.nasa.arc.dert.util.ImageUtil;
 import gov.nasa.arc.dert.view.Console;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Properties;
 
-import javax.imageio.ImageIO;
-
-import com.ardor3d.image.Image;
-
 /**
  * Provides an implementation of the TileSource interface for landscapes that
  * reside on the local file system.
@@ -38,6 +30,9 @@ public class FileSystemTileSource implements TileSource {
 	// Map of properties from layer.properties files throughout the landscape
 	private HashMap<String, Properties> propertiesMap;
 
+	// Map of tile codecs from the TileFormat key of each layer
+	private HashMap<String, TileCodec> codecMap;
+
 	/**
 	 * Constructor
 	 * 
@@ -68,6 +63,7 @@ public class FileSystemTileSource implements TileSource {
 	@Override
 	public String[][] getLayerInfo() {
 		propertiesMap = new HashMap<String, Properties>();
+		codecMap = new HashMap<String, TileCodec>();
 		File dir = new File(dirName);
 		if (!dir.isDirectory()) {
 			throw new IllegalArgumentException("TerrainModel location " + dirName + " is not a directory.");
@@ -98,6 +94,12 @@ public class FileSystemTileSource implements TileSource {
 					Console.println("No properties found for layer "+filename+", skipping.");
 					continue;
 				}
+				try {
+					codecMap.put(filename, TileCodec.getCodec(prop.getProperty("TileFormat")));
+				} catch (Exception e) {
+					Console.println(e.getMessage() + " Skipping layer " + filename + ".");
+					continue;
+				}
 				propertiesMap.put(filename, prop);
 				String type = prop.getProperty("LayerType");
 				if (type != null) {
@@ -146,7 +148,7 @@ public class FileSystemTileSource implements TileSource {
 		if (depthTree != null) {
 			return (tileExists(id, depthTree));
 		}
-		String fileName = layerPath(layerName) + id + "/0.png";
+		String fileName = layerPath(layerName) + id + "/0" + getTileCodec(layerName).getExtension();
 		File file = new File(fileName);
 		try {
 			if (file.getCanonicalFile().exists()) {
@@ -190,7 +192,7 @@ public class FileSystemTileSource implements TileSource {
 	@Override
 	public QuadTreeTile getTile(String layerName, String id, DataType dataType) {
 		if (tileExists(layerName, id)) {
-			return (getTilePng(layerName, id, dataType));
+			return (readTile(layerName, id, dataType));
 		}
 		return (null);
 	}
@@ -198,32 +200,12 @@ public class FileSystemTileSource implements TileSource {
 	/**
 	 * Given a layer and an id, load the contents of the tile.
 	 */
-	public QuadTreeTile getTilePng(String layerName, String id, DataType dataType) {
+	public QuadTreeTile readTile(String layerName, String id, DataType dataType) {
 		try {
-			String fileName = layerPath(layerName) + id + "/0.png";
+			TileCodec codec = getTileCodec(layerName);
+			String fileName = layerPath(layerName) + id + "/0" + codec.getExtension();
 			File file = new File(fileName).getCanonicalFile();
-			BufferedImage bImage = ImageIO.read(file);
-			if (bImage != null) {
-				// System.err.println("FileSystemTileSource.getTilePng "+layerName+" "+dataType+" "+bImage.getWidth()+" "+bImage.getHeight());
-				int numBands = bImage.getData().getNumBands();
-				if (dataType == DataType.Float) {
-					DataBufferByte dBuf = (DataBufferByte) bImage.getData().getDataBuffer();
-					byte[] bytes = dBuf.getData();
-					ByteBuffer bBuf = ByteBuffer.wrap(bytes);
-					QuadTreeTile tile = new QuadTreeTile(bBuf, id, bImage.getWidth(), bImage.getHeight(), dataType,
-						numBands);
-					return (tile);
-				}
-				// Spurious gray tile in the midst of a color landscape.
-				if ((dataType == DataType.UnsignedInteger) && (numBands < 4)) {
-					dataType = DataType.UnsignedByte;
-				} else if ((dataType == DataType.UnsignedByte) && (numBands > 1)) {
-					dataType = DataType.UnsignedInteger;
-				}
-				Image image = ImageUtil.convertToArdor3DImage(bImage, false);
-				QuadTreeTile tile = new QuadTreeTile(image, id, dataType);
-				return (tile);
-			}
+			return (codec.decode(file, id, dataType));
 		} catch (Exception e) {
 			System.out.println("Unable to read tile " + id + ", see log.");
 			e.printStackTrace();
@@ -231,6 +213,20 @@ public class FileSystemTileSource implements TileSource {
 		return (null);
 	}
 
+	/**
+	 * Get the codec for the tiles of a layer.
+	 * 
+	 * @param layerName
+	 * @return
+	 */
+	public TileCodec getTileCodec(String layerName) {
+		TileCodec codec = codecMap.get(layerName);
+		if (codec == null) {
+			codec = TileCodec.getCodec(null);
+		}
+		return (codec);
+	}
+
 	protected synchronized void fillDepthTree(DepthTree dTree, String path, String layerName) {
 		String id = path + "/";
 		if (tileExists(layerName, id + "1")) {
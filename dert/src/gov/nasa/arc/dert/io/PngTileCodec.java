@@ -0,0 +1,92 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.util.ImageUtil;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import com.ardor3d.image.Image;
+
+/**
+ * Tile codec that stores tiles as PNG files. This is the original tile format.
+ * Elevation and field tiles are stored as 4 byte color since core PNG does
+ * not support 32 bit or floating point.
+ *
+ */
+public class PngTileCodec extends TileCodec {
+
+	@Override
+	public String getName() {
+		return (PNG);
+	}
+
+	@Override
+	public String getExtension() {
+		return (".png");
+	}
+
+	@Override
+	public void encode(byte[] data, int width, int height, LayerType layerType, OutputStream oStream)
+		throws IOException {
+		BufferedImage bImage = null;
+		switch (layerType) {
+		case none:
+		case footprint:
+		case viewshed:
+		case derivative:
+			break;
+		case elevation:
+		case field:
+			// core PNG does not support 32 bit or floating point
+			// write it as a 4 byte color
+			bImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+			byte[] fData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
+			System.arraycopy(data, 0, fData, 0, data.length);
+			break;
+		case colorimage:
+			bImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+			byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
+			System.arraycopy(data, 0, iData, 0, data.length);
+			break;
+		case grayimage:
+			bImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+			byte[] bData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
+			System.arraycopy(data, 0, bData, 0, data.length);
+			break;
+		}
+		ImageIO.write(bImage, "PNG", oStream);
+	}
+
+	@Override
+	public QuadTreeTile decode(File file, String id, DataType dataType) throws IOException {
+		BufferedImage bImage = ImageIO.read(file);
+		if (bImage == null) {
+			return (null);
+		}
+		int numBands = bImage.getData().getNumBands();
+		if (dataType == DataType.Float) {
+			DataBufferByte dBuf = (DataBufferByte) bImage.getData().getDataBuffer();
+			byte[] bytes = dBuf.getData();
+			ByteBuffer bBuf = ByteBuffer.wrap(bytes);
+			return (new QuadTreeTile(bBuf, id, bImage.getWidth(), bImage.getHeight(), dataType, numBands));
+		}
+		// Spurious gray tile in the midst of a color landscape.
+		if ((dataType == DataType.UnsignedInteger) && (numBands < 4)) {
+			dataType = DataType.UnsignedByte;
+		} else if ((dataType == DataType.UnsignedByte) && (numBands > 1)) {
+			dataType = DataType.UnsignedInteger;
+		}
+		Image image = ImageUtil.convertToArdor3DImage(bImage, false);
+		return (new QuadTreeTile(image, id, dataType));
+	}
+
+}
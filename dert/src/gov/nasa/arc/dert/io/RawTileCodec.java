@@ -0,0 +1,72 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tile codec that stores tiles uncompressed after a 16 byte header. The pixels
+ * are stored in the decoded layout so a tile is read from the file channel
+ * straight into a direct buffer. Tiles are larger than PNG but there is no
+ * decoding cost.
+ *
+ */
+public class RawTileCodec extends TileCodec {
+
+	@Override
+	public String getName() {
+		return (RAW);
+	}
+
+	@Override
+	public String getExtension() {
+		return (".raw");
+	}
+
+	@Override
+	public void encode(byte[] data, int width, int height, LayerType layerType, OutputStream oStream)
+		throws IOException {
+		int bytesPerPixel = getBytesPerPixel(data, width, height);
+		if (layerType == LayerType.colorimage) {
+			toBGRA(data);
+		}
+		writeHeader(oStream, width, height, bytesPerPixel);
+		oStream.write(data);
+	}
+
+	@Override
+	public QuadTreeTile decode(File file, String id, DataType dataType) throws IOException {
+		FileInputStream iStream = new FileInputStream(file);
+		try {
+			FileChannel channel = iStream.getChannel();
+			if (channel.size() == 0) {
+				return (null);
+			}
+			ByteBuffer hBuf = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, hBuf);
+			int[] header = readHeader(new ByteArrayInputStream(hBuf.array()));
+			ByteBuffer buffer = allocate(header[0] * header[1] * header[2], dataType);
+			readFully(channel, buffer);
+			return (createTile(buffer, id, header[0], header[1], header[2], dataType));
+		} finally {
+			iStream.close();
+		}
+	}
+
+	private void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of tile file.");
+			}
+		}
+	}
+
+}
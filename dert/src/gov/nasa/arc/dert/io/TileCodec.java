@@ -0,0 +1,222 @@
+package gov.nasa.arc.dert.io;
+
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Encodes and decodes the tiles of a layer pyramid. The codec is chosen when
+ * the layer is built and recorded in layer.properties with the TileFormat key.
+ *
+ * Decoded tiles have the layout the landscape expects. Elevation and field
+ * tiles are big endian floats. Color image tiles are an Image in BGRA format
+ * and gray image tiles are an Image in Luminance format.
+ *
+ */
+public abstract class TileCodec {
+
+	// Codec names as recorded in layer.properties
+	public static final String PNG = "PNG";
+	public static final String RAW = "RAW";
+	public static final String DEFLATE = "DEFLATE";
+
+	public static final String[] NAME = { PNG, RAW, DEFLATE };
+
+	// Identifies the header of a RAW or DEFLATE tile
+	protected static final int MAGIC = 0x44455254;
+
+	// Size of the header in bytes
+	protected static final int HEADER_SIZE = 16;
+
+	/**
+	 * Get a codec by name.
+	 *
+	 * @param name
+	 *            the codec name, if null PNG is used (for layers built before
+	 *            the TileFormat key was recorded)
+	 * @return the codec
+	 */
+	public static TileCodec getCodec(String name) {
+		if ((name == null) || name.equalsIgnoreCase(PNG)) {
+			return (new PngTileCodec());
+		}
+		if (name.equalsIgnoreCase(RAW)) {
+			return (new RawTileCodec());
+		}
+		if (name.equalsIgnoreCase(DEFLATE)) {
+			return (new DeflateTileCodec());
+		}
+		throw new IllegalArgumentException("Unknown tile format " + name + ".");
+	}
+
+	/**
+	 * Get the codec name.
+	 *
+	 * @return
+	 */
+	public abstract String getName();
+
+	/**
+	 * Get the file name extension for tiles.
+	 *
+	 * @return
+	 */
+	public abstract String getExtension();
+
+	/**
+	 * Encode a tile.
+	 *
+	 * @param data
+	 *            the tile pixels as produced by the layer factory, may be
+	 *            modified
+	 * @param width
+	 * @param height
+	 * @param layerType
+	 * @param oStream
+	 * @throws IOException
+	 */
+	public abstract void encode(byte[] data, int width, int height, LayerType layerType, OutputStream oStream)
+		throws IOException;
+
+	/**
+	 * Decode a tile.
+	 *
+	 * @param file
+	 *            the tile file
+	 * @param id
+	 *            the tile id
+	 * @param dataType
+	 *            the data type of the layer
+	 * @return the tile or null if the file is empty
+	 * @throws IOException
+	 */
+	public abstract QuadTreeTile decode(File file, String id, DataType dataType) throws IOException;
+
+	/**
+	 * Get the number of bytes per pixel of a tile.
+	 *
+	 * @param data
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	protected static int getBytesPerPixel(byte[] data, int width, int height) {
+		return (data.length / (width * height));
+	}
+
+	/**
+	 * Reorder color pixels from the factory layout to BGRA so decoding does
+	 * not need a conversion. This is the same reordering done for PNG tiles
+	 * when they are converted to an Ardor3D Image.
+	 *
+	 * @param data
+	 */
+	protected static void toBGRA(byte[] data) {
+		for (int i = 0; i < data.length; i += 4) {
+			byte b = data[i];
+			data[i] = data[i + 1];
+			data[i + 1] = data[i + 2];
+			data[i + 2] = data[i + 3];
+			data[i + 3] = b;
+		}
+	}
+
+	/**
+	 * Write the header for a RAW or DEFLATE tile.
+	 *
+	 * @param oStream
+	 * @param width
+	 * @param height
+	 * @param bytesPerPixel
+	 * @throws IOException
+	 */
+	protected static void writeHeader(OutputStream oStream, int width, int height, int bytesPerPixel)
+		throws IOException {
+		DataOutputStream dStream = new DataOutputStream(oStream);
+		dStream.writeInt(MAGIC);
+		dStream.writeInt(width);
+		dStream.writeInt(height);
+		dStream.writeInt(bytesPerPixel);
+		dStream.flush();
+	}
+
+	/**
+	 * Read the header for a RAW or DEFLATE tile.
+	 *
+	 * @param iStream
+	 * @return width, height, and bytes per pixel
+	 * @throws IOException
+	 */
+	protected static int[] readHeader(InputStream iStream) throws IOException {
+		DataInputStream dStream = new DataInputStream(iStream);
+		if (dStream.readInt() != MAGIC) {
+			throw new IOException("Invalid tile header.");
+		}
+		int[] header = new int[3];
+		header[0] = dStream.readInt();
+		header[1] = dStream.readInt();
+		header[2] = dStream.readInt();
+		return (header);
+	}
+
+	/**
+	 * Allocate a direct buffer for decoded pixels.
+	 *
+	 * @param size
+	 * @param dataType
+	 * @return
+	 */
+	protected static ByteBuffer allocate(int size, DataType dataType) {
+		if (dataType == DataType.Float) {
+			// float tiles are read as big endian
+			return (ByteBuffer.allocateDirect(size));
+		}
+		return (BufferUtils.createByteBuffer(size));
+	}
+
+	/**
+	 * Create a tile from decoded pixels.
+	 *
+	 * @param buffer
+	 *            the pixels in the decoded layout
+	 * @param id
+	 * @param width
+	 * @param height
+	 * @param bytesPerPixel
+	 * @param dataType
+	 * @return
+	 */
+	protected static QuadTreeTile createTile(ByteBuffer buffer, String id, int width, int height, int bytesPerPixel,
+		DataType dataType) {
+		buffer.rewind();
+		if (dataType == DataType.Float) {
+			return (new QuadTreeTile(buffer, id, width, height, dataType, bytesPerPixel));
+		}
+		// Spurious gray tile in the midst of a color landscape.
+		if ((dataType == DataType.UnsignedInteger) && (bytesPerPixel < 4)) {
+			dataType = DataType.UnsignedByte;
+		} else if ((dataType == DataType.UnsignedByte) && (bytesPerPixel > 1)) {
+			dataType = DataType.UnsignedInteger;
+		}
+		ImageDataFormat format = (bytesPerPixel == 4) ? ImageDataFormat.BGRA : ImageDataFormat.Luminance;
+		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+		list.add(buffer);
+		Image image = new Image(format, PixelDataType.UnsignedByte, width, height, list, null);
+		return (new QuadTreeTile(image, id, dataType));
+	}
+
+}
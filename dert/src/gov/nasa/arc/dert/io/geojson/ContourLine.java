@@ -1,71 +1,74 @@
 package gov.nasa.arc.dert.io.geojson;
 
-import gov.nasa.arc.dert.scenegraph.LineStrip;
 import gov.nasa.arc.dert.scenegraph.text.VectorText;
 import gov.nasa.arc.dert.util.UIUtil;
 
 import java.awt.Color;
-import java.nio.FloatBuffer;
 
-import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.Matrix3;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.scenegraph.Node;
 
 /**
- * An Ardor3D Node with a continuous line at the same elevation (Z coordinate)
- * and a label indicating the elevation.
+ * An Ardor3D Node with the label indicating the elevation of a continuous line
+ * at the same elevation (Z coordinate). The line itself is drawn by the
+ * LineBatch of the FeatureSet.
  *
  */
 public class ContourLine extends Node {
 
+	// The first vertex of the line after the label
+	private int start;
+
 	/**
 	 * Constructor
 	 * 
-	 * @param line
+	 * @param vertex
+	 *            X, Y, Z coordinates of the line
+	 * @param count
+	 *            the number of vertices
 	 * @param elevation
 	 * @param color
 	 */
-	public ContourLine(LineStrip line, double elevation, Color color) {
+	public ContourLine(float[] vertex, int count, double elevation, Color color) {
 		super(Integer.toString((int) elevation));
 
-		attachChild(line);
 		VectorText label = new VectorText(getName(), getName());
 		label.setScaleFactor(0.05f);
 		ColorRGBA colorRGBA = UIUtil.colorToColorRGBA(color);
 		label.setColor(colorRGBA);
-		BoundingVolume lBound = line.getModelBound();
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int i = 0; i < count * 3; i += 3) {
+			minX = Math.min(minX, vertex[i]);
+			minY = Math.min(minY, vertex[i + 1]);
+			minZ = Math.min(minZ, vertex[i + 2]);
+			maxX = Math.max(maxX, vertex[i]);
+			maxY = Math.max(maxY, vertex[i + 1]);
+			maxZ = Math.max(maxZ, vertex[i + 2]);
+		}
+		double radius = 0;
+		if (count > 0) {
+			radius = new Vector3(maxX - minX, maxY - minY, maxZ - minZ).length() / 2;
+		}
 
 		// draw label if it is smaller than the contour
-		if (label.getWidth() < lBound.getRadius()) {
-			FloatBuffer vertex = line.getMeshData().getVertexBuffer();
-			float x0 = vertex.get(0);
-			float y0 = vertex.get(1);
-			float z0 = vertex.get(2);
-			Vector3 vec0 = new Vector3(x0, y0, z0);
-			// insert the text into the contour
-			for (int i = 3; i < vertex.limit(); i += 3) {
-				float x1 = vertex.get(i);
-				float y1 = vertex.get(i + 1);
-				float z1 = vertex.get(i + 2);
-				Vector3 vec1 = new Vector3(x1, y1, z1);
+		if (label.getWidth() < radius) {
+			Vector3 vec0 = new Vector3(vertex[0], vertex[1], vertex[2]);
+			// leave a gap in the contour for the text
+			for (int i = 1; i < count; ++i) {
+				Vector3 vec1 = new Vector3(vertex[i * 3], vertex[i * 3 + 1], vertex[i * 3 + 2]);
 				double d = vec0.distance(vec1);
 				if (d >= label.getWidth()) {
 					Matrix3 rotMat = new Matrix3();
 					vec1.subtractLocal(vec0);
 					vec1.normalizeLocal();
 					rotMat.fromStartEndLocal(Vector3.UNIT_X, vec1);
-					label.setTranslation(x0, y0, z0);
+					label.setTranslation(vec0);
 					label.setRotation(rotMat);
 					attachChild(label);
-					int k = 0;
-					for (int j = i; j < vertex.limit(); ++j) {
-						vertex.put(k++, vertex.get(j));
-					}
-					vertex.limit(k);
-					vertex.rewind();
-					line.getMeshData().setVertexBuffer(vertex);
+					start = i;
 					break;
 				}
 			}
@@ -73,4 +76,13 @@ public class ContourLine extends Node {
 		updateGeometricState(0);
 	}
 
+	/**
+	 * Get the first vertex of the line after the label.
+	 * 
+	 * @return
+	 */
+	public int getStart() {
+		return (start);
+	}
+
 }
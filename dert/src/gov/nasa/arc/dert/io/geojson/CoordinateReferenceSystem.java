@@ -6,20 +6,53 @@ import gov.nasa.arc.dert.raster.Projection;
 import com.ardor3d.math.Vector3;
 
 /**
- * Provides a CoordinateReferenceSystem object for GeoJSON. Currently not used.
+ * Provides a CoordinateReferenceSystem object for GeoJSON. Of the systems named
+ * in a file, only longitude and latitude (CRS84 or EPSG:4326) are recognized.
  *
  */
 public class CoordinateReferenceSystem {
 	
 	private Projection projection;
+
+	// Name given in the file
+	private String name;
+
+	// The coordinates are longitude and latitude
+	private boolean lonLat;
 	
 	public CoordinateReferenceSystem(JsonObject jsonObject) {
-		// nothing here yet
+		// a named system, {"type": "name", "properties": {"name": "..."}}
+		Object properties = jsonObject.get("properties");
+		if (properties instanceof JsonObject) {
+			Object value = ((JsonObject) properties).get("name");
+			if (value instanceof String) {
+				name = (String) value;
+			}
+		}
+		lonLat = (name != null) && (name.endsWith("CRS84") || name.endsWith(":4326"));
 	}
 	
 	public CoordinateReferenceSystem(Projection projection) {
 		this.projection = projection;
 	}
+
+	/**
+	 * Get the name given in the file.
+	 * 
+	 * @return the name or null
+	 */
+	public String getName() {
+		return (name);
+	}
+
+	/**
+	 * Find out if this system is longitude and latitude.
+	 * 
+	 * @return
+	 */
+	public boolean isLongitudeLatitude() {
+		return (lonLat);
+	}
 	
 	public void translate(double[] coord, Vector3 vec) {
 		if (coord.length == 2) {
@@ -28,7 +61,7 @@ public class CoordinateReferenceSystem {
 			coord[0] = vec.getX();
 			coord[1] = vec.getY();
 		}
-		else if (coord.length == 3) {
+		else if (coord.length >= 3) {
 			vec.set(coord[0], coord[1], coord[2]);
 			doTranslate(vec);
 			coord[0] = vec.getX();
@@ -37,6 +70,19 @@ public class CoordinateReferenceSystem {
 		}
 	}
 	
+	/**
+	 * Translate arrays of coordinates in place.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param count
+	 *            the number of points
+	 */
+	public void translate(double[] x, double[] y, double[] z, int count) {
+		projection.sphericalToWorld(x, y, z, count);
+	}
+	
 	protected void doTranslate(Vector3 vec) {
 		projection.sphericalToWorld(vec);
 	}
@@ -14,6 +14,19 @@ public class GeoJsonFeature extends GeoJsonObject {
 	private Geometry geometry;
 	protected String id;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param id
+	 * @param properties
+	 * @param geometry
+	 */
+	public GeoJsonFeature(String id, HashMap<String, Object> properties, Geometry geometry) {
+		this.id = id;
+		this.properties = properties;
+		this.geometry = geometry;
+	}
+
 	/**
 	 * Constructor
 	 * 
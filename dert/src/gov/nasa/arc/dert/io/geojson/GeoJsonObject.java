@@ -14,6 +14,13 @@ public class GeoJsonObject {
 	// Coordinate reference system
 	protected CoordinateReferenceSystem crs;
 
+	/**
+	 * Constructor for objects read by the GeojsonReader
+	 */
+	public GeoJsonObject() {
+		// nothing here
+	}
+
 	/**
 	 * Constructor
 	 * 
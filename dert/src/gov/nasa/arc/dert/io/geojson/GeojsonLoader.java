@@ -7,28 +7,24 @@ import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
 import gov.nasa.arc.dert.scene.featureset.Feature;
 import gov.nasa.arc.dert.scene.featureset.FeatureSet;
-import gov.nasa.arc.dert.scenegraph.FigureMarker;
+import gov.nasa.arc.dert.scene.featureset.LineBatch;
 import gov.nasa.arc.dert.scenegraph.GroupNode;
-import gov.nasa.arc.dert.scenegraph.LineStrip;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
 import gov.nasa.arc.dert.scenegraph.Shape.ShapeType;
 import gov.nasa.arc.dert.view.Console;
 
 import java.awt.Color;
 import java.io.File;
 import java.io.FileInputStream;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 
-import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.scenegraph.Node;
 import com.ardor3d.scenegraph.Spatial;
-import com.ardor3d.scenegraph.hint.LightCombineMode;
-import com.ardor3d.util.geom.BufferUtils;
 
 /**
  * Provides a file loader for GeoJSON format.
@@ -44,8 +40,25 @@ public class GeojsonLoader {
 	private SpatialReferenceSystem srs;
 	private double landscapeMinZ;
 	private String elevAttrName;
-	private boolean ground;
+	private boolean ground, isProjected;
 	private float size, lineWidth;
+	private Color color;
+
+	// Fraction of the file read by the streaming load
+	private volatile double progress;
+
+	// The lines of all features
+	private LineBatch lineBatch;
+
+	// The points of all features
+	private MarkerBatch markerBatch;
+
+	// The feature being converted
+	private Feature feature;
+
+	// Vertices of the line being converted
+	private float[] lineArray = new float[3 * 256];
+	private double[] lineX = new double[256], lineY = new double[256], lineZ = new double[256];
 	
 //	private Texture texture;
 
@@ -98,6 +111,97 @@ public class GeojsonLoader {
 		return (null);
 	}
 
+	/**
+	 * Load a GeoJSON file into a FeatureSet. The file is streamed and each
+	 * feature is converted as it is read, so the GeoJSON objects for the whole
+	 * file are never in memory at once. If a coordinate reference system
+	 * follows the features in the file and changes how they are converted,
+	 * the file is read again with it. Features that can't be converted are
+	 * skipped.
+	 * 
+	 * @param filePath
+	 *            path to the file
+	 * @param root
+	 *            the FeatureSet
+	 * @param color
+	 *            color for features
+	 * @param isProjected
+	 *            coordinates are projected (not longitude and latitude)
+	 * @return the FeatureSet, or null if the file could not be read
+	 */
+	public FeatureSet load(String filePath, final FeatureSet root, final Color color, boolean isProjected) {
+		this.filePath = filePath;
+		initialize(null, color, isProjected);
+		final int[] count = new int[1];
+		final boolean[] lateCrs = new boolean[1];
+		GeojsonReader.Handler handler = new GeojsonReader.Handler() {
+			@Override
+			public void crs(CoordinateReferenceSystem fileCrs) {
+				boolean changed = setCoordinateReferenceSystem(fileCrs);
+				if (changed && (count[0] > 0)) {
+					lateCrs[0] = true;
+				}
+			}
+
+			@Override
+			public void feature(GeoJsonFeature gjFeature) {
+				try {
+					Feature feature = convert(gjFeature, count[0]);
+					if (feature != null) {
+						root.attachChild(feature);
+						count[0]++;
+					}
+				} catch (RuntimeException e) {
+					Console.println("Skipped GeoJSON feature " + gjFeature.getId() + ": " + e.getMessage());
+				}
+			}
+
+			@Override
+			public void progress(long bytesRead, long length) {
+				if (length > 0) {
+					progress = Math.min(1.0, (double) bytesRead / length);
+				}
+			}
+		};
+		try {
+			File file = new File(filePath);
+			do {
+				if (lateCrs[0]) {
+					Console.println("The coordinate reference system of GeoJSON file " + filePath
+						+ " follows its features, reading it again.");
+					root.detachAllChildren();
+					lineBatch = new LineBatch("_lines", color, lineWidth);
+					markerBatch = createMarkerBatch();
+					count[0] = 0;
+					lateCrs[0] = false;
+				}
+				progress = 0;
+				FileInputStream fis = new FileInputStream(file);
+				GeojsonReader reader = new GeojsonReader(fis, file.length(), handler);
+				try {
+					reader.read();
+				} finally {
+					reader.close();
+				}
+			} while (lateCrs[0]);
+		} catch (Exception e) {
+			Console.println("Unable to load GeoJSON file " + filePath + ", see log.");
+			e.printStackTrace();
+			return (null);
+		}
+		finish(root, count[0]);
+		return (root);
+	}
+
+	/**
+	 * Get the fraction of the file read by the streaming load.
+	 * 
+	 * @return
+	 */
+	public double getProgress() {
+		return (progress);
+	}
+
 	/**
 	 * Convert a GeoJsonObject to a FeatureSet
 	 * 
@@ -115,13 +219,7 @@ public class GeojsonLoader {
 	 * @return the FeatureSet
 	 */
 	public FeatureSet geoJsonToArdor3D(GeoJsonObject gjRoot, FeatureSet root, Color color, boolean isProjected) {
-		crs = gjRoot.crs;
-		if (!isProjected && (crs == null))
-			crs = new CoordinateReferenceSystem(Landscape.getInstance().getSpatialReferenceSystem().getProjection());
-		// Minimum landscape elevation
-		landscapeMinZ = 0;
-		if ((elevAttrName == null) && ground)
-			landscapeMinZ = Landscape.getInstance().getMinimumElevation();
+		initialize(gjRoot.crs, color, isProjected);
 
 		int count = 0;
 		if (gjRoot instanceof GeoJsonFeature) {
@@ -143,6 +241,156 @@ public class GeojsonLoader {
 				}
 			}
 		}
+		finish(root, count);
+		return (root);
+	}
+
+	/**
+	 * Start converting features one at a time. Used by the FeatureSetLoader
+	 * pipeline, which takes the converted lines and points in batches.
+	 * 
+	 * @param filePath
+	 *            path to the file
+	 * @param color
+	 *            color for features
+	 * @param isProjected
+	 *            coordinates are projected (not longitude and latitude)
+	 */
+	public void begin(String filePath, Color color, boolean isProjected) {
+		this.filePath = filePath;
+		initialize(null, color, isProjected);
+	}
+
+	/**
+	 * Set the coordinate reference system found in the file. Longitude and
+	 * latitude are converted with the landscape projection. Other systems are
+	 * not supported, the coordinates are converted as the FeatureSet
+	 * specifies.
+	 * 
+	 * @param fileCrs
+	 * @return true if this changes how coordinates are converted
+	 */
+	public boolean setCoordinateReferenceSystem(CoordinateReferenceSystem fileCrs) {
+		boolean wasLonLat = (crs != null);
+		if ((fileCrs != null) && !fileCrs.isLongitudeLatitude()) {
+			Console.println("Coordinate reference system " + fileCrs.getName() + " of GeoJSON file " + filePath
+				+ " is not supported.");
+			fileCrs = null;
+		}
+		if ((fileCrs != null) || !isProjected)
+			crs = new CoordinateReferenceSystem(Landscape.getInstance().getSpatialReferenceSystem().getProjection());
+		else
+			crs = null;
+		return (wasLonLat != (crs != null));
+	}
+
+	/**
+	 * Convert a feature. Its lines and points are added to the current
+	 * batches. If it can't be converted, whatever it added to the batches is
+	 * removed.
+	 * 
+	 * @param gjFeature
+	 * @param count
+	 *            number of features converted so far (for the default name)
+	 * @return the Feature or null if it has no geometry
+	 * @throws IllegalArgumentException
+	 *             if the feature can't be converted
+	 */
+	public Feature convert(GeoJsonFeature gjFeature, int count) {
+		int parts = lineBatch.getPartCount();
+		int points = markerBatch.getInstanceCount();
+		try {
+			return (geojsonFeatureToArdor3D(gjFeature, color, count));
+		} catch (RuntimeException e) {
+			lineBatch.removeParts(parts);
+			markerBatch.removeInstances(points);
+			throw e;
+		}
+	}
+
+	/**
+	 * Convert the current feature record of a vector cache. Its lines and
+	 * points are added to the current batches. Grounded features are draped
+	 * on the landscape as it is now.
+	 *
+	 * @param cache
+	 * @return the Feature
+	 */
+	public Feature convert(VectorCache cache) {
+		feature = new Feature(cache.getName(), color, cache.getProperties());
+		float[] vertex = cache.getVertices();
+		int n = cache.getPartStart(cache.getPartCount());
+		if (ground) {
+			for (int i = 0; i < n; ++i) {
+				double z = Landscape.getInstance().getZ(vertex[i * 3], vertex[i * 3 + 1]);
+				if (!Double.isNaN(z))
+					vertex[i * 3 + 2] = (float) z;
+			}
+		}
+		for (int i = 0; i < cache.getPartCount(); ++i) {
+			int start = cache.getPartStart(i);
+			lineBatch.addPart(feature, vertex, cache.getTolerances(), start, cache.getPartStart(i + 1) - start);
+		}
+		float[] point = cache.getPoints();
+		for (int i = 0; i < cache.getPointCount(); ++i) {
+			coord.set(point[i * 3], point[i * 3 + 1], point[i * 3 + 2]);
+			if (ground) {
+				double z = Landscape.getInstance().getZ(coord.getX(), coord.getY());
+				if (!Double.isNaN(z))
+					coord.setZ(z);
+			}
+			addPoint(coord, color);
+		}
+		return (feature);
+	}
+
+	/**
+	 * Take the lines converted since the last call and start a new batch.
+	 * 
+	 * @return the batch (not built) or null if there are no lines
+	 */
+	public LineBatch takeLineBatch() {
+		LineBatch batch = lineBatch;
+		lineBatch = new LineBatch("_lines", color, lineWidth);
+		if (batch.getVertexCount() == 0)
+			return (null);
+		return (batch);
+	}
+
+	/**
+	 * Take the points converted since the last call and start a new batch.
+	 * 
+	 * @return the batch (not built) or null if there are no points
+	 */
+	public MarkerBatch takeMarkerBatch() {
+		MarkerBatch batch = markerBatch;
+		markerBatch = createMarkerBatch();
+		if (batch.getInstanceCount() == 0)
+			return (null);
+		return (batch);
+	}
+
+	private MarkerBatch createMarkerBatch() {
+		MarkerBatch batch = new MarkerBatch("_points", ShapeType.crystal, true);
+		// landmark labels are placed first
+		batch.setLabelPriority(-1);
+		return (batch);
+	}
+
+	private void initialize(CoordinateReferenceSystem fileCrs, Color color, boolean isProjected) {
+		this.color = color;
+		this.isProjected = isProjected;
+		lineBatch = new LineBatch("_lines", color, lineWidth);
+		markerBatch = createMarkerBatch();
+		crs = null;
+		setCoordinateReferenceSystem(fileCrs);
+		// Minimum landscape elevation
+		landscapeMinZ = 0;
+		if ((elevAttrName == null) && ground)
+			landscapeMinZ = Landscape.getInstance().getMinimumElevation();
+	}
+
+	private void finish(FeatureSet root, int count) {
 		Collections.sort(root.getChildren(), new Comparator<Spatial>() {
 			public int compare(Spatial spat1, Spatial spat2) {
 				return(spat1.getName().compareTo(spat2.getName()));
@@ -151,12 +399,22 @@ public class GeojsonLoader {
 				return(this == obj);
 			}
 		});
+		if (lineBatch.getVertexCount() > 0) {
+			lineBatch.build();
+			root.addLineBatch(lineBatch);
+		}
+		if (markerBatch.getInstanceCount() > 0) {
+			markerBatch.build();
+			root.addMarkerBatch(markerBatch);
+		}
+		lineBatch = null;
+		markerBatch = null;
+		feature = null;
 		root.setLabelVisible(true);
 		if (Console.getInstance() != null)
 			Console.println("Found " + count + " features for GeoJSON file " + filePath + ".");
 		else
 			System.out.println("Found " + count + " features for GeoJSON file " + filePath + ".");
-		return (root);
 	}
 
 	private Feature geojsonFeatureToArdor3D(GeoJsonFeature gjFeature, Color color, int count) {
@@ -166,13 +424,16 @@ public class GeojsonLoader {
 		if (geometry == null)
 			return (null);
 		String name = null;
-		if (labelProp != null)
-			name = gjFeature.getProperties().get(labelProp).toString();
+		if ((labelProp != null) && (gjFeature.getProperties() != null)) {
+			Object label = gjFeature.getProperties().get(labelProp);
+			if (label != null)
+				name = label.toString();
+		}
 		if ((name == null) || name.isEmpty())
 			name = gjFeature.getId();
 		if (name == null)
 			name = "Feature"+count;
-		Feature feature = new Feature(name, color, gjFeature.getProperties());
+		feature = new Feature(name, color, gjFeature.getProperties());
 		if (geojsonGeometryToArdor3D(feature, geometry, color, count, feature.getProperties())) {
 			return (feature);
 		}
@@ -182,7 +443,6 @@ public class GeojsonLoader {
 	private boolean geojsonGeometryToArdor3D(Node parent, Geometry geometry, Color color, int count, HashMap<String, Object> properties) {
 		// this is a contour map, we have an elevation attribute from gdaldem
 		boolean isContour = (elevAttrName != null);
-		LineStrip lineStrip = null;
 		ReadOnlyVector3 pos = null;
 		switch (geometry.type) {
 		case Point:
@@ -194,10 +454,7 @@ public class GeojsonLoader {
 				return (false);
 			pos = toWorld(pCoord, ground);
 			if (pos != null) {
-				FigureMarker fm = new FigureMarker(parent.getName(), pos, size, 0, color, false, true, true);
-				fm.setShape(ShapeType.crystal);
-//				fm.setAutoShowLabel(false);
-				parent.attachChild(fm);
+				addPoint(pos, color);
 				minZ = pos.getZ();
 				maxZ = pos.getZ();
 			}
@@ -217,11 +474,8 @@ public class GeojsonLoader {
 					continue;
 				}
 				pos = toWorld(mpCoord[i], ground);
-				if (coord != null) {
-					FigureMarker fm = new FigureMarker(parent.getName()+i, pos, size, 0, color, false, true, true);
-					fm.setShape(ShapeType.crystal);
-//					fm.setAutoShowLabel(false);
-					parent.attachChild(fm);
+				if (pos != null) {
+					addPoint(pos, color);
 					minZ = Math.min(minZ, pos.getZ());
 					maxZ = Math.max(maxZ, pos.getZ());
 				}
@@ -235,23 +489,8 @@ public class GeojsonLoader {
 				return (false);
 			if (lsCoord.length == 0)
 				return (false);
-			lineStrip = createLineStrip("_geom", lsCoord, color);
-			if (lineStrip == null)
+			if (!addLine(parent, lsCoord, color, isContour, properties))
 				return(false);
-
-			// if this is a contour map put the line strip in a Contour object
-			if (isContour) {
-				Object elevation = properties.get(elevAttrName);
-				if (elevation != null) {
-					double el = ((Number)elevation).doubleValue();
-					parent.attachChild(new ContourLine(lineStrip, el, color));
-				} else {
-					parent.attachChild(lineStrip);
-				}
-			} else {
-				parent.attachChild(lineStrip);
-//				System.err.println("GeojsonLoader.geojsonFeatureToArdor3D "+coordinate.length+" "+minZ+" "+maxZ+" "+line.getModelBound());
-			}
 			break;
 			
 		case MultiLineString:
@@ -267,20 +506,7 @@ public class GeojsonLoader {
 				if (mlsCoord[i].length == 0) {
 					continue;
 				}
-				lineStrip = createLineStrip("_geom"+i, mlsCoord[i], color);
-				if (lineStrip == null)
-					continue;
-				if (isContour) {
-					Object elevation = properties.get(elevAttrName);
-					if (elevation != null) {
-						double el = ((Number)elevation).doubleValue();
-						parent.attachChild(new ContourLine(lineStrip, el, color));
-					} else {
-						parent.attachChild(lineStrip);
-					}
-				} else {
-					parent.attachChild(lineStrip);
-				}
+				addLine(parent, mlsCoord[i], color, isContour, properties);
 			}
 			break;
 			
@@ -297,9 +523,7 @@ public class GeojsonLoader {
 				if (plyCoord[i].length == 0) {
 					continue;
 				}
-				lineStrip = createLineStrip("_geom"+i, plyCoord[i], color);
-				if (lineStrip != null)
-					parent.attachChild(lineStrip);
+				addLine(parent, plyCoord[i], color, false, properties);
 			}
 			break;
 			
@@ -319,9 +543,7 @@ public class GeojsonLoader {
 				for (int j=0; j<mplyCoord[i].length; ++j) {
 					if (mplyCoord[i][j].length == 0)
 						continue;
-					lineStrip = createLineStrip("_geom"+i+"."+j, mplyCoord[i][j], color);
-					if (lineStrip != null)
-						parent.attachChild(lineStrip);
+					addLine(parent, mplyCoord[i][j], color, false, properties);
 				}
 			}
 			break;
@@ -367,25 +589,24 @@ public class GeojsonLoader {
 //	}
 
 	private ReadOnlyVector3 toWorld(double[] coordinate, boolean getZ) {
-		if (coordinate.length == 3) {
-			coord.set(coordinate[0], coordinate[1], coordinate[2]);
-			if (crs != null)
-				crs.translate(coordinate, coord);
-			srs.getProjection().worldToLocal(coord);
-			if (getZ)
-				coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
-			else
-				coord.setZ(coord.getZ() - landscapeMinZ);
-		} else if (coordinate.length == 2) {
-			coord.set(coordinate[0], coordinate[1], 0);
-			if (crs != null)
-				crs.translate(coordinate, coord);
-			srs.getProjection().worldToLocal(coord);
-			if (getZ)
-				coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
-		} else {
+		if (coordinate.length < 2) {
 			throw new IllegalArgumentException("GeoJSON Position has < 2 elements.");
 		}
+		if (crs != null)
+			crs.translate(coordinate, coord);
+		return (toLocal(coordinate[0], coordinate[1], (coordinate.length >= 3) ? coordinate[2] : 0, coordinate.length >= 3, getZ));
+	}
+
+	private ReadOnlyVector3 toLocal(double x, double y, double z, boolean hasZ, boolean getZ) {
+		// the point could not be reprojected
+		if (Double.isNaN(x) || Double.isNaN(y))
+			return (null);
+		coord.set(x, y, z);
+		srs.getProjection().worldToLocal(coord);
+		if (getZ)
+			coord.setZ(Landscape.getInstance().getZ(coord.getX(), coord.getY()));
+		else if (hasZ)
+			coord.setZ(coord.getZ() - landscapeMinZ);
 		if (Double.isNaN(coord.getZ())) {
 			return (null);
 		} else {
@@ -393,27 +614,59 @@ public class GeojsonLoader {
 		}
 	}
 	
-	private LineStrip createLineStrip(String name, double[][] coord, Color color) {
-		FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(3 * coord.length);
+	private void addPoint(ReadOnlyVector3 pos, Color color) {
+		int i = markerBatch.addInstance(feature, pos, size, color);
+		if (feature.getMarkerBatch() != markerBatch) {
+			feature.setPointRange(markerBatch, i, i + 1);
+		} else {
+			feature.setPointRange(markerBatch, feature.getPointStart(), i + 1);
+		}
+	}
+
+	private boolean addLine(Node parent, double[][] coord, Color color, boolean isContour, HashMap<String, Object> properties) {
+		if (lineArray.length < 3 * coord.length) {
+			lineArray = new float[3 * coord.length];
+			lineX = new double[coord.length];
+			lineY = new double[coord.length];
+			lineZ = new double[coord.length];
+		}
+		// reproject the whole line at once
+		for (int i = 0; i < coord.length; ++i) {
+			if (coord[i].length < 2)
+				throw new IllegalArgumentException("GeoJSON Position has < 2 elements.");
+			lineX[i] = coord[i][0];
+			lineY[i] = coord[i][1];
+			lineZ[i] = (coord[i].length >= 3) ? coord[i][2] : 0;
+		}
+		if (crs != null)
+			crs.translate(lineX, lineY, lineZ, coord.length);
+		int n = 0;
 		for (int i = 0; i < coord.length; ++i) {
-			ReadOnlyVector3 pos = toWorld(coord[i], ground);
+			ReadOnlyVector3 pos = toLocal(lineX[i], lineY[i], lineZ[i], coord[i].length >= 3, ground);
 			if (pos != null) {
-				vertexBuffer.put(pos.getXf()).put(pos.getYf()).put(pos.getZf());
+				lineArray[n * 3] = pos.getXf();
+				lineArray[n * 3 + 1] = pos.getYf();
+				lineArray[n * 3 + 2] = pos.getZf();
 				minZ = Math.min(minZ, pos.getZ());
 				maxZ = Math.max(maxZ, pos.getZ());
+				n++;
 			}
 		}
-		vertexBuffer.flip();
-		if (vertexBuffer.limit() > 0) {
-			LineStrip lineStrip = new LineStrip(name, vertexBuffer, null, null, null);
-			lineStrip.setLineWidth(lineWidth);
-			lineStrip.setModelBound(new BoundingBox());
-			lineStrip.updateModelBound();
-			lineStrip.setColor(color);
-			lineStrip.getSceneHints().setLightCombineMode(LightCombineMode.Off);
-			return(lineStrip);
+		if (n == 0)
+			return(false);
+		int start = 0;
+		// if this is a contour map label the line with a Contour object
+		if (isContour) {
+			Object elevation = properties.get(elevAttrName);
+			if (elevation != null) {
+				double el = ((Number)elevation).doubleValue();
+				ContourLine contourLine = new ContourLine(lineArray, n, el, color);
+				parent.attachChild(contourLine);
+				start = contourLine.getStart();
+			}
 		}
-		return(null);
+		lineBatch.addPart(feature, lineArray, start, n - start);
+		return(true);
 	}
 
 }
@@ -0,0 +1,746 @@
+package gov.nasa.arc.dert.io.geojson;
+
+import gov.nasa.arc.dert.io.geojson.Geometry.GeojsonType;
+import gov.nasa.arc.dert.io.geojson.json.JsonObject;
+import gov.nasa.arc.dert.view.Console;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Streaming reader for GeoJSON files. Features are passed to a handler as
+ * they are read so the whole file is never held in memory. Coordinates are
+ * parsed directly into double arrays.
+ *
+ * A feature with invalid contents (such as a LineString with one position) is
+ * skipped and reading continues with the next one. Errors in the JSON syntax
+ * stop reading.
+ *
+ */
+public class GeojsonReader {
+
+	/**
+	 * Receives the contents of a GeoJSON file as it is read.
+	 */
+	public static interface Handler {
+
+		/**
+		 * A coordinate reference system was found for the file. This is
+		 * called when the crs member is read. If it follows the features in
+		 * the file, the features were passed to the handler before it.
+		 *
+		 * @param crs
+		 */
+		public void crs(CoordinateReferenceSystem crs);
+
+		/**
+		 * A feature was read.
+		 *
+		 * @param feature
+		 */
+		public void feature(GeoJsonFeature feature);
+
+		/**
+		 * Report reading progress.
+		 *
+		 * @param bytesRead
+		 * @param length
+		 *            the file length
+		 */
+		public void progress(long bytesRead, long length);
+	}
+
+	// Report progress after this many bytes
+	public static int PROGRESS_INTERVAL = 1048576;
+
+	// Number of skipped features reported individually
+	public static int MAX_SKIP_MESSAGES = 10;
+
+	// Powers of ten that are exact doubles
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+		1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// Input
+	private Reader reader;
+	private char[] buffer;
+	private int position, limit;
+
+	// Progress
+	private long bytesRead, length, nextProgress;
+	private Handler handler;
+
+	// Scratch space for strings and numbers
+	private StringBuilder sBuilder;
+	private char[] numberChars;
+	private double[] position3;
+
+	// The last number read had no fraction or exponent
+	private boolean isInteger;
+
+	// Number of features read and skipped
+	private int featureCount, skipCount;
+
+	// Why the feature being read is invalid (null if it is valid)
+	private String featureError;
+
+	/**
+	 * Constructor
+	 *
+	 * @param iStream
+	 *            the GeoJSON input
+	 * @param length
+	 *            the length of the input in bytes, for progress
+	 * @param handler
+	 */
+	public GeojsonReader(InputStream iStream, long length, Handler handler) throws IOException {
+		this.length = length;
+		this.handler = handler;
+		reader = new InputStreamReader(new FilterInputStream(iStream) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0) {
+					bytesRead++;
+				}
+				return (b);
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if (n > 0) {
+					bytesRead += n;
+				}
+				return (n);
+			}
+		}, "UTF-8");
+		buffer = new char[65536];
+		sBuilder = new StringBuilder();
+		numberChars = new char[64];
+		position3 = new double[3];
+		nextProgress = PROGRESS_INTERVAL;
+	}
+
+	/**
+	 * Read the file. The top level object may be a FeatureCollection or a
+	 * Feature.
+	 *
+	 * @throws IOException
+	 */
+	public void read() throws IOException {
+		// byte order mark
+		if (peek() == '\uFEFF') {
+			position++;
+		}
+		skipWhitespace();
+		GeoJsonFeature feature = readFeature(true);
+		if (feature != null) {
+			handler.feature(feature);
+		}
+		if (skipCount > MAX_SKIP_MESSAGES) {
+			Console.println("Skipped " + skipCount + " invalid GeoJSON features.");
+		}
+		handler.progress(length, length);
+	}
+
+	/**
+	 * Close the input.
+	 */
+	public void close() {
+		try {
+			reader.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the number of bytes read.
+	 *
+	 * @return
+	 */
+	public long getBytesRead() {
+		return (bytesRead);
+	}
+
+	/**
+	 * Get the number of invalid features that were skipped.
+	 *
+	 * @return
+	 */
+	public int getSkipCount() {
+		return (skipCount);
+	}
+
+	private boolean fill() throws IOException {
+		int n = reader.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			return (false);
+		}
+		position = 0;
+		limit = n;
+		if (bytesRead >= nextProgress) {
+			handler.progress(bytesRead, length);
+			nextProgress = bytesRead + PROGRESS_INTERVAL;
+		}
+		return (true);
+	}
+
+	private int peek() throws IOException {
+		if ((position == limit) && !fill()) {
+			return (-1);
+		}
+		return (buffer[position]);
+	}
+
+	private char next() throws IOException {
+		if ((position == limit) && !fill()) {
+			throw new IOException("Unexpected end of GeoJSON file.");
+		}
+		return (buffer[position++]);
+	}
+
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			int c = peek();
+			if ((c == ' ') || (c == '\n') || (c == '\r') || (c == '\t')) {
+				position++;
+			} else {
+				return (c);
+			}
+		}
+	}
+
+	private void expect(char c) throws IOException {
+		skipWhitespace();
+		char ch = next();
+		if (ch != c) {
+			throw new IOException("Expected '" + c + "' but found '" + ch + "' in GeoJSON file.");
+		}
+	}
+
+	/**
+	 * Read the separator after a member or element.
+	 *
+	 * @param end
+	 *            the closing character
+	 * @return true if there are more members or elements
+	 * @throws IOException
+	 */
+	private boolean more(char end) throws IOException {
+		skipWhitespace();
+		char ch = next();
+		if (ch == ',') {
+			return (true);
+		}
+		if (ch == end) {
+			return (false);
+		}
+		throw new IOException("Expected ',' or '" + end + "' but found '" + ch + "' in GeoJSON file.");
+	}
+
+	/**
+	 * Check for an empty object or array after the opening character.
+	 */
+	private boolean isEmpty(char end) throws IOException {
+		if (skipWhitespace() == end) {
+			position++;
+			return (true);
+		}
+		return (false);
+	}
+
+	private String readKey() throws IOException {
+		String key = readString();
+		expect(':');
+		return (key);
+	}
+
+	/**
+	 * Read a member value that must be a string or null. Any other value
+	 * makes the current feature invalid.
+	 */
+	private String readStringValue(String key) throws IOException {
+		Object value = readValue();
+		if ((value == null) || (value instanceof String)) {
+			return ((String) value);
+		}
+		invalid("GeoJSON member \"" + key + "\" is not a string.");
+		return (null);
+	}
+
+	/**
+	 * Mark the current feature invalid. The rest of it is still read so
+	 * reading can continue with the next feature.
+	 */
+	private void invalid(String msg) {
+		if (featureError == null) {
+			featureError = msg;
+		}
+	}
+
+	/**
+	 * Read a Feature or FeatureCollection object. The members may be in any
+	 * order. Features in a collection are passed to the handler as they are
+	 * read.
+	 *
+	 * @param topLevel
+	 *            this is the top level object
+	 * @return the feature, or null if this is a collection
+	 * @throws IOException
+	 */
+	private GeoJsonFeature readFeature(boolean topLevel) throws IOException {
+		expect('{');
+		String type = null;
+		String id = null;
+		HashMap<String, Object> properties = null;
+		Geometry geometry = null;
+		featureError = null;
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				if (key.equals("type")) {
+					type = readStringValue(key);
+				} else if (key.equals("id")) {
+					Object value = readValue();
+					if (value != null) {
+						id = value.toString();
+					}
+				} else if (key.equals("properties")) {
+					properties = readProperties();
+				} else if (key.equals("geometry")) {
+					geometry = readGeometry();
+				} else if (topLevel && key.equals("crs")) {
+					Object value = readValue();
+					if (value instanceof JsonObject) {
+						handler.crs(new CoordinateReferenceSystem((JsonObject) value));
+					}
+				} else if (topLevel && key.equals("features")) {
+					// errors in the collection itself don't apply to its
+					// features
+					String error = featureError;
+					readFeatures();
+					featureError = error;
+				} else {
+					readValue();
+				}
+			} while (more('}'));
+		}
+		if (topLevel && !"Feature".equals(type)) {
+			return (null);
+		}
+		featureCount++;
+		if (!"Feature".equals(type)) {
+			invalid("GeoJSON feature has type " + type + ".");
+		}
+		if (featureError != null) {
+			skip(id, featureError);
+			return (null);
+		}
+		return (new GeoJsonFeature(id, properties, geometry));
+	}
+
+	private void skip(String id, String msg) {
+		skipCount++;
+		if (skipCount <= MAX_SKIP_MESSAGES) {
+			Console.println("Skipped GeoJSON feature " + featureCount + ((id == null) ? "" : " (" + id + ")") + ": "
+				+ msg);
+		}
+	}
+
+	private void readFeatures() throws IOException {
+		expect('[');
+		if (isEmpty(']')) {
+			return;
+		}
+		do {
+			if (skipWhitespace() != '{') {
+				readValue();
+				featureCount++;
+				skip(null, "GeoJSON feature is not an object.");
+				continue;
+			}
+			GeoJsonFeature feature = readFeature(false);
+			if (feature != null) {
+				handler.feature(feature);
+			}
+		} while (more(']'));
+	}
+
+	private HashMap<String, Object> readProperties() throws IOException {
+		int c = skipWhitespace();
+		if (c != '{') {
+			if (readValue() != null) {
+				invalid("GeoJSON member \"properties\" is not an object.");
+			}
+			return (null);
+		}
+		expect('{');
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		if (isEmpty('}')) {
+			return (properties);
+		}
+		do {
+			String key = readKey();
+			Object value = readValue();
+			// arrays are not supported as property values
+			if (!(value instanceof Object[])) {
+				properties.put(key, value);
+			}
+		} while (more('}'));
+		return (properties);
+	}
+
+	private Geometry readGeometry() throws IOException {
+		int c = skipWhitespace();
+		if (c != '{') {
+			if (readValue() != null) {
+				invalid("GeoJSON geometry is not an object.");
+			}
+			return (null);
+		}
+		expect('{');
+		String type = null;
+		Object coordinates = null;
+		ArrayList<Geometry> geometryList = null;
+		if (!isEmpty('}')) {
+			do {
+				String key = readKey();
+				if (key.equals("type")) {
+					type = readStringValue(key);
+				} else if (key.equals("coordinates")) {
+					if (skipWhitespace() == '[') {
+						coordinates = readCoordinates();
+					} else if (readValue() != null) {
+						invalid("GeoJSON member \"coordinates\" is not an array.");
+					}
+				} else if (key.equals("geometries")) {
+					geometryList = new ArrayList<Geometry>();
+					expect('[');
+					if (!isEmpty(']')) {
+						do {
+							Geometry geometry = readGeometry();
+							if (geometry != null) {
+								geometryList.add(geometry);
+							}
+						} while (more(']'));
+					}
+				} else {
+					readValue();
+				}
+			} while (more('}'));
+		}
+		if (type == null) {
+			invalid("GeoJSON geometry has no type.");
+			return (null);
+		}
+		// empty geometry
+		if ((coordinates instanceof double[]) && (((double[]) coordinates).length == 0)) {
+			return (null);
+		}
+		GeojsonType gjType = null;
+		try {
+			gjType = GeojsonType.valueOf(type);
+		} catch (IllegalArgumentException e) {
+			invalid("Unknown GeoJSON geometry type " + type + ".");
+			return (null);
+		}
+		try {
+			switch (gjType) {
+			case Point:
+				return (new Point((double[]) coordinates));
+			case MultiPoint:
+				return (new MultiPoint((double[][]) coordinates));
+			case LineString:
+				return (new LineString((double[][]) coordinates));
+			case MultiLineString:
+				return (new MultiLineString((double[][][]) coordinates));
+			case Polygon:
+				return (new Polygon((double[][][]) coordinates));
+			case MultiPolygon:
+				return (new MultiPolygon((double[][][][]) coordinates));
+			case GeometryCollection:
+				return (new GeometryCollection(geometryList == null ? new ArrayList<Geometry>() : geometryList));
+			}
+		} catch (ClassCastException e) {
+			invalid("GeoJSON " + type + " has coordinates with the wrong nesting.");
+		} catch (NullPointerException e) {
+			invalid("GeoJSON " + type + " has no coordinates.");
+		} catch (IllegalArgumentException e) {
+			invalid(e.getMessage());
+		}
+		return (null);
+	}
+
+	/**
+	 * Read a coordinate array. A position is returned as a double[], arrays
+	 * of positions as double[][] and so on.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private Object readCoordinates() throws IOException {
+		expect('[');
+		int c = skipWhitespace();
+		if (c == '[') {
+			ArrayList<Object> list = new ArrayList<Object>();
+			do {
+				if (skipWhitespace() == '[') {
+					list.add(readCoordinates());
+				} else {
+					readValue();
+					invalid("GeoJSON coordinates have inconsistent nesting.");
+				}
+			} while (more(']'));
+			Object first = list.get(0);
+			try {
+				if (first instanceof double[]) {
+					return (list.toArray(new double[list.size()][]));
+				}
+				if (first instanceof double[][]) {
+					return (list.toArray(new double[list.size()][][]));
+				}
+				return (list.toArray(new double[list.size()][][][]));
+			} catch (ArrayStoreException e) {
+				invalid("GeoJSON coordinates have inconsistent nesting.");
+				return (null);
+			}
+		}
+		// a position
+		int n = 0;
+		if (c != ']') {
+			do {
+				c = skipWhitespace();
+				if (n == position3.length) {
+					double[] p = new double[n * 2];
+					System.arraycopy(position3, 0, p, 0, n);
+					position3 = p;
+				}
+				if ((c == '-') || ((c >= '0') && (c <= '9'))) {
+					position3[n++] = readNumber();
+				} else {
+					readValue();
+					invalid("GeoJSON position has a value that is not a number.");
+					position3[n++] = Double.NaN;
+				}
+			} while (more(']'));
+		} else {
+			position++;
+		}
+		double[] pos = new double[n];
+		System.arraycopy(position3, 0, pos, 0, n);
+		return (pos);
+	}
+
+	/**
+	 * Read any JSON value. Objects are returned as a JsonObject, arrays as an
+	 * Object[], numbers as an Integer or Double.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private Object readValue() throws IOException {
+		int c = skipWhitespace();
+		switch (c) {
+		case '"':
+			return (readString());
+		case '{':
+			position++;
+			JsonObject jObject = new JsonObject();
+			if (!isEmpty('}')) {
+				do {
+					String key = readKey();
+					jObject.add(key, readValue());
+				} while (more('}'));
+			}
+			return (jObject);
+		case '[':
+			position++;
+			ArrayList<Object> list = new ArrayList<Object>();
+			if (!isEmpty(']')) {
+				do {
+					list.add(readValue());
+				} while (more(']'));
+			}
+			return (list.toArray());
+		case 't':
+			readLiteral("true");
+			return (Boolean.TRUE);
+		case 'f':
+			readLiteral("false");
+			return (Boolean.FALSE);
+		case 'n':
+			readLiteral("null");
+			return (null);
+		default:
+			double d = readNumber();
+			// numbers without a fraction or exponent that fit are integers
+			if (isInteger && (d >= Integer.MIN_VALUE) && (d <= Integer.MAX_VALUE)) {
+				return (Integer.valueOf((int) d));
+			}
+			return (Double.valueOf(d));
+		}
+	}
+
+	private void readLiteral(String literal) throws IOException {
+		for (int i = 0; i < literal.length(); ++i) {
+			if (next() != literal.charAt(i)) {
+				throw new IOException("Invalid literal in GeoJSON file.");
+			}
+		}
+	}
+
+	private String readString() throws IOException {
+		expect('"');
+		sBuilder.setLength(0);
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				return (sBuilder.toString());
+			}
+			if (c != '\\') {
+				sBuilder.append(c);
+				continue;
+			}
+			c = next();
+			switch (c) {
+			case 'b':
+				sBuilder.append('\b');
+				break;
+			case 'f':
+				sBuilder.append('\f');
+				break;
+			case 'n':
+				sBuilder.append('\n');
+				break;
+			case 'r':
+				sBuilder.append('\r');
+				break;
+			case 't':
+				sBuilder.append('\t');
+				break;
+			case 'u':
+				int code = 0;
+				for (int i = 0; i < 4; ++i) {
+					code = code * 16 + Character.digit(next(), 16);
+				}
+				sBuilder.append((char) code);
+				break;
+			default:
+				sBuilder.append(c);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Read a number without creating a String. Numbers with up to 18
+	 * significant digits and a small exponent are converted exactly, others
+	 * fall back to Double.parseDouble.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private double readNumber() throws IOException {
+		int nc = 0;
+		boolean negative = false;
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		isInteger = true;
+
+		int c = peek();
+		if (c == '-') {
+			negative = true;
+			numberChars[nc++] = (char) c;
+			position++;
+			c = peek();
+		}
+		// integer part
+		while ((c >= '0') && (c <= '9')) {
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa != 0) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				exact = false;
+			}
+			nc = addChar(nc, c);
+			c = peek();
+		}
+		// fraction
+		if (c == '.') {
+			isInteger = false;
+			nc = addChar(nc, c);
+			c = peek();
+			while ((c >= '0') && (c <= '9')) {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+					exponent--;
+				} else if (c != '0') {
+					exact = false;
+				}
+				nc = addChar(nc, c);
+				c = peek();
+			}
+		}
+		// exponent
+		if ((c == 'e') || (c == 'E')) {
+			isInteger = false;
+			nc = addChar(nc, c);
+			c = peek();
+			boolean negExp = false;
+			if ((c == '+') || (c == '-')) {
+				negExp = (c == '-');
+				nc = addChar(nc, c);
+				c = peek();
+			}
+			int exp = 0;
+			while ((c >= '0') && (c <= '9')) {
+				if (exp < 10000) {
+					exp = exp * 10 + (c - '0');
+				}
+				nc = addChar(nc, c);
+				c = peek();
+			}
+			exponent += negExp ? -exp : exp;
+		}
+		if ((nc == 0) || ((nc == 1) && negative)) {
+			throw new IOException("Invalid number in GeoJSON file.");
+		}
+
+		double value;
+		if (exact && (mantissa < (1L << 53)) && (exponent >= -22) && (exponent <= 22)) {
+			value = (exponent >= 0) ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+			if (negative) {
+				value = -value;
+			}
+		} else {
+			value = Double.parseDouble(new String(numberChars, 0, nc));
+		}
+		return (value);
+	}
+
+	private int addChar(int nc, int c) {
+		if (nc == numberChars.length) {
+			char[] chars = new char[nc * 2];
+			System.arraycopy(numberChars, 0, chars, 0, nc);
+			numberChars = chars;
+		}
+		numberChars[nc] = (char) c;
+		position++;
+		return (nc + 1);
+	}
+
+}
@@ -14,6 +14,15 @@ public abstract class Geometry extends GeoJsonObject {
 	
 	public GeojsonType type;
 
+	/**
+	 * Constructor for geometry read by the GeojsonReader
+	 * 
+	 * @param type
+	 */
+	public Geometry(GeojsonType type) {
+		this.type = type;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -13,6 +13,16 @@ public class GeometryCollection extends Geometry {
 
 	private ArrayList<Geometry> geometryList;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param geometryList
+	 */
+	public GeometryCollection(ArrayList<Geometry> geometryList) {
+		super(GeojsonType.GeometryCollection);
+		this.geometryList = geometryList;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -10,6 +10,19 @@ public class LineString extends Geometry {
 
 	private double[][] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public LineString(double[][] coordinate) {
+		super(GeojsonType.LineString);
+		if (coordinate.length < 2) {
+			throw new IllegalArgumentException("LineString has < 2 positions.");
+		}
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -10,6 +10,16 @@ public class MultiLineString extends Geometry {
 
 	private double[][][] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public MultiLineString(double[][][] coordinate) {
+		super(GeojsonType.MultiLineString);
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
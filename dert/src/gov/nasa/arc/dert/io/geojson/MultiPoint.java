@@ -10,6 +10,16 @@ public class MultiPoint extends Geometry {
 
 	private double[][] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public MultiPoint(double[][] coordinate) {
+		super(GeojsonType.MultiPoint);
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -10,6 +10,16 @@ public class MultiPolygon extends Geometry {
 
 	private double[][][][] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public MultiPolygon(double[][][][] coordinate) {
+		super(GeojsonType.MultiPolygon);
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -10,6 +10,16 @@ public class Point extends Geometry {
 
 	private double[] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public Point(double[] coordinate) {
+		super(GeojsonType.Point);
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -10,6 +10,16 @@ public class Polygon extends Geometry {
 
 	private double[][][] coordinate;
 
+	/**
+	 * Constructor
+	 * 
+	 * @param coordinate
+	 */
+	public Polygon(double[][][] coordinate) {
+		super(GeojsonType.Polygon);
+		this.coordinate = coordinate;
+	}
+
 	/**
 	 * Constructor
 	 * 
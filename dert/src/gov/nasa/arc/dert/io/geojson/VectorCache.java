@@ -0,0 +1,453 @@
+package gov.nasa.arc.dert.io.geojson;
+
+import gov.nasa.arc.dert.raster.ProjectionInfo;
+import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
+import gov.nasa.arc.dert.scene.featureset.Feature;
+import gov.nasa.arc.dert.scene.featureset.LineBatch;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Binary sidecar cache for a GeoJSON file loaded into a FeatureSet. The cache
+ * holds the features after reprojection to landscape coordinates with the
+ * Douglas-Peucker tolerance of each line vertex, so a cached file is loaded
+ * without parsing, reprojecting or simplifying. The cache is read through a
+ * memory mapped buffer.
+ *
+ * The cache is written next to the GeoJSON file. Its header has a key made of
+ * the file path, modification time and size, the landscape projection and the
+ * load options. A cache with a different key is ignored and replaced.
+ *
+ * Layout (big endian): magic, version, key, then one record per feature and a
+ * 0 byte. A record is a 1 byte, the name, the properties (count, then key,
+ * type and value for each), the line parts (count, then for each the number
+ * of vertices, the X, Y, Z coordinates and the tolerances) and the points
+ * (count, then X, Y, Z for each). Strings are a length and UTF-8 bytes.
+ * Property values other than strings, numbers and booleans are stored as
+ * strings.
+ *
+ */
+public class VectorCache {
+
+	// Use the cache
+	public static boolean ENABLED = true;
+
+	// Cache file name extension
+	public static String EXTENSION = ".dvc";
+
+	private static final int MAGIC = 0x44564331;
+	private static final int VERSION = 1;
+
+	// Property value types
+	private static final byte NULL = 0, STRING = 1, INTEGER = 2, DOUBLE = 3, BOOLEAN = 4;
+
+	// The cache file
+	private File file;
+
+	// Key identifying the source and load options
+	private String key;
+
+	// Output while writing
+	private DataOutputStream output;
+	private File tmpFile;
+
+	// Input while reading
+	private MappedByteBuffer buffer;
+
+	// The current record
+	private String name;
+	private HashMap<String, Object> properties;
+	private int partCount;
+	private int[] partStart = new int[16];
+	private float[] vertex = new float[3 * 1024];
+	private float[] tolerance = new float[1024];
+	private int pointCount;
+	private float[] point = new float[3 * 16];
+
+	private Vector3 location = new Vector3();
+
+	/**
+	 * Constructor
+	 *
+	 * @param filePath
+	 *            path to the GeoJSON file
+	 * @param srs
+	 *            the landscape spatial reference system
+	 * @param isProjected
+	 *            coordinates are projected (not longitude and latitude)
+	 * @param ground
+	 *            Z coordinates are from the landscape
+	 * @param labelProp
+	 *            the property used for feature names (may be null)
+	 */
+	public VectorCache(String filePath, SpatialReferenceSystem srs, boolean isProjected, boolean ground,
+		String labelProp) {
+		File source = new File(filePath);
+		file = new File(source.getAbsolutePath() + EXTENSION);
+		ProjectionInfo projInfo = srs.getProjection().getProjectionInfo();
+		key = source.getAbsolutePath() + "|" + source.lastModified() + "|" + source.length() + "|"
+			+ projInfo.getProj4String() + "|" + Arrays.toString(projInfo.tiePoint) + "|"
+			+ Arrays.toString(projInfo.scale) + "|" + projInfo.rasterWidth + "|" + projInfo.rasterLength + "|"
+			+ isProjected + "|" + ground + "|" + labelProp;
+	}
+
+	/**
+	 * Open the cache for reading.
+	 *
+	 * @return false if there is no cache or it is out of date
+	 */
+	public boolean open() {
+		if (!ENABLED || !file.exists()) {
+			return (false);
+		}
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				raf.close();
+			}
+			if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION) || !key.equals(getString())) {
+				buffer = null;
+				return (false);
+			}
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			buffer = null;
+			return (false);
+		}
+	}
+
+	/**
+	 * Read the next feature record.
+	 *
+	 * @return false if there are no more features
+	 */
+	public boolean next() {
+		if (buffer.get() == 0) {
+			return (false);
+		}
+		name = getString();
+		int n = buffer.getInt();
+		properties = new HashMap<String, Object>();
+		for (int i = 0; i < n; ++i) {
+			String pKey = getString();
+			byte type = buffer.get();
+			switch (type) {
+			case STRING:
+				properties.put(pKey, getString());
+				break;
+			case INTEGER:
+				properties.put(pKey, Integer.valueOf(buffer.getInt()));
+				break;
+			case DOUBLE:
+				properties.put(pKey, Double.valueOf(buffer.getDouble()));
+				break;
+			case BOOLEAN:
+				properties.put(pKey, Boolean.valueOf(buffer.get() != 0));
+				break;
+			default:
+				properties.put(pKey, null);
+				break;
+			}
+		}
+		partCount = buffer.getInt();
+		if (partStart.length < partCount + 1) {
+			partStart = new int[partCount + 1];
+		}
+		int vertexCount = 0;
+		for (int i = 0; i < partCount; ++i) {
+			int count = buffer.getInt();
+			if (tolerance.length < vertexCount + count) {
+				int size = Math.max(2 * tolerance.length, vertexCount + count);
+				vertex = Arrays.copyOf(vertex, 3 * size);
+				tolerance = Arrays.copyOf(tolerance, size);
+			}
+			partStart[i] = vertexCount;
+			FloatBuffer fBuffer = buffer.asFloatBuffer();
+			fBuffer.get(vertex, 3 * vertexCount, 3 * count);
+			fBuffer.get(tolerance, vertexCount, count);
+			buffer.position(buffer.position() + 16 * count);
+			vertexCount += count;
+		}
+		partStart[partCount] = vertexCount;
+		pointCount = buffer.getInt();
+		if (point.length < 3 * pointCount) {
+			point = new float[3 * pointCount];
+		}
+		buffer.asFloatBuffer().get(point, 0, 3 * pointCount);
+		buffer.position(buffer.position() + 12 * pointCount);
+		return (true);
+	}
+
+	/**
+	 * Get the fraction of the cache that has been read.
+	 *
+	 * @return
+	 */
+	public double getProgress() {
+		if ((buffer == null) || (buffer.limit() == 0)) {
+			return (0);
+		}
+		return ((double) buffer.position() / buffer.limit());
+	}
+
+	/**
+	 * Release the cache after reading.
+	 */
+	public void close() {
+		buffer = null;
+	}
+
+	/**
+	 * Get the name of the current feature.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return (name);
+	}
+
+	/**
+	 * Get the properties of the current feature.
+	 *
+	 * @return
+	 */
+	public HashMap<String, Object> getProperties() {
+		return (properties);
+	}
+
+	/**
+	 * Get the number of line parts of the current feature.
+	 *
+	 * @return
+	 */
+	public int getPartCount() {
+		return (partCount);
+	}
+
+	/**
+	 * Get the first vertex of a line part. The part count gives one past the
+	 * last vertex.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int getPartStart(int i) {
+		return (partStart[i]);
+	}
+
+	/**
+	 * Get the line vertices of the current feature.
+	 *
+	 * @return X, Y, Z coordinates
+	 */
+	public float[] getVertices() {
+		return (vertex);
+	}
+
+	/**
+	 * Get the Douglas-Peucker tolerances of the line vertices.
+	 *
+	 * @return
+	 */
+	public float[] getTolerances() {
+		return (tolerance);
+	}
+
+	/**
+	 * Get the number of points of the current feature.
+	 *
+	 * @return
+	 */
+	public int getPointCount() {
+		return (pointCount);
+	}
+
+	/**
+	 * Get the points of the current feature.
+	 *
+	 * @return X, Y, Z coordinates
+	 */
+	public float[] getPoints() {
+		return (point);
+	}
+
+	/**
+	 * Start writing the cache. The cache replaces the existing one when it is
+	 * committed.
+	 *
+	 * @return false if the cache can't be written
+	 */
+	public boolean create() {
+		if (!ENABLED) {
+			return (false);
+		}
+		try {
+			tmpFile = new File(file.getAbsolutePath() + ".tmp");
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			putString(key);
+			return (true);
+		} catch (Exception e) {
+			discard();
+			return (false);
+		}
+	}
+
+	/**
+	 * Write a feature. Its line batch must be built.
+	 *
+	 * @param feature
+	 * @throws IOException
+	 */
+	public void write(Feature feature) throws IOException {
+		output.write(1);
+		putString(feature.getName());
+		HashMap<String, Object> props = feature.getProperties();
+		if (props == null) {
+			output.writeInt(0);
+		} else {
+			output.writeInt(props.size());
+			for (Map.Entry<String, Object> entry : props.entrySet()) {
+				putString(entry.getKey());
+				Object value = entry.getValue();
+				if (value == null) {
+					output.write(NULL);
+				} else if (value instanceof Integer) {
+					output.write(INTEGER);
+					output.writeInt((Integer) value);
+				} else if (value instanceof Number) {
+					output.write(DOUBLE);
+					output.writeDouble(((Number) value).doubleValue());
+				} else if (value instanceof Boolean) {
+					output.write(BOOLEAN);
+					output.write(((Boolean) value) ? 1 : 0);
+				} else {
+					output.write(STRING);
+					putString(value.toString());
+				}
+			}
+		}
+
+		// the parts of a feature are consecutive in its line batch
+		LineBatch lineBatch = feature.getLineBatch();
+		if (lineBatch == null) {
+			output.writeInt(0);
+		} else {
+			int first = 0;
+			while ((first < lineBatch.getPartCount()) && (lineBatch.getPartFeature(first) != feature)) {
+				first++;
+			}
+			int last = first;
+			while ((last < lineBatch.getPartCount()) && (lineBatch.getPartFeature(last) == feature)) {
+				last++;
+			}
+			output.writeInt(last - first);
+			FloatBuffer vBuffer = lineBatch.getMeshData().getVertexBuffer();
+			for (int i = first; i < last; ++i) {
+				int start = lineBatch.getPartStart(i);
+				int end = lineBatch.getPartStart(i + 1);
+				output.writeInt(end - start);
+				for (int j = 3 * start; j < 3 * end; ++j) {
+					output.writeFloat(vBuffer.get(j));
+				}
+				for (int j = start; j < end; ++j) {
+					output.writeFloat(lineBatch.getTolerance(j));
+				}
+			}
+		}
+
+		MarkerBatch markerBatch = feature.getMarkerBatch();
+		if (markerBatch == null) {
+			output.writeInt(0);
+		} else {
+			output.writeInt(feature.getPointEnd() - feature.getPointStart());
+			for (int i = feature.getPointStart(); i < feature.getPointEnd(); ++i) {
+				markerBatch.getLocation(i, location);
+				output.writeFloat(location.getXf());
+				output.writeFloat(location.getYf());
+				output.writeFloat(location.getZf());
+			}
+		}
+	}
+
+	/**
+	 * Finish writing and replace the existing cache.
+	 *
+	 * @return false if the cache could not be written
+	 */
+	public boolean commit() {
+		try {
+			output.write(0);
+			output.close();
+			output = null;
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Unable to rename " + tmpFile);
+			}
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			discard();
+			return (false);
+		}
+	}
+
+	/**
+	 * Stop writing and remove the partial cache.
+	 */
+	public void discard() {
+		try {
+			if (output != null) {
+				output.close();
+			}
+		} catch (Exception e) {
+			// nothing here
+		}
+		output = null;
+		if (tmpFile != null) {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Get the cache file.
+	 *
+	 * @return
+	 */
+	public File getFile() {
+		return (file);
+	}
+
+	private void putString(String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private String getString() {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return (new String(bytes, StandardCharsets.UTF_8));
+	}
+
+}
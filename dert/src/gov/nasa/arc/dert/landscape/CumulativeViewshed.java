@@ -0,0 +1,288 @@
+package gov.nasa.arc.dert.landscape;
+
+import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.io.TileSource;
+import gov.nasa.arc.dert.landscape.factory.ViewshedPyramidLayerFactory;
+import gov.nasa.arc.dert.util.FileHelper;
+import gov.nasa.arc.dert.view.Console;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Maintains a field layer that counts the observers that can see each
+ * location of the landscape (see ViewshedPyramidLayerFactory). The observers
+ * are a set of locations, such as the waypoints of a path.
+ *
+ * The layer is computed in the background. When one observer moves, only its
+ * old and new viewsheds are computed and the layer is updated in place. Moves
+ * that arrive while the layer is being computed are combined, so dragging a
+ * waypoint updates the layer once for its latest location. Without observers
+ * the layer is removed.
+ *
+ */
+public class CumulativeViewshed {
+
+	// Name of the layer
+	private String layerName;
+
+	// Observer height and maximum range (meters)
+	private double height, range;
+
+	// Observer locations in OpenGL coordinates
+	private ArrayList<Vector3> locations;
+
+	// Builds and updates the layer (used by the computation thread and
+	// replaced when the layer is built)
+	private volatile ViewshedPyramidLayerFactory factory;
+
+	// Runs the computation
+	private ExecutorService executor;
+
+	// Work waiting for the computation
+	private boolean rebuild;
+	private HashMap<Integer, Vector3> moves;
+
+	// The computation is running
+	private boolean running;
+
+	/**
+	 * Constructor
+	 *
+	 * @param layerName
+	 *            name of the layer
+	 * @param height
+	 *            observer height above the surface (meters)
+	 * @param range
+	 *            maximum range (meters), 0 for no limit
+	 */
+	public CumulativeViewshed(String layerName, double height, double range) {
+		this.layerName = layerName;
+		this.height = height;
+		this.range = range;
+		locations = new ArrayList<Vector3>();
+		moves = new HashMap<Integer, Vector3>();
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "CumulativeViewshed");
+				thread.setDaemon(true);
+				return (thread);
+			}
+		});
+	}
+
+	/**
+	 * Get the layer name
+	 *
+	 * @return
+	 */
+	public String getLayerName() {
+		return (layerName);
+	}
+
+	/**
+	 * Set the observer height and range. The layer is computed again.
+	 *
+	 * @param height
+	 *            observer height above the surface (meters)
+	 * @param range
+	 *            maximum range (meters), 0 for no limit
+	 */
+	public synchronized void setParameters(double height, double range) {
+		this.height = height;
+		this.range = range;
+		rebuild = true;
+		start();
+	}
+
+	/**
+	 * Set all of the observer locations. The layer is computed again.
+	 *
+	 * @param location
+	 *            the locations in OpenGL coordinates
+	 */
+	public synchronized void setObservers(ReadOnlyVector3[] location) {
+		locations.clear();
+		for (int i = 0; i < location.length; ++i) {
+			locations.add(new Vector3(location[i]));
+		}
+		moves.clear();
+		rebuild = true;
+		start();
+	}
+
+	/**
+	 * Move one observer. Only the layer samples seen from the old or new
+	 * location are changed.
+	 *
+	 * @param index
+	 *            the observer index
+	 * @param location
+	 *            the new location in OpenGL coordinates
+	 */
+	public synchronized void moveObserver(int index, ReadOnlyVector3 location) {
+		if ((index < 0) || (index >= locations.size())) {
+			return;
+		}
+		locations.get(index).set(location);
+		if (!rebuild) {
+			moves.put(index, new Vector3(location));
+		}
+		start();
+	}
+
+	/**
+	 * Stop computing the layer.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	private void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				while (doWork()) {
+					// keep going while there is work waiting
+				}
+			}
+		});
+	}
+
+	private boolean doWork() {
+		boolean build = false;
+		boolean remove = false;
+		double[][] observers = null;
+		HashMap<Integer, Vector3> moved = null;
+		double h, r;
+		ViewshedPyramidLayerFactory vFactory = factory;
+		synchronized (this) {
+			if (!rebuild && moves.isEmpty()) {
+				running = false;
+				return (false);
+			}
+			remove = locations.isEmpty();
+			// a new layer is needed if the last update failed
+			build = !remove
+				&& (rebuild || (vFactory == null) || (vFactory.getNumberOfObservers() != locations.size()));
+			if (build) {
+				observers = new double[locations.size()][];
+				for (int i = 0; i < observers.length; ++i) {
+					observers[i] = toWorld(locations.get(i));
+				}
+			} else if (!remove) {
+				moved = new HashMap<Integer, Vector3>(moves);
+			}
+			rebuild = false;
+			moves.clear();
+			h = height;
+			r = range;
+		}
+		try {
+			String landPath = getLandscapePath();
+			if (remove) {
+				factory = null;
+				removeLayer(landPath);
+				return (true);
+			}
+			if (build) {
+				factory = null;
+				vFactory = new ViewshedPyramidLayerFactory(landPath, observers, h, r, true);
+				vFactory.buildPyramid(landPath, layerName, null);
+				factory = vFactory;
+			} else {
+				for (Map.Entry<Integer, Vector3> entry : moved.entrySet()) {
+					double[] p = toWorld(entry.getValue());
+					vFactory.moveObserver(landPath, layerName, entry.getKey(), p[0], p[1]);
+				}
+			}
+			Console.println("Viewshed " + layerName + ": " + String.format("%.1f", vFactory.getVisiblePercent())
+				+ "% of the area in range is visible to at least one observer.");
+			layerChanged(false);
+			return (true);
+		} catch (Exception e) {
+			factory = null;
+			Console.println("Unable to compute viewshed " + layerName + ", see log.");
+			e.printStackTrace();
+			synchronized (this) {
+				running = false;
+			}
+			return (false);
+		}
+	}
+
+	/**
+	 * Delete the layer and take it off of the landscape.
+	 */
+	private void removeLayer(String landPath) {
+		File dir = new File(landPath, layerName);
+		if (!dir.exists()) {
+			return;
+		}
+		if (!FileHelper.delete(dir)) {
+			Console.println("Unable to remove viewshed " + layerName + " from " + landPath + ".");
+		}
+		layerChanged(true);
+	}
+
+	private double[] toWorld(ReadOnlyVector3 location) {
+		Vector3 coord = new Vector3(location);
+		Landscape.getInstance().localToWorldCoordinate(coord);
+		return (new double[] { coord.getX(), coord.getY() });
+	}
+
+	private String getLandscapePath() {
+		TileSource source = Landscape.getInstance().getSource();
+		if (!(source instanceof FileSystemTileSource)) {
+			throw new IllegalStateException("A viewshed layer requires a landscape on the file system.");
+		}
+		return (source.getPath());
+	}
+
+	/**
+	 * Drop the old tiles and reload the layer if it is visible or new. A
+	 * removed layer is reloaded if it was visible or available.
+	 */
+	private void layerChanged(final boolean removed) {
+		QuadTreeTileCache.getInstance().removeTiles(getLandscapePath() + "/" + layerName);
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				Landscape landscape = Landscape.getInstance();
+				LayerManager layerManager = landscape.getLayerManager();
+				boolean reset = !removed;
+				Vector<LayerInfo> available = layerManager.getAvailableLayers();
+				for (int i = 0; i < available.size(); ++i) {
+					if (available.get(i).name.equals(layerName)) {
+						reset = removed;
+					}
+				}
+				Vector<LayerInfo> visible = layerManager.getVisibleLayers();
+				for (int i = 0; i < visible.size(); ++i) {
+					if (visible.get(i).name.equals(layerName)) {
+						reset = true;
+					}
+				}
+				if (reset) {
+					landscape.resetLayers();
+				}
+			}
+		});
+	}
+
+}
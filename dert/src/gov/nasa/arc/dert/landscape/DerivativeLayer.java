@@ -105,6 +105,7 @@ public class DerivativeLayer extends Layer implements ColorMapListener {
 			case Elevation:
 				colorMap = new ColorMap(layerInfo.colorMapName, layerName, dataSource.getMinimumValue()[0],
 					dataSource.getMaximumValue()[0], layerInfo.minimum, layerInfo.maximum, layerInfo.gradient);
+				FieldLayer.setAutoRange(colorMap, dataSource.getAutoRange(), layerInfo);
 				colorMap.addListener(this);
 				break;
 			case Slope:
@@ -151,18 +152,17 @@ public class DerivativeLayer extends Layer implements ColorMapListener {
 	public void createColorMapTextureCoords(Mesh mesh, int textureUnit) {
 		FloatBuffer vertex = mesh.getMeshData().getVertexBuffer();
 		FloatBuffer normals = mesh.getMeshData().getNormalBuffer();
+		// colors are only present if there are missing values
 		FloatBuffer colors = mesh.getMeshData().getColorBuffer();
-		FloatBuffer texCoords = mesh.getMeshData().getTextureBuffer(textureUnit);
-		if (texCoords == null) {
-			texCoords = BufferUtils.createFloatBuffer(colors.limit() / 2);
-		}
-		int dataSize = colors.limit() / 4;
+		int dataSize = vertex.limit() / 3;
+		// texture coordinates for unit 0 are shared among meshes
+		FloatBuffer texCoords = BufferUtils.createFloatBuffer(dataSize * 2);
 		Vector2 coord = new Vector2();
 		Vector3 normal = new Vector3();
 		int k = 0;
 		for (int i = 0; i < dataSize; ++i) {
 			k = i * 2;
-			float alpha = colors.get(i * 4 + 3);
+			float alpha = (colors == null) ? 1 : colors.get(i * 4 + 3);
 			float z = 0;
 			if (alpha != 0) {
 				switch (type) {
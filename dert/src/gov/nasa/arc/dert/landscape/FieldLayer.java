@@ -100,6 +100,7 @@ public class FieldLayer extends Layer implements ColorMapListener {
 		if (colorMap == null) {
 			colorMap = new ColorMap(layerInfo.colorMapName, layerName, dataSource.getMinimumValue()[0],
 				dataSource.getMaximumValue()[0], layerInfo.minimum, layerInfo.maximum, layerInfo.gradient);
+			setAutoRange(colorMap, dataSource.getAutoRange(), layerInfo);
 			colorMap.addListener(this);
 			if (colorMap == null) {
 				throw new IllegalStateException("Error loading color map " + layerInfo.colorMapName + ".");
@@ -109,6 +110,24 @@ public class FieldLayer extends Layer implements ColorMapListener {
 		colorMapTexture = colorMap.getTexture();
 	}
 
+	/**
+	 * Use the percentile range from the layer statistics as the default color
+	 * map range. If the range was not restored from a configuration, apply it.
+	 * 
+	 * @param cMap
+	 * @param autoRange
+	 * @param lInfo
+	 */
+	public static void setAutoRange(ColorMap cMap, double[] autoRange, LayerInfo lInfo) {
+		if (autoRange == null) {
+			return;
+		}
+		cMap.setAutoRange(autoRange[0], autoRange[1]);
+		if (cMap.hasAutoRange() && (Double.isNaN(lInfo.minimum) || Double.isNaN(lInfo.maximum))) {
+			cMap.setRange(cMap.getAutoMinimum(), cMap.getAutoMaximum());
+		}
+	}
+
 	/**
 	 * The color map changed.
 	 */
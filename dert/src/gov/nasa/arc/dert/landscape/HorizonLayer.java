@@ -0,0 +1,257 @@
+package gov.nasa.arc.dert.landscape;
+
+import gov.nasa.arc.dert.io.TileSource;
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+import com.ardor3d.image.Texture;
+import com.ardor3d.image.Texture2D;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.scenegraph.FloatBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * A layer that provides precomputed horizon maps (see
+ * HorizonPyramidLayerFactory). Each sample of a tile holds the horizon
+ * elevation angle in a number of azimuth sectors, so finding out if a point is
+ * lit by a light at a given azimuth and elevation is a single lookup.
+ *
+ * The layer shades the landscape in the shadow of the current light. Like the
+ * field layers, each mesh vertex gets a texture coordinate in a small color map
+ * texture, one half for shadow and the other for light. The coordinates are
+ * recomputed for the loaded tiles when the light moves.
+ *
+ */
+public class HorizonLayer extends Layer {
+
+	// Color of surface in shadow
+	public static ReadOnlyColorRGBA shadowColor = new ColorRGBA(0, 0, 0, 0.6f);
+
+	// Source of horizon tiles
+	private RasterLayer dataSource;
+
+	// Number of azimuth sectors
+	private int sectors;
+
+	// Horizon angle units per degree
+	private double angleScale;
+
+	// Tile dimensions
+	private int tileWidth, tileLength;
+
+	// The texture holding the shadow and light colors
+	private Texture2D colorMapTexture;
+
+	// Sector and elevation of the light in horizon units
+	private int lightSector;
+	private double lightElevation;
+
+	/**
+	 * Constructor
+	 *
+	 * @param layerInfo
+	 * @param source
+	 * @throws IOException
+	 */
+	public HorizonLayer(LayerInfo layerInfo, TileSource source) throws IOException {
+		super(layerInfo);
+		dataSource = new RasterLayer(layerInfo, source);
+		Properties properties = dataSource.getProperties();
+		sectors = StringUtil.getIntegerValue(properties, "HorizonSectors", true, 0, true);
+		angleScale = StringUtil.getDoubleValue(properties, "HorizonAngleScale", true, 2, false);
+		tileWidth = dataSource.getTileWidth();
+		tileLength = dataSource.getTileLength();
+		numLevels = dataSource.numLevels;
+		numTiles = dataSource.numTiles;
+		bytesPerTile = (tileWidth + 1) * (tileLength + 1) * (sectors + 8);
+		lightElevation = 90 * angleScale;
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		dataSource.dispose();
+	}
+
+	@Override
+	public QuadTreeTile getTile(String key) {
+		return (dataSource.getTile(key));
+	}
+
+	@Override
+	public Properties getProperties() {
+		return (dataSource.getProperties());
+	}
+
+	@Override
+	public Texture getTexture(String key, Texture store) {
+		if (colorMapTexture == null) {
+			initColorMap();
+		}
+		return (colorMapTexture);
+	}
+
+	private void initColorMap() {
+		// left half is shadow, right half is light (transparent)
+		int width = 4;
+		int height = 4;
+		ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+		int shadow = shadowColor.asIntRGBA();
+		for (int r = 0; r < height; ++r) {
+			for (int c = 0; c < width; ++c) {
+				buffer.putInt((c < width / 2) ? shadow : 0);
+			}
+		}
+		buffer.rewind();
+		ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+		list.add(buffer);
+		Image image = new Image(ImageDataFormat.RGBA, PixelDataType.UnsignedByte, width, height, list, null);
+		colorMapTexture = new Texture2D();
+		colorMapTexture.setImage(image);
+		colorMapTexture.setMinificationFilter(Texture.MinificationFilter.NearestNeighborNoMipMaps);
+		colorMapTexture.setMagnificationFilter(Texture.MagnificationFilter.NearestNeighbor);
+		colorMapTexture.setWrap(Texture.WrapMode.EdgeClamp);
+	}
+
+	/**
+	 * Get the number of azimuth sectors
+	 *
+	 * @return
+	 */
+	public int getNumberOfSectors() {
+		return (sectors);
+	}
+
+	/**
+	 * Get the sector for an azimuth.
+	 *
+	 * @param azimuth
+	 *            radians clockwise from north
+	 * @return
+	 */
+	public int getSector(double azimuth) {
+		int s = (int) Math.floor(azimuth * sectors / (2 * Math.PI) + 0.5);
+		s %= sectors;
+		if (s < 0) {
+			s += sectors;
+		}
+		return (s);
+	}
+
+	/**
+	 * Get the horizon elevation angle at a tile sample.
+	 *
+	 * @param key
+	 *            the tile key
+	 * @param column
+	 * @param row
+	 * @param azimuth
+	 *            radians clockwise from north
+	 * @return the angle in degrees or NaN if there is no tile
+	 */
+	public double getHorizon(String key, int column, int row, double azimuth) {
+		QuadTreeTile tile = dataSource.getTile(key);
+		if ((tile == null) || (tile.raster == null)) {
+			return (Double.NaN);
+		}
+		int i = ((row * (tileWidth + 1)) + column) * sectors + getSector(azimuth);
+		return ((tile.raster.get(i) & 0xff) / angleScale);
+	}
+
+	/**
+	 * Determine if a tile sample is lit by a light.
+	 *
+	 * @param key
+	 *            the tile key
+	 * @param column
+	 * @param row
+	 * @param azimuth
+	 *            radians clockwise from north
+	 * @param elevation
+	 *            radians above horizontal
+	 * @return false if the sample is in shadow or there is no tile
+	 */
+	public boolean isLit(String key, int column, int row, double azimuth, double elevation) {
+		double horizon = getHorizon(key, column, row, azimuth);
+		if (Double.isNaN(horizon)) {
+			return (false);
+		}
+		return (Math.toDegrees(elevation) > horizon);
+	}
+
+	/**
+	 * Set the direction to the light.
+	 *
+	 * @param direction
+	 *            direction to the light in landscape coordinates
+	 * @return true if the shading changed
+	 */
+	public synchronized boolean setLightDirection(ReadOnlyVector3 direction) {
+		double azimuth = Math.atan2(direction.getX(), direction.getY());
+		double elevation = Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, direction.getZ()))));
+		int sector = getSector(azimuth);
+		elevation *= angleScale;
+		if ((sector == lightSector) && (elevation == lightElevation)) {
+			return (false);
+		}
+		lightSector = sector;
+		lightElevation = elevation;
+		return (true);
+	}
+
+	/**
+	 * Set the texture coordinates of a mesh that select shadow or light at each
+	 * vertex.
+	 *
+	 * @param key
+	 *            the tile key
+	 * @param mesh
+	 * @param tUnit
+	 *            the texture unit
+	 */
+	public void createShadowTextureCoords(String key, Mesh mesh, int tUnit) {
+		QuadTreeTile tile = dataSource.getTile(key);
+		if ((tile == null) || (tile.raster == null)) {
+			return;
+		}
+		ByteBuffer horizon = tile.raster;
+		int sector;
+		double elevation;
+		synchronized (this) {
+			sector = lightSector;
+			elevation = lightElevation;
+		}
+		int size = (tileWidth + 1) * (tileLength + 1);
+		FloatBufferData data = mesh.getMeshData().getTextureCoords(tUnit);
+		FloatBuffer texCoords = null;
+		if ((data != null) && (data.getBuffer().capacity() == size * 2)) {
+			// reuse the coordinates and mark them for upload
+			texCoords = data.getBuffer();
+			texCoords.clear();
+		} else {
+			texCoords = BufferUtils.createFloatBuffer(size * 2);
+		}
+		for (int i = 0; i < size; ++i) {
+			boolean lit = elevation > (horizon.get(i * sectors + sector) & 0xff);
+			texCoords.put(lit ? 0.75f : 0.25f).put(0.5f);
+		}
+		texCoords.rewind();
+		if (texCoords == ((data == null) ? null : data.getBuffer())) {
+			data.setNeedsRefresh(true);
+		} else {
+			mesh.getMeshData().setTextureBuffer(texCoords, tUnit);
+		}
+	}
+
+}
@@ -3,7 +3,9 @@ package gov.nasa.arc.dert.landscape;
 import gov.nasa.arc.dert.io.TileSource;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
 import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
+import gov.nasa.arc.dert.render.FrameStatistics;
 import gov.nasa.arc.dert.render.LayerEffects;
+import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scene.tool.CartesianGrid;
 import gov.nasa.arc.dert.scene.tool.RadialGrid;
 import gov.nasa.arc.dert.scene.tool.ScaleBar;
@@ -74,6 +76,9 @@ public class Landscape extends Node {
 	// factory to create quad trees (tiles)
 	private QuadTreeFactory factory;
 
+	// the last update neither split nor merged a quad tree and no tiles are loading
+	private volatile boolean converged;
+
 	// the landscape vertical exaggeration
 	private double vertExaggeration = 1;
 
@@ -254,6 +259,10 @@ public class Landscape extends Node {
 	public void initialize() {
 		factory = new QuadTreeFactory(source, baseLayer, layerList, pixelScale);
 		factory.setSurfaceColor(surfaceColor);
+		// horizon layer shadows start from the current light
+		if ((World.getInstance() != null) && (World.getInstance().getLighting() != null)) {
+			factory.updateHorizonShading(World.getInstance().getLighting().getLightDirection());
+		}
 //		factory.enableLayers(layerManager.layersEnabled);
 
 		// create the top level quad tree tile
@@ -333,6 +342,7 @@ public class Landscape extends Node {
 	public void dispose() {
 		quadTree = null;
 		factory.dispose();
+		QuadTreeTileCache.getInstance().dispose();
 		for (int i = 0; i < layerList.length; ++i) {
 			if (layerList[i] != null) {
 				layerList[i].dispose();
@@ -618,20 +628,104 @@ public class Landscape extends Node {
 		return (qt.getNormal(x, y, store));
 	}
 
+	/**
+	 * Get the horizon elevation angle at the given X,Y coordinate from the
+	 * highest level tile of the horizon layer.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param azimuth
+	 *            radians clockwise from north
+	 * @return the angle in degrees or NaN if there is no horizon layer
+	 */
+	public double getHorizon(double x, double y, double azimuth) {
+		HorizonLayer layer = layerManager.getHorizonLayer();
+		if (layer == null) {
+			return (Double.NaN);
+		}
+		String key = source.getKey(x, y, worldWidth, worldLength);
+		if (key == null) {
+			return (Double.NaN);
+		}
+		// the level is the number of quadrants in the key
+		int level = key.length() / 2;
+		int numTiles = 1 << level;
+		double pw = worldWidth / (numTiles * tileWidth);
+		double pl = worldLength / (numTiles * tileLength);
+		double col = (x + worldWidth / 2) / pw;
+		double row = (worldLength / 2 - y) / pl;
+		int tc = Math.min((int) Math.floor(col / tileWidth), numTiles - 1);
+		int tr = Math.min((int) Math.floor(row / tileLength), numTiles - 1);
+		int c = (int) Math.round(col - tc * tileWidth);
+		int r = (int) Math.round(row - tr * tileLength);
+		if ((c < 0) || (r < 0) || (c > tileWidth) || (r > tileLength)) {
+			return (Double.NaN);
+		}
+		return (layer.getHorizon(key, c, r, azimuth));
+	}
+
+	/**
+	 * Determine if the given X,Y coordinate is lit by a distant light using
+	 * the horizon layer.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param azimuth
+	 *            radians clockwise from north
+	 * @param elevation
+	 *            radians above horizontal
+	 * @return false if the coordinate is in shadow or there is no horizon
+	 *         layer
+	 */
+	public boolean isLit(double x, double y, double azimuth, double elevation) {
+		double horizon = getHorizon(x, y, azimuth);
+		if (Double.isNaN(horizon)) {
+			return (false);
+		}
+		return (Math.toDegrees(elevation) > horizon);
+	}
+
+	/**
+	 * Update the shadows of the horizon layer for a new light direction.
+	 * 
+	 * @param direction
+	 *            direction to the light
+	 */
+	public void updateHorizonShading(ReadOnlyVector3 direction) {
+		if (factory != null) {
+			factory.updateHorizonShading(direction);
+		}
+	}
+
 	/**
 	 * Update the resolution of the tiles in the landscape.
 	 */
 	public boolean update(BasicCamera camera) {
 		boolean qtChanged = false;
 		if (quadTree != null) {
+			long t = FrameStatistics.start();
 			qtChanged = quadTree.update(camera);
+			FrameStatistics.stop(FrameStatistics.LANDSCAPE, t);
+			t = FrameStatistics.start();
 			for (int i = 0; i <= baseMapLevel; ++i) {
 				quadTree.stitch(i);
 			}
+			FrameStatistics.stop(FrameStatistics.STITCH, t);
+			converged = !qtChanged && quadTree.isConverged();
 		}
 		return(qtChanged);
 	}
 
+	/**
+	 * Determine if the tiles are at the resolution needed for the camera
+	 * given to the last update and all of them are loaded.
+	 * 
+	 * @return
+	 */
+	public boolean isConverged() {
+		return (converged);
+	}
+
 	/**
 	 * Convert OpenGL coordinates in contents object frame to world (planetary,
 	 * projected) coordinates.
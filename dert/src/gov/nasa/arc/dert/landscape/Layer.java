@@ -122,6 +122,7 @@ public abstract class Layer {
 		case footprint:
 		case viewshed:
 		case derivative:
+		case horizon:
 			return (false);
 		case elevation:
 		case field:
@@ -149,6 +150,7 @@ public abstract class Layer {
 			return (false);
 		case derivative:
 		case field:
+		case horizon:
 			return (true);
 		}
 		return (false);
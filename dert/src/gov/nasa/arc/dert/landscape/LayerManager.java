@@ -156,7 +156,8 @@ public class LayerManager {
 		else {
 			for (int i=availableLayers.size()-1; i>=0; --i) {
 				LayerInfo li = availableLayers.get(i);
-				if ((li.type == LayerType.grayimage) || (li.type == LayerType.colorimage) || (li.type == LayerType.field)) {
+				if ((li.type == LayerType.grayimage) || (li.type == LayerType.colorimage) || (li.type == LayerType.field)
+					|| (li.type == LayerType.horizon)) {
 					boolean foundLayer = false;
 					for (int j=0; j<knownLayers.length; ++j) {
 						if ((li.type == knownLayers[j].type) && (li.name.equals(knownLayers[j].name))) {
@@ -224,7 +225,8 @@ public class LayerManager {
 		else {
 			for (int i=0; i<visibleLayers.size(); ++i) {
 				LayerInfo li = visibleLayers.get(i);
-				if ((li.type == LayerType.grayimage) || (li.type == LayerType.colorimage) || (li.type == LayerType.field)) {
+				if ((li.type == LayerType.grayimage) || (li.type == LayerType.colorimage) || (li.type == LayerType.field)
+					|| (li.type == LayerType.horizon)) {
 					boolean foundLayer = false;
 					for (int j=0; j<knownLayers.length; ++j)
 						if ((li.type == knownLayers[j].type) && (li.name.equals(knownLayers[j].name))) {
@@ -421,6 +423,8 @@ public class LayerManager {
 				return (new FieldCameraLayer(layerInfo, index));
 			} else if (layerInfo.type == LayerType.field) {
 				return (new FieldLayer(layerInfo, source));
+			} else if (layerInfo.type == LayerType.horizon) {
+				return (new HorizonLayer(layerInfo, source));
 			} else {
 				return (new RasterLayer(layerInfo, source));
 			}
@@ -552,6 +556,19 @@ public class LayerManager {
 		return (null);
 	}
 
+	/**
+	 * Get the horizon layer
+	 * 
+	 * @return the first visible horizon layer or null if there is none
+	 */
+	public HorizonLayer getHorizonLayer() {
+		for (int i = 0; i < layers.length; ++i) {
+			if (layers[i] instanceof HorizonLayer)
+				return ((HorizonLayer) layers[i]);
+		}
+		return (null);
+	}
+
 	/**
 	 * Get the color maps used by the derivative and field layers
 	 * 
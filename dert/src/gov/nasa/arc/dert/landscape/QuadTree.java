@@ -47,6 +47,12 @@ public class QuadTree extends Node {
 	// The next level of quad trees
 	protected QuadTree[] child;
 
+	// A split is waiting for the next level of quad trees to load
+	private boolean splitPending;
+
+	// The mesh could not be loaded
+	private volatile boolean loadFailed;
+
 	// Sides of the quad tree that need stitching
 	private boolean leftDirty, rightDirty, bottomDirty, topDirty;
 
@@ -196,6 +202,14 @@ public class QuadTree extends Node {
 		}
 	}
 
+	/**
+	 * Mark this QuadTree as having no mesh because its contents could not be
+	 * loaded.
+	 */
+	public void setLoadFailed() {
+		loadFailed = true;
+	}
+
 	/**
 	 * Get the mesh
 	 * 
@@ -369,7 +383,8 @@ public class QuadTree extends Node {
 		}
 	}
 
-	private void split() {
+	private boolean split() {
+		splitPending = false;
 		// we are not at the highest resolution
 		if (!highestLevel) {
 			final QuadTree[] qt = new QuadTree[4];
@@ -379,7 +394,16 @@ public class QuadTree extends Node {
 			// we are at the highest resolution already?
 			if (count < 0) {
 				highestLevel = true;
-			} else if (count == 4) {
+			} else if (count < 4) {
+				// try again when the children are loaded, unless one of them
+				// never will be
+				splitPending = true;
+				for (int i = 0; i < 4; ++i) {
+					if (qt[i].loadFailed) {
+						splitPending = false;
+					}
+				}
+			} else {
 				setChildren(qt);
 				for (int i = 0; i < 4; ++i) {
 					World.getInstance().getMarble().landscapeChanged(child[i]);
@@ -388,8 +412,31 @@ public class QuadTree extends Node {
 				}
 
 				updateGeometricState(0, true);
+				return (true);
+			}
+		}
+		return (false);
+	}
+
+	/**
+	 * Determine if this QuadTree and its children are at the resolution
+	 * requested by the last update and all of their tiles are loaded.
+	 * 
+	 * @return
+	 */
+	public boolean isConverged() {
+		if (splitPending) {
+			return (false);
+		}
+		QuadTree[] c = child;
+		if (c != null) {
+			for (int i = 0; i < c.length; ++i) {
+				if (!c[i].isConverged()) {
+					return (false);
+				}
 			}
 		}
+		return (true);
 	}
 
 	private synchronized void setChildren(QuadTree[] qt) {
@@ -415,6 +462,7 @@ public class QuadTree extends Node {
 			child[i].clearChildren();
 			detachChild(child[i]);
 			child[i].inUse = false;
+			child[i].splitPending = false;
 			child[i].leftDirty = false;
 			child[i].rightDirty = false;
 			child[i].bottomDirty = false;
@@ -566,6 +614,7 @@ public class QuadTree extends Node {
 		// greater than the pixel size of this tile, we can go to a coarser
 		// resolution by merging
 		if (pixSize >= pixelWidth) {
+			splitPending = false;
 			// only merge if we have split
 			if (child != null) {
 				merge();
@@ -578,8 +627,7 @@ public class QuadTree extends Node {
 		else if (pixSize <= pixelWidth / 2) {
 			// only split if we haven't already
 			if (child == null) {
-				split();
-				changed = true;
+				changed = split();
 			} else {
 				for (int i = 0; i < child.length; ++i) {
 					changed |= child[i].update(camera);
@@ -588,9 +636,12 @@ public class QuadTree extends Node {
 		}
 
 		// let children update
-		else if (child != null) {
-			for (int i = 0; i < child.length; ++i) {
-				changed |= child[i].update(camera);
+		else {
+			splitPending = false;
+			if (child != null) {
+				for (int i = 0; i < child.length; ++i) {
+					changed |= child[i].update(camera);
+				}
 			}
 		}
 		return(changed);
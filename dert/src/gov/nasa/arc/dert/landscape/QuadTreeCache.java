@@ -1,5 +1,7 @@
 package gov.nasa.arc.dert.landscape;
 
+import gov.nasa.arc.dert.render.FrameStatistics;
+
 import java.util.HashMap;
 
 public class QuadTreeCache {
@@ -37,6 +39,9 @@ public class QuadTreeCache {
 		QuadTree quadTree = quadTreeMap.get(key);
 		if (quadTree != null) {
 			quadTree.timestamp = System.currentTimeMillis();
+			FrameStatistics.count(FrameStatistics.CACHE_HIT);
+		} else {
+			FrameStatistics.count(FrameStatistics.CACHE_MISS);
 		}
 		return (quadTree);
 	}
@@ -117,4 +122,23 @@ public class QuadTreeCache {
 			item.getMesh().updateSurfaceColor(rgba);
 		}
 	}
+
+	/**
+	 * Update the shadows from a horizon layer for all elements in the cache
+	 * 
+	 * @param layer
+	 * @param unit
+	 *            the texture unit of the layer
+	 */
+	public synchronized void updateHorizonShading(HorizonLayer layer, int unit) {
+		Object[] key = new Object[quadTreeMap.size()];
+		key = quadTreeMap.keySet().toArray(key);
+		for (int i = 0; i < key.length; ++i) {
+			QuadTree item = quadTreeMap.get(key[i]);
+			QuadTreeMesh mesh = item.getMesh();
+			if ((mesh != null) && !mesh.isEmpty()) {
+				layer.createShadowTextureCoords(item.getName(), mesh, unit);
+			}
+		}
+	}
 }
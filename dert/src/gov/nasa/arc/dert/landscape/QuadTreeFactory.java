@@ -2,6 +2,8 @@ package gov.nasa.arc.dert.landscape;
 
 import gov.nasa.arc.dert.io.TileSource;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
+import gov.nasa.arc.dert.render.FrameStatistics;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.render.SharedTexture2D;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.util.UIUtil;
@@ -78,6 +80,12 @@ public class QuadTreeFactory {
 	// The dimensions of the entire landscape
 	private double worldWidth, worldLength;
 
+	// Index and texture coordinate buffers are the same for every tile so
+	// they are shared
+	private IntBuffer sharedIndexBuffer;
+	private int[] sharedIndexLengths;
+	private FloatBuffer sharedTexCoordBuffer;
+
 	/**
 	 * Constructor
 	 * 
@@ -106,6 +114,11 @@ public class QuadTreeFactory {
 		}
 		quadTreeCache = new QuadTreeCache(bytesPerTile);
 
+		Object[] result = getIndices();
+		sharedIndexBuffer = (IntBuffer) result[0];
+		sharedIndexLengths = (int[]) result[1];
+		sharedTexCoordBuffer = getTexCoords();
+
 		executor = Executors.newFixedThreadPool(5);
 	}
 
@@ -320,6 +333,8 @@ public class QuadTreeFactory {
 				public void run() {
 					Thread.yield();
 					loadQuadTreeContents(qt);
+					// update the landscape with the new tile
+					SceneFramework.requestFrameUpdate();
 				}
 			};
 			executor.execute(runnable);
@@ -328,9 +343,11 @@ public class QuadTreeFactory {
 	}
 
 	private void loadQuadTreeContents(QuadTree qt) {
+		long t = FrameStatistics.start();
 		// load the mesh
 		QuadTreeMesh mesh = getMesh(qt.getName(), qt.pixelWidth, qt.pixelLength);
 		if (mesh == null) {
+			qt.setLoadFailed();
 			return;
 		}
 
@@ -348,6 +365,9 @@ public class QuadTreeFactory {
 				} else if (layerList[i] instanceof FieldLayer) {
 					texture = ((FieldLayer) layerList[i]).getTexture(qt.getName(), null);
 					((FieldLayer) layerList[i]).createColorMapTextureCoords(qt.getName(), mesh, i);
+				} else if (layerList[i] instanceof HorizonLayer) {
+					texture = ((HorizonLayer) layerList[i]).getTexture(qt.getName(), null);
+					((HorizonLayer) layerList[i]).createShadowTextureCoords(qt.getName(), mesh, i);
 				} else if (!(layerList[i] instanceof FieldCameraLayer)) {
 					// load the texture
 					texture = getTexture(qt.getName(), i, null);
@@ -363,6 +383,7 @@ public class QuadTreeFactory {
 		textureState.setEnabled(layersEnabled);
 		mesh.setRenderState(textureState);
 		qt.setMesh(mesh);
+		FrameStatistics.stop(FrameStatistics.TILE_LOAD, t);
 	}
 
 	private Texture getEmptyTexture() {
@@ -566,15 +587,13 @@ public class QuadTreeFactory {
 			return (getEmptyMesh(key, vertexBuffer, pixelWidth, pixelLength));
 		}
 
-		// vertex indices
-		result = getIndices(vertexBuffer);
-		IntBuffer indexBuffer = (IntBuffer) result[0];
-		int[] indexLengths = (int[]) result[1];
-		FloatBuffer texCoordBuffer = getTexCoords(key);
-
+		// vertex indices and texture coordinates are shared, the color buffer
+		// is only present if there are missing values, otherwise the surface
+		// color is the mesh default color
 		QuadTreeMesh mesh = new QuadTreeMesh("_mesh_"+key, tileWidth, tileLength, pixelWidth, pixelLength);
-		mesh.setMeshData(new TileMeshData(vertexBuffer, texCoordBuffer, colorBuffer, indexBuffer, indexLengths,
-			normalBuffer, IndexMode.TriangleStrip));
+		mesh.setMeshData(new TileMeshData(vertexBuffer, sharedTexCoordBuffer, colorBuffer, sharedIndexBuffer,
+			sharedIndexLengths, normalBuffer, IndexMode.TriangleStrip));
+		mesh.setDefaultColor(new ColorRGBA(rgba[0], rgba[1], rgba[2], rgba[3]));
 
 		mesh.getSceneHints().setNormalsMode(NormalsMode.NormalizeIfScaled);
 		CullState cullState = new CullState();
@@ -586,7 +605,7 @@ public class QuadTreeFactory {
 		return (mesh);
 	}
 
-	private FloatBuffer getTexCoords(String key) {
+	private FloatBuffer getTexCoords() {
 		int tWidth = tileWidth + 1;
 		int tLength = tileLength + 1;
 		int size = tWidth * tLength * 2;
@@ -604,7 +623,7 @@ public class QuadTreeFactory {
 		return (texCoords);
 	}
 
-	private Object[] getIndices(FloatBuffer vertices) {
+	private Object[] getIndices() {
 		int tWidth = tileWidth + 1;
 		int[] indexLengths = new int[tileLength];
 		IntBuffer indices = BufferUtils.createIntBuffer(tileLength * tWidth * 2);
@@ -635,31 +654,27 @@ public class QuadTreeFactory {
 		int dataSize = tile.width * tile.length;
 		FloatBuffer data = tile.raster.asFloatBuffer();
 
-		// create vertex and color buffers
+		// create vertex buffer
 		FloatBuffer vertex = BufferUtils.createFloatBuffer(dataSize * 3);
-		FloatBuffer colors = BufferUtils.createFloatBuffer(dataSize * 4);
 
-		// fill buffers
+		// fill buffer
 		int cb = 0;
 		int ce = tile.width - 1;
 		int rb = 0;
 		int re = tile.length - 1;
 
 		int k = 0;
-		boolean empty = true;
+		int missingCount = 0;
 
 		float y = (float) height / 2;
 		for (int r = rb; r <= re; ++r) {
 			float x = -(float) width / 2;
 			for (int c = cb; c <= ce; ++c) {
 				float z = data.get(k);
-				// fill missing value vertices with missing value color
+				// fill missing value vertices
 				if (Float.isNaN(z)) {
 					z = missingFillValue;
-					colors.put(0).put(0).put(0).put(0);
-				} else {
-					colors.put(rgba[0]).put(rgba[1]).put(rgba[2]).put(rgba[3]);
-					empty = false;
+					missingCount++;
 				}
 				vertex.put(x).put(y).put((float) (z * pixelScale));
 				k++;
@@ -668,10 +683,28 @@ public class QuadTreeFactory {
 			y -= pixelLength;
 		}
 		vertex.flip();
-		colors.flip();
+		boolean empty = (missingCount == dataSize);
+
+		// A color buffer is only needed to mask missing value vertices with
+		// the missing value color. Otherwise the mesh default color is used.
+		FloatBuffer colors = null;
+		if ((missingCount > 0) && !empty) {
+			colors = BufferUtils.createFloatBuffer(dataSize * 4);
+			for (int i = 0; i < dataSize; ++i) {
+				if (Float.isNaN(data.get(i))) {
+					colors.put(0).put(0).put(0).put(0);
+				} else {
+					colors.put(rgba[0]).put(rgba[1]).put(rgba[2]).put(rgba[3]);
+				}
+			}
+			colors.flip();
+		}
 
 		// get normals
-		FloatBuffer normals = createNormals(vertex, tile.length, tile.width, dataSize);
+		FloatBuffer normals = null;
+		if (!empty) {
+			normals = createNormals(vertex, tile.length, tile.width, dataSize);
+		}
 
 		// return results
 		Object[] result = new Object[4];
@@ -683,10 +716,10 @@ public class QuadTreeFactory {
 	}
 
 	private FloatBuffer createNormals(FloatBuffer vertex, int rows, int cols, int dataSize) {
-		// compute normal for each face
+		// compute normal for each face, accumulating directly in the normal
+		// buffer
+		FloatBuffer nrml = BufferUtils.createFloatBuffer(dataSize * 3);
 		float[] face = new float[3];
-		float[] nrml = new float[dataSize * 3];
-		byte[] cnt = new byte[dataSize];
 		Vector3 norm = new Vector3();
 		Vector3 v0 = new Vector3();
 		Vector3 v1 = new Vector3();
@@ -707,40 +740,56 @@ public class QuadTreeFactory {
 				face[0] = norm.getXf();
 				face[1] = norm.getYf();
 				face[2] = norm.getZf();
-				addFace(k, nrml, face, cnt);
-				addFace(k + 1, nrml, face, cnt);
-				addFace(k + cols, nrml, face, cnt);
+				addFace(k, nrml, face);
+				addFace(k + 1, nrml, face);
+				addFace(k + cols, nrml, face);
 				// bottom triangle for quad
 				v0.set(vertex.get(i + n + 3), vertex.get(i + n + 4), vertex.get(i + n + 5));
 				MathUtil.createNormal(norm, v2, v1, v0);
 				face[0] = norm.getXf();
 				face[1] = norm.getYf();
 				face[2] = norm.getZf();
-				addFace(k + 1, nrml, face, cnt);
-				addFace(k + cols, nrml, face, cnt);
-				addFace(k + cols + 1, nrml, face, cnt);
+				addFace(k + 1, nrml, face);
+				addFace(k + cols, nrml, face);
+				addFace(k + cols + 1, nrml, face);
 			}
 		}
-		// normal for vertex is average of surrounding faces
+		// normal for vertex is average of surrounding faces, the number of
+		// faces depends only on the position in the grid
 		for (int r = 0; r < rows; ++r) {
 			for (int c = 0; c < cols; ++c) {
-				k = r * cols + c;
-				i = k * 3;
+				int cnt = getFaceCount(r, c, rows, cols);
+				i = (r * cols + c) * 3;
 				for (int j = 0; j < 3; ++j) {
-					nrml[i + j] /= cnt[k];
+					nrml.put(i + j, nrml.get(i + j) / cnt);
 				}
 			}
 		}
-		FloatBuffer normal = BufferUtils.createFloatBuffer(nrml);
-		return (normal);
+		return (nrml);
+	}
+
+	private int getFaceCount(int r, int c, int rows, int cols) {
+		boolean top = (r == 0);
+		boolean bottom = (r == rows - 1);
+		boolean left = (c == 0);
+		boolean right = (c == cols - 1);
+		if ((top && left) || (bottom && right)) {
+			return (1);
+		}
+		if ((top && right) || (bottom && left)) {
+			return (2);
+		}
+		if (top || bottom || left || right) {
+			return (3);
+		}
+		return (6);
 	}
 
-	private void addFace(int index, float[] nrml, float[] face, byte[] cnt) {
+	private void addFace(int index, FloatBuffer nrml, float[] face) {
 		int i = index * 3;
-		nrml[i] += face[0];
-		nrml[i + 1] += face[1];
-		nrml[i + 2] += face[2];
-		cnt[index]++;
+		nrml.put(i, nrml.get(i) + face[0]);
+		nrml.put(i + 1, nrml.get(i + 1) + face[1]);
+		nrml.put(i + 2, nrml.get(i + 2) + face[2]);
 	}
 
 	/**
@@ -752,4 +801,21 @@ public class QuadTreeFactory {
 		rgba = UIUtil.colorToFloatArray(surfaceColor);
 		quadTreeCache.updateSurfaceColor(rgba);
 	}
+
+	/**
+	 * Update the shadows of horizon layers for all QuadTrees
+	 * 
+	 * @param direction
+	 *            direction to the light
+	 */
+	public void updateHorizonShading(ReadOnlyVector3 direction) {
+		for (int i = 0; i < layerList.length; ++i) {
+			if (layerList[i] instanceof HorizonLayer) {
+				HorizonLayer layer = (HorizonLayer) layerList[i];
+				if (layer.setLightDirection(direction)) {
+					quadTreeCache.updateHorizonShading(layer, i);
+				}
+			}
+		}
+	}
 }
@@ -5,6 +5,7 @@ import java.nio.FloatBuffer;
 import java.util.List;
 
 import com.ardor3d.image.Texture;
+import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
@@ -373,6 +374,12 @@ public class QuadTreeMesh extends Mesh {
 	 */
 	public void updateSurfaceColor(float[] rgba) {
 		FloatBuffer colors = getMeshData().getColorBuffer();
+		if (colors == null) {
+			// no missing values, the surface color is the default color
+			setDefaultColor(new ColorRGBA(rgba[0], rgba[1], rgba[2], rgba[3]));
+			markDirty(DirtyType.RenderState);
+			return;
+		}
 		int dataSize = colors.limit();
 		for (int i = 0; i < dataSize; i += 4) {
 			if (colors.get(i + 3) != 0) {
@@ -3,6 +3,7 @@ package gov.nasa.arc.dert.landscape;
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import com.ardor3d.image.Image;
 
@@ -66,6 +67,29 @@ public class QuadTreeTile {
 		this.image = image;
 	}
 
+	/**
+	 * Create a tile that shares the data of this one but has its own buffer
+	 * positions and image data list.
+	 * 
+	 * @return
+	 */
+	public synchronized QuadTreeTile duplicate() {
+		QuadTreeTile tile = null;
+		if (image == null) {
+			tile = new QuadTreeTile((raster == null) ? null : raster.duplicate(), key, width, length, dataType,
+				bytesPerPixel);
+		} else {
+			ArrayList<ByteBuffer> list = new ArrayList<ByteBuffer>(1);
+			list.add(image.getData(0).duplicate());
+			tile = new QuadTreeTile(new Image(image.getDataFormat(), image.getDataType(), image.getWidth(),
+				image.getHeight(), list, null), key, dataType);
+			if (raster == null) {
+				tile.raster = null;
+			}
+		}
+		return (tile);
+	}
+
 	/**
 	 * This tile is empty
 	 * 
@@ -0,0 +1,217 @@
+package gov.nasa.arc.dert.landscape;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of decoded raster tiles shared by all raster layers. This is separate
+ * from the QuadTreeCache, which holds meshes. When a quad tree is merged and
+ * split again, or a tile is needed by the mesh and by a texture layer, the
+ * decoded tile is reused instead of reading the file again.
+ *
+ * The cache is bounded by the size in bytes of the tile data and evicts the
+ * least recently used tiles. Only one thread loads a given tile at a time,
+ * other threads requesting the same tile wait for that load to complete.
+ *
+ * Cached tiles are shared. Callers get their own copy of the tile with its own
+ * buffer positions, but must not modify the contents.
+ *
+ */
+public class QuadTreeTileCache {
+
+	// The maximum amount of memory for the cache (in bytes)
+	public static long MAX_CACHE_MEMORY = 100000000l;
+
+	// The shared instance
+	private static QuadTreeTileCache instance;
+
+	// Tiles in least recently used order
+	protected LinkedHashMap<String, QuadTreeTile> tileMap;
+
+	// Tiles being loaded
+	protected HashMap<String, FutureTask<QuadTreeTile>> loadingMap;
+
+	// The amount of memory used by the cached tiles (in bytes)
+	protected long memory;
+
+	// Statistics
+	protected long hitCount, missCount;
+
+	/**
+	 * Get the shared instance.
+	 *
+	 * @return
+	 */
+	public static synchronized QuadTreeTileCache getInstance() {
+		if (instance == null) {
+			instance = new QuadTreeTileCache();
+		}
+		return (instance);
+	}
+
+	/**
+	 * Constructor
+	 */
+	protected QuadTreeTileCache() {
+		tileMap = new LinkedHashMap<String, QuadTreeTile>(256, 0.75f, true);
+		loadingMap = new HashMap<String, FutureTask<QuadTreeTile>>();
+	}
+
+	/**
+	 * Get a tile from the cache. If it is not present, load it. If another
+	 * thread is loading it, wait for that thread.
+	 *
+	 * @param key
+	 *            the cache key (must be unique across landscapes and layers)
+	 * @param loader
+	 *            reads the tile if it is not in the cache
+	 * @return the tile, or null if it could not be loaded
+	 */
+	public QuadTreeTile getTile(String key, Callable<QuadTreeTile> loader) {
+		FutureTask<QuadTreeTile> task = null;
+		boolean isLoader = false;
+		synchronized (this) {
+			QuadTreeTile tile = tileMap.get(key);
+			if (tile != null) {
+				hitCount++;
+				return (tile.duplicate());
+			}
+			missCount++;
+			task = loadingMap.get(key);
+			if (task == null) {
+				task = new FutureTask<QuadTreeTile>(loader);
+				loadingMap.put(key, task);
+				isLoader = true;
+			}
+		}
+		if (isLoader) {
+			task.run();
+		}
+		QuadTreeTile tile = null;
+		try {
+			tile = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (CancellationException e) {
+			// the cache was emptied while loading
+			return (null);
+		} catch (ExecutionException e) {
+			System.out.println("Unable to load tile " + key + ", see log.");
+			e.getCause().printStackTrace();
+		}
+		if (isLoader) {
+			synchronized (this) {
+				// keep the tile only if the load wasn't removed by
+				// removeTiles or dispose
+				if (loadingMap.get(key) == task) {
+					loadingMap.remove(key);
+					if (tile != null) {
+						putTile(key, tile);
+					}
+				}
+			}
+		}
+		return ((tile == null) ? null : tile.duplicate());
+	}
+
+	protected void putTile(String key, QuadTreeTile tile) {
+		QuadTreeTile old = tileMap.put(key, tile);
+		if (old != null) {
+			memory -= getSize(old);
+		}
+		memory += getSize(tile);
+		// remove the least recently used tiles
+		Iterator<Map.Entry<String, QuadTreeTile>> iterator = tileMap.entrySet().iterator();
+		while ((memory > MAX_CACHE_MEMORY) && iterator.hasNext()) {
+			Map.Entry<String, QuadTreeTile> entry = iterator.next();
+			if (entry.getValue() == tile) {
+				continue;
+			}
+			memory -= getSize(entry.getValue());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Get the size of a tile in bytes.
+	 *
+	 * @param tile
+	 * @return
+	 */
+	protected long getSize(QuadTreeTile tile) {
+		ByteBuffer buffer = tile.raster;
+		if ((buffer == null) && (tile.getImage() != null)) {
+			buffer = tile.getImage().getData(0);
+		}
+		if (buffer == null) {
+			return (0);
+		}
+		return (buffer.capacity());
+	}
+
+	/**
+	 * Get the amount of memory used by the cached tiles.
+	 *
+	 * @return
+	 */
+	public synchronized long getMemory() {
+		return (memory);
+	}
+
+	/**
+	 * Get the number of requests satisfied from the cache and the number
+	 * that required a load.
+	 *
+	 * @return
+	 */
+	public synchronized long[] getHitsAndMisses() {
+		return (new long[] { hitCount, missCount });
+	}
+
+	/**
+	 * Remove the tiles of a layer that has been rewritten.
+	 *
+	 * @param prefix
+	 *            the cache key of the layer without the tile key
+	 */
+	public synchronized void removeTiles(String prefix) {
+		Iterator<Map.Entry<String, QuadTreeTile>> iterator = tileMap.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, QuadTreeTile> entry = iterator.next();
+			String key = entry.getKey();
+			if (key.equals(prefix) || key.startsWith(prefix + "/")) {
+				memory -= getSize(entry.getValue());
+				iterator.remove();
+			}
+		}
+		// tiles being loaded were read from the old layer
+		Iterator<String> keyIterator = loadingMap.keySet().iterator();
+		while (keyIterator.hasNext()) {
+			String key = keyIterator.next();
+			if (key.equals(prefix) || key.startsWith(prefix + "/")) {
+				keyIterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Empty the cache. Tiles being loaded are cancelled and will not be
+	 * cached.
+	 */
+	public synchronized void dispose() {
+		for (FutureTask<QuadTreeTile> task : loadingMap.values()) {
+			task.cancel(false);
+		}
+		loadingMap.clear();
+		tileMap.clear();
+		memory = 0;
+	}
+
+}
@@ -3,6 +3,7 @@ package gov.nasa.arc.dert.landscape;
 import gov.nasa.arc.dert.io.TileSource;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.raster.RasterStatistics;
 import gov.nasa.arc.dert.render.SharedTexture2D;
 import gov.nasa.arc.dert.util.ImageUtil;
 import gov.nasa.arc.dert.util.StringUtil;
@@ -10,6 +11,7 @@ import gov.nasa.arc.dert.view.Console;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import com.ardor3d.image.Image;
 import com.ardor3d.image.Texture;
@@ -33,6 +35,9 @@ public class RasterLayer extends Layer {
 	// value range
 	protected double[] minimumValue, maximumValue;
 
+	// sample statistics from the layer factory (null for older layers)
+	protected RasterStatistics statistics;
+
 	// tile dimensions, tile dimensions+1, tile size in bytes
 	protected int tileWidth, tileLength, tileWidth1, tileLength1;
 
@@ -103,6 +108,7 @@ public class RasterLayer extends Layer {
 		minimumValue = StringUtil.getDoubleArray(properties, "MinimumValue", null, true);
 		maximumValue = StringUtil.getDoubleArray(properties, "MaximumValue", null, true);
 		fillValue = (float) StringUtil.getDoubleValue(properties, "EdgeFillValue", false, 0.0, false);
+		statistics = RasterStatistics.loadFromProperties(properties);
 		Console.println("\nProperties for " + layerName + ":");
 		Console.println("Layer Type = " + layerType);
 		Console.println("Number of Levels = " + numLevels);
@@ -111,6 +117,9 @@ public class RasterLayer extends Layer {
 		Console.println("Minimum Value = " + minimumValue[0]);
 		Console.println("Maximum Value = " + maximumValue[0]);
 		Console.println("Edge Fill Z-Value = " + fillValue);
+		if (statistics != null) {
+			Console.print("Statistics:\n" + statistics);
+		}
 		Console.println(projInfo.toString());
 	}
 
@@ -159,6 +168,27 @@ public class RasterLayer extends Layer {
 		return (maximumValue);
 	}
 
+	/**
+	 * Get the sample statistics
+	 * 
+	 * @return the statistics or null if the layer has none
+	 */
+	public RasterStatistics getStatistics() {
+		return (statistics);
+	}
+
+	/**
+	 * Get the range of values between the auto-range percentiles
+	 * 
+	 * @return the range or null if the layer has no statistics
+	 */
+	public double[] getAutoRange() {
+		if (statistics == null) {
+			return (null);
+		}
+		return (statistics.getAutoRange(0));
+	}
+
 	/**
 	 * Get the raster padding value
 	 * 
@@ -189,27 +219,36 @@ public class RasterLayer extends Layer {
 		return (rasterLength);
 	}
 
-	protected QuadTreeTile readTile(String key) {
+	protected QuadTreeTile readTile(final String key) {
 		try {
-			DataType dataType = DataType.Byte;
+			DataType tileType = DataType.Byte;
 			switch (layerType) {
 			case none:
 			case footprint:
 			case viewshed:
 			case derivative:
+			case horizon:
 				break;
 			case elevation:
 			case field:
-				dataType = DataType.Float;
+				tileType = DataType.Float;
 				break;
 			case colorimage:
-				dataType = DataType.UnsignedInteger;
+				tileType = DataType.UnsignedInteger;
 				break;
 			case grayimage:
-				dataType = DataType.UnsignedByte;
+				tileType = DataType.UnsignedByte;
 				break;
 			}
-			QuadTreeTile tile = dataSource.getTile(layerName, key, dataType);
+			final DataType dataType = tileType;
+			// decoded tiles are shared through the tile cache
+			String cacheKey = dataSource.getPath() + "/" + layerName + key;
+			QuadTreeTile tile = QuadTreeTileCache.getInstance().getTile(cacheKey, new Callable<QuadTreeTile>() {
+				@Override
+				public QuadTreeTile call() {
+					return (dataSource.getTile(layerName, key, dataType));
+				}
+			});
 			return (tile);
 		} catch (Exception e) {
 			System.out.println("Unable to read tile, see log.");
@@ -250,8 +289,10 @@ public class RasterLayer extends Layer {
 			return (null);
 		}
 		if (t.getImage() == null) {
-			t.setImage(imageUtil.convertToArdor3DImage(t.raster, numBytes * 8, t.dataType, t.width, t.length));
+			return (imageUtil.convertToArdor3DImage(t.raster, numBytes * 8, t.dataType, t.width, t.length));
 		}
+		// the tile cache gave the image its own data list, which
+		// QuadTreeMesh.dispose clears
 		return (t.getImage());
 	}
 
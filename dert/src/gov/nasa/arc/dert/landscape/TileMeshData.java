@@ -21,6 +21,7 @@ public class TileMeshData extends MeshData {
 	 * @param vertexBuffer
 	 * @param texCoordBuffer
 	 * @param colorBuffer
+	 *            may be null to use the mesh default color
 	 * @param indices
 	 * @param indexLengths
 	 * @param normalBuffer
@@ -31,7 +32,9 @@ public class TileMeshData extends MeshData {
 		super();
 		_vertexCoords = new FloatBufferData(vertexBuffer, 3);
 		_vertexCount = _vertexCoords.getTupleCount();
-		_colorCoords = new FloatBufferData(colorBuffer, 4);
+		if (colorBuffer != null) {
+			_colorCoords = new FloatBufferData(colorBuffer, 4);
+		}
 		if (texCoordBuffer != null) {
 			FloatBufferData tcb = new FloatBufferData(texCoordBuffer, 2);
 			_textureCoords.add(0, tcb);
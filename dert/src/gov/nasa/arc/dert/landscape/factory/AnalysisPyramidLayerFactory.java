@@ -0,0 +1,187 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.util.ParallelUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.swing.JTextField;
+
+/**
+ * Base class for layers computed from the elevation pyramid of a landscape.
+ * Each tile of the layer has the dimensions of the elevation tile with the
+ * same key. The levels are computed from the highest to the lowest and the
+ * tile rows of a level are computed in parallel.
+ *
+ */
+public abstract class AnalysisPyramidLayerFactory extends PyramidLayerFactory {
+
+	// Elevation pyramid
+	protected ElevationPyramid pyramid;
+
+	// Dimensions
+	protected int tileWidth, tileLength, tileWidth1, tileLength1;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 */
+	public AnalysisPyramidLayerFactory(String landPath) {
+		super(new File(landPath, "elevation").getAbsolutePath());
+	}
+
+	/**
+	 * Open the elevation pyramid.
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @throws IOException
+	 */
+	protected void openPyramid(String landPath) throws IOException {
+		pyramid = new ElevationPyramid(landPath);
+		projInfo = pyramid.getProjectionInfo();
+		tileWidth = pyramid.getTileWidth();
+		tileLength = pyramid.getTileLength();
+		tileWidth1 = tileWidth + 1;
+		tileLength1 = tileLength + 1;
+	}
+
+	/**
+	 * Compute and write all levels of the layer. The elevation pyramid must be
+	 * open.
+	 *
+	 * @param landPath
+	 *            path to the destination landscape
+	 * @param layerName
+	 *            name of this layer
+	 * @param messageText
+	 *            UI text field for messages to the user
+	 * @return true if the layer was completed
+	 * @throws IOException
+	 */
+	protected boolean buildLevels(String landPath, String layerName, JTextField messageText) throws IOException {
+		int maxLevel = pyramid.getNumberOfLevels() - 1;
+		int numberOfTiles = 1 << maxLevel;
+
+		// Create a sub-directory for the layer
+		String dirPath = new File(landPath, layerName).getAbsolutePath();
+
+		int numTiles = numberOfTiles;
+		doIt = true;
+		ArrayList<Future<Object>> rowList = new ArrayList<Future<Object>>();
+		try {
+			for (int level = maxLevel; level >= 0; level--) {
+				if (!doIt) {
+					break;
+				}
+				if (messageText == null)
+					System.out.println("Writing "+numTiles+" rows for level "+(level+1)+" of "+(maxLevel+1));
+				rowList.clear();
+				for (int r = 0; r < numTiles; ++r) {
+					rowList.add(ParallelUtil.getExecutor().submit(new RowWriter(r, numTiles, level, maxLevel, dirPath)));
+				}
+				// wait for the rows in order to report progress
+				for (int r = 0; r < numTiles; ++r) {
+					waitFor(rowList.get(r));
+					if (messageText == null) {
+						if (r%10 == 0)
+							System.out.print(r);
+						else
+							System.out.print(".");
+					} else {
+						messageText.setText("Writing " + layerName + " level " + (level + 1) + " of " + (maxLevel + 1)
+							+ ", tile row " + (r + 1) + " of " + numTiles + " . . .");
+					}
+					if (progress != null) {
+						progress.row(level, maxLevel + 1, r, numTiles, false);
+					}
+				}
+				if (messageText == null)
+					System.out.println();
+				numTiles /= 2;
+			}
+		} finally {
+			// rows left after an error or cancel
+			ParallelUtil.cancel(rowList);
+		}
+
+		if (doIt) {
+			writeProperties(new File(dirPath, "layer.properties").getAbsolutePath(), maxLevel + 1, tileWidth,
+				tileLength, numberOfTiles);
+		}
+		return (doIt);
+	}
+
+	/**
+	 * Compute the samples of a tile.
+	 *
+	 * @param level
+	 * @param maxLevel
+	 * @param column
+	 * @param row
+	 * @param sampler
+	 *            elevation sampler for the calling thread
+	 * @return the tile bytes or an empty array if the elevation tile is empty
+	 * @throws IOException
+	 */
+	protected abstract byte[] computeTile(int level, int maxLevel, int column, int row, ElevationPyramid.Sampler sampler)
+		throws IOException;
+
+	/**
+	 * Wait for a row of tiles to be written.
+	 *
+	 * @param future
+	 * @throws IOException
+	 */
+	protected void waitFor(Future<Object> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted writing tiles.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Computes and writes the tiles of a row.
+	 */
+	protected class RowWriter implements Callable<Object> {
+
+		private int row, numTiles, level, maxLevel;
+		private String dirPath;
+
+		public RowWriter(int row, int numTiles, int level, int maxLevel, String dirPath) {
+			this.row = row;
+			this.numTiles = numTiles;
+			this.level = level;
+			this.maxLevel = maxLevel;
+			this.dirPath = dirPath;
+		}
+
+		@Override
+		public Object call() throws IOException {
+			ElevationPyramid.Sampler sampler = pyramid.createSampler();
+			for (int c = 0; c < numTiles; ++c) {
+				if (!doIt) {
+					break;
+				}
+				String tilePath = getTileFilePath(c, row, numTiles, level, dirPath);
+				byte[] bbArray = computeTile(level, maxLevel, c, row, sampler);
+				writeTile(tilePath, bbArray, tileWidth1, tileLength1, layerType);
+			}
+			return (null);
+		}
+	}
+
+}
@@ -0,0 +1,456 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.TileCodec;
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.factory.SolarPyramidLayerFactory.SolarMode;
+import gov.nasa.arc.dert.raster.RasterFile;
+import gov.nasa.arc.dert.raster.geotiff.GTIF;
+import gov.nasa.arc.dert.raster.pds.PDS;
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Builds several layers headless from a job file. The job file is a
+ * properties file with the following keys:
+ *
+ * <pre>
+ * Landscape=landscapePath
+ * Threads=number of layers to build concurrently (default 1)
+ * MemoryBudget=megabytes of raster data to hold at once (default 4096)
+ * Resume=true to resume from checkpoints (default true)
+ * ProgressFile=path for progress records (default standard output)
+ * Layer.N.File=inputFilePath
+ * Layer.N.Type=layerType
+ * Layer.N.TileSize=tileSize
+ * Layer.N.Name=layerName
+ * Layer.N.Globe=globeName
+ * Layer.N.Missing=missingValue
+ * Layer.N.Margin=left,right,bottom,top
+ * Layer.N.TileFormat=PNG, RAW, or DEFLATE (default PNG)
+ * Layer.N.Color=R,G,B,A (vector layers)
+ * Layer.N.ElevAttrName=elevation attribute name (vector layers)
+ * Horizon=true to build a horizon map layer (default false)
+ * Horizon.Sectors=number of azimuth sectors (default 16)
+ * Horizon.Name=layerName (default horizon)
+ * Solar=lit or insolation to build a solar illumination layer
+ * Solar.Start=yyyy-MM-ddTHH:mm:ss (UTC)
+ * Solar.End=yyyy-MM-ddTHH:mm:ss (UTC)
+ * Solar.Interval=seconds between Sun samples (default 600)
+ * Solar.Name=layerName (default solarlit or solarinsolation)
+ * Viewshed=X,Y world coordinates of an observer to build a viewshed layer
+ *     (X,Y;X,Y... to count the observers that see each location)
+ * Viewshed.Height=observer height in meters (default 2)
+ * Viewshed.Range=maximum range in meters (default no limit)
+ * Viewshed.Curvature=false to ignore the curvature of the globe (default true)
+ * Viewshed.Name=layerName (default viewshed)
+ * </pre>
+ *
+ * Layers are numbered from 1. Raster layers are built concurrently as long as
+ * their estimated size fits within the memory budget. Vector layers are drawn
+ * on the landscape elevation so they are built one at a time after the raster
+ * layers are complete. The horizon map is computed from the landscape
+ * elevation and is built after the raster layers and before the vector layers.
+ * The solar illumination layer uses the horizon map and is built after it.
+ * The viewshed layer is computed from the landscape elevation and is built
+ * with them.
+ *
+ */
+public class BatchLayerFactory {
+
+	// Job properties
+	private Properties job;
+
+	// DERT properties
+	private Properties dertProperties;
+
+	// Destination landscape
+	private String landscapePath;
+
+	// Progress destination
+	private PrintStream progressStream;
+
+	// Concurrency
+	private int numThreads;
+	private int memoryBudget;
+	private Semaphore memory;
+
+	// Resume from checkpoints
+	private boolean resume;
+
+	/**
+	 * A single layer in the job.
+	 */
+	protected class LayerJob {
+		public String filePath;
+		public LayerType layerType;
+		public int tileSize;
+		public String layerName;
+		public String globe;
+		public String missing;
+		public int[] margin;
+		public Color color;
+		public String elevAttrName;
+		public String tileFormat;
+		public boolean isVector;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param jobPath
+	 *            path to the job file
+	 * @param dertProperties
+	 *            DERT properties
+	 */
+	public BatchLayerFactory(String jobPath, Properties dertProperties) throws Exception {
+		this.dertProperties = dertProperties;
+		job = new Properties();
+		FileInputStream iStream = new FileInputStream(jobPath);
+		job.load(iStream);
+		iStream.close();
+		landscapePath = StringUtil.getStringValue(job, "Landscape", null, true);
+		numThreads = StringUtil.getIntegerValue(job, "Threads", true, 1, false);
+		memoryBudget = StringUtil.getIntegerValue(job, "MemoryBudget", true, 4096, false);
+		resume = StringUtil.getBooleanValue(job, "Resume", true, false);
+		String progressPath = StringUtil.getStringValue(job, "ProgressFile", null, false);
+		if (progressPath == null) {
+			progressStream = System.out;
+		} else {
+			progressStream = new PrintStream(new FileOutputStream(progressPath, true), true);
+		}
+		memory = new Semaphore(memoryBudget);
+	}
+
+	/**
+	 * Parse the layers from the job file.
+	 *
+	 * @return
+	 */
+	protected ArrayList<LayerJob> getLayers() {
+		ArrayList<LayerJob> list = new ArrayList<LayerJob>();
+		int n = 1;
+		while (true) {
+			String prefix = "Layer." + n + ".";
+			String filePath = job.getProperty(prefix + "File");
+			if (filePath == null) {
+				break;
+			}
+			LayerJob lj = new LayerJob();
+			lj.filePath = filePath;
+			lj.isVector = filePath.toLowerCase().endsWith(".json");
+			lj.layerName = StringUtil.getStringValue(job, prefix + "Name", null, false);
+			if (lj.isVector) {
+				lj.layerType = LayerType.colorimage;
+				lj.color = StringUtil.getColorValue(job, prefix + "Color", Color.white, false);
+				lj.elevAttrName = StringUtil.getStringValue(job, prefix + "ElevAttrName", null, false);
+			} else {
+				String str = StringUtil.getStringValue(job, prefix + "Type", null, true);
+				lj.layerType = (LayerType) StringUtil.findString(str, LayerFactory.LAYER_TYPE, true);
+				if (lj.layerType == null) {
+					throw new IllegalArgumentException("Invalid layer type " + str + " for " + filePath + ".");
+				}
+				lj.tileSize = StringUtil.getIntegerValue(job, prefix + "TileSize", true, 0, true);
+				lj.missing = StringUtil.getStringValue(job, prefix + "Missing", null, false);
+				lj.tileFormat = StringUtil.getStringValue(job, prefix + "TileFormat", TileCodec.PNG, false);
+				// fail before building anything if the format is unknown
+				TileCodec.getCodec(lj.tileFormat);
+				lj.margin = StringUtil.getIntegerArray(job, prefix + "Margin", null, false);
+				if ((lj.margin != null) && (lj.margin.length != 4)) {
+					throw new IllegalArgumentException("Margin for " + filePath + " requires 4 values.");
+				}
+				lj.globe = StringUtil.getStringValue(job, prefix + "Globe", PyramidLayerFactory.defaultGlobe, false);
+				if (lj.layerType == LayerType.elevation) {
+					lj.layerName = "elevation";
+				}
+			}
+			if (lj.layerName == null) {
+				lj.layerName = StringUtil.getLabelFromFilePath(filePath);
+			}
+			list.add(lj);
+			n++;
+		}
+		return (list);
+	}
+
+	/**
+	 * Build all layers in the job.
+	 *
+	 * @return true if all layers were built
+	 */
+	public boolean run() {
+		ArrayList<LayerJob> layers = getLayers();
+		boolean horizon = StringUtil.getBooleanValue(job, "Horizon", false, false);
+		boolean viewshed = job.getProperty("Viewshed") != null;
+		if (layers.isEmpty() && !horizon && !needsEphemeris() && !viewshed) {
+			System.out.println("No layers found in job file.");
+			return (false);
+		}
+
+		// Raster layers are independent
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		ArrayList<LayerJob> vectors = new ArrayList<LayerJob>();
+		for (final LayerJob lj : layers) {
+			if (lj.isVector) {
+				vectors.add(lj);
+				continue;
+			}
+			results.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return (buildRasterLayer(lj));
+				}
+			}));
+		}
+		executor.shutdown();
+
+		boolean success = true;
+		for (Future<Boolean> result : results) {
+			try {
+				success &= result.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+				success = false;
+			}
+		}
+
+		// The horizon map needs the elevation layer
+		if (horizon) {
+			success &= buildHorizonLayer();
+		}
+		if (needsEphemeris()) {
+			success &= buildSolarLayer();
+		}
+		if (viewshed) {
+			success &= buildViewshedLayer();
+		}
+
+		// Vector layers need the elevation layer and an OpenGL context
+		for (LayerJob lj : vectors) {
+			success &= buildVectorLayer(lj);
+		}
+		return (success);
+	}
+
+	/**
+	 * Build a raster layer within the memory budget.
+	 *
+	 * @param lj
+	 * @return
+	 */
+	protected boolean buildRasterLayer(LayerJob lj) {
+		PyramidProgress progress = new PyramidProgress(lj.layerName, progressStream);
+		int permits = 0;
+		try {
+			RasterFile rf = null;
+			if (lj.filePath.toLowerCase().endsWith(".img")) {
+				rf = new PDS(lj.filePath, dertProperties);
+			} else {
+				rf = new GTIF(lj.filePath, dertProperties);
+			}
+			if (!rf.open("r")) {
+				throw new IllegalStateException("Unable to open " + lj.filePath + ".");
+			}
+			rf.close();
+
+			// A layer larger than the budget runs by itself
+			int size = (int) Math.min(memoryBudget, estimateMemory(rf, lj.layerType));
+			memory.acquire(size);
+			permits = size;
+
+			// Get optional temporary file path
+			String tmpPath = dertProperties.getProperty("LayerTemporaryPath", null);
+			if ((tmpPath != null) && tmpPath.startsWith("$"))
+				tmpPath = System.getProperty(tmpPath.substring(1));
+
+			RasterPyramidLayerFactory factory = new RasterPyramidLayerFactory(rf, tmpPath);
+			factory.setProgress(progress);
+			factory.setCheckpoint(resume);
+			factory.setTileCodec(TileCodec.getCodec(lj.tileFormat));
+			factory.buildPyramid(landscapePath, lj.globe, lj.layerType, lj.layerName, lj.tileSize, lj.missing,
+				lj.margin, null);
+			progress.done();
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			progress.failed(e);
+			return (false);
+		} finally {
+			memory.release(permits);
+		}
+	}
+
+	/**
+	 * Build a horizon map layer.
+	 *
+	 * @return
+	 */
+	protected boolean buildHorizonLayer() {
+		String layerName = StringUtil.getStringValue(job, "Horizon.Name", "horizon", false);
+		PyramidProgress progress = new PyramidProgress(layerName, progressStream);
+		try {
+			int sectors = StringUtil.getIntegerValue(job, "Horizon.Sectors", true,
+				HorizonPyramidLayerFactory.DEFAULT_SECTORS, false);
+			HorizonPyramidLayerFactory factory = new HorizonPyramidLayerFactory(landscapePath, sectors);
+			factory.setProgress(progress);
+			factory.buildPyramid(landscapePath, layerName, null);
+			progress.done();
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			progress.failed(e);
+			return (false);
+		}
+	}
+
+	/**
+	 * Build a viewshed layer.
+	 *
+	 * @return
+	 */
+	protected boolean buildViewshedLayer() {
+		String layerName = StringUtil.getStringValue(job, "Viewshed.Name", "viewshed", false);
+		PyramidProgress progress = new PyramidProgress(layerName, progressStream);
+		try {
+			double[][] observers = ViewshedPyramidLayerFactory.parseObservers(job.getProperty("Viewshed"));
+			double height = StringUtil.getDoubleValue(job, "Viewshed.Height", true,
+				ViewshedPyramidLayerFactory.DEFAULT_HEIGHT, false);
+			double range = StringUtil.getDoubleValue(job, "Viewshed.Range", true, 0, false);
+			boolean curvature = StringUtil.getBooleanValue(job, "Viewshed.Curvature", true, false);
+			ViewshedPyramidLayerFactory factory = new ViewshedPyramidLayerFactory(landscapePath, observers, height,
+				range, curvature);
+			factory.setProgress(progress);
+			factory.buildPyramid(landscapePath, layerName, null);
+			progress.done();
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			progress.failed(e);
+			return (false);
+		}
+	}
+
+	/**
+	 * Determine if the job builds a layer that needs the ephemeris.
+	 *
+	 * @return
+	 */
+	public boolean needsEphemeris() {
+		return (job.getProperty("Solar") != null);
+	}
+
+	/**
+	 * Build a solar illumination layer.
+	 *
+	 * @return
+	 */
+	protected boolean buildSolarLayer() {
+		String str = job.getProperty("Solar").trim().toLowerCase();
+		PyramidProgress progress = null;
+		try {
+			SolarMode mode = SolarMode.valueOf(str);
+			String layerName = StringUtil.getStringValue(job, "Solar.Name", "solar" + mode, false);
+			progress = new PyramidProgress(layerName, progressStream);
+			long start = SolarPyramidLayerFactory.parseTime(StringUtil.getStringValue(job, "Solar.Start", null, true));
+			long end = SolarPyramidLayerFactory.parseTime(StringUtil.getStringValue(job, "Solar.End", null, true));
+			long interval = StringUtil.getIntegerValue(job, "Solar.Interval", true,
+				(int) (SolarPyramidLayerFactory.DEFAULT_SAMPLE_INTERVAL / 1000), false) * 1000L;
+			SolarPyramidLayerFactory factory = new SolarPyramidLayerFactory(landscapePath, start, end, interval, mode);
+			factory.setProgress(progress);
+			factory.buildPyramid(landscapePath, layerName, null);
+			progress.done();
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			if (progress != null) {
+				progress.failed(e);
+			}
+			return (false);
+		}
+	}
+
+	/**
+	 * Build a vector layer.
+	 *
+	 * @param lj
+	 * @return
+	 */
+	protected boolean buildVectorLayer(LayerJob lj) {
+		PyramidProgress progress = new PyramidProgress(lj.layerName, progressStream);
+		try {
+			VectorPyramidLayerFactory factory = new VectorPyramidLayerFactory(lj.filePath);
+			factory.setProgress(progress);
+			factory.buildPyramid(landscapePath, lj.layerName, lj.color, lj.elevAttrName, null);
+			progress.done();
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			progress.failed(e);
+			return (false);
+		}
+	}
+
+	/**
+	 * Estimate the megabytes of raster data held during a build. This is the
+	 * source raster plus the padded raster.
+	 *
+	 * @param rf
+	 * @param layerType
+	 * @return
+	 */
+	protected long estimateMemory(RasterFile rf, LayerType layerType) {
+		long bytesPerPixel = (layerType == LayerType.grayimage) ? 1 : 4;
+		long width = rf.getRasterWidth();
+		long length = rf.getRasterLength();
+		long size = width * length * bytesPerPixel + nextPowerOf2(width) * nextPowerOf2(length) * bytesPerPixel;
+		return (Math.max(1, size / 1048576));
+	}
+
+	private long nextPowerOf2(long val) {
+		long po2 = 1;
+		while (po2 < val) {
+			po2 *= 2;
+		}
+		return (po2);
+	}
+
+	/**
+	 * Close the progress stream.
+	 */
+	public void dispose() {
+		if (progressStream != System.out) {
+			progressStream.close();
+		}
+	}
+
+	/**
+	 * Get the job file argument from the command line.
+	 *
+	 * @param args
+	 * @return the job file path or null if there isn't one
+	 */
+	public static String getJobPath(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].startsWith("-job=")) {
+				String str = args[i].substring(5);
+				if (!str.isEmpty()) {
+					return (new File(str).getAbsolutePath());
+				}
+			}
+		}
+		return (null);
+	}
+
+}
@@ -0,0 +1,357 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.FileSystemTileSource;
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.ProjectionInfo;
+import gov.nasa.arc.dert.raster.ProjectionInfo.GlobeName;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Provides elevation samples from any level of a landscape elevation pyramid.
+ * Samples are addressed by column and row in the raster of a level, where the
+ * raster of level L is 2^L tiles on a side. Decoded tiles are kept in a least
+ * recently used cache shared by all threads. Each thread samples through its
+ * own Sampler, which remembers the last tile used at each level so most
+ * samples do not touch the shared cache.
+ *
+ */
+public class ElevationPyramid {
+
+	// Maximum number of decoded tiles kept in memory
+	public static int MAX_TILES = 1024;
+
+	// Marks a tile that is empty or missing
+	private static final float[] EMPTY = new float[0];
+
+	// The landscape tile source
+	private FileSystemTileSource source;
+
+	// Pyramid dimensions
+	private int numLevels, tileWidth, tileLength;
+
+	// Elevation range
+	private double minimum, maximum;
+
+	// Names and types of the landscape layers
+	private String[][] layerInfo;
+
+	// Projection of the elevation layer
+	private ProjectionInfo projInfo;
+
+	// Meters per pixel at the highest level and the globe radius in meters
+	private double pixelSize, radius;
+
+	// Decoded tiles by key
+	private LinkedHashMap<String, float[]> tileMap;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @throws IOException
+	 */
+	public ElevationPyramid(String landPath) throws IOException {
+		source = new FileSystemTileSource(landPath);
+		layerInfo = source.getLayerInfo();
+		Properties properties = source.getProperties("elevation");
+		if (properties == null) {
+			throw new IOException("Elevation layer not found in " + landPath + ".");
+		}
+		projInfo = new ProjectionInfo();
+		projInfo.loadFromProperties(properties);
+		radius = projInfo.semiMajorAxis;
+		if (Double.isNaN(radius)) {
+			try {
+				radius = ProjectionInfo.SEMI_MAJOR_AXIS[GlobeName.valueOf(projInfo.globe).ordinal()];
+			} catch (Exception e) {
+				radius = Double.NaN;
+			}
+		}
+		pixelSize = (Math.abs(projInfo.scale[0]) + Math.abs(projInfo.scale[1])) / 2;
+		if (!projInfo.projected && !Double.isNaN(radius)) {
+			// degrees to meters
+			pixelSize *= Math.PI * radius / 180;
+		}
+		numLevels = StringUtil.getIntegerValue(properties, "NumberOfLevels", true, 0, true);
+		tileWidth = StringUtil.getIntegerValue(properties, "TileWidth", true, 0, true);
+		tileLength = StringUtil.getIntegerValue(properties, "TileLength", true, 0, true);
+		minimum = StringUtil.getDoubleValue(properties, "MinimumValue", false, 0, true);
+		maximum = StringUtil.getDoubleValue(properties, "MaximumValue", false, 0, true);
+		tileMap = new LinkedHashMap<String, float[]>(MAX_TILES, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+				return (size() > MAX_TILES);
+			}
+		};
+	}
+
+	/**
+	 * Get the elevation layer properties
+	 *
+	 * @return
+	 */
+	public Properties getProperties() {
+		return (source.getProperties("elevation"));
+	}
+
+	/**
+	 * Get the elevation layer projection
+	 *
+	 * @return
+	 */
+	public ProjectionInfo getProjectionInfo() {
+		return (projInfo);
+	}
+
+	/**
+	 * Get the size of a pixel at the highest level
+	 *
+	 * @return meters
+	 */
+	public double getPixelSize() {
+		return (pixelSize);
+	}
+
+	/**
+	 * Get the radius of the globe
+	 *
+	 * @return meters or NaN if the globe is not known
+	 */
+	public double getGlobeRadius() {
+		return (radius);
+	}
+
+	/**
+	 * Get the tile source for the landscape
+	 *
+	 * @return
+	 */
+	public FileSystemTileSource getSource() {
+		return (source);
+	}
+
+	/**
+	 * Find a layer of the landscape by type.
+	 *
+	 * @param type
+	 * @return the name of the first layer of the type or null if there is none
+	 */
+	public String findLayer(LayerType type) {
+		for (int i = 0; i < layerInfo.length; ++i) {
+			if (layerInfo[i][1].equals(type.toString())) {
+				return (layerInfo[i][0]);
+			}
+		}
+		return (null);
+	}
+
+	/**
+	 * Read the list of landscape layers again, after a layer has been added.
+	 */
+	public void refreshLayers() {
+		layerInfo = source.getLayerInfo();
+	}
+
+	/**
+	 * Get the number of levels
+	 *
+	 * @return
+	 */
+	public int getNumberOfLevels() {
+		return (numLevels);
+	}
+
+	/**
+	 * Get the tile width
+	 *
+	 * @return
+	 */
+	public int getTileWidth() {
+		return (tileWidth);
+	}
+
+	/**
+	 * Get the tile length
+	 *
+	 * @return
+	 */
+	public int getTileLength() {
+		return (tileLength);
+	}
+
+	/**
+	 * Get the minimum elevation
+	 *
+	 * @return
+	 */
+	public double getMinimum() {
+		return (minimum);
+	}
+
+	/**
+	 * Get the maximum elevation
+	 *
+	 * @return
+	 */
+	public double getMaximum() {
+		return (maximum);
+	}
+
+	/**
+	 * Get the key for a tile.
+	 *
+	 * @param level
+	 * @param column
+	 * @param row
+	 * @return
+	 */
+	public static String getKey(int level, int column, int row) {
+		StringBuilder key = new StringBuilder();
+		for (int bit = level - 1; bit >= 0; --bit) {
+			int quadrant = 1 + ((column >> bit) & 1) + 2 * ((row >> bit) & 1);
+			key.append('/');
+			key.append(quadrant);
+		}
+		return (key.toString());
+	}
+
+	/**
+	 * Get the samples of a tile. A tile is (tileWidth+1) by (tileLength+1)
+	 * samples in row order.
+	 *
+	 * @param level
+	 * @param column
+	 * @param row
+	 * @return the samples or null if the tile is empty
+	 */
+	public float[] getTile(int level, int column, int row) {
+		String key = getKey(level, column, row);
+		float[] samples = null;
+		synchronized (tileMap) {
+			samples = tileMap.get(key);
+		}
+		if (samples == null) {
+			samples = EMPTY;
+			QuadTreeTile tile = source.getTile("elevation", key, DataType.Float);
+			if ((tile != null) && (tile.raster != null)) {
+				FloatBuffer buffer = tile.raster.asFloatBuffer();
+				samples = new float[buffer.limit()];
+				buffer.get(samples);
+			}
+			synchronized (tileMap) {
+				tileMap.put(key, samples);
+			}
+		}
+		return ((samples == EMPTY) ? null : samples);
+	}
+
+	/**
+	 * Create a sampler for the calling thread.
+	 *
+	 * @return
+	 */
+	public Sampler createSampler() {
+		return (new Sampler());
+	}
+
+	/**
+	 * Samples the pyramid for a single thread.
+	 */
+	public class Sampler {
+
+		// The last tile used at each level
+		private float[][] tile;
+		private int[] tileColumn, tileRow;
+
+		protected Sampler() {
+			tile = new float[numLevels][];
+			tileColumn = new int[numLevels];
+			tileRow = new int[numLevels];
+			for (int i = 0; i < numLevels; ++i) {
+				tileColumn[i] = -1;
+			}
+		}
+
+		/**
+		 * Get the elevation at a location in the raster of a level by bilinear
+		 * interpolation.
+		 *
+		 * @param level
+		 * @param x
+		 *            the column
+		 * @param y
+		 *            the row
+		 * @return the elevation or NaN if the location is outside the
+		 *         landscape or has no data
+		 */
+		public double getElevation(int level, double x, double y) {
+			int numTiles = 1 << level;
+			if ((x < 0) || (y < 0) || (x > numTiles * tileWidth) || (y > numTiles * tileLength)) {
+				return (Double.NaN);
+			}
+			int c = (int) x;
+			int r = (int) y;
+			int tc = Math.min(c / tileWidth, numTiles - 1);
+			int tr = Math.min(r / tileLength, numTiles - 1);
+			if ((tc != tileColumn[level]) || (tr != tileRow[level])) {
+				tile[level] = getTile(level, tc, tr);
+				tileColumn[level] = tc;
+				tileRow[level] = tr;
+			}
+			float[] samples = tile[level];
+			if (samples == null) {
+				return (Double.NaN);
+			}
+			// the last column and row of a tile duplicate the first of its
+			// neighbors
+			c -= tc * tileWidth;
+			r -= tr * tileLength;
+			double fx = x - tc * tileWidth - c;
+			double fy = y - tr * tileLength - r;
+			int c1 = Math.min(c + 1, tileWidth);
+			int r1 = Math.min(r + 1, tileLength);
+			int width1 = tileWidth + 1;
+			// samples without data (such as at the raster edge) are left out
+			double sum = 0;
+			double weight = 0;
+			double w = (1 - fx) * (1 - fy);
+			double z = samples[r * width1 + c];
+			if (!Double.isNaN(z) && (w > 0)) {
+				sum += z * w;
+				weight += w;
+			}
+			w = fx * (1 - fy);
+			z = samples[r * width1 + c1];
+			if (!Double.isNaN(z) && (w > 0)) {
+				sum += z * w;
+				weight += w;
+			}
+			w = (1 - fx) * fy;
+			z = samples[r1 * width1 + c];
+			if (!Double.isNaN(z) && (w > 0)) {
+				sum += z * w;
+				weight += w;
+			}
+			w = fx * fy;
+			z = samples[r1 * width1 + c1];
+			if (!Double.isNaN(z) && (w > 0)) {
+				sum += z * w;
+				weight += w;
+			}
+			if (weight == 0) {
+				return (Double.NaN);
+			}
+			return (sum / weight);
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.TileCodec;
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.swing.JTextField;
+
+/**
+ * Creates a horizon map pyramid from the elevation pyramid of a landscape. For
+ * each elevation sample, the horizon is the highest elevation angle of the
+ * terrain seen from the sample in a number of azimuth sectors. A point is lit
+ * by a distant light when the light elevation is above the horizon in the
+ * light's sector.
+ *
+ * The horizon is found by stepping along a ray in the center direction of each
+ * sector. The step grows with distance and samples are taken from the
+ * pyramid level whose pixels match the step, so distant terrain is read from
+ * low resolution tiles. Stepping stops when the maximum landscape elevation
+ * can no longer raise the horizon, or at the landscape edge. The curvature of
+ * the globe is taken into account.
+ *
+ * Each horizon tile has the dimensions of the elevation tile. A sample has one
+ * byte per sector holding the horizon angle in units of 1/ANGLE_SCALE degree
+ * (below horizontal is stored as 0). Tiles are encoded with the DEFLATE codec.
+ * Tiles in a level are computed in parallel.
+ *
+ */
+public class HorizonPyramidLayerFactory extends AnalysisPyramidLayerFactory {
+
+	// Default number of azimuth sectors
+	public static int DEFAULT_SECTORS = 16;
+
+	// Horizon angle units per degree
+	public static final double ANGLE_SCALE = 2;
+
+	// Ray step as a fraction of distance
+	public static double STEP_FRACTION = 1.0 / 32;
+
+	// Number of azimuth sectors
+	protected int sectors;
+
+	// Sector directions in raster columns and rows
+	protected double[] dx, dy;
+
+	// Meters per pixel at the highest level and the globe radius in meters
+	protected double pixelSize, radius;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @param sectors
+	 *            the number of azimuth sectors
+	 */
+	public HorizonPyramidLayerFactory(String landPath, int sectors) {
+		super(landPath);
+		this.sectors = sectors;
+		layerType = LayerType.horizon;
+		tileCodec = TileCodec.getCodec(TileCodec.DEFLATE);
+		minimumSampleValue = new double[] { 0 };
+		maximumSampleValue = new double[] { 90 };
+		dx = new double[sectors];
+		dy = new double[sectors];
+		for (int i = 0; i < sectors; ++i) {
+			// azimuth is clockwise from north, rows increase to the south
+			double az = 2 * Math.PI * i / sectors;
+			dx[i] = Math.sin(az);
+			dy[i] = -Math.cos(az);
+		}
+	}
+
+	/**
+	 * Build the pyramid layer.
+	 *
+	 * @param landPath
+	 *            path to the destination landscape
+	 * @param layerName
+	 *            name of this layer
+	 * @param messageText
+	 *            UI text field for messages to the user
+	 * @throws IOException
+	 */
+	public void buildPyramid(String landPath, String layerName, JTextField messageText) throws IOException {
+		long t = System.currentTimeMillis();
+
+		openPyramid(landPath);
+		radius = pyramid.getGlobeRadius();
+		pixelSize = pyramid.getPixelSize();
+		buildLevels(landPath, layerName, messageText);
+		System.out.println("Number of levels for " + layerName + " = " + pyramid.getNumberOfLevels() + " with " + sectors
+			+ " azimuth sectors.");
+		System.out.println("Total time for building " + layerName + " = "
+			+ (float) ((System.currentTimeMillis() - t) / 60000.0) + " minutes.");
+	}
+
+	@Override
+	protected void addProperties(Properties properties) {
+		properties.setProperty("HorizonSectors", Integer.toString(sectors));
+		properties.setProperty("HorizonAngleScale", Double.toString(ANGLE_SCALE));
+	}
+
+	/**
+	 * Compute the horizon for the samples of a tile.
+	 *
+	 * @param level
+	 * @param maxLevel
+	 * @param column
+	 * @param row
+	 * @param sampler
+	 * @return the horizon bytes or an empty array if the elevation tile is
+	 *         empty
+	 */
+	@Override
+	protected byte[] computeTile(int level, int maxLevel, int column, int row, ElevationPyramid.Sampler sampler) {
+		float[] elev = pyramid.getTile(level, column, row);
+		if (elev == null) {
+			return (new byte[0]);
+		}
+		byte[] horizon = new byte[tileWidth1 * tileLength1 * sectors];
+		// meters per pixel at this level
+		double pix = pixelSize * (1 << (maxLevel - level));
+		double width = (1 << level) * tileWidth;
+		double length = (1 << level) * tileLength;
+		double zMax = pyramid.getMaximum();
+		int k = 0;
+		for (int r = 0; r < tileLength1; ++r) {
+			double y = row * tileLength + r;
+			for (int c = 0; c < tileWidth1; ++c) {
+				double x = column * tileWidth + c;
+				double z = elev[r * tileWidth1 + c];
+				if (Double.isNaN(z)) {
+					k += sectors;
+					continue;
+				}
+				for (int s = 0; s < sectors; ++s) {
+					double maxTan = 0;
+					double d = 1;
+					while (true) {
+						double px = x + dx[s] * d;
+						double py = y + dy[s] * d;
+						if ((px < 0) || (py < 0) || (px > width) || (py > length)) {
+							break;
+						}
+						double step = Math.max(1, d * STEP_FRACTION);
+						// read distant terrain from lower resolution levels
+						int lo = Math.min(level, 31 - Integer.numberOfLeadingZeros((int) step));
+						double f = 1 << lo;
+						double zs = sampler.getElevation(level - lo, px / f, py / f);
+						double dm = d * pix;
+						if (!Double.isNaN(zs)) {
+							double dz = zs - z;
+							if (!Double.isNaN(radius)) {
+								dz -= dm * dm / (2 * radius);
+							}
+							if (dz > maxTan * dm) {
+								maxTan = dz / dm;
+							}
+						}
+						// nothing farther can be above the horizon
+						if (zMax - z <= maxTan * dm) {
+							break;
+						}
+						d += step;
+					}
+					long h = Math.round(Math.toDegrees(Math.atan(maxTan)) * ANGLE_SCALE);
+					horizon[k++] = (byte) Math.min(255, h);
+				}
+			}
+		}
+		return (horizon);
+	}
+
+	/**
+	 * Get the horizon argument from the command line.
+	 *
+	 * @param args
+	 * @return the number of sectors or 0 if there is no horizon argument
+	 */
+	public static int getSectors(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("-horizon")) {
+				return (DEFAULT_SECTORS);
+			} else if (args[i].startsWith("-horizon=")) {
+				return (Math.max(1, Integer.parseInt(args[i].substring(9))));
+			}
+		}
+		return (0);
+	}
+
+}
@@ -1,10 +1,14 @@
 package gov.nasa.arc.dert.landscape.factory;
 
 import gov.nasa.arc.dert.action.file.AboutBox;
+import gov.nasa.arc.dert.ephemeris.Ephemeris;
+import gov.nasa.arc.dert.io.TileCodec;
 import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.factory.SolarPyramidLayerFactory.SolarMode;
 import gov.nasa.arc.dert.raster.RasterFile;
 import gov.nasa.arc.dert.raster.geotiff.GTIF;
 import gov.nasa.arc.dert.raster.pds.PDS;
+import gov.nasa.arc.dert.scenegraph.text.BitmapFont;
 import gov.nasa.arc.dert.util.StringUtil;
 
 import java.awt.BorderLayout;
@@ -12,6 +16,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.FlowLayout;
+import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
@@ -30,7 +35,8 @@ import javax.swing.JTextField;
  * in a landscape. Supported file formats are PDS and GeoTIFF including BigTIFF.
  * 
  * If given all required arguments, the tool will run headless. Otherwise it
- * will produce a GUI.
+ * will produce a GUI. Given a job file, the tool will build several layers
+ * headless (see BatchLayerFactory).
  *
  */
 public class LayerFactory {
@@ -67,6 +73,7 @@ public class LayerFactory {
 	private int[] margin;
 	private Color color;
 	private String elevAttrName;
+	private String tileFormat;
 
 	// This is a vector file so it needs to be rendered
 	private boolean isVector;
@@ -94,12 +101,35 @@ public class LayerFactory {
 			if (args[0].equals("-usage")) {
 				System.out.println("layerfactory -landscape=landscapePath -file=inputFilePath -tilesize=tileSize -type=layerType "+
 						"[-globe=globename] [-missing=missingValue] [-name=layerName] [-leftmargin=numPixels] [-rightmargin=numPixels]"+
-						" [-bottommargin=numPixels] [-topmargin=numPixels] [-color=R,G,B,A] [-elevattrname=elevation attribute name]");
+						" [-bottommargin=numPixels] [-topmargin=numPixels] [-color=R,G,B,A] [-elevattrname=elevation attribute name]"+
+						" [-tileformat=PNG|RAW|DEFLATE]");
+				System.out.println("layerfactory -job=jobFilePath");
+				System.out.println("layerfactory -landscape=landscapePath -horizon[=numSectors] [-name=layerName]");
+				System.out.println("layerfactory -landscape=landscapePath -solar[=lit|insolation] -start=yyyy-MM-ddTHH:mm:ss "+
+						"-end=yyyy-MM-ddTHH:mm:ss [-interval=seconds] [-name=layerName]");
+				System.out.println("layerfactory -landscape=landscapePath -viewshed=X,Y[;X,Y...] [-height=meters] [-range=meters] "+
+						"[-nocurvature] [-name=layerName]");
 				System.exit(0);
 			}
 		}
 		LayerFactory lf = new LayerFactory(args);
 		VERSION = "LayerFactory " + lf.version;
+		String jobPath = BatchLayerFactory.getJobPath(args);
+		if (jobPath != null) {
+			System.exit(lf.runJob(jobPath) ? 0 : 1);
+		}
+		int sectors = HorizonPyramidLayerFactory.getSectors(args);
+		if (sectors > 0) {
+			System.exit(lf.buildHorizon(sectors) ? 0 : 1);
+		}
+		SolarMode solarMode = SolarPyramidLayerFactory.getMode(args);
+		if (solarMode != null) {
+			System.exit(lf.buildSolar(solarMode) ? 0 : 1);
+		}
+		double[][] observers = ViewshedPyramidLayerFactory.getObservers(args);
+		if (observers != null) {
+			System.exit(lf.buildViewshed(observers) ? 0 : 1);
+		}
 		lf.createLayer();
 	}
 
@@ -128,6 +158,7 @@ public class LayerFactory {
 			dertProperties.load(new FileInputStream(file));
 			version = dertProperties.getProperty("Dert.Version", "");
 			setGlobes(dertProperties);
+			setFont(dertProperties);
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(-1);
@@ -144,6 +175,161 @@ public class LayerFactory {
 		PyramidLayerFactory.defaultGlobe = defaultGlobe;
 	}
 	
+	private static void setFont(Properties properties) {
+		// Point markers of vector layers measure their labels with the bitmap font
+		String name = StringUtil.getStringValue(properties, "RasterText.Font", BitmapFont.DEFAULT_NAME, false);
+		int size = StringUtil.getIntegerValue(properties, "RasterText.FontSize", true, 0, false);
+		if (size == 0) {
+			size = BitmapFont.DEFAULT_SIZE;
+		}
+		BitmapFont.createInstance(name, Font.BOLD, size);
+	}
+	
+	/**
+	 * Build all of the layers in a job file headless.
+	 * 
+	 * @param jobPath
+	 *            the job file path
+	 * @return true if all layers were built
+	 */
+	public boolean runJob(String jobPath) {
+		try {
+			BatchLayerFactory batch = new BatchLayerFactory(jobPath, dertProperties);
+			if (batch.needsEphemeris()) {
+				initEphemeris();
+			}
+			boolean success = batch.run();
+			batch.dispose();
+			return (success);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+	}
+
+	/**
+	 * Build a horizon map layer from the landscape elevation headless.
+	 * 
+	 * @param sectors
+	 *            the number of azimuth sectors
+	 * @return true if the layer was built
+	 */
+	public boolean buildHorizon(int sectors) {
+		String landPath = null;
+		String name = "horizon";
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].startsWith("-landscape=")) {
+				landPath = args[i].substring(11);
+			} else if (args[i].startsWith("-name=") && (args[i].length() > 6)) {
+				name = args[i].substring(6);
+			}
+		}
+		if ((landPath == null) || landPath.isEmpty()) {
+			System.out.println("A landscape is required to build a horizon layer.");
+			return (false);
+		}
+		try {
+			HorizonPyramidLayerFactory factory = new HorizonPyramidLayerFactory(landPath, sectors);
+			factory.buildPyramid(new File(landPath).getAbsolutePath(), name, null);
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+	}
+
+	/**
+	 * Build a solar illumination layer from the landscape elevation headless.
+	 * 
+	 * @param mode
+	 *            the layer contents
+	 * @return true if the layer was built
+	 */
+	public boolean buildSolar(SolarMode mode) {
+		String landPath = null;
+		String name = "solar" + mode;
+		String start = null;
+		String end = null;
+		long interval = SolarPyramidLayerFactory.DEFAULT_SAMPLE_INTERVAL;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].startsWith("-landscape=")) {
+				landPath = args[i].substring(11);
+			} else if (args[i].startsWith("-name=") && (args[i].length() > 6)) {
+				name = args[i].substring(6);
+			} else if (args[i].startsWith("-start=")) {
+				start = args[i].substring(7);
+			} else if (args[i].startsWith("-end=")) {
+				end = args[i].substring(5);
+			} else if (args[i].startsWith("-interval=")) {
+				interval = Long.parseLong(args[i].substring(10)) * 1000;
+			}
+		}
+		if ((landPath == null) || landPath.isEmpty() || (start == null) || (end == null)) {
+			System.out.println("A landscape, start time, and end time are required to build a solar layer.");
+			return (false);
+		}
+		try {
+			initEphemeris();
+			SolarPyramidLayerFactory factory = new SolarPyramidLayerFactory(landPath,
+				SolarPyramidLayerFactory.parseTime(start), SolarPyramidLayerFactory.parseTime(end), interval, mode);
+			factory.buildPyramid(new File(landPath).getAbsolutePath(), name, null);
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+	}
+
+	/**
+	 * Build a viewshed layer from the landscape elevation headless.
+	 * 
+	 * @param observers
+	 *            the X and Y in world coordinates of each observer
+	 * @return true if the layer was built
+	 */
+	public boolean buildViewshed(double[][] observers) {
+		String landPath = null;
+		String name = "viewshed";
+		double height = ViewshedPyramidLayerFactory.DEFAULT_HEIGHT;
+		double range = 0;
+		boolean curvature = true;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].startsWith("-landscape=")) {
+				landPath = args[i].substring(11);
+			} else if (args[i].startsWith("-name=") && (args[i].length() > 6)) {
+				name = args[i].substring(6);
+			} else if (args[i].startsWith("-height=")) {
+				height = Double.parseDouble(args[i].substring(8));
+			} else if (args[i].startsWith("-range=")) {
+				range = Double.parseDouble(args[i].substring(7));
+			} else if (args[i].equals("-nocurvature")) {
+				curvature = false;
+			}
+		}
+		if ((landPath == null) || landPath.isEmpty()) {
+			System.out.println("A landscape is required to build a viewshed layer.");
+			return (false);
+		}
+		try {
+			ViewshedPyramidLayerFactory factory = new ViewshedPyramidLayerFactory(landPath, observers, height, range,
+				curvature);
+			factory.buildPyramid(new File(landPath).getAbsolutePath(), name, null);
+			return (true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+	}
+
+	/**
+	 * Load the SPICE kernels.
+	 */
+	public void initEphemeris() {
+		if (Ephemeris.getInstance() == null) {
+			Ephemeris.createInstance(pathStr, dertProperties);
+		}
+	}
+
 	public boolean createLayer() {
 
 		// Do the build if all arguments are present and then exit.
@@ -168,6 +354,7 @@ public class LayerFactory {
 						tmpPath = System.getProperty(tmpPath.substring(1));
 
 					RasterPyramidLayerFactory factory = new RasterPyramidLayerFactory(rf, tmpPath);
+					factory.setTileCodec(TileCodec.getCodec(tileFormat));
 					factory.buildPyramid(landscapePath, globe, layerType, layerName, tileSize, missing, margin, null);
 				}
 			} catch (Exception e) {
@@ -257,6 +444,7 @@ public class LayerFactory {
 		globe = PyramidLayerFactory.defaultGlobe;
 		color = Color.white;
 		elevAttrName = null;
+		tileFormat = null;
 		for (int i = 0; i < args.length; ++i) {
 			if (args[i].startsWith("-landscape=")) {
 				landscapePath = args[i].substring(11);
@@ -339,6 +527,11 @@ public class LayerFactory {
 				margin[3] = Integer.parseInt(str, 0);
 			} else if (args[i].startsWith("-elevattrname=")) {
 				elevAttrName = args[i].substring(14);
+			} else if (args[i].startsWith("-tileformat=")) {
+				tileFormat = args[i].substring(12);
+				if (tileFormat.isEmpty()) {
+					tileFormat = null;
+				}
 			}
 		}
 		if ((landscapePath == null) || (filePath == null)) {
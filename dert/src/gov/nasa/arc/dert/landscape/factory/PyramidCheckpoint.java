@@ -0,0 +1,159 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.TileCodec;
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Records how far a pyramid build has progressed so that an interrupted build
+ * can be resumed. The checkpoint is a properties file in the layer directory
+ * that is rewritten after each completed row of tiles and removed when the
+ * layer.properties file is written.
+ *
+ * Levels are written from the highest resolution down to level 0, so a tile
+ * is complete if its level is greater than the checkpoint level, or it is in
+ * the checkpoint level and its row is less than the checkpoint row.
+ *
+ */
+public class PyramidCheckpoint {
+
+	public static final String FILE_NAME = "layer.checkpoint";
+
+	// The checkpoint file
+	private File file;
+
+	// Build parameters, a checkpoint only applies to the same build
+	private String source, layerType, tileFormat;
+	private int tileSize;
+
+	// Position of the next row to write
+	private int level, row;
+
+	/**
+	 * Constructor
+	 *
+	 * @param dirPath
+	 *            the layer directory
+	 * @param source
+	 *            the source file path
+	 * @param layerType
+	 *            the layer type
+	 * @param tileSize
+	 *            the tile size
+	 * @param tileFormat
+	 *            the tile codec name
+	 */
+	public PyramidCheckpoint(String dirPath, String source, String layerType, int tileSize, String tileFormat) {
+		file = new File(dirPath, FILE_NAME);
+		this.source = source;
+		this.layerType = layerType;
+		this.tileSize = tileSize;
+		this.tileFormat = tileFormat;
+		level = Integer.MAX_VALUE;
+		row = 0;
+	}
+
+	/**
+	 * Load an existing checkpoint. If the checkpoint does not exist or was
+	 * written for a different build, start from the beginning.
+	 *
+	 * @return true if a checkpoint was loaded
+	 */
+	public boolean load() {
+		if (!file.exists()) {
+			return (false);
+		}
+		try {
+			Properties properties = new Properties();
+			FileInputStream iStream = new FileInputStream(file);
+			properties.load(iStream);
+			iStream.close();
+			if (!source.equals(properties.getProperty("Source")) || !layerType.equals(properties.getProperty("LayerType"))
+				|| (tileSize != StringUtil.getIntegerValue(properties, "TileSize", true, 0, false))
+				|| !tileFormat.equals(properties.getProperty("TileFormat", TileCodec.PNG))) {
+				System.out.println("Ignoring checkpoint " + file + ", it was written for a different build.");
+				return (false);
+			}
+			level = StringUtil.getIntegerValue(properties, "Level", false, Integer.MAX_VALUE, true);
+			row = StringUtil.getIntegerValue(properties, "Row", false, 0, true);
+			return (true);
+		} catch (Exception e) {
+			System.out.println("Unable to read checkpoint " + file + ".");
+			e.printStackTrace();
+			level = Integer.MAX_VALUE;
+			row = 0;
+			return (false);
+		}
+	}
+
+	/**
+	 * Determine if a row of tiles was completed before the checkpoint.
+	 *
+	 * @param lev
+	 * @param r
+	 * @return
+	 */
+	public boolean isComplete(int lev, int r) {
+		if (lev > level) {
+			return (true);
+		}
+		return ((lev == level) && (r < row));
+	}
+
+	/**
+	 * Determine if an entire level was completed before the checkpoint.
+	 *
+	 * @param lev
+	 * @return
+	 */
+	public boolean isComplete(int lev) {
+		return (lev > level);
+	}
+
+	/**
+	 * Save the position of the next row to write. The file is written to a
+	 * temporary file and renamed so a crash never leaves a partial
+	 * checkpoint.
+	 *
+	 * @param lev
+	 * @param r
+	 * @throws IOException
+	 */
+	public void save(int lev, int r) throws IOException {
+		level = lev;
+		row = r;
+		Properties properties = new Properties();
+		properties.setProperty("Source", source);
+		properties.setProperty("LayerType", layerType);
+		properties.setProperty("TileSize", Integer.toString(tileSize));
+		properties.setProperty("TileFormat", tileFormat);
+		properties.setProperty("Level", Integer.toString(level));
+		properties.setProperty("Row", Integer.toString(row));
+		File tmpFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+		FileOutputStream oStream = new FileOutputStream(tmpFile);
+		properties.store(oStream, LayerFactory.VERSION);
+		oStream.getFD().sync();
+		oStream.close();
+		if (file.exists()) {
+			file.delete();
+		}
+		if (!tmpFile.renameTo(file)) {
+			throw new IOException("Unable to write checkpoint " + file + ".");
+		}
+	}
+
+	/**
+	 * Remove the checkpoint.
+	 */
+	public void delete() {
+		if (file.exists()) {
+			file.delete();
+		}
+	}
+
+}
@@ -1,10 +1,12 @@
 package gov.nasa.arc.dert.landscape.factory;
 
+import gov.nasa.arc.dert.io.TileCodec;
 import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.factory.PyramidProgress.Stage;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
+import gov.nasa.arc.dert.raster.RasterStatistics;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -14,10 +16,6 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Properties;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
-
 /**
  * Base class for factories that create a multi-resolution tiled pyramid. The
  * structure of the pyramid is a quad that is divided into 4 child quads for
@@ -55,9 +53,18 @@ public abstract class PyramidLayerFactory {
 	// Value to use to fill to the edge of mesh.
 	protected float edgeFillValue;
 
+	// Sample statistics (null if not computed)
+	protected RasterStatistics statistics;
+
+	// Tile encoding
+	protected TileCodec tileCodec = TileCodec.getCodec(TileCodec.PNG);
+
 	// flag for cancellation
 	protected boolean doIt;
 
+	// Stage timing and progress records (null if not reporting)
+	protected PyramidProgress progress;
+
 	/**
 	 * Constructor
 	 * 
@@ -78,15 +85,28 @@ public abstract class PyramidLayerFactory {
 		properties.setProperty("Source", sourceFilePath);
 		properties.setProperty("MinimumValue", Double.toString(minimumSampleValue[0]));
 		properties.setProperty("MaximumValue", Double.toString(maximumSampleValue[0]));
-		properties.setProperty("TileFormat", "PNG");
+		properties.setProperty("TileFormat", tileCodec.getName());
 		projInfo.saveToProperties(properties, defaultGlobe);
 		if (layerType == LayerType.elevation) {
 			properties.setProperty("EdgeFillValue", Float.toString(edgeFillValue));
 		}
+		if (statistics != null) {
+			statistics.saveToProperties(properties);
+		}
+		addProperties(properties);
 
 		properties.store(new FileOutputStream(path), LayerFactory.VERSION);
 	}
 
+	/**
+	 * Add properties specific to a type of layer.
+	 * 
+	 * @param properties
+	 */
+	protected void addProperties(Properties properties) {
+		// nothing here
+	}
+
 	/**
 	 * Determine if a tile is empty
 	 * 
@@ -192,6 +212,63 @@ public abstract class PyramidLayerFactory {
 		doIt = false;
 	}
 
+	/**
+	 * Determine if the last build was cancelled.
+	 * 
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return (!doIt);
+	}
+
+	/**
+	 * Set the object that accumulates stage timing and reports progress.
+	 * 
+	 * @param progress
+	 */
+	public void setProgress(PyramidProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Set the codec used to encode tiles.
+	 * 
+	 * @param tileCodec
+	 */
+	public void setTileCodec(TileCodec tileCodec) {
+		this.tileCodec = tileCodec;
+	}
+
+	/**
+	 * Get the codec used to encode tiles.
+	 * 
+	 * @return
+	 */
+	public TileCodec getTileCodec() {
+		return (tileCodec);
+	}
+
+	/**
+	 * Get the start time for a stage.
+	 * 
+	 * @return
+	 */
+	protected final long startStage() {
+		return (System.nanoTime());
+	}
+
+	/**
+	 * Add the time since the start to a stage.
+	 * 
+	 * @param stage
+	 * @param startTime
+	 */
+	protected final void endStage(Stage stage, long startTime) {
+		if (progress != null) {
+			progress.addTime(stage, System.nanoTime() - startTime);
+		}
+	}
+
 	/**
 	 * Write a tile out to the pyramid
 	 * 
@@ -206,48 +283,24 @@ public abstract class PyramidLayerFactory {
 	protected void writeTile(String filePath, byte[] bbArray, int width, int height, LayerType layerType)
 		throws FileNotFoundException, IOException {
 
+		filePath += tileCodec.getExtension();
+		File file = new File(filePath);
+		file.getParentFile().mkdirs();
 		if (bbArray.length != 0) {
-			BufferedImage bImage = null;
-			switch (layerType) {
-			case none:
-			case footprint:
-			case viewshed:
-			case derivative:
-				break;
-			case elevation:
-			case field:
-				// core PNG does not support 32 bit or floating point
-				// write it as a 4 byte color
-				bImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-				byte[] fData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-				System.arraycopy(bbArray, 0, fData, 0, bbArray.length);
-				break;
-			case colorimage:
-				bImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-				byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-				System.arraycopy(bbArray, 0, iData, 0, bbArray.length);
-				break;
-			case grayimage:
-				bImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-				byte[] bData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-				System.arraycopy(bbArray, 0, bData, 0, bbArray.length);
-				break;
-			}
-			filePath += ".png";
-			File file = new File(filePath);
-			file.getParentFile().mkdirs();
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			ImageIO.write(bImage, "PNG", oStream);
-			oStream.flush();
+			// encode to memory first so encoding and writing are timed separately
+			long t = startStage();
+			ByteArrayOutputStream bStream = new ByteArrayOutputStream(bbArray.length / 2);
+			tileCodec.encode(bbArray, width, height, layerType, bStream);
+			endStage(Stage.encode, t);
+			t = startStage();
+			FileOutputStream oStream = new FileOutputStream(file);
+			bStream.writeTo(oStream);
 			oStream.close();
+			endStage(Stage.write, t);
 		}
 		// Empty tile
 		else {
-			filePath += ".png";
-			File file = new File(filePath);
-			file.getParentFile().mkdirs();
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			oStream.flush();
+			FileOutputStream oStream = new FileOutputStream(file);
 			oStream.close();
 		}
 	}
@@ -0,0 +1,151 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import java.io.PrintStream;
+
+/**
+ * Accumulates the time spent in each stage of a pyramid build and reports
+ * progress as single line records of key=value pairs. Each record starts with
+ * the record type (progress, timing, done, or failed) so a batch controller
+ * can parse the output without screen scraping.
+ *
+ */
+public class PyramidProgress {
+
+	/**
+	 * The stages of a pyramid build.
+	 */
+	public static enum Stage {
+		load, pad, reduce, encode, write
+	}
+
+	// Name of the layer being built
+	private String layerName;
+
+	// Destination for records
+	private PrintStream out;
+
+	// Accumulated time in nanoseconds for each stage
+	private long[] stageTime;
+
+	// Start time of the build
+	private long startTime;
+
+	/**
+	 * Constructor
+	 *
+	 * @param layerName
+	 *            the layer name
+	 * @param out
+	 *            the destination for progress records
+	 */
+	public PyramidProgress(String layerName, PrintStream out) {
+		this.layerName = layerName;
+		this.out = out;
+		stageTime = new long[Stage.values().length];
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Get the layer name.
+	 *
+	 * @return
+	 */
+	public String getLayerName() {
+		return (layerName);
+	}
+
+	/**
+	 * Add time to a stage.
+	 *
+	 * @param stage
+	 * @param nanos
+	 */
+	public synchronized void addTime(Stage stage, long nanos) {
+		stageTime[stage.ordinal()] += nanos;
+	}
+
+	/**
+	 * Get the accumulated time for a stage in seconds.
+	 *
+	 * @param stage
+	 * @return
+	 */
+	public synchronized double getTime(Stage stage) {
+		return (stageTime[stage.ordinal()] / 1000000000.0);
+	}
+
+	/**
+	 * Report a stage that applies to the whole layer (load or pad).
+	 *
+	 * @param stage
+	 */
+	public void stage(Stage stage) {
+		print("progress layer=" + layerName + " stage=" + stage + " elapsed=" + elapsed());
+	}
+
+	/**
+	 * Report the completion of a row of tiles.
+	 *
+	 * @param level
+	 *            the pyramid level (0 is lowest resolution)
+	 * @param numLevels
+	 *            the total number of levels
+	 * @param row
+	 *            the row just completed
+	 * @param numRows
+	 *            the number of rows in this level
+	 * @param resumed
+	 *            the row was skipped because a checkpoint indicated it was
+	 *            already written
+	 */
+	public void row(int level, int numLevels, int row, int numRows, boolean resumed) {
+		print("progress layer=" + layerName + " level=" + level + " levels=" + numLevels + " row=" + (row + 1)
+			+ " rows=" + numRows + (resumed ? " resumed=true" : "") + " elapsed=" + elapsed());
+	}
+
+	/**
+	 * Report the time spent in each stage and the total time.
+	 */
+	public void timing() {
+		StringBuilder sb = new StringBuilder("timing layer=" + layerName);
+		for (Stage stage : Stage.values()) {
+			sb.append(" " + stage + "=" + (float) getTime(stage));
+		}
+		sb.append(" total=" + elapsed());
+		print(sb.toString());
+	}
+
+	/**
+	 * Report that the build completed.
+	 */
+	public void done() {
+		timing();
+		print("done layer=" + layerName + " elapsed=" + elapsed());
+	}
+
+	/**
+	 * Report that the build failed.
+	 *
+	 * @param e
+	 */
+	public void failed(Throwable e) {
+		timing();
+		String msg = e.getMessage();
+		if (msg == null) {
+			msg = e.getClass().getSimpleName();
+		}
+		print("failed layer=" + layerName + " error=\"" + msg.replace('"', '\'') + "\" elapsed=" + elapsed());
+	}
+
+	private float elapsed() {
+		return ((float) ((System.nanoTime() - startTime) / 1000000000.0));
+	}
+
+	private void print(String str) {
+		synchronized (out) {
+			out.println(str);
+			out.flush();
+		}
+	}
+
+}
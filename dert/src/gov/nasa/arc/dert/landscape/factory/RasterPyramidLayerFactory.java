@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.landscape.factory;
 
 import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.factory.PyramidProgress.Stage;
 import gov.nasa.arc.dert.raster.Raster;
 import gov.nasa.arc.dert.raster.RasterFile;
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
@@ -23,6 +24,10 @@ import javax.swing.JTextField;
  * multi-resolution tiled pyramid. Pixels for new levels are subsampled through
  * averaging. The raster is padded first to extend its size to a power of 2 on
  * each side.
+ * 
+ * If checkpointing is enabled, the position of the next row of tiles is saved
+ * after each row is written. A subsequent build of the same layer reloads and
+ * pads the source raster and then skips the rows that were already written.
  *
  */
 public class RasterPyramidLayerFactory extends PyramidLayerFactory {
@@ -53,6 +58,12 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 	// Location of temporary files
 	protected String tmpPath;
 
+	// Save a checkpoint after each row of tiles and resume from an existing one
+	protected boolean useCheckpoint;
+
+	// Lock for updating the landscape identifier when building layers concurrently
+	private static final Object landscapeLock = new Object();
+
 	/**
 	 * Constructor
 	 * 
@@ -65,6 +76,15 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		this.tmpPath = tmpPath;
 	}
 
+	/**
+	 * Enable saving and resuming from a checkpoint.
+	 * 
+	 * @param useCheckpoint
+	 */
+	public void setCheckpoint(boolean useCheckpoint) {
+		this.useCheckpoint = useCheckpoint;
+	}
+
 	/**
 	 * Build a multi-resolution tiled pyramid to be used in a landscape.
 	 * 
@@ -94,7 +114,7 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 
 		boolean opened = rasterFile.open("r");
 		if (!opened) {
-			System.exit(0);
+			throw new IOException("Unable to open " + rasterFile.getFilePath() + ".");
 		}
 		rasterWidth = rasterFile.getRasterWidth();
 		rasterLength = rasterFile.getRasterLength();
@@ -163,6 +183,16 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			dirFile.mkdirs();
 			String dirPath = dirFile.getAbsolutePath();
 
+			// Pick up where a previous build left off
+			PyramidCheckpoint checkpoint = null;
+			if (useCheckpoint) {
+				checkpoint = new PyramidCheckpoint(dirPath, sourceFilePath, layerType.toString(), tileSize,
+					tileCodec.getName());
+				if (checkpoint.load()) {
+					System.out.println("Resuming " + layerName + " from checkpoint.");
+				}
+			}
+
 			// Write tiles for each level starting at highest resolution
 			int columnStep = tileWidth;
 			int rowStep = tileLength;
@@ -171,17 +201,29 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 					break;
 				}
 				int kernelSize = (int) Math.pow(2, (maxLevel - level));
+				if ((checkpoint != null) && checkpoint.isComplete(level)) {
+					numTiles /= 2;
+					columnStep *= 2;
+					rowStep *= 2;
+					continue;
+				}
 				int rcnt = 0;
-				if (messageText == null)
+				if ((messageText == null) && (progress == null))
 					System.out.println("Writing "+numTiles+" rows for level "+(level+1)+" of "+(maxLevel+1));
 				for (int r = 0; r < numTiles; ++r) {
-					if (messageText == null) {
+					if ((messageText == null) && (progress == null)) {
 						if (rcnt%10 == 0)
 							System.out.print(rcnt);
 						else 
 							System.out.print(".");
 						rcnt ++;
 					}
+					if ((checkpoint != null) && checkpoint.isComplete(level, r)) {
+						if (progress != null) {
+							progress.row(level, maxLevel + 1, r, numTiles, true);
+						}
+						continue;
+					}
 					for (int c = 0; c < numTiles; ++c) {
 						if (!doIt) {
 							break;
@@ -194,8 +236,21 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 						String filePath = getTileFilePath(c, r, numTiles, level, dirPath);
 						writeTile(raster, c * columnStep, r * rowStep, kernelSize, filePath, layerType);
 					}
+					if (!doIt) {
+						break;
+					}
+					if (checkpoint != null) {
+						if (r == numTiles - 1) {
+							checkpoint.save(level - 1, 0);
+						} else {
+							checkpoint.save(level, r + 1);
+						}
+					}
+					if (progress != null) {
+						progress.row(level, maxLevel + 1, r, numTiles, false);
+					}
 				}
-				if (messageText == null)
+				if ((messageText == null) && (progress == null))
 					System.out.println();
 				numTiles /= 2;
 				columnStep *= 2;
@@ -218,6 +273,9 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			if (doIt) {
 				writeProperties(new File(dirPath, "layer.properties").getAbsolutePath(), maxLevel + 1, tileWidth,
 					tileLength, numberOfTiles);
+				if (checkpoint != null) {
+					checkpoint.delete();
+				}
 			}
 			System.out.println("Number of levels for " + layerName + " = " + (maxLevel + 1) + " with " + numberOfTiles
 				+ " tiles per side at the highest resolution level.");
@@ -229,13 +287,15 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			}
 
 			// add landscape identifier
-			Properties landscapeProperties = new Properties();
-			File propFile = new File(path, ".landscape");
-			if (propFile.exists()) {
-				landscapeProperties.load(new FileInputStream(propFile));
+			synchronized (landscapeLock) {
+				Properties landscapeProperties = new Properties();
+				File propFile = new File(path, ".landscape");
+				if (propFile.exists()) {
+					landscapeProperties.load(new FileInputStream(propFile));
+				}
+				landscapeProperties.setProperty("LastWrite", System.getProperty("user.name"));
+				landscapeProperties.store(new FileOutputStream(propFile), null);
 			}
-			landscapeProperties.setProperty("LastWrite", System.getProperty("user.name"));
-			landscapeProperties.store(new FileOutputStream(propFile), null);
 
 			// report
 			System.out.println("Total number of tiles for " + layerName + " = " + nt + " using "
@@ -244,6 +304,10 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 				+ (float) ((System.currentTimeMillis() - t) / 60000.0) + " minutes.");
 		} catch (Exception e) {
 			e.printStackTrace();
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			throw new IOException("Unable to build pyramid for " + layerName + ".", e);
 		}
 	}
 
@@ -327,9 +391,19 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		dataType = rasterFile.getDataType();
 		if (tmpPath == null)
 			tmpPath = path;
+		if (progress != null) {
+			progress.stage(Stage.load);
+		}
+		long st = startStage();
 		Raster raster = loadRasterFile(tmpPath);
 		minimumSampleValue = rasterFile.getMinimumSampleValue();
 		maximumSampleValue = rasterFile.getMaximumSampleValue();
+		endStage(Stage.load, st);
+
+		if (progress != null) {
+			progress.stage(Stage.pad);
+		}
+		st = startStage();
 
 		Raster padded = new Raster(paddedWidth, paddedLength, bytesPerPixel, dataType, tmpPath);
 		byte[] bbArray = new byte[rasterWidth * bytesPerPixel];
@@ -343,14 +417,20 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 			break;
 		case elevation:
 		case field:
-			raster.setMissingValuesToNaN(missingValue, minimumSampleValue, maximumSampleValue);
+			// replace missing values and gather statistics in one pass
+			statistics = raster.computeStatistics(missingValue, minimumSampleValue, maximumSampleValue);
 			padded.set(Float.NaN);
 			break;
 		case colorimage:
 		case grayimage:
+			statistics = raster.computeStatistics(missingValue, null, null);
 			padded.set(0);
 			break;
 		}
+		if (statistics != null) {
+			System.out.println("Statistics for " + sourceFilePath + ":");
+			System.out.print(statistics);
+		}
 		raster.flush();
 		padded.flush();
 
@@ -371,6 +451,7 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		}
 
 		raster.dispose();
+		endStage(Stage.pad, st);
 		return (padded);
 	}
 
@@ -383,7 +464,26 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 	 * @throws IOException
 	 */
 	protected Raster loadRasterFile(String path) throws IOException {
-		Raster raster = new Raster(rasterWidth, rasterLength, bytesPerPixel, dataType, path);
+		// the raster holds the converted data, not the file data type
+		DataType rasterType = dataType;
+		switch (layerType) {
+		case none:
+		case footprint:
+		case viewshed:
+		case derivative:
+			break;
+		case elevation:
+		case field:
+			rasterType = DataType.Float;
+			break;
+		case colorimage:
+			rasterType = DataType.Integer;
+			break;
+		case grayimage:
+			rasterType = DataType.UnsignedByte;
+			break;
+		}
+		Raster raster = new Raster(rasterWidth, rasterLength, bytesPerPixel, rasterType, path);
 		switch (layerType) {
 		case none:
 		case footprint:
@@ -447,6 +547,7 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		ByteBuffer bbuf = ByteBuffer.wrap(bbArray);
 
 		// fill the tile
+		long t = startStage();
 		switch (layerType) {
 		case none:
 		case footprint:
@@ -470,6 +571,7 @@ public class RasterPyramidLayerFactory extends PyramidLayerFactory {
 		if (isEmpty(bbuf)) {
 			bbuf.limit(0);
 		}
+		endStage(Stage.reduce, t);
 
 		writeTile(filePath, bbArray, tWidth, tLength, layerType);
 	}
@@ -0,0 +1,383 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.ephemeris.Ephemeris;
+import gov.nasa.arc.dert.ephemeris.EphemerisTable;
+import gov.nasa.arc.dert.io.TileCodec;
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.raster.RasterStatistics;
+import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import javax.swing.JTextField;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Creates a field layer with the illumination of the landscape over a time
+ * range. The Sun is sampled at regular times through an EphemerisTable, so
+ * SPICE is called once per table interval rather than once per sample. Each
+ * elevation sample is lit at a time when the Sun is above its horizon (from
+ * the landscape horizon layer, if there is one) and in front of the surface
+ * (from the slope and aspect of the elevation).
+ *
+ * The layer holds either the percentage of the time range that each sample is
+ * lit or the total insolation on the surface in watt hours per square meter.
+ * Lower levels are computed from the lower resolution elevation and horizon
+ * tiles.
+ *
+ */
+public class SolarPyramidLayerFactory extends AnalysisPyramidLayerFactory {
+
+	public static enum SolarMode {
+		lit, insolation
+	}
+
+	// Time between ephemeris table grid points (milliseconds)
+	public static long TABLE_INTERVAL = 3600000;
+
+	// Default time between Sun samples (milliseconds)
+	public static long DEFAULT_SAMPLE_INTERVAL = 600000;
+
+	// Solar irradiance at 1 AU (watts per square meter)
+	public static double SOLAR_CONSTANT = 1361;
+
+	// Kilometers in 1 AU
+	public static final double AU = 149597870.7;
+
+	// Time range and sample interval (milliseconds)
+	protected long startTime, endTime, sampleInterval;
+
+	// Layer contents
+	protected SolarMode mode;
+
+	// Sun positions (null until the layer is built)
+	protected EphemerisTable table;
+
+	// Sun samples above the horizontal plane
+	protected float[] sunX, sunY, sunZ, weight;
+	protected int[] sunSector;
+	protected double[] sunElevation;
+	protected int numSamples;
+
+	// Horizon layer name, sectors, and angle units
+	protected String horizonName;
+	protected int sectors;
+	protected double angleScale;
+
+	// Meters per pixel at the highest level
+	protected double pixelSize;
+
+	/**
+	 * Constructor
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @param startTime
+	 *            start of the time range (Unix milliseconds)
+	 * @param endTime
+	 *            end of the time range (Unix milliseconds)
+	 * @param sampleInterval
+	 *            time between Sun samples (milliseconds)
+	 * @param mode
+	 *            the layer contents
+	 */
+	public SolarPyramidLayerFactory(String landPath, long startTime, long endTime, long sampleInterval, SolarMode mode) {
+		super(landPath);
+		if ((sampleInterval <= 0) || (endTime < startTime)) {
+			throw new IllegalArgumentException("Invalid time range for solar layer.");
+		}
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.sampleInterval = sampleInterval;
+		this.mode = mode;
+		layerType = LayerType.field;
+		tileCodec = TileCodec.getCodec(TileCodec.DEFLATE);
+	}
+
+	/**
+	 * Use a table of Sun positions that has already been computed.
+	 *
+	 * @param table
+	 *            the table must cover the time range
+	 */
+	public void setEphemerisTable(EphemerisTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Build the pyramid layer.
+	 *
+	 * @param landPath
+	 *            path to the destination landscape
+	 * @param layerName
+	 *            name of this layer
+	 * @param messageText
+	 *            UI text field for messages to the user
+	 * @throws IOException
+	 */
+	public void buildPyramid(String landPath, String layerName, JTextField messageText) throws IOException {
+		long t = System.currentTimeMillis();
+
+		openPyramid(landPath);
+		pixelSize = pyramid.getPixelSize();
+		if (table == null) {
+			if (Ephemeris.getInstance() == null) {
+				throw new IllegalStateException("Ephemeris is not available.");
+			}
+			// Sun positions at the landscape center
+			Vector3 lonLat = new SpatialReferenceSystem(projInfo).getCenterLonLat();
+			double alt = pyramid.createSampler().getElevation(0, tileWidth / 2.0, tileLength / 2.0);
+			if (Double.isNaN(alt)) {
+				alt = 0;
+			}
+			table = new EphemerisTable(projInfo.globe, "Sun", lonLat.getX(), lonLat.getY(), alt, startTime, endTime,
+				TABLE_INTERVAL);
+		}
+
+		// Horizon occlusion
+		horizonName = pyramid.findLayer(LayerType.horizon);
+		if (horizonName == null) {
+			System.out.println("No horizon layer found, " + layerName + " will not include shadows cast by terrain.");
+		} else {
+			Properties properties = pyramid.getSource().getProperties(horizonName);
+			sectors = StringUtil.getIntegerValue(properties, "HorizonSectors", true, 0, true);
+			angleScale = StringUtil.getDoubleValue(properties, "HorizonAngleScale", true, 2, false);
+		}
+
+		sampleSun();
+
+		// histogram range covers the largest possible value
+		double maxValue = 0;
+		for (int i = 0; i < numSamples; ++i) {
+			maxValue += weight[i];
+		}
+		statistics = new RasterStatistics(1, new double[] { 0 }, new double[] { Math.max(maxValue, 1) },
+			RasterStatistics.NUMBER_OF_BINS);
+
+		buildLevels(landPath, layerName, messageText);
+		System.out.println("Number of levels for " + layerName + " = " + pyramid.getNumberOfLevels() + " with "
+			+ numSamples + " Sun samples.");
+		System.out.println("Total time for building " + layerName + " = "
+			+ (float) ((System.currentTimeMillis() - t) / 60000.0) + " minutes.");
+	}
+
+	/**
+	 * Sample the Sun over the time range and keep the samples when it is above
+	 * the horizontal plane.
+	 */
+	protected void sampleSun() {
+		int n = (int) ((endTime - startTime) / sampleInterval) + 1;
+		sunX = new float[n];
+		sunY = new float[n];
+		sunZ = new float[n];
+		weight = new float[n];
+		sunSector = new int[n];
+		sunElevation = new double[n];
+		numSamples = 0;
+		double hours = sampleInterval / 3600000.0;
+		Vector3 dir = new Vector3();
+		for (int i = 0; i < n; ++i) {
+			long time = Math.min(startTime + i * sampleInterval, table.getEndTime());
+			double dist = table.getVector(time, dir);
+			if (dir.getZ() <= 0) {
+				continue;
+			}
+			sunX[numSamples] = dir.getXf();
+			sunY[numSamples] = dir.getYf();
+			sunZ[numSamples] = dir.getZf();
+			if (mode == SolarMode.lit) {
+				weight[numSamples] = (float) (100.0 / n);
+			} else {
+				double au = dist / AU;
+				weight[numSamples] = (float) (SOLAR_CONSTANT / (au * au) * hours);
+			}
+			double azimuth = Math.atan2(dir.getX(), dir.getY());
+			if (sectors > 0) {
+				int s = (int) Math.floor(azimuth * sectors / (2 * Math.PI) + 0.5);
+				s %= sectors;
+				if (s < 0) {
+					s += sectors;
+				}
+				sunSector[numSamples] = s;
+			}
+			sunElevation[numSamples] = Math.toDegrees(Math.asin(dir.getZ())) * angleScale;
+			numSamples++;
+		}
+	}
+
+	@Override
+	protected void addProperties(Properties properties) {
+		SimpleDateFormat dateFormat = getDateFormat();
+		properties.setProperty("SolarMode", mode.toString());
+		properties.setProperty("SolarStartTime", dateFormat.format(startTime));
+		properties.setProperty("SolarEndTime", dateFormat.format(endTime));
+		properties.setProperty("SolarSampleInterval", Long.toString(sampleInterval / 1000));
+		if (horizonName != null) {
+			properties.setProperty("SolarHorizonLayer", horizonName);
+		}
+	}
+
+	/**
+	 * Compute the illumination for the samples of a tile.
+	 *
+	 * @param level
+	 * @param maxLevel
+	 * @param column
+	 * @param row
+	 * @param sampler
+	 * @return the illumination as big endian floats or an empty array if the
+	 *         elevation tile is empty
+	 */
+	@Override
+	protected byte[] computeTile(int level, int maxLevel, int column, int row, ElevationPyramid.Sampler sampler) {
+		float[] elev = pyramid.getTile(level, column, row);
+		if (elev == null) {
+			return (new byte[0]);
+		}
+		ByteBuffer horizon = null;
+		if (horizonName != null) {
+			QuadTreeTile tile = pyramid.getSource().getTile(horizonName, ElevationPyramid.getKey(level, column, row),
+				DataType.Byte);
+			if (tile != null) {
+				horizon = tile.raster;
+			}
+		}
+		RasterStatistics stats = null;
+		if (level == maxLevel) {
+			stats = statistics.createEmpty();
+		}
+		ByteBuffer bbuf = ByteBuffer.allocate(tileWidth1 * tileLength1 * 4);
+		FloatBuffer fbuf = bbuf.asFloatBuffer();
+		// meters per pixel at this level
+		double pix = pixelSize * (1 << (maxLevel - level));
+		int k = 0;
+		for (int r = 0; r < tileLength1; ++r) {
+			double y = row * tileLength + r;
+			for (int c = 0; c < tileWidth1; ++c, ++k) {
+				double x = column * tileWidth + c;
+				double z = elev[k];
+				if (Double.isNaN(z)) {
+					fbuf.put(Float.NaN);
+					if (stats != null) {
+						stats.addMissing(0);
+					}
+					continue;
+				}
+				// surface normal in east, north, up
+				double nx = -slope(sampler, level, x - 1, y, x + 1, y, z) / pix;
+				double ny = -slope(sampler, level, x, y + 1, x, y - 1, z) / pix;
+				double len = Math.sqrt(nx * nx + ny * ny + 1);
+				nx /= len;
+				ny /= len;
+				double nz = 1 / len;
+				double value = 0;
+				int h = k * sectors;
+				for (int i = 0; i < numSamples; ++i) {
+					if ((horizon != null) && (sunElevation[i] <= (horizon.get(h + sunSector[i]) & 0xff))) {
+						continue;
+					}
+					double cosI = nx * sunX[i] + ny * sunY[i] + nz * sunZ[i];
+					if (cosI <= 0) {
+						continue;
+					}
+					value += (mode == SolarMode.lit) ? weight[i] : weight[i] * cosI;
+				}
+				fbuf.put((float) value);
+				if (stats != null) {
+					stats.add(0, value);
+				}
+			}
+		}
+		if (stats != null) {
+			synchronized (statistics) {
+				statistics.merge(stats);
+			}
+		}
+		return (bbuf.array());
+	}
+
+	/**
+	 * Get the elevation change per pixel between two locations, using the
+	 * center elevation where there is no data.
+	 */
+	private double slope(ElevationPyramid.Sampler sampler, int level, double x0, double y0, double x1, double y1,
+		double z) {
+		double z0 = sampler.getElevation(level, x0, y0);
+		double z1 = sampler.getElevation(level, x1, y1);
+		if (Double.isNaN(z0)) {
+			return (Double.isNaN(z1) ? 0 : z1 - z);
+		}
+		if (Double.isNaN(z1)) {
+			return (z - z0);
+		}
+		return ((z1 - z0) / 2);
+	}
+
+	@Override
+	protected void writeProperties(String path, int numLevels, int tileWidth, int tileLength, int numTiles)
+		throws IOException {
+		double[] min = statistics.getMinimum();
+		double[] max = statistics.getMaximum();
+		if (min[0] > max[0]) {
+			min[0] = 0;
+			max[0] = 0;
+		}
+		minimumSampleValue = min;
+		maximumSampleValue = max;
+		super.writeProperties(path, numLevels, tileWidth, tileLength, numTiles);
+	}
+
+	/**
+	 * Get the format for times on the command line and in layer properties.
+	 *
+	 * @return
+	 */
+	public static SimpleDateFormat getDateFormat() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return (dateFormat);
+	}
+
+	/**
+	 * Parse a UTC time.
+	 *
+	 * @param str
+	 *            time in yyyy-MM-ddTHH:mm:ss format
+	 * @return Unix milliseconds
+	 */
+	public static long parseTime(String str) {
+		try {
+			return (getDateFormat().parse(str).getTime());
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("Invalid time " + str + ", expected yyyy-MM-ddTHH:mm:ss.");
+		}
+	}
+
+	/**
+	 * Get the solar argument from the command line.
+	 *
+	 * @param args
+	 * @return the layer contents or null if there is no solar argument
+	 */
+	public static SolarMode getMode(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("-solar")) {
+				return (SolarMode.lit);
+			} else if (args[i].startsWith("-solar=")) {
+				return (SolarMode.valueOf(args[i].substring(7).toLowerCase()));
+			}
+		}
+		return (null);
+	}
+
+}
@@ -3,31 +3,29 @@ package gov.nasa.arc.dert.landscape.factory;
 import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
 import gov.nasa.arc.dert.raster.ProjectionInfo;
 import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
-import gov.nasa.arc.dert.render.JoglRendererDouble;
 import gov.nasa.arc.dert.scene.featureset.FeatureSet;
 import gov.nasa.arc.dert.scenegraph.GroupNode;
 import gov.nasa.arc.dert.state.FeatureSetState;
+import gov.nasa.arc.dert.util.ParallelUtil;
 import gov.nasa.arc.dert.util.StringUtil;
 
 import java.awt.Color;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.JTextField;
 
-import com.ardor3d.framework.DisplaySettings;
-import com.ardor3d.math.ColorRGBA;
-import com.ardor3d.math.Vector3;
-import com.ardor3d.renderer.Camera;
-import com.ardor3d.renderer.Renderer;
-
 /**
  * Convert a vector layer file in GeoJSON format to a multi-resolution tiled
- * pyramid. Vectors are drawn into an offscreen renderer for each tile at each
- * resolution level.
+ * pyramid. Vectors are drawn into each tile at each resolution level with a
+ * Java2D rasterizer, so no display is needed. Tiles in a level are drawn in
+ * parallel.
  *
  */
 public class VectorPyramidLayerFactory extends PyramidLayerFactory {
@@ -41,11 +39,8 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 	// Dimensions
 	protected int tileWidth, tileLength, tileWidth1, tileLength1, bytesPerPixel;
 
-	// Tile renderer
-	protected OffscreenRenderer offscreenRenderer;
-	
-	// Clipping planes
-	protected double near, far, cameraZ;
+	// Tile rasterizer
+	protected VectorTileRasterizer rasterizer;
 
 	/**
 	 * Constructor
@@ -99,9 +94,6 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 		
 		minimumSampleValue[0] = StringUtil.getDoubleValue(baseProperties, "MinimumValue", false, 0, true);
 		maximumSampleValue[0] = StringUtil.getDoubleValue(baseProperties, "MaximumValue", false, 0, true);
-		near = (maximumSampleValue[0]-minimumSampleValue[0])*0.0001;
-		far = 2*(maximumSampleValue[0]-minimumSampleValue[0]);
-		cameraZ = maximumSampleValue[0]+2*near;
 
 		double xScale = projInfo.scale[0];
 		double yScale = projInfo.scale[1];
@@ -117,13 +109,11 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 
 		srs = new SpatialReferenceSystem(projInfo);
 
-		offscreenRenderer = new OffscreenRenderer(new DisplaySettings(tileWidth1, tileLength1, bytesPerPixel * 8, 0,
-			false), new JoglRendererDouble(), ColorRGBA.BLACK_NO_ALPHA);
-
 		// Load the vector file into an Ardor3D object.
 		FeatureSetState state = new FeatureSetState(layerName, sourceFilePath, color, true, false, null);
 		root = new FeatureSet(state, elevAttrName, srs);
 		root.updateGeometricState(0);
+		rasterizer = new VectorTileRasterizer(root, tileWidth1, tileLength1);
 
 		// Create a sub-directory for the layer
 		String dirPath = new File(landPath, layerName).getAbsolutePath();
@@ -131,44 +121,44 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 		// Write tiles for each level starting at highest resolution
 		int numTiles = numberOfTiles;
 		doIt = true;
-		for (int level = maxLevel; level >= 0; level--) {
-			if (!doIt) {
-				break;
-			}
-			double columnStep = tileWidth * xScale;
-			double rowStep = tileLength * yScale;
-			int rcnt = 0;
-			if (messageText == null)
-				System.out.println("Writing "+numTiles+" rows for level "+(level+1)+" of "+(maxLevel+1));
-			for (int r = 0; r < numTiles; ++r) {
-				if (messageText == null) {
-					if (rcnt%10 == 0)
-						System.out.print(rcnt);
-					else 
-						System.out.print(".");
-					rcnt ++;
+		ArrayList<Future<Object>> rowList = new ArrayList<Future<Object>>();
+		try {
+			for (int level = maxLevel; level >= 0; level--) {
+				if (!doIt) {
+					break;
 				}
-				for (int c = 0; c < numTiles; ++c) {
-					if (!doIt) {
-						break;
-					}
-					if (messageText != null) {
+				rasterizer.setLevel(leftEdge, topEdge, numTiles, tileWidth, tileLength, xScale, yScale);
+				if (messageText == null)
+					System.out.println("Writing "+numTiles+" rows for level "+(level+1)+" of "+(maxLevel+1));
+				rowList.clear();
+				for (int r = 0; r < numTiles; ++r) {
+					rowList.add(ParallelUtil.getExecutor().submit(new RowWriter(r, numTiles, level, dirPath)));
+				}
+				// wait for the rows in order to report progress
+				for (int r = 0; r < numTiles; ++r) {
+					waitFor(rowList.get(r));
+					if (messageText == null) {
+						if (r%10 == 0)
+							System.out.print(r);
+						else 
+							System.out.print(".");
+					} else {
 						messageText.setText("Writing " + layerName + " level " + (level + 1) + " of " + (maxLevel + 1)
 							+ ", tile row " + (r + 1) + " of " + numTiles + " . . .");
-						Thread.yield();
 					}
-					String tilePath = getTileFilePath(c, r, numTiles, level, dirPath);
-					double x = leftEdge + columnStep * c + columnStep / 2;
-					double y = topEdge - rowStep * r - rowStep / 2;
-					ByteBuffer raster = createRaster(x, y, xScale, yScale);
-					writeTile(raster, offscreenRenderer.getWidth(), offscreenRenderer.getHeight(), tilePath);
+					if (progress != null) {
+						progress.row(level, maxLevel + 1, r, numTiles, false);
+					}
 				}
+				if (messageText == null)
+					System.out.println();
+				numTiles /= 2;
+				xScale *= 2;
+				yScale *= 2;
 			}
-			if (messageText == null)
-				System.out.println();
-			numTiles /= 2;
-			xScale *= 2;
-			yScale *= 2;
+		} finally {
+			// rows left after an error or cancel
+			ParallelUtil.cancel(rowList);
 		}
 
 		projInfo.rasterWidth = tileWidth * numberOfTiles;
@@ -187,8 +177,6 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 			n *= 4;
 		}
 
-		offscreenRenderer.cleanup();
-
 		// report
 		System.out.println("Total number of tiles for " + layerName + " = " + nt + " using "
 			+ (((double)nt*tileWidth1*tileLength1*bytesPerPixel) / 1073741824.0) + " GB.");
@@ -197,64 +185,50 @@ public class VectorPyramidLayerFactory extends PyramidLayerFactory {
 	}
 
 	/**
-	 * Write out a tile.
+	 * Wait for a row of tiles to be written.
 	 * 
-	 * @param raster
-	 *            the raster array from which the tile comes
-	 * @param tilePath
-	 *            the file path for the tile
+	 * @param future
 	 * @throws IOException
 	 */
-	protected void writeTile(ByteBuffer raster, int width, int height, String tilePath) throws IOException {
-
-		// zero the file if it is only missing values
-		// if (isEmpty(raster))
-		// raster.limit(0);
-
-		// allocate buffer for writing the file
-		byte[] bbArray = new byte[raster.limit()];
-		raster.get(bbArray);
-
-		writeTile(tilePath, bbArray, width, height, layerType);
+	protected void waitFor(Future<Object> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted writing tiles.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
 	}
 
 	/**
-	 * Create the tile by rendering to an offscreen buffer.
-	 * 
-	 * @param x
-	 *            camera X location
-	 * @param y
-	 *            camera Y location
-	 * @param camWidth
-	 *            fov width
-	 * @param camHeight
-	 *            fov height
-	 * @return
+	 * Draws and writes the tiles of a row.
 	 */
-	protected ByteBuffer createRaster(double x, double y, double xScale, double yScale) {
+	protected class RowWriter implements Callable<Object> {
 
-		try {
-			// setup the offscreen renderer camera
-			Camera tCam = offscreenRenderer.getCamera();
-//			tCam.setProjectionMode(ProjectionMode.Parallel);
-			Vector3 camLocation = new Vector3(x, y, cameraZ);
-			tCam.setFrame(camLocation, Vector3.NEG_UNIT_X, Vector3.UNIT_Y, Vector3.NEG_UNIT_Z);
-			double right = (tileWidth * xScale) / 2 + xScale;
-			double top = (tileLength * yScale) / 2 + yScale;
-			tCam.setFrustum(near, far, -right, right, top, -top);
-			tCam.update();
-
-			// // set the background to transparent
-			// offscreenRenderer.setBackgroundColor(ColorRGBA.BLACK_NO_ALPHA);
+		private int row, numTiles, level;
+		private String dirPath;
 
-			// render the tile
-			offscreenRenderer.render(root, Renderer.BUFFER_COLOR_AND_DEPTH);
+		public RowWriter(int row, int numTiles, int level, String dirPath) {
+			this.row = row;
+			this.numTiles = numTiles;
+			this.level = level;
+			this.dirPath = dirPath;
+		}
 
-			// return the image
-			return (offscreenRenderer.getRGBABuffer());
-		} catch (Exception e) {
-			System.out.println("Unable to render tile.");
-			e.printStackTrace();
+		@Override
+		public Object call() throws IOException {
+			for (int c = 0; c < numTiles; ++c) {
+				if (!doIt) {
+					break;
+				}
+				String tilePath = getTileFilePath(c, row, numTiles, level, dirPath);
+				byte[] bbArray = rasterizer.rasterize(c, row);
+				writeTile(tilePath, bbArray, tileWidth1, tileLength1, layerType);
+			}
 			return (null);
 		}
 	}
@@ -0,0 +1,401 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.scene.featureset.LineBatch;
+import gov.nasa.arc.dert.scenegraph.LineStrip;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
+import gov.nasa.arc.dert.scenegraph.text.VectorText;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.scenegraph.IndexBufferData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.hint.CullHint;
+
+/**
+ * Draws the lines, points, and contour labels of a vector scene graph into
+ * image tiles with Java2D. This replaces rendering the scene graph with
+ * OpenGL so vector layers can be built without a display.
+ *
+ * The scene graph is converted to a list of items. Line strips are split into
+ * short pieces so each piece can be assigned to the few tiles it overlaps.
+ * For each pyramid level the items are bucketed by tile and a tile only draws
+ * the items in its bucket. Tiles may be drawn concurrently.
+ *
+ * Tiles have the same extent as the tiles rendered with the offscreen camera
+ * and have the pixel layout written by the layer factories (4 byte ABGR, top
+ * row first).
+ *
+ */
+public class VectorTileRasterizer {
+
+	// Maximum number of vertices in a piece of a line strip
+	public static int MAX_PIECE_VERTICES = 64;
+
+	/**
+	 * Something to draw.
+	 */
+	protected static class Item {
+
+		// Color
+		protected Color color;
+
+		// Line vertices (x,y pairs), or location of a point or label
+		protected float[] xy;
+
+		// Line width in pixels, or size of a point in world units
+		protected float size;
+
+		// Label text, label angle in radians and scale factor
+		protected String text;
+		protected double angle, scale;
+
+		// Extent in world coordinates
+		protected double minX, minY, maxX, maxY;
+
+		protected void setExtent(double x, double y, double radius) {
+			minX = x - radius;
+			maxX = x + radius;
+			minY = y - radius;
+			maxY = y + radius;
+		}
+	}
+
+	// Items in scene graph order
+	protected ArrayList<Item> itemList;
+
+	// Widest line in pixels
+	protected float maxLineWidth;
+
+	// Tile dimensions in pixels
+	protected int width, height;
+
+	// Current level
+	protected double leftEdge, topEdge, columnStep, rowStep, halfWidth, halfHeight, pixelWidth, pixelHeight;
+	protected int numTiles;
+
+	// Item indices for each tile of the current level, row major
+	protected int[][] tileItem;
+	protected int[] tileItemCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param root
+	 *            root of the vector scene graph
+	 * @param width
+	 *            tile width in pixels
+	 * @param height
+	 *            tile height in pixels
+	 */
+	public VectorTileRasterizer(Node root, int width, int height) {
+		this.width = width;
+		this.height = height;
+		itemList = new ArrayList<Item>();
+		addItems(root);
+	}
+
+	/**
+	 * Get the number of items to draw.
+	 *
+	 * @return
+	 */
+	public int getItemCount() {
+		return (itemList.size());
+	}
+
+	protected void addItems(Spatial spatial) {
+		if (spatial instanceof LineBatch) {
+			addLineBatch((LineBatch) spatial);
+		} else if (spatial instanceof LineStrip) {
+			addLineStrip((LineStrip) spatial);
+		} else if (spatial instanceof MarkerBatch) {
+			addMarkerBatch((MarkerBatch) spatial);
+		} else if (spatial instanceof VectorText) {
+			addLabel((VectorText) spatial);
+		} else if (spatial instanceof Node) {
+			Node node = (Node) spatial;
+			if (node.getSceneHints().getCullHint() == CullHint.Always) {
+				return;
+			}
+			for (int i = 0; i < node.getNumberOfChildren(); ++i) {
+				addItems(node.getChild(i));
+			}
+		}
+	}
+
+	protected void addMarkerBatch(MarkerBatch markerBatch) {
+		if (markerBatch.getSceneHints().getCullHint() == CullHint.Always) {
+			return;
+		}
+		Vector3 loc = new Vector3();
+		for (int i = 0; i < markerBatch.getInstanceCount(); ++i) {
+			Spatial owner = markerBatch.getOwner(i);
+			if ((owner != null) && (owner.getSceneHints().getCullHint() == CullHint.Always)) {
+				continue;
+			}
+			markerBatch.getLocation(i, loc);
+			double size = markerBatch.getSize(i);
+			Item item = new Item();
+			item.color = markerBatch.getColor(i);
+			item.xy = new float[] { loc.getXf(), loc.getYf() };
+			item.size = (float) size;
+			item.setExtent(loc.getX(), loc.getY(), size);
+			itemList.add(item);
+		}
+	}
+
+	protected void addLineStrip(LineStrip lineStrip) {
+		FloatBuffer vertex = lineStrip.getMeshData().getVertexBuffer();
+		addPolyline(lineStrip, vertex, 0, vertex.limit() / 3);
+	}
+
+	protected void addLineBatch(LineBatch lineBatch) {
+		if (lineBatch.getSceneHints().getCullHint() == CullHint.Always) {
+			return;
+		}
+		// join consecutive segments that share a vertex into polylines
+		FloatBuffer vertex = lineBatch.getMeshData().getVertexBuffer();
+		IndexBufferData<?> indices = lineBatch.getMeshData().getIndices();
+		int n = indices.limit();
+		int start = -1;
+		int end = -1;
+		for (int i = 0; i < n; i += 2) {
+			int j0 = indices.get(i);
+			int j1 = indices.get(i + 1);
+			if (j0 != end) {
+				if (start >= 0) {
+					addPolyline(lineBatch, vertex, start, end + 1 - start);
+				}
+				start = j0;
+			}
+			end = j1;
+		}
+		if (start >= 0) {
+			addPolyline(lineBatch, vertex, start, end + 1 - start);
+		}
+	}
+
+	protected void addPolyline(LineStrip lineStrip, FloatBuffer vertex, int first, int n) {
+		if (n == 0) {
+			return;
+		}
+		ReadOnlyColorRGBA c = lineStrip.getDefaultColor();
+		Color color = new Color(c.getRed(), c.getGreen(), c.getBlue(), c.getAlpha());
+		float lineWidth = lineStrip.getLineWidth();
+		maxLineWidth = Math.max(maxLineWidth, lineWidth);
+		// consecutive pieces share an end vertex
+		for (int start = 0; start < n; start += MAX_PIECE_VERTICES - 1) {
+			int count = Math.min(MAX_PIECE_VERTICES, n - start);
+			if ((count == 1) && (start > 0)) {
+				break;
+			}
+			Item item = new Item();
+			item.color = color;
+			item.size = lineWidth;
+			item.xy = new float[count * 2];
+			item.minX = Double.MAX_VALUE;
+			item.minY = Double.MAX_VALUE;
+			item.maxX = -Double.MAX_VALUE;
+			item.maxY = -Double.MAX_VALUE;
+			for (int i = 0; i < count; ++i) {
+				float x = vertex.get((first + start + i) * 3);
+				float y = vertex.get((first + start + i) * 3 + 1);
+				item.xy[i * 2] = x;
+				item.xy[i * 2 + 1] = y;
+				item.minX = Math.min(item.minX, x);
+				item.minY = Math.min(item.minY, y);
+				item.maxX = Math.max(item.maxX, x);
+				item.maxY = Math.max(item.maxY, y);
+			}
+			itemList.add(item);
+		}
+	}
+
+	protected void addLabel(VectorText label) {
+		String text = label.getText();
+		if ((text == null) || text.isEmpty() || !label.isVisible()) {
+			return;
+		}
+		// the label color is the color of the contour line
+		ReadOnlyColorRGBA c = label.getDefaultColor();
+		Color color = new Color(c.getRed(), c.getGreen(), c.getBlue(), c.getAlpha());
+		ReadOnlyVector3 loc = label.getTranslation();
+		Vector3 dir = label.getRotation().applyPost(Vector3.UNIT_X, null);
+		Item item = new Item();
+		item.color = color;
+		item.xy = new float[] { loc.getXf(), loc.getYf() };
+		item.text = text;
+		item.angle = Math.atan2(dir.getY(), dir.getX());
+		item.scale = label.getScaleFactor();
+		item.setExtent(loc.getX(), loc.getY(), label.getWidth() + label.getHeight());
+		itemList.add(item);
+	}
+
+	/**
+	 * Set the pyramid level and assign the items to its tiles.
+	 *
+	 * @param leftEdge
+	 *            left edge of the landscape
+	 * @param topEdge
+	 *            top edge of the landscape
+	 * @param numTiles
+	 *            number of tiles per side at this level
+	 * @param tileWidth
+	 *            tile width in pixels, not including the overlap
+	 * @param tileLength
+	 *            tile length in pixels, not including the overlap
+	 * @param xScale
+	 *            pixel width in world units
+	 * @param yScale
+	 *            pixel length in world units
+	 */
+	public void setLevel(double leftEdge, double topEdge, int numTiles, int tileWidth, int tileLength, double xScale,
+		double yScale) {
+		this.leftEdge = leftEdge;
+		this.topEdge = topEdge;
+		this.numTiles = numTiles;
+		columnStep = tileWidth * xScale;
+		rowStep = tileLength * yScale;
+		// the same extent as the offscreen camera frustum
+		halfWidth = columnStep / 2 + xScale;
+		halfHeight = rowStep / 2 + yScale;
+		pixelWidth = 2 * halfWidth / width;
+		pixelHeight = 2 * halfHeight / height;
+
+		tileItem = new int[numTiles * numTiles][];
+		tileItemCount = new int[numTiles * numTiles];
+		double xMargin = halfWidth + maxLineWidth * pixelWidth;
+		double yMargin = halfHeight + maxLineWidth * pixelHeight;
+		for (int i = 0; i < itemList.size(); ++i) {
+			Item item = itemList.get(i);
+			double xm = xMargin;
+			double ym = yMargin;
+			if ((item.text == null) && (item.xy.length == 2)) {
+				// points are at least a pixel in size
+				xm += pixelWidth;
+				ym += pixelHeight;
+			}
+			int c0 = Math.max(0, (int) Math.ceil((item.minX - xm - leftEdge) / columnStep - 0.5));
+			int c1 = Math.min(numTiles - 1, (int) Math.floor((item.maxX + xm - leftEdge) / columnStep - 0.5));
+			int r0 = Math.max(0, (int) Math.ceil((topEdge - item.maxY - ym) / rowStep - 0.5));
+			int r1 = Math.min(numTiles - 1, (int) Math.floor((topEdge - item.minY + ym) / rowStep - 0.5));
+			for (int r = r0; r <= r1; ++r) {
+				for (int c = c0; c <= c1; ++c) {
+					addToTile(r * numTiles + c, i);
+				}
+			}
+		}
+	}
+
+	protected void addToTile(int tile, int item) {
+		int[] list = tileItem[tile];
+		int n = tileItemCount[tile];
+		if (list == null) {
+			list = new int[8];
+			tileItem[tile] = list;
+		} else if (n == list.length) {
+			list = Arrays.copyOf(list, n * 2);
+			tileItem[tile] = list;
+		}
+		list[n] = item;
+		tileItemCount[tile] = n + 1;
+	}
+
+	/**
+	 * Get the number of items that overlap a tile at the current level.
+	 *
+	 * @param column
+	 * @param row
+	 * @return
+	 */
+	public int getItemCount(int column, int row) {
+		return (tileItemCount[row * numTiles + column]);
+	}
+
+	/**
+	 * Draw a tile of the current level.
+	 *
+	 * @param column
+	 * @param row
+	 * @return the tile pixels (4 byte ABGR, top row first)
+	 */
+	public byte[] rasterize(int column, int row) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+		int tile = row * numTiles + column;
+		int n = tileItemCount[tile];
+		if (n > 0) {
+			// tile origin (upper left) in world coordinates
+			double x0 = leftEdge + columnStep * column + columnStep / 2 - halfWidth;
+			double y0 = topEdge - rowStep * row - rowStep / 2 + halfHeight;
+			Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			int[] list = tileItem[tile];
+			for (int i = 0; i < n; ++i) {
+				Item item = itemList.get(list[i]);
+				g.setColor(item.color);
+				if (item.text != null) {
+					drawLabel(g, item, x0, y0);
+				} else if (item.xy.length == 2) {
+					drawPoint(g, item, x0, y0);
+				} else {
+					drawLine(g, item, x0, y0);
+				}
+			}
+			g.dispose();
+		}
+		return (((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+	}
+
+	protected void drawLine(Graphics2D g, Item item, double x0, double y0) {
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, item.xy.length / 2);
+		path.moveTo((item.xy[0] - x0) / pixelWidth, (y0 - item.xy[1]) / pixelHeight);
+		for (int i = 2; i < item.xy.length; i += 2) {
+			path.lineTo((item.xy[i] - x0) / pixelWidth, (y0 - item.xy[i + 1]) / pixelHeight);
+		}
+		g.setStroke(new BasicStroke(item.size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g.draw(path);
+	}
+
+	protected void drawPoint(Graphics2D g, Item item, double x0, double y0) {
+		// the crystal marker seen from above
+		double x = (item.xy[0] - x0) / pixelWidth;
+		double y = (y0 - item.xy[1]) / pixelHeight;
+		double rx = Math.max(item.size / pixelWidth, 1);
+		double ry = Math.max(item.size / pixelHeight, 1);
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(x, y - ry);
+		path.lineTo(x + rx, y);
+		path.lineTo(x, y + ry);
+		path.lineTo(x - rx, y);
+		path.closePath();
+		g.fill(path);
+	}
+
+	protected void drawLabel(Graphics2D g, Item item, double x0, double y0) {
+		AffineTransform transform = g.getTransform();
+		g.translate((item.xy[0] - x0) / pixelWidth, (y0 - item.xy[1]) / pixelHeight);
+		// image rows go down
+		g.rotate(-item.angle);
+		g.scale(item.scale / pixelWidth, item.scale / pixelHeight);
+		g.setFont(VectorText.getFont());
+		g.drawString(item.text, 0, 0);
+		g.setTransform(transform);
+	}
+
+}
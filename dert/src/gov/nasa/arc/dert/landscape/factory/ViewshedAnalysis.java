@@ -0,0 +1,334 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.util.ParallelUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the terrain visible from an observer standing on a landscape, using
+ * the elevation pyramid.
+ *
+ * Rays are cast from the observer to the edge of the landscape (or to the
+ * maximum range), in the style of the R2 algorithm. As with the horizon map,
+ * the step along a ray grows with distance and samples are read from the
+ * pyramid level whose pixels match the step, so the far field comes from low
+ * resolution tiles. There are enough rays for the space between neighboring
+ * rays to match the step. Each ray records the highest elevation angle of the
+ * terrain passed so far (the horizon profile). A location is visible when its
+ * elevation angle from the observer is above the horizon profile at its
+ * distance, interpolated between the two neighboring rays as in XDraw. The
+ * curvature of the globe can be taken into account.
+ *
+ * Rays are divided into sectors that are computed in parallel. Once computed,
+ * the analysis can be queried from any number of threads.
+ *
+ */
+public class ViewshedAnalysis {
+
+	// Ray step as a fraction of distance
+	public static double STEP_FRACTION = 1.0 / 256;
+
+	// Number of sectors computed in parallel
+	public static int NUMBER_OF_SECTORS = 8;
+
+	// Elevation pyramid
+	protected ElevationPyramid pyramid;
+
+	// Observer location in columns and rows of the highest level
+	protected double observerX, observerY;
+
+	// Observer height above the surface and elevation (meters)
+	protected double height, observerZ;
+
+	// Maximum range in pixels of the highest level
+	protected double range;
+
+	// Meters per pixel at the highest level and the globe radius in meters
+	// (NaN if curvature is ignored)
+	protected double pixelSize, radius;
+
+	// Highest level and its raster dimensions
+	protected int maxLevel, width, length;
+
+	// For each ray, the distances of the samples (pixels of the highest
+	// level) and the highest terrain angle (tangent) up to each distance
+	protected float[][] rayDistance, rayTangent;
+
+	// Number of rays
+	protected int numRays;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pyramid
+	 *            the elevation pyramid
+	 * @param observerX
+	 *            observer column in the highest level
+	 * @param observerY
+	 *            observer row in the highest level
+	 * @param height
+	 *            observer height above the surface (meters)
+	 * @param range
+	 *            maximum range (meters), 0 for no limit
+	 * @param curvature
+	 *            take the curvature of the globe into account
+	 */
+	public ViewshedAnalysis(ElevationPyramid pyramid, double observerX, double observerY, double height, double range,
+		boolean curvature) {
+		this.pyramid = pyramid;
+		this.observerX = observerX;
+		this.observerY = observerY;
+		this.height = height;
+		maxLevel = pyramid.getNumberOfLevels() - 1;
+		width = (1 << maxLevel) * pyramid.getTileWidth();
+		length = (1 << maxLevel) * pyramid.getTileLength();
+		pixelSize = pyramid.getPixelSize();
+		radius = curvature ? pyramid.getGlobeRadius() : Double.NaN;
+		this.range = (range > 0) ? range / pixelSize : Double.MAX_VALUE;
+		double z = pyramid.createSampler().getElevation(maxLevel, observerX, observerY);
+		if (Double.isNaN(z)) {
+			throw new IllegalArgumentException("Viewshed observer is not on the landscape.");
+		}
+		observerZ = z + height;
+		numRays = (int) Math.ceil(2 * Math.PI / STEP_FRACTION / NUMBER_OF_SECTORS) * NUMBER_OF_SECTORS;
+		rayDistance = new float[numRays][];
+		rayTangent = new float[numRays][];
+	}
+
+	/**
+	 * Get the observer column in the highest level
+	 *
+	 * @return
+	 */
+	public double getObserverX() {
+		return (observerX);
+	}
+
+	/**
+	 * Get the observer row in the highest level
+	 *
+	 * @return
+	 */
+	public double getObserverY() {
+		return (observerY);
+	}
+
+	/**
+	 * Get the observer height above the surface
+	 *
+	 * @return
+	 */
+	public double getHeight() {
+		return (height);
+	}
+
+	/**
+	 * Get the maximum range
+	 *
+	 * @return meters or 0 if there is no limit
+	 */
+	public double getRange() {
+		return ((range == Double.MAX_VALUE) ? 0 : range * pixelSize);
+	}
+
+	/**
+	 * Cast the rays.
+	 *
+	 * @throws IOException
+	 */
+	public void compute() throws IOException {
+		waitFor(submit());
+	}
+
+	/**
+	 * Start casting the rays on the shared executor. Each sector is a
+	 * separate task, so the sectors of several observers run together.
+	 *
+	 * @return the sector tasks
+	 */
+	public ArrayList<Future<Object>> submit() {
+		ArrayList<Future<Object>> sectorList = new ArrayList<Future<Object>>(NUMBER_OF_SECTORS);
+		int raysPerSector = numRays / NUMBER_OF_SECTORS;
+		for (int s = 0; s < NUMBER_OF_SECTORS; ++s) {
+			final int first = s * raysPerSector;
+			final int last = first + raysPerSector;
+			sectorList.add(ParallelUtil.getExecutor().submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					ElevationPyramid.Sampler sampler = pyramid.createSampler();
+					for (int i = first; i < last; ++i) {
+						castRay(i, sampler);
+					}
+					return (null);
+				}
+			}));
+		}
+		return (sectorList);
+	}
+
+	/**
+	 * Wait for tasks to complete. If one fails the others are cancelled.
+	 *
+	 * @param taskList
+	 * @throws IOException
+	 */
+	public static void waitFor(ArrayList<Future<Object>> taskList) throws IOException {
+		try {
+			ParallelUtil.waitFor(taskList);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted computing viewshed.");
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Determine if a location is within range of the observer.
+	 *
+	 * @param x
+	 *            column in the highest level
+	 * @param y
+	 *            row in the highest level
+	 * @return
+	 */
+	public boolean isInRange(double x, double y) {
+		double dx = x - observerX;
+		double dy = y - observerY;
+		return (dx * dx + dy * dy <= range * range);
+	}
+
+	/**
+	 * Step along a ray recording the horizon profile.
+	 */
+	protected void castRay(int ray, ElevationPyramid.Sampler sampler) {
+		// azimuth is clockwise from north, rows increase to the south
+		double az = 2 * Math.PI * ray / numRays;
+		double dx = Math.sin(az);
+		double dy = -Math.cos(az);
+		double zMax = pyramid.getMaximum();
+		float[] dist = new float[1024];
+		float[] tan = new float[1024];
+		int n = 0;
+		double maxTan = Double.NEGATIVE_INFINITY;
+		double d = 1;
+		while (d <= range) {
+			double px = observerX + dx * d;
+			double py = observerY + dy * d;
+			if ((px < 0) || (py < 0) || (px > width) || (py > length)) {
+				break;
+			}
+			double step = Math.max(1, d * STEP_FRACTION);
+			// read distant terrain from lower resolution levels
+			int lo = Math.min(maxLevel, 31 - Integer.numberOfLeadingZeros((int) step));
+			double f = 1 << lo;
+			double zs = sampler.getElevation(maxLevel - lo, px / f, py / f);
+			double dm = d * pixelSize;
+			if (!Double.isNaN(zs)) {
+				double dz = zs - observerZ;
+				if (!Double.isNaN(radius)) {
+					dz -= dm * dm / (2 * radius);
+				}
+				maxTan = Math.max(maxTan, dz / dm);
+			}
+			if (n == dist.length) {
+				dist = Arrays.copyOf(dist, n * 2);
+				tan = Arrays.copyOf(tan, n * 2);
+			}
+			dist[n] = (float) d;
+			tan[n] = (float) maxTan;
+			n++;
+			// nothing farther can be above the horizon
+			if (zMax - observerZ < maxTan * dm) {
+				break;
+			}
+			d += step;
+		}
+		rayDistance[ray] = Arrays.copyOf(dist, n);
+		rayTangent[ray] = Arrays.copyOf(tan, n);
+	}
+
+	/**
+	 * Determine if a location is visible to the observer.
+	 *
+	 * @param x
+	 *            column in the highest level
+	 * @param y
+	 *            row in the highest level
+	 * @param z
+	 *            elevation of the location
+	 * @param cellSize
+	 *            size of the location in pixels of the highest level
+	 * @return 1 if visible, 0 if not, NaN if there is no elevation or the
+	 *         location is out of range
+	 */
+	public float getVisibility(double x, double y, double z, double cellSize) {
+		if (Double.isNaN(z)) {
+			return (Float.NaN);
+		}
+		double dx = x - observerX;
+		double dy = y - observerY;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		if (d > range) {
+			return (Float.NaN);
+		}
+		// terrain within the location itself or the last step does not hide
+		// it
+		double exclude = Math.max(cellSize, Math.max(1, d * STEP_FRACTION)) / 2;
+		if (d <= exclude) {
+			return (1);
+		}
+		double p = Math.atan2(dx, -dy) * numRays / (2 * Math.PI);
+		if (p < 0) {
+			p += numRays;
+		}
+		int r0 = Math.min((int) p, numRays - 1);
+		int r1 = (r0 + 1) % numRays;
+		double t = p - r0;
+		double tan0 = getHorizonTangent(r0, d - exclude);
+		double tan1 = getHorizonTangent(r1, d - exclude);
+		double horizon;
+		if (Double.isInfinite(tan0)) {
+			horizon = tan1;
+		} else if (Double.isInfinite(tan1)) {
+			horizon = tan0;
+		} else {
+			horizon = tan0 * (1 - t) + tan1 * t;
+		}
+		double dm = d * pixelSize;
+		double dz = z - observerZ;
+		if (!Double.isNaN(radius)) {
+			dz -= dm * dm / (2 * radius);
+		}
+		return ((dz / dm >= horizon) ? 1 : 0);
+	}
+
+	/**
+	 * Get the highest terrain angle along a ray up to a distance.
+	 *
+	 * @return the tangent of the angle or negative infinity if there is no
+	 *         terrain
+	 */
+	protected double getHorizonTangent(int ray, double d) {
+		float[] dist = rayDistance[ray];
+		int n = dist.length;
+		if ((n == 0) || (d < dist[0])) {
+			return (Double.NEGATIVE_INFINITY);
+		}
+		// the profile ends where nothing farther can be seen
+		if (d >= dist[n - 1]) {
+			return (rayTangent[ray][n - 1]);
+		}
+		int i = Arrays.binarySearch(dist, (float) d);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		return (rayTangent[ray][i]);
+	}
+
+}
@@ -0,0 +1,452 @@
+package gov.nasa.arc.dert.landscape.factory;
+
+import gov.nasa.arc.dert.io.TileCodec;
+import gov.nasa.arc.dert.landscape.LayerInfo.LayerType;
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+import gov.nasa.arc.dert.raster.RasterStatistics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import javax.swing.JTextField;
+
+/**
+ * Creates a field layer with the viewshed of one or more observers standing
+ * on the landscape (see ViewshedAnalysis). A sample holds the number of
+ * observers that can see it (1 or 0 for a single observer) and is missing
+ * where it is beyond the maximum range of all observers. Unlike the viewshed
+ * of a field camera, it covers all directions around the observers and is
+ * saved with the landscape.
+ *
+ * The rays of all observers are cast in parallel and share the elevation
+ * tiles. When a single observer moves, the layer is updated from its old and
+ * new viewsheds without recomputing the others.
+ *
+ * The area visible to at least one observer and its percentage of the area in
+ * range are counted at the highest level and saved in the layer properties.
+ *
+ */
+public class ViewshedPyramidLayerFactory extends AnalysisPyramidLayerFactory {
+
+	// Default observer height above the surface (meters)
+	public static double DEFAULT_HEIGHT = 2;
+
+	// Observer locations in world coordinates
+	protected double[][] observers;
+
+	// Observer height and maximum range (meters)
+	protected double height, range;
+
+	// Take the curvature of the globe into account
+	protected boolean curvature;
+
+	// The analysis for each observer while building
+	protected ViewshedAnalysis[] analysis;
+
+	// The old and new analysis of a moved observer while updating
+	protected ViewshedAnalysis oldAnalysis, newAnalysis;
+
+	// The observer locations in the highest level while updating
+	protected double[][] observerPixels;
+
+	// The name of the layer being updated
+	protected String layerName;
+
+	// Highest level samples visible and in range
+	protected long visibleCount, rangeCount;
+
+	// Meters per pixel at the highest level
+	protected double pixelSize;
+
+	/**
+	 * Constructor for a single observer
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @param worldX
+	 *            observer X in world coordinates
+	 * @param worldY
+	 *            observer Y in world coordinates
+	 * @param height
+	 *            observer height above the surface (meters)
+	 * @param range
+	 *            maximum range (meters), 0 for no limit
+	 * @param curvature
+	 *            take the curvature of the globe into account
+	 */
+	public ViewshedPyramidLayerFactory(String landPath, double worldX, double worldY, double height, double range,
+		boolean curvature) {
+		this(landPath, new double[][] { { worldX, worldY } }, height, range, curvature);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param landPath
+	 *            path to the landscape
+	 * @param observers
+	 *            observer X and Y in world coordinates
+	 * @param height
+	 *            observer height above the surface (meters)
+	 * @param range
+	 *            maximum range (meters), 0 for no limit
+	 * @param curvature
+	 *            take the curvature of the globe into account
+	 */
+	public ViewshedPyramidLayerFactory(String landPath, double[][] observers, double height, double range,
+		boolean curvature) {
+		super(landPath);
+		if (observers.length == 0) {
+			throw new IllegalArgumentException("A viewshed requires at least one observer.");
+		}
+		this.observers = new double[observers.length][];
+		for (int i = 0; i < observers.length; ++i) {
+			this.observers[i] = new double[] { observers[i][0], observers[i][1] };
+		}
+		this.height = height;
+		this.range = range;
+		this.curvature = curvature;
+		layerType = LayerType.field;
+		tileCodec = TileCodec.getCodec(TileCodec.DEFLATE);
+	}
+
+	/**
+	 * Build the pyramid layer.
+	 *
+	 * @param landPath
+	 *            path to the destination landscape
+	 * @param layerName
+	 *            name of this layer
+	 * @param messageText
+	 *            UI text field for messages to the user
+	 * @throws IOException
+	 */
+	public void buildPyramid(String landPath, String layerName, JTextField messageText) throws IOException {
+		long t = System.currentTimeMillis();
+
+		openPyramid(landPath);
+		pixelSize = pyramid.getPixelSize();
+		analysis = new ViewshedAnalysis[observers.length];
+		for (int i = 0; i < observers.length; ++i) {
+			analysis[i] = createAnalysis(observers[i][0], observers[i][1]);
+		}
+		// the sectors of all observers run together
+		ArrayList<Future<Object>> taskList = new ArrayList<Future<Object>>();
+		for (int i = 0; i < analysis.length; ++i) {
+			taskList.addAll(analysis[i].submit());
+		}
+		ViewshedAnalysis.waitFor(taskList);
+
+		try {
+			build(landPath, layerName, messageText);
+		} finally {
+			analysis = null;
+		}
+		System.out.println("Total time for building " + layerName + " = "
+			+ (float) ((System.currentTimeMillis() - t) / 60000.0) + " minutes.");
+	}
+
+	/**
+	 * Move an observer and update the pyramid layer built by this factory.
+	 * Only the viewsheds of the observer at its old and new locations are
+	 * computed.
+	 *
+	 * @param landPath
+	 *            path to the destination landscape
+	 * @param layerName
+	 *            name of the layer
+	 * @param index
+	 *            the observer index
+	 * @param worldX
+	 *            new observer X in world coordinates
+	 * @param worldY
+	 *            new observer Y in world coordinates
+	 * @throws IOException
+	 */
+	public void moveObserver(String landPath, String layerName, int index, double worldX, double worldY)
+		throws IOException {
+		long t = System.currentTimeMillis();
+
+		if (pyramid == null) {
+			openPyramid(landPath);
+			pixelSize = pyramid.getPixelSize();
+		}
+		// pick up the codec of the layer
+		pyramid.refreshLayers();
+		if (pyramid.getSource().getProperties(layerName) == null) {
+			throw new IOException("Viewshed layer " + layerName + " not found.");
+		}
+		this.layerName = layerName;
+		oldAnalysis = createAnalysis(observers[index][0], observers[index][1]);
+		newAnalysis = createAnalysis(worldX, worldY);
+		ArrayList<Future<Object>> taskList = oldAnalysis.submit();
+		taskList.addAll(newAnalysis.submit());
+		ViewshedAnalysis.waitFor(taskList);
+		observers[index][0] = worldX;
+		observers[index][1] = worldY;
+		observerPixels = new double[observers.length][];
+		for (int i = 0; i < observers.length; ++i) {
+			observerPixels[i] = new double[] { getColumn(observers[i][0]), getRow(observers[i][1]) };
+		}
+
+		try {
+			build(landPath, layerName, null);
+		} finally {
+			oldAnalysis = null;
+			newAnalysis = null;
+			observerPixels = null;
+			this.layerName = null;
+		}
+		System.out.println("Total time for updating " + layerName + " = "
+			+ (float) ((System.currentTimeMillis() - t) / 60000.0) + " minutes.");
+	}
+
+	protected ViewshedAnalysis createAnalysis(double worldX, double worldY) {
+		return (new ViewshedAnalysis(pyramid, getColumn(worldX), getRow(worldY), height, range, curvature));
+	}
+
+	protected void build(String landPath, String layerName, JTextField messageText) throws IOException {
+		minimumSampleValue = new double[] { 0 };
+		maximumSampleValue = new double[] { observers.length };
+		statistics = new RasterStatistics(1, minimumSampleValue, maximumSampleValue, RasterStatistics.NUMBER_OF_BINS);
+		visibleCount = 0;
+		rangeCount = 0;
+		if (buildLevels(landPath, layerName, messageText)) {
+			System.out.println("Visible area of " + layerName + " = " + (float) getVisibleArea() + " square meters, "
+				+ (float) getVisiblePercent() + "% of the area in range.");
+		}
+	}
+
+	/**
+	 * Get the column in the highest level for a world X coordinate.
+	 *
+	 * @param x
+	 * @return
+	 */
+	protected double getColumn(double x) {
+		return ((x - projInfo.tiePoint[0]) / projInfo.scale[0]);
+	}
+
+	/**
+	 * Get the row in the highest level for a world Y coordinate.
+	 *
+	 * @param y
+	 * @return
+	 */
+	protected double getRow(double y) {
+		return ((projInfo.tiePoint[1] - y) / projInfo.scale[1]);
+	}
+
+	/**
+	 * Get the number of observers
+	 *
+	 * @return
+	 */
+	public int getNumberOfObservers() {
+		return (observers.length);
+	}
+
+	/**
+	 * Get the area visible to at least one observer at the highest level.
+	 *
+	 * @return square meters
+	 */
+	public double getVisibleArea() {
+		return (visibleCount * pixelSize * pixelSize);
+	}
+
+	/**
+	 * Get the visible area as a percentage of the area in range.
+	 *
+	 * @return
+	 */
+	public double getVisiblePercent() {
+		if (rangeCount == 0) {
+			return (0);
+		}
+		return (100.0 * visibleCount / rangeCount);
+	}
+
+	@Override
+	protected void addProperties(Properties properties) {
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < observers.length; ++i) {
+			if (i > 0) {
+				str.append(';');
+			}
+			str.append(observers[i][0] + "," + observers[i][1]);
+		}
+		properties.setProperty("ViewshedObservers", str.toString());
+		properties.setProperty("ViewshedHeight", Double.toString(height));
+		properties.setProperty("ViewshedRange", Double.toString(range));
+		properties.setProperty("ViewshedCurvature", Boolean.toString(curvature));
+		properties.setProperty("ViewshedVisibleArea", Double.toString(getVisibleArea()));
+		properties.setProperty("ViewshedVisiblePercent", Double.toString(getVisiblePercent()));
+	}
+
+	/**
+	 * Compute the visibility of the samples of a tile.
+	 *
+	 * @param level
+	 * @param maxLevel
+	 * @param column
+	 * @param row
+	 * @param sampler
+	 * @return the number of observers as big endian floats or an empty array
+	 *         if the elevation tile is empty
+	 * @throws IOException
+	 */
+	@Override
+	protected byte[] computeTile(int level, int maxLevel, int column, int row, ElevationPyramid.Sampler sampler)
+		throws IOException {
+		float[] elev = pyramid.getTile(level, column, row);
+		if (elev == null) {
+			return (new byte[0]);
+		}
+		FloatBuffer oldBuffer = null;
+		if (layerName != null) {
+			QuadTreeTile tile = pyramid.getSource().getTile(layerName, ElevationPyramid.getKey(level, column, row),
+				DataType.Float);
+			if ((tile == null) || (tile.raster == null)) {
+				throw new IOException("Missing tile in viewshed layer " + layerName + ".");
+			}
+			oldBuffer = tile.raster.asFloatBuffer();
+		}
+		RasterStatistics stats = null;
+		long visible = 0;
+		long inRange = 0;
+		if (level == maxLevel) {
+			stats = statistics.createEmpty();
+		}
+		ByteBuffer bbuf = ByteBuffer.allocate(tileWidth1 * tileLength1 * 4);
+		FloatBuffer fbuf = bbuf.asFloatBuffer();
+		// highest level pixels per sample at this level
+		double cellSize = 1 << (maxLevel - level);
+		int k = 0;
+		for (int r = 0; r < tileLength1; ++r) {
+			double y = (row * tileLength + r) * cellSize;
+			for (int c = 0; c < tileWidth1; ++c, ++k) {
+				double x = (column * tileWidth + c) * cellSize;
+				float value;
+				if (oldBuffer == null) {
+					value = getCount(x, y, elev[k], cellSize);
+				} else {
+					value = updateCount(x, y, elev[k], cellSize, oldBuffer.get(k));
+				}
+				fbuf.put(value);
+				if (stats == null) {
+					continue;
+				}
+				if (Float.isNaN(value)) {
+					stats.addMissing(0);
+				} else {
+					stats.add(0, value);
+					// the last row and column belong to the neighbors
+					if ((r < tileLength) && (c < tileWidth)) {
+						inRange++;
+						if (value > 0) {
+							visible++;
+						}
+					}
+				}
+			}
+		}
+		if (stats != null) {
+			synchronized (statistics) {
+				statistics.merge(stats);
+				visibleCount += visible;
+				rangeCount += inRange;
+			}
+		}
+		return (bbuf.array());
+	}
+
+	/**
+	 * Count the observers that see a location.
+	 */
+	private float getCount(double x, double y, double z, double cellSize) {
+		float count = Float.NaN;
+		for (int i = 0; i < analysis.length; ++i) {
+			float v = analysis[i].getVisibility(x, y, z, cellSize);
+			if (!Float.isNaN(v)) {
+				count = Float.isNaN(count) ? v : count + v;
+			}
+		}
+		return (count);
+	}
+
+	/**
+	 * Update the count of observers that see a location for the moved
+	 * observer.
+	 */
+	private float updateCount(double x, double y, double z, double cellSize, float oldCount) {
+		if (Double.isNaN(z)) {
+			return (Float.NaN);
+		}
+		float count = Float.isNaN(oldCount) ? 0 : oldCount;
+		if (oldAnalysis.getVisibility(x, y, z, cellSize) > 0) {
+			count -= 1;
+		}
+		float v = newAnalysis.getVisibility(x, y, z, cellSize);
+		if (!Float.isNaN(v)) {
+			return (count + v);
+		}
+		// missing unless another observer is in range
+		if (range > 0) {
+			double r = range / pixelSize;
+			boolean found = false;
+			for (int i = 0; (i < observerPixels.length) && !found; ++i) {
+				double dx = x - observerPixels[i][0];
+				double dy = y - observerPixels[i][1];
+				found = dx * dx + dy * dy <= r * r;
+			}
+			if (!found) {
+				return (Float.NaN);
+			}
+		}
+		return (count);
+	}
+
+	/**
+	 * Get the viewshed argument from the command line.
+	 *
+	 * @param args
+	 * @return the X and Y in world coordinates of each observer or null if
+	 *         there is no viewshed argument
+	 */
+	public static double[][] getObservers(String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].startsWith("-viewshed=")) {
+				return (parseObservers(args[i].substring(10)));
+			}
+		}
+		return (null);
+	}
+
+	/**
+	 * Parse a list of observers.
+	 *
+	 * @param str
+	 *            X,Y world coordinates of each observer separated by
+	 *            semicolons
+	 * @return
+	 */
+	public static double[][] parseObservers(String str) {
+		String[] location = str.trim().split(";");
+		double[][] observers = new double[location.length][];
+		for (int i = 0; i < location.length; ++i) {
+			String[] token = location[i].split(",");
+			if (token.length != 2) {
+				throw new IllegalArgumentException("Invalid viewshed observer " + location[i] + ", expected X,Y.");
+			}
+			observers[i] = new double[] { Double.parseDouble(token[0].trim()), Double.parseDouble(token[1].trim()) };
+		}
+		return (observers);
+	}
+
+}
@@ -1,6 +1,6 @@
 package gov.nasa.arc.dert.lighting;
 
-import gov.nasa.arc.dert.ephemeris.Ephemeris;
+import gov.nasa.arc.dert.ephemeris.EphemerisCache;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.viewpoint.BasicCamera;
 
@@ -65,6 +65,9 @@ public class DirectionalLightNode extends Node {
 	private Matrix3 rotMatrix = new Matrix3();
 	private Vector3 startVector = new Vector3(0, 0, 1);
 
+	// Interpolated light positions over a window of time
+	private EphemerisCache ephemerisCache = new EphemerisCache();
+
 	/**
 	 * Constructor
 	 * 
@@ -267,8 +270,7 @@ public class DirectionalLightNode extends Node {
 	 * @param refLocLon
 	 */
 	public void setTime(long time, String planet, String source, ReadOnlyVector3 refLoc) {
-		String timeStr = Ephemeris.getInstance().time2UtcStr(time);
-		double[] val = Ephemeris.getTargetVector(planet, source, timeStr, refLoc.getX(), refLoc.getY(), refLoc.getZ());
+		double[] val = ephemerisCache.getTargetVector(planet, source, time, refLoc.getX(), refLoc.getY(), refLoc.getZ());
 		if (val != null) {
 			dirVector.set((float) val[0], (float) val[1], (float) val[2]);
 			azimuth = (float) val[4];
@@ -289,6 +289,7 @@ public class Lighting {
 			setBackgroundSaturation(light.getElevation());
 		}
 		World.getInstance().getMarble().setSolarDirection(getLightDirection());
+		Landscape.getInstance().updateHorizonShading(getLightDirection());
 	}
 
 	/**
@@ -342,6 +343,7 @@ public class Lighting {
 		light.setPositionFromAzEl();
 		setBackgroundSaturation(el);
 		World.getInstance().getMarble().setSolarDirection(getLightDirection());
+		Landscape.getInstance().updateHorizonShading(getLightDirection());
 	}
 
 	/**
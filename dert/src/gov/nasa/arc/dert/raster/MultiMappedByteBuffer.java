@@ -45,6 +45,9 @@ public class MultiMappedByteBuffer {
 	private File file;
 	private RandomAccessFile raf;
 
+	// This is a view of another MultiMappedByteBuffer and does not own the file
+	private boolean isView;
+
 	/**
 	 * Constructor Create a MultiMappedByteBuffer with a given file path, raster
 	 * width, and raster length.
@@ -75,9 +78,10 @@ public class MultiMappedByteBuffer {
 
 		// Create the file
 
+		// use a unique name, several rasters may be created in the same millisecond
 		file = new File(path);
 		file.mkdirs();
-		file = new File(file, "tmp_" + System.currentTimeMillis());
+		file = File.createTempFile("tmp_", null, file);
 		file.deleteOnExit();
 		raf = new RandomAccessFile(file, "rw");
 		fileChannel = raf.getChannel();
@@ -92,6 +96,46 @@ public class MultiMappedByteBuffer {
 		}
 	}
 
+	/**
+	 * Constructor for a view with its own buffer positions.
+	 * 
+	 * @param that
+	 */
+	private MultiMappedByteBuffer(MultiMappedByteBuffer that) {
+		width = that.width;
+		length = that.length;
+		numRows = that.numRows;
+		bufSize = that.bufSize;
+		numBuffers = that.numBuffers;
+		file = that.file;
+		mbBuf = new MappedByteBuffer[numBuffers];
+		for (int i = 0; i < numBuffers; ++i) {
+			mbBuf[i] = that.mbBuf[i].duplicate();
+		}
+		isView = true;
+	}
+
+	/**
+	 * Create a view of this MultiMappedByteBuffer that shares the file
+	 * contents but has its own buffer positions. Each thread accessing the
+	 * file concurrently must use its own view. Disposing of the view does not
+	 * affect the file.
+	 * 
+	 * @return
+	 */
+	public MultiMappedByteBuffer duplicate() {
+		return (new MultiMappedByteBuffer(this));
+	}
+
+	/**
+	 * Get the number of scan lines.
+	 * 
+	 * @return
+	 */
+	public int getLength() {
+		return (length);
+	}
+
 	/**
 	 * Write out all changes to all buffers.
 	 */
@@ -221,6 +265,9 @@ public class MultiMappedByteBuffer {
 		for (int i = 0; i < mbBuf.length; ++i) {
 			mbBuf[i] = null;
 		}
+		if (isView) {
+			return;
+		}
 		try {
 			if (raf != null) {
 				raf.close();
@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.raster;
 
 import gov.nasa.arc.dert.raster.proj.Proj4;
+import gov.nasa.arc.dert.util.ParallelUtil;
 import gov.nasa.arc.dert.view.Console;
 
 import com.ardor3d.math.Vector2;
@@ -17,6 +18,12 @@ import com.ardor3d.math.Vector3;
  */
 public class Projection {
 
+	// Number of points passed to Proj4 in one call by the bulk conversions
+	public static int CHUNK_SIZE = 4096;
+
+	// Minimum number of points for a bulk conversion to use multiple threads
+	public static int PARALLEL_THRESHOLD = 65536;
+
 	// Information from a file that describes the projection
 	private ProjectionInfo projInfo;
 
@@ -211,9 +218,7 @@ public class Projection {
 	 */
 	public void worldToSpherical(Vector3 vec) {
 		if (pjUnprojected == null) {
-			String projStr = "+proj=longlat +a=" + projInfo.getSemiMajorAxis() + " +b=" + projInfo.getSemiMinorAxis()
-				+ " +no_defs";
-			pjUnprojected = Proj4.newInstance(projStr);
+			pjUnprojected = Proj4.newInstance(getLonLatString());
 		}
 		if (pjProjected == null) {
 			pjProjected = Proj4.newInstance(proj4String);
@@ -236,9 +241,7 @@ public class Projection {
 	 */
 	public void sphericalToWorld(Vector3 vec) {
 		if (pjUnprojected == null) {
-			String projStr = "+proj=longlat +a=" + projInfo.getSemiMajorAxis() + " +b=" + projInfo.getSemiMinorAxis()
-				+ " +no_defs";
-			pjUnprojected = Proj4.newInstance(projStr);
+			pjUnprojected = Proj4.newInstance(getLonLatString());
 		}
 		if (pjProjected == null) {
 			pjProjected = Proj4.newInstance(proj4String);
@@ -251,6 +254,116 @@ public class Projection {
 		vec.setY(coord[1]);
 	}
 
+	/**
+	 * Convert arrays of virtual world coordinates to lon/lat in place. Results
+	 * are in degrees. Points that cannot be converted are set to NaN.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 *            may be null
+	 * @param count
+	 *            the number of points
+	 */
+	public void worldToSpherical(double[] x, double[] y, double[] z, int count) {
+		transform(x, y, z, count, true);
+	}
+
+	/**
+	 * Convert arrays of lon/lat (degree) coordinates to virtual world
+	 * coordinates in place. Points that cannot be converted are set to NaN.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 *            may be null
+	 * @param count
+	 *            the number of points
+	 */
+	public void sphericalToWorld(double[] x, double[] y, double[] z, int count) {
+		transform(x, y, z, count, false);
+	}
+
+	/**
+	 * Convert arrays of coordinates. Large arrays are split into bands that
+	 * are converted in parallel, each with its own Proj4 instances since they
+	 * are not thread safe.
+	 */
+	private void transform(final double[] x, final double[] y, final double[] z, int count,
+		final boolean toSpherical) {
+		if (count <= 0) {
+			return;
+		}
+		int numBands = 1;
+		if (count >= PARALLEL_THRESHOLD) {
+			numBands = Math.max(1, Math.min(ParallelUtil.NUMBER_OF_THREADS, count / CHUNK_SIZE));
+		}
+		if (numBands == 1) {
+			transformBand(x, y, z, 0, count, toSpherical);
+			return;
+		}
+		try {
+			ParallelUtil.computeBands(count, numBands, new ParallelUtil.Band<Object>() {
+				@Override
+				public Object compute(int start, int end) {
+					transformBand(x, y, z, start, end, toSpherical);
+					return (null);
+				}
+			});
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to convert coordinates.", e);
+		}
+	}
+
+	/**
+	 * Convert a band of points in chunks.
+	 */
+	private void transformBand(double[] x, double[] y, double[] z, int start, int end, boolean toSpherical) {
+		Proj4 pjLonLat = Proj4.newInstance(getLonLatString());
+		Proj4 pjProj = Proj4.newInstance(proj4String);
+		Proj4 src = toSpherical ? pjProj : pjLonLat;
+		Proj4 dest = toSpherical ? pjLonLat : pjProj;
+		int size = Math.min(CHUNK_SIZE, end - start);
+		double[] cx = new double[size];
+		double[] cy = new double[size];
+		double[] cz = new double[size];
+		for (int i = start; i < end; i += size) {
+			int n = Math.min(size, end - i);
+			for (int j = 0; j < n; ++j) {
+				cx[j] = toSpherical ? x[i + j] : Math.toRadians(x[i + j]);
+				cy[j] = toSpherical ? y[i + j] : Math.toRadians(y[i + j]);
+				cz[j] = (z == null) ? 0 : z[i + j];
+			}
+			try {
+				src.transform(dest, n, 1, cx, cy, cz);
+			} catch (Exception e) {
+				// a point failed, convert the chunk one point at a time
+				double[] coord = new double[3];
+				for (int j = 0; j < n; ++j) {
+					coord[0] = toSpherical ? x[i + j] : Math.toRadians(x[i + j]);
+					coord[1] = toSpherical ? y[i + j] : Math.toRadians(y[i + j]);
+					coord[2] = (z == null) ? 0 : z[i + j];
+					try {
+						src.transform(dest, coord);
+						cx[j] = coord[0];
+						cy[j] = coord[1];
+					} catch (Exception e2) {
+						cx[j] = Double.NaN;
+						cy[j] = Double.NaN;
+					}
+				}
+			}
+			for (int j = 0; j < n; ++j) {
+				x[i + j] = toSpherical ? Math.toDegrees(cx[j]) : cx[j];
+				y[i + j] = toSpherical ? Math.toDegrees(cy[j]) : cy[j];
+			}
+		}
+	}
+
+	private String getLonLatString() {
+		return ("+proj=longlat +a=" + projInfo.getSemiMajorAxis() + " +b=" + projInfo.getSemiMinorAxis() + " +no_defs");
+	}
+
 	/**
 	 * Get the projection information
 	 * 
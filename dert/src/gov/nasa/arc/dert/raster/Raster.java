@@ -2,6 +2,7 @@ package gov.nasa.arc.dert.raster;
 
 import gov.nasa.arc.dert.raster.RasterFile.DataType;
 import gov.nasa.arc.dert.util.MathUtil;
+import gov.nasa.arc.dert.util.ParallelUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -10,6 +11,7 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Represents a raster file in memory using a MultiMappedByteBuffer.
@@ -758,35 +760,142 @@ public class Raster {
 	 * Set a raster to the missing value.
 	 */
 	public void setMissingValuesToNaN(float missing, double[] minimum, double[] maximum) {
+		computeStatistics(missing, minimum, maximum);
+	}
 
-		byte[] inArray = new byte[width * numBytes];
-		ByteBuffer inBuf = ByteBuffer.wrap(inArray);
-		inBuf.rewind();
-		byte[] outArray = new byte[width * numBytes];
-		ByteBuffer outBuf = ByteBuffer.wrap(outArray);
-		outBuf.rewind();
+	/**
+	 * Compute statistics for each band in a single pass over the raster. The
+	 * raster is split into bands of rows that are processed in parallel.
+	 * 
+	 * For a float raster, samples that are equal to the missing value or are
+	 * outside of the minimum and maximum are set to NaN during the same pass.
+	 * The histogram covers the minimum to maximum range. If the range is not
+	 * given, a first pass is made to find it.
+	 * 
+	 * For an unsigned byte (gray) raster, 0 is the missing value. For an
+	 * integer (RGBA) raster, the red, green, and blue bands are computed and a
+	 * pixel with an alpha of 0 is missing.
+	 * 
+	 * @param missing
+	 *            the missing value (float rasters only)
+	 * @param minimum
+	 *            the minimum valid value (float rasters only, may be null)
+	 * @param maximum
+	 *            the maximum valid value (float rasters only, may be null)
+	 * @return the statistics or null if the data type is not supported
+	 */
+	public RasterStatistics computeStatistics(float missing, double[] minimum, double[] maximum) {
+		switch (dataType) {
+		case Float:
+			double[] histMin = minimum;
+			double[] histMax = maximum;
+			if ((histMin == null) || (histMax == null)) {
+				RasterStatistics range = runStatistics(new RasterStatistics(1, new double[] { 0 },
+					new double[] { 1 }, 1), missing, minimum, maximum, false);
+				histMin = range.getMinimum();
+				histMax = range.getMaximum();
+			}
+			return (runStatistics(new RasterStatistics(1, histMin, histMax, RasterStatistics.NUMBER_OF_BINS),
+				missing, minimum, maximum, true));
+		case UnsignedByte:
+			return (runStatistics(new RasterStatistics(1, new double[] { 0 }, new double[] { 256 }, 256), missing,
+				null, null, false));
+		case Integer:
+			return (runStatistics(new RasterStatistics(3, new double[] { 0, 0, 0 }, new double[] { 256, 256, 256 },
+				256), missing, null, null, false));
+		default:
+			return (null);
+		}
+	}
 
-		for (int i = 0; i < length; ++i) {
-			mmbBuf.get(i, inArray);
-			inBuf.rewind();
-			for (int j = 0; j < width; ++j) {
-				float val = inBuf.getFloat(); // don't use getFloat(j) - gets
-												// every byte as a float
-				if (!Float.isNaN(missing) && (val == missing)) {
-					outBuf.putFloat(Float.NaN);
-				} else if ((minimum != null) && (val < minimum[0])) {
-					outBuf.putFloat(Float.NaN);
-				} else if ((maximum != null) && (val > maximum[0])) {
-					outBuf.putFloat(Float.NaN);
-				} else {
-					outBuf.putFloat(val);
-					// System.err.println("Raster.setMissingValuesToNaN "+val);
+	/**
+	 * Run the statistics pass in parallel.
+	 */
+	private RasterStatistics runStatistics(final RasterStatistics stats, final float missing,
+		final double[] minimum, final double[] maximum, final boolean setNaN) {
+		try {
+			List<RasterStatistics> partialList = ParallelUtil.computeBands(length, ParallelUtil.NUMBER_OF_THREADS,
+				new ParallelUtil.Band<RasterStatistics>() {
+					@Override
+					public RasterStatistics compute(int top, int bottom) {
+						RasterStatistics partial = stats.createEmpty();
+						computeStatistics(mmbBuf.duplicate(), top, bottom, partial, missing, minimum, maximum,
+							setNaN);
+						return (partial);
+					}
+				});
+			for (RasterStatistics partial : partialList) {
+				stats.merge(partial);
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to compute raster statistics.", e);
+		}
+		if (setNaN) {
+			flush();
+		}
+		return (stats);
+	}
+
+	/**
+	 * Compute statistics for a band of rows.
+	 */
+	private void computeStatistics(MultiMappedByteBuffer view, int top, int bottom, RasterStatistics stats,
+		float missing, double[] minimum, double[] maximum, boolean setNaN) {
+		byte[] bArray = new byte[width * numBytes];
+		ByteBuffer bBuf = ByteBuffer.wrap(bArray);
+		boolean checkMissing = !Float.isNaN(missing);
+		for (int r = top; r < bottom; ++r) {
+			view.get(r, bArray);
+			switch (dataType) {
+			case Float:
+				boolean changed = false;
+				for (int c = 0; c < width; ++c) {
+					float val = bBuf.getFloat(c * 4);
+					if (Float.isNaN(val)) {
+						stats.addMissing(0);
+					} else if ((checkMissing && (val == missing)) || ((minimum != null) && (val < minimum[0]))
+						|| ((maximum != null) && (val > maximum[0]))) {
+						stats.addMissing(0);
+						if (setNaN) {
+							bBuf.putFloat(c * 4, Float.NaN);
+							changed = true;
+						}
+					} else {
+						stats.add(0, val);
+					}
+				}
+				if (changed) {
+					view.set(r, bArray);
+				}
+				break;
+			case UnsignedByte:
+				for (int c = 0; c < width; ++c) {
+					int val = MathUtil.unsignedByte(bArray[c]);
+					if (val == 0) {
+						stats.addMissing(0);
+					} else {
+						stats.add(0, val);
+					}
 				}
+				break;
+			case Integer:
+				for (int c = 0; c < width * 4; c += 4) {
+					if (bArray[c + 3] == 0) {
+						for (int i = 0; i < 3; ++i) {
+							stats.addMissing(i);
+						}
+					} else {
+						for (int i = 0; i < 3; ++i) {
+							stats.add(i, MathUtil.unsignedByte(bArray[c + i]));
+						}
+					}
+				}
+				break;
+			default:
+				break;
 			}
-			inBuf.rewind();
-			outBuf.rewind();
-			mmbBuf.set(i, outArray);
 		}
+		view.dispose();
 	}
 
 	/**
@@ -0,0 +1,317 @@
+package gov.nasa.arc.dert.raster;
+
+import gov.nasa.arc.dert.util.StringUtil;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Statistics for each band of a raster: extrema of the valid samples, the
+ * number of valid and missing samples, and a histogram. Percentiles are
+ * computed from the histogram so a color map can be auto-ranged without
+ * rescanning the raster.
+ *
+ */
+public class RasterStatistics {
+
+	// Default number of histogram bins for floating point rasters
+	public static int NUMBER_OF_BINS = 1024;
+
+	// Percentiles used for auto-ranging
+	public static double LOW_PERCENTILE = 2, HIGH_PERCENTILE = 98;
+
+	// Number of bands
+	protected int numBands;
+
+	// Extrema of valid samples
+	protected double[] minimum, maximum;
+
+	// Sample counts
+	protected long[] count, missingCount;
+
+	// Histogram and its range
+	protected long[][] histogram;
+	protected double[] histogramMinimum, histogramMaximum;
+
+	// Scale from value to bin
+	protected double[] binScale;
+
+	/**
+	 * Constructor
+	 *
+	 * @param numBands
+	 *            number of bands
+	 * @param histMin
+	 *            lower limit of the histogram for each band
+	 * @param histMax
+	 *            upper limit of the histogram for each band
+	 * @param numBins
+	 *            number of bins in the histogram
+	 */
+	public RasterStatistics(int numBands, double[] histMin, double[] histMax, int numBins) {
+		this.numBands = numBands;
+		minimum = new double[numBands];
+		maximum = new double[numBands];
+		Arrays.fill(minimum, Double.MAX_VALUE);
+		Arrays.fill(maximum, -Double.MAX_VALUE);
+		count = new long[numBands];
+		missingCount = new long[numBands];
+		histogram = new long[numBands][numBins];
+		histogramMinimum = Arrays.copyOf(histMin, numBands);
+		histogramMaximum = Arrays.copyOf(histMax, numBands);
+		binScale = new double[numBands];
+		for (int i = 0; i < numBands; ++i) {
+			double range = histogramMaximum[i] - histogramMinimum[i];
+			binScale[i] = (range > 0) ? numBins / range : 0;
+		}
+	}
+
+	/**
+	 * Create an empty copy with the same histogram configuration.
+	 *
+	 * @return
+	 */
+	public RasterStatistics createEmpty() {
+		return (new RasterStatistics(numBands, histogramMinimum, histogramMaximum, histogram[0].length));
+	}
+
+	/**
+	 * Add a valid sample.
+	 *
+	 * @param band
+	 * @param val
+	 */
+	public final void add(int band, double val) {
+		if (val < minimum[band]) {
+			minimum[band] = val;
+		}
+		if (val > maximum[band]) {
+			maximum[band] = val;
+		}
+		count[band]++;
+		long[] hist = histogram[band];
+		int bin = (int) ((val - histogramMinimum[band]) * binScale[band]);
+		if (bin < 0) {
+			bin = 0;
+		} else if (bin >= hist.length) {
+			bin = hist.length - 1;
+		}
+		hist[bin]++;
+	}
+
+	/**
+	 * Add a missing sample.
+	 *
+	 * @param band
+	 */
+	public final void addMissing(int band) {
+		missingCount[band]++;
+	}
+
+	/**
+	 * Combine statistics from another part of the raster with these.
+	 *
+	 * @param that
+	 */
+	public void merge(RasterStatistics that) {
+		for (int i = 0; i < numBands; ++i) {
+			minimum[i] = Math.min(minimum[i], that.minimum[i]);
+			maximum[i] = Math.max(maximum[i], that.maximum[i]);
+			count[i] += that.count[i];
+			missingCount[i] += that.missingCount[i];
+			for (int j = 0; j < histogram[i].length; ++j) {
+				histogram[i][j] += that.histogram[i][j];
+			}
+		}
+	}
+
+	/**
+	 * Get the number of bands.
+	 *
+	 * @return
+	 */
+	public int getNumberOfBands() {
+		return (numBands);
+	}
+
+	/**
+	 * Get the minimum valid sample for each band.
+	 *
+	 * @return
+	 */
+	public double[] getMinimum() {
+		return (minimum);
+	}
+
+	/**
+	 * Get the maximum valid sample for each band.
+	 *
+	 * @return
+	 */
+	public double[] getMaximum() {
+		return (maximum);
+	}
+
+	/**
+	 * Get the number of valid samples in a band.
+	 *
+	 * @param band
+	 * @return
+	 */
+	public long getCount(int band) {
+		return (count[band]);
+	}
+
+	/**
+	 * Get the number of missing samples in a band.
+	 *
+	 * @param band
+	 * @return
+	 */
+	public long getMissingCount(int band) {
+		return (missingCount[band]);
+	}
+
+	/**
+	 * Get the histogram for a band.
+	 *
+	 * @param band
+	 * @return
+	 */
+	public long[] getHistogram(int band) {
+		return (histogram[band]);
+	}
+
+	/**
+	 * Get the value at a given percentile of the valid samples in a band. The
+	 * value is interpolated within the histogram bin and clamped to the
+	 * extrema.
+	 *
+	 * @param band
+	 * @param percent
+	 *            0 to 100
+	 * @return the value, or NaN if there are no valid samples
+	 */
+	public double getPercentile(int band, double percent) {
+		if (count[band] == 0) {
+			return (Double.NaN);
+		}
+		long[] hist = histogram[band];
+		double target = count[band] * percent / 100.0;
+		double binWidth = (histogramMaximum[band] - histogramMinimum[band]) / hist.length;
+		long sum = 0;
+		for (int i = 0; i < hist.length; ++i) {
+			if ((hist[i] > 0) && (sum + hist[i] >= target)) {
+				double fraction = (target - sum) / hist[i];
+				double val = histogramMinimum[band] + (i + fraction) * binWidth;
+				return (Math.max(minimum[band], Math.min(maximum[band], val)));
+			}
+			sum += hist[i];
+		}
+		return (maximum[band]);
+	}
+
+	/**
+	 * Get the auto-range for a band (the low and high percentiles).
+	 *
+	 * @param band
+	 * @return the range, or null if there are no valid samples
+	 */
+	public double[] getAutoRange(int band) {
+		if (count[band] == 0) {
+			return (null);
+		}
+		return (new double[] { getPercentile(band, LOW_PERCENTILE), getPercentile(band, HIGH_PERCENTILE) });
+	}
+
+	/**
+	 * Save these statistics to layer properties.
+	 *
+	 * @param properties
+	 */
+	public void saveToProperties(Properties properties) {
+		properties.setProperty("Statistics.NumberOfBands", Integer.toString(numBands));
+		properties.setProperty("Statistics.Minimum", StringUtil.doubleArrayToString(minimum));
+		properties.setProperty("Statistics.Maximum", StringUtil.doubleArrayToString(maximum));
+		properties.setProperty("Statistics.Count", longArrayToString(count));
+		properties.setProperty("Statistics.MissingCount", longArrayToString(missingCount));
+		properties.setProperty("Statistics.HistogramMinimum", StringUtil.doubleArrayToString(histogramMinimum));
+		properties.setProperty("Statistics.HistogramMaximum", StringUtil.doubleArrayToString(histogramMaximum));
+		double[] low = new double[numBands];
+		double[] high = new double[numBands];
+		for (int i = 0; i < numBands; ++i) {
+			properties.setProperty("Statistics.Histogram." + i, longArrayToString(histogram[i]));
+			low[i] = getPercentile(i, LOW_PERCENTILE);
+			high[i] = getPercentile(i, HIGH_PERCENTILE);
+		}
+		properties.setProperty("Statistics.PercentileRange", LOW_PERCENTILE + "," + HIGH_PERCENTILE);
+		properties.setProperty("Statistics.LowPercentile", StringUtil.doubleArrayToString(low));
+		properties.setProperty("Statistics.HighPercentile", StringUtil.doubleArrayToString(high));
+	}
+
+	/**
+	 * Load statistics from layer properties.
+	 *
+	 * @param properties
+	 * @return the statistics, or null if the layer has none
+	 */
+	public static RasterStatistics loadFromProperties(Properties properties) {
+		if (properties.getProperty("Statistics.NumberOfBands") == null) {
+			return (null);
+		}
+		try {
+			int numBands = StringUtil.getIntegerValue(properties, "Statistics.NumberOfBands", true, 1, true);
+			double[] histMin = StringUtil.getDoubleArray(properties, "Statistics.HistogramMinimum", null, true);
+			double[] histMax = StringUtil.getDoubleArray(properties, "Statistics.HistogramMaximum", null, true);
+			long[][] hist = new long[numBands][];
+			for (int i = 0; i < numBands; ++i) {
+				hist[i] = stringToLongArray(StringUtil.getStringValue(properties, "Statistics.Histogram." + i, null,
+					true));
+			}
+			RasterStatistics stats = new RasterStatistics(numBands, histMin, histMax, hist[0].length);
+			stats.histogram = hist;
+			stats.minimum = StringUtil.getDoubleArray(properties, "Statistics.Minimum", null, true);
+			stats.maximum = StringUtil.getDoubleArray(properties, "Statistics.Maximum", null, true);
+			stats.count = stringToLongArray(StringUtil.getStringValue(properties, "Statistics.Count", null, true));
+			stats.missingCount = stringToLongArray(StringUtil.getStringValue(properties, "Statistics.MissingCount",
+				null, true));
+			return (stats);
+		} catch (Exception e) {
+			System.out.println("Unable to read raster statistics, see log.");
+			e.printStackTrace();
+			return (null);
+		}
+	}
+
+	private static String longArrayToString(long[] value) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < value.length; ++i) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(value[i]);
+		}
+		return (sb.toString());
+	}
+
+	private static long[] stringToLongArray(String str) {
+		String[] token = str.split(",");
+		long[] value = new long[token.length];
+		for (int i = 0; i < token.length; ++i) {
+			value[i] = Long.parseLong(token[i].trim());
+		}
+		return (value);
+	}
+
+	@Override
+	public String toString() {
+		String str = "";
+		for (int i = 0; i < numBands; ++i) {
+			str += "Band " + i + ": min=" + minimum[i] + " max=" + maximum[i] + " count=" + count[i] + " missing="
+				+ missingCount[i] + " " + LOW_PERCENTILE + "%=" + getPercentile(i, LOW_PERCENTILE) + " "
+				+ HIGH_PERCENTILE + "%=" + getPercentile(i, HIGH_PERCENTILE) + "\n";
+		}
+		return (str);
+	}
+
+}
@@ -154,7 +154,15 @@ public abstract class BasicScene implements Scene {
 	public void resize(int width, int height) {
 		this.width = width;
 		this.height = height;
+		setChanged();
+	}
+
+	/**
+	 * The scene changed and must be rendered again
+	 */
+	public void setChanged() {
 		sceneChanged.set(true);
+		SceneFramework.requestFrameUpdate();
 	}
 	
 	public int getWidth() {
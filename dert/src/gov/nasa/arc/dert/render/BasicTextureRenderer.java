@@ -17,7 +17,8 @@ import com.jogamp.opengl.glu.GLU;
 
 /**
  * This is an extension of Ardor3D's JoglTextureRenderer that filters objects
- * that shouldn't cast a shadow and can save a copy of the color buffer.
+ * that shouldn't cast a shadow and can save a copy of the color buffer or pass
+ * it to a FrameGrabber.
  *
  */
 
@@ -35,6 +36,9 @@ public class BasicTextureRenderer extends JoglTextureRenderer {
 	// RGBA buffer
 	protected ByteBuffer rgbaBuffer;
 
+	// Reads back each rendered texture to an image sequence
+	protected FrameGrabber frameGrabber;
+
 	public BasicTextureRenderer(final int width, final int height, final int depthBits, final int samples,
 		final Renderer parentRenderer, final ContextCapabilities caps) {
 		super(width, height, depthBits, samples, parentRenderer, caps);
@@ -106,6 +110,9 @@ public class BasicTextureRenderer extends JoglTextureRenderer {
 		if (saveRGBA) {
 			saveRGBABuffer();
 		}
+		if (frameGrabber != null) {
+			frameGrabber.grab(GLU.getCurrentGL());
+		}
 		super.switchCameraOut();
 	}
 
@@ -118,6 +125,16 @@ public class BasicTextureRenderer extends JoglTextureRenderer {
 		this.saveRGBA = saveRGBA;
 	}
 
+	/**
+	 * Grab each rendered texture to an image sequence
+	 * 
+	 * @param frameGrabber
+	 *            the frame grabber or null to stop
+	 */
+	public void setFrameGrabber(FrameGrabber frameGrabber) {
+		this.frameGrabber = frameGrabber;
+	}
+
 	protected void saveRGBABuffer() {
 		final GL gl = GLU.getCurrentGL();
 		if (rgbaBuffer == null) {
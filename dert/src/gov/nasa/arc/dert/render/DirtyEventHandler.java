@@ -12,7 +12,8 @@ import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.scenegraph.extension.BillboardNode;
 
 /**
- * Provides an Ardor3D DirtyEventListener for the World.
+ * Provides an Ardor3D DirtyEventListener for the World. A frame is requested
+ * when the World changes.
  *
  */
 public class DirtyEventHandler implements DirtyEventListener {
@@ -73,6 +74,9 @@ public class DirtyEventHandler implements DirtyEventListener {
 		case Destroyed:
 			break;
 		}
+		if (changed.get()) {
+			SceneFramework.requestFrameUpdate();
+		}
 		return (false);
 	}
 
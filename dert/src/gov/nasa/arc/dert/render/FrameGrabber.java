@@ -0,0 +1,209 @@
+package gov.nasa.arc.dert.render;
+
+import gov.nasa.arc.dert.view.Console;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES3;
+
+/**
+ * Saves rendered frames to a PNG image sequence without stalling the render
+ * thread. Frames are read back into two pixel buffer objects in turn, so the
+ * read of one frame completes while the next is rendered. The render thread
+ * copies a completed frame into a pooled buffer and hands it to a pool of
+ * encoder threads, which flip the rows into an image as they encode it. When
+ * every pooled buffer is waiting to be encoded the render thread waits for an
+ * encoder to finish.
+ *
+ */
+public class FrameGrabber {
+
+	// Number of encoder threads
+	public static int NUMBER_OF_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	// Number of frames that may wait to be encoded
+	public static int MAX_PENDING_FRAMES = 2 * NUMBER_OF_THREADS + 1;
+
+	// Destination directory
+	private File directory;
+
+	// Frame rectangle
+	private int x, y, width, height;
+
+	// Bytes in a frame
+	private int frameSize;
+
+	// Pixel buffer objects and the one holding the previous frame
+	private int[] pbo;
+	private int pboIndex;
+	private boolean pboPending;
+
+	// Read back store when pixel buffer objects are not available
+	private ByteBuffer store;
+
+	// Frame buffers that are free
+	private ArrayBlockingQueue<byte[]> freeList;
+
+	// Encoders
+	private ExecutorService executor;
+
+	// Frames read back
+	private int frameCount;
+
+	// An image for each encoder thread
+	private ThreadLocal<BufferedImage> image;
+
+	/**
+	 * Constructor
+	 *
+	 * @param path
+	 *            the destination directory
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public FrameGrabber(String path, int x, int y, int width, int height) {
+		directory = new File(path);
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		frameSize = 3 * width * height;
+		freeList = new ArrayBlockingQueue<byte[]>(MAX_PENDING_FRAMES);
+		for (int i = 0; i < MAX_PENDING_FRAMES; ++i) {
+			freeList.add(new byte[frameSize]);
+		}
+		image = new ThreadLocal<BufferedImage>() {
+			@Override
+			protected BufferedImage initialValue() {
+				return (new BufferedImage(FrameGrabber.this.width, FrameGrabber.this.height, BufferedImage.TYPE_3BYTE_BGR));
+			}
+		};
+		executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		Console.println("Rendering image sequence to " + path);
+	}
+
+	/**
+	 * Read back the frame just rendered. The GL context must be current.
+	 *
+	 * @param gl
+	 */
+	public void grab(GL gl) {
+		gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+		if (!gl.isGL2ES3()) {
+			// read back synchronously
+			if (store == null) {
+				store = ByteBuffer.allocateDirect(frameSize);
+			}
+			store.clear();
+			gl.glReadPixels(x, y, width, height, GL.GL_BGR, GL.GL_UNSIGNED_BYTE, store);
+			submit(store);
+			return;
+		}
+		if (pbo == null) {
+			pbo = new int[2];
+			gl.glGenBuffers(2, pbo, 0);
+			for (int i = 0; i < 2; ++i) {
+				gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pbo[i]);
+				gl.glBufferData(GL2ES3.GL_PIXEL_PACK_BUFFER, frameSize, null, GL2ES3.GL_STREAM_READ);
+			}
+		}
+		// start reading this frame and collect the previous one
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pbo[pboIndex]);
+		gl.glReadPixels(x, y, width, height, GL.GL_BGR, GL.GL_UNSIGNED_BYTE, 0);
+		pboIndex = 1 - pboIndex;
+		if (pboPending) {
+			collect(gl);
+		}
+		pboPending = true;
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+	}
+
+	/**
+	 * Collect the last frame and release the pixel buffer objects. The GL
+	 * context must be current. Frames that are waiting continue to be
+	 * encoded.
+	 *
+	 * @param gl
+	 */
+	public void stop(GL gl) {
+		if (pbo != null) {
+			if (pboPending) {
+				// the last frame was read into the other buffer
+				pboIndex = 1 - pboIndex;
+				collect(gl);
+				pboPending = false;
+			}
+			gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+			gl.glDeleteBuffers(2, pbo, 0);
+			pbo = null;
+		}
+		store = null;
+		executor.shutdown();
+		Console.println(frameCount + " frames");
+	}
+
+	private void collect(GL gl) {
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pbo[pboIndex]);
+		ByteBuffer buffer = gl.glMapBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, GL2ES3.GL_READ_ONLY);
+		if (buffer != null) {
+			submit(buffer);
+		}
+		gl.glUnmapBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER);
+	}
+
+	private void submit(ByteBuffer buffer) {
+		final byte[] frame;
+		try {
+			// wait for a free buffer if the encoders are behind
+			frame = freeList.take();
+		} catch (InterruptedException e) {
+			return;
+		}
+		buffer.position(0);
+		buffer.get(frame, 0, frameSize);
+		final int index = frameCount++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				encode(frame, index);
+			}
+		});
+	}
+
+	private void encode(byte[] frame, int index) {
+		BufferedImage bImage = image.get();
+		byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
+		// OpenGL rows start at the bottom
+		int rowSize = 3 * width;
+		for (int i = 0; i < height; ++i) {
+			System.arraycopy(frame, (height - 1 - i) * rowSize, iData, i * rowSize, rowSize);
+		}
+		freeList.add(frame);
+		try {
+			File file = new File(directory, "frame" + String.format("%07d", index) + ".png");
+			ImageOutputStream oStream = new FileImageOutputStream(file);
+			ImageIO.write(bImage, "PNG", oStream);
+			oStream.flush();
+			oStream.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+package gov.nasa.arc.dert.render;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects timing statistics for the parts of a frame and for the landscape
+ * tile loads and cache. Each section has a count, the total and largest
+ * time, and a histogram of times in power of 2 microsecond bins. Sections are
+ * timed with start and stop, which only check a flag when collection is
+ * disabled. Any thread may time a section (tile loads are timed on the loader
+ * threads).
+ *
+ * The averages over the last second are shown in the WorldScene text overlay.
+ * All of the statistics since collection was enabled can be saved to CSV and
+ * JSON files.
+ *
+ */
+public class FrameStatistics {
+
+	// Sections
+	// Render is culling and queuing the scene, Flush is drawing the queued
+	// scene and swapping buffers
+	public static final int FRAME = 0, UPDATE = 1, LANDSCAPE = 2, STITCH = 3, VIEW_DEPENDENT = 4, PRERENDER = 5,
+		LAYERS = 6, SHADOW = 7, RENDER = 8, POSTRENDER = 9, FLUSH = 10, FRAME_GRAB = 11, TILE_LOAD = 12,
+		CACHE_HIT = 13, CACHE_MISS = 14;
+
+	// Section names
+	public static final String[] NAME = { "Frame", "Update", "Landscape", "Stitch", "ViewDependent", "PreRender",
+		"Layers", "Shadow", "Render", "PostRender", "Flush", "FrameGrab", "TileLoad", "CacheHit", "CacheMiss" };
+
+	// Number of histogram bins, bin i counts times up to 2^i microseconds
+	public static final int NUMBER_OF_BINS = 24;
+
+	// Time between overlay updates (milliseconds)
+	public static long SUMMARY_INTERVAL = 1000;
+
+	// Collection is enabled
+	private static volatile boolean enabled;
+
+	// Counts, total and largest times (nanoseconds), and histograms
+	private static AtomicLongArray count = new AtomicLongArray(NAME.length);
+	private static AtomicLongArray total = new AtomicLongArray(NAME.length);
+	private static AtomicLongArray max = new AtomicLongArray(NAME.length);
+	private static AtomicLongArray histogram = new AtomicLongArray(NAME.length * NUMBER_OF_BINS);
+
+	// Counts, total times and histograms since the last summary
+	private static AtomicLongArray windowCount = new AtomicLongArray(NAME.length);
+	private static AtomicLongArray windowTotal = new AtomicLongArray(NAME.length);
+	private static AtomicLongArray windowHistogram = new AtomicLongArray(NAME.length * NUMBER_OF_BINS);
+	private static long windowStart;
+
+	// The last summary
+	private static String[] summary;
+
+	/**
+	 * Enable or disable collection. Statistics are cleared when collection is
+	 * enabled.
+	 *
+	 * @param enable
+	 */
+	public static synchronized void setEnabled(boolean enable) {
+		if (enable && !enabled) {
+			reset();
+		}
+		enabled = enable;
+	}
+
+	/**
+	 * Determine if collection is enabled
+	 *
+	 * @return
+	 */
+	public static boolean isEnabled() {
+		return (enabled);
+	}
+
+	/**
+	 * Clear the statistics
+	 */
+	public static synchronized void reset() {
+		for (int i = 0; i < NAME.length; ++i) {
+			count.set(i, 0);
+			total.set(i, 0);
+			max.set(i, 0);
+			windowCount.set(i, 0);
+			windowTotal.set(i, 0);
+		}
+		for (int i = 0; i < histogram.length(); ++i) {
+			histogram.set(i, 0);
+			windowHistogram.set(i, 0);
+		}
+		windowStart = System.nanoTime();
+		summary = null;
+	}
+
+	/**
+	 * Start timing a section
+	 *
+	 * @return the start time to pass to stop, 0 if collection is disabled
+	 */
+	public static long start() {
+		return (enabled ? System.nanoTime() : 0);
+	}
+
+	/**
+	 * Stop timing a section
+	 *
+	 * @param section
+	 * @param startTime
+	 *            the value returned by start
+	 */
+	public static void stop(int section, long startTime) {
+		if (startTime == 0) {
+			return;
+		}
+		add(section, System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Count an event
+	 *
+	 * @param section
+	 */
+	public static void count(int section) {
+		if (!enabled) {
+			return;
+		}
+		count.incrementAndGet(section);
+		windowCount.incrementAndGet(section);
+	}
+
+	/**
+	 * Add a time to a section
+	 *
+	 * @param section
+	 * @param time
+	 *            nanoseconds
+	 */
+	public static void add(int section, long time) {
+		if (!enabled) {
+			return;
+		}
+		count.incrementAndGet(section);
+		total.addAndGet(section, time);
+		windowCount.incrementAndGet(section);
+		windowTotal.addAndGet(section, time);
+		long m = max.get(section);
+		while ((time > m) && !max.compareAndSet(section, m, time)) {
+			m = max.get(section);
+		}
+		long micros = time / 1000;
+		int bin = Math.min(NUMBER_OF_BINS - 1, 64 - Long.numberOfLeadingZeros(micros));
+		histogram.incrementAndGet(section * NUMBER_OF_BINS + bin);
+		windowHistogram.incrementAndGet(section * NUMBER_OF_BINS + bin);
+	}
+
+	/**
+	 * Get a percentile of the times for a section
+	 *
+	 * @param section
+	 * @param p
+	 *            the percentile (0 to 100)
+	 * @return the upper bound of the histogram bin in milliseconds
+	 */
+	public static double getPercentile(int section, double p) {
+		return (getPercentile(histogram, section, p));
+	}
+
+	private static double getPercentile(AtomicLongArray histogram, int section, double p) {
+		long n = 0;
+		for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+			n += histogram.get(section * NUMBER_OF_BINS + i);
+		}
+		if (n == 0) {
+			return (0);
+		}
+		long target = Math.max(1, (long) Math.ceil(n * p / 100));
+		long sum = 0;
+		for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+			sum += histogram.get(section * NUMBER_OF_BINS + i);
+			if (sum >= target) {
+				return ((1L << i) / 1000.0);
+			}
+		}
+		return ((1L << (NUMBER_OF_BINS - 1)) / 1000.0);
+	}
+
+	/**
+	 * Get the lines for the text overlay. The averages and the frame time
+	 * percentile are for the last second in which frames were rendered.
+	 *
+	 * @return
+	 */
+	public static synchronized String[] getSummary() {
+		long now = System.nanoTime();
+		double sec = (now - windowStart) / 1000000000.0;
+		if ((summary != null) && (sec * 1000 < SUMMARY_INTERVAL)) {
+			return (summary);
+		}
+		double frames = Math.max(1, windowCount.get(FRAME));
+		double[] ms = new double[NAME.length];
+		for (int i = 0; i < NAME.length; ++i) {
+			// average time per frame
+			ms[i] = windowTotal.get(i) / frames / 1000000.0;
+		}
+		long loads = windowCount.get(TILE_LOAD);
+		long hits = windowCount.get(CACHE_HIT);
+		long lookups = hits + windowCount.get(CACHE_MISS);
+		summary = new String[3];
+		summary[0] = String.format(Locale.US,
+			"Frame: %.1f ms, %.1f/sec (p90 %.0f ms)  Update %.1f  PreRender %.1f  Render %.1f  PostRender %.1f  Flush %.1f",
+			ms[FRAME], windowCount.get(FRAME) / sec, getPercentile(windowHistogram, FRAME, 90), ms[UPDATE], ms[PRERENDER], ms[RENDER],
+			ms[POSTRENDER], ms[FLUSH]);
+		summary[1] = String.format(Locale.US,
+			"Landscape %.1f  Stitch %.1f  ViewDependent %.1f  Layers %.1f  Shadow %.1f  FrameGrab %.1f", ms[LANDSCAPE],
+			ms[STITCH], ms[VIEW_DEPENDENT], ms[LAYERS], ms[SHADOW], ms[FRAME_GRAB]);
+		summary[2] = String.format(Locale.US, "Tiles: %d loaded, %.1f ms each  Cache: %d lookups, %.0f%% hits", loads,
+			(loads == 0) ? 0 : windowTotal.get(TILE_LOAD) / (double) loads / 1000000.0, lookups, (lookups == 0) ? 0
+				: 100.0 * hits / lookups);
+		for (int i = 0; i < NAME.length; ++i) {
+			windowCount.set(i, 0);
+			windowTotal.set(i, 0);
+		}
+		for (int i = 0; i < windowHistogram.length(); ++i) {
+			windowHistogram.set(i, 0);
+		}
+		windowStart = now;
+		return (summary);
+	}
+
+	/**
+	 * Save the statistics to a CSV file. There is a row for each section with
+	 * times in milliseconds followed by the histogram counts.
+	 *
+	 * @param filePath
+	 * @throws IOException
+	 */
+	public static void writeCSV(String filePath) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(filePath));
+		try {
+			writer.print("Section,Count,TotalMs,MeanMs,MaxMs,P50Ms,P90Ms,P99Ms");
+			for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+				writer.print(",LE" + (1L << i) + "us");
+			}
+			writer.println();
+			for (int s = 0; s < NAME.length; ++s) {
+				long n = count.get(s);
+				double t = total.get(s) / 1000000.0;
+				writer.print(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f", NAME[s], n, t,
+					(n == 0) ? 0 : t / n, max.get(s) / 1000000.0, getPercentile(s, 50), getPercentile(s, 90),
+					getPercentile(s, 99)));
+				for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+					writer.print("," + histogram.get(s * NUMBER_OF_BINS + i));
+				}
+				writer.println();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Save the statistics to a JSON file.
+	 *
+	 * @param filePath
+	 * @throws IOException
+	 */
+	public static void writeJSON(String filePath) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(filePath));
+		try {
+			writer.println("{");
+			writer.print("  \"binUpperBoundsUs\": [");
+			for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+				writer.print(((i == 0) ? "" : ", ") + (1L << i));
+			}
+			writer.println("],");
+			writer.println("  \"sections\": [");
+			for (int s = 0; s < NAME.length; ++s) {
+				long n = count.get(s);
+				double t = total.get(s) / 1000000.0;
+				writer.print(String.format(Locale.US, "    {\"name\": \"%s\", \"count\": %d, \"totalMs\": %.3f, "
+					+ "\"meanMs\": %.3f, \"maxMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, "
+					+ "\"histogram\": [", NAME[s], n, t, (n == 0) ? 0 : t / n, max.get(s) / 1000000.0,
+					getPercentile(s, 50), getPercentile(s, 90), getPercentile(s, 99)));
+				for (int i = 0; i < NUMBER_OF_BINS; ++i) {
+					writer.print(((i == 0) ? "" : ", ") + histogram.get(s * NUMBER_OF_BINS + i));
+				}
+				writer.println("]}" + ((s < NAME.length - 1) ? "," : ""));
+			}
+			writer.println("  ]");
+			writer.println("}");
+		} finally {
+			writer.close();
+		}
+	}
+
+}
@@ -1,26 +1,12 @@
 package gov.nasa.arc.dert.render;
 
-import gov.nasa.arc.dert.Dert;
-import gov.nasa.arc.dert.util.ImageUtil;
-import gov.nasa.arc.dert.view.Console;
-
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.io.File;
-import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
-
 import com.ardor3d.annotation.MainThread;
 import com.ardor3d.framework.DisplaySettings;
 import com.ardor3d.framework.Scene;
 import com.ardor3d.framework.jogl.CapsUtil;
 import com.ardor3d.framework.jogl.JoglCanvasRenderer;
-import com.ardor3d.image.ImageDataFormat;
-import com.ardor3d.image.PixelDataType;
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.type.ReadOnlyRectangle2;
 import com.ardor3d.renderer.Camera;
@@ -36,11 +22,10 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
     private static final Logger LOGGER = Logger.getLogger(JoglCanvasRendererDouble.class.getName());
 	
 	// Fields for frame grab
-	private ByteBuffer store;
-	private int frameCount;
-	private boolean frameGrab;
+	private boolean frameGrab, frameGrabPaused;
 	private int grabX, grabY, grabWidth, grabHeight;
 	private String grabFilePath;
+	private FrameGrabber frameGrabber;
 	
 	// Fields that are not accessible in super class.
 	private boolean _contextDropAndReclaimOnDrawEnabled;
@@ -113,13 +98,15 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
         _renderer.clearBuffers(_frameClear);
 
         final boolean drew = _scene.renderUnto(_renderer);
+        long t = FrameStatistics.start();
         _renderer.flushFrame(drew && _doSwap);
+        FrameStatistics.stop(FrameStatistics.FLUSH, t);
         
         if (clipRectangle != null)
         	_renderer.popClip();
         
-        if (drew && _doSwap && frameGrab)
-        	grabRGBFrame();
+        if (drew && _doSwap && frameGrab && !frameGrabPaused)
+        	grabFrame();
 
         // release the context if we're done (swapped and all)
         if (_doSwap) {
@@ -143,96 +130,47 @@ public class JoglCanvasRendererDouble extends JoglCanvasRenderer {
 	public void enableFrameGrab(String grabFilePath, int grabX, int grabY, int grabWidth, int grabHeight) {
 		this.grabFilePath = grabFilePath;
 		this.frameGrab = (grabFilePath != null);
+		this.frameGrabPaused = false;
 		this.grabX = grabX;
 		this.grabY = grabY;
 		this.grabWidth = grabWidth;
 		this.grabHeight = grabHeight;
 		if (!frameGrab) {
-			if (store != null) {
-				Console.println(frameCount+" frames");
-				store = null;
-				System.gc();
+			if (frameGrabber != null) {
+				makeCurrentContext();
+				frameGrabber.stop(_context.getGL());
+				releaseCurrentContext();
+				frameGrabber = null;
 			}
 		}
 	}
 	
 	/**
-	 * Grab the current frame to a PNG file.
+	 * Skip rendered frames without ending the image sequence.
+	 * 
+	 * @param paused
 	 */
-	public void grabRGBAFrame() {
-		makeCurrentContext();
-		if (store == null) {
-			Console.println("Rendering image sequence to "+grabFilePath);
-			frameCount = 0;
-			int n = _renderer.getExpectedBufferSizeToGrabScreenContents(ImageDataFormat.RGBA, PixelDataType.Byte, grabWidth, grabHeight);
-			store = ByteBuffer.allocateDirect(n);
-			store.limit(n);
-		}
-		
-		try {
-			store.position(0);
-			_renderer.finishGraphics();
-			_renderer.grabScreenContents(store, ImageDataFormat.RGBA, PixelDataType.UnsignedByte, grabX, grabY, grabWidth, grabHeight);
-			if (Dert.isMac) {
-				ImageUtil.doSwap(store);
-			}
-			ImageUtil.doFlip(store, grabWidth * 4, grabHeight);
-			BufferedImage bImage = new BufferedImage(grabWidth, grabHeight, BufferedImage.TYPE_4BYTE_ABGR);
-			byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-			store.get(iData, 0, iData.length);
-			String filePath = "frame"+String.format("%07d", frameCount)+".png";
-			File file = new File(grabFilePath);
-			if (!file.exists())
-				file.mkdirs();
-			file = new File(file, filePath);
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			ImageIO.write(bImage, "PNG", oStream);
-			oStream.flush();
-			oStream.close();
-			frameCount ++;
-		}
-		catch (Exception e) {
-			e.printStackTrace();
-		}
-		releaseCurrentContext();
+	public void pauseFrameGrab(boolean paused) {
+		frameGrabPaused = paused;
 	}
 	
 	/**
-	 * Grab the current frame to a PNG file.
+	 * Grab the current frame to the image sequence. The frame is read back
+	 * and encoded in the background.
 	 */
-	public void grabRGBFrame() {
+	public void grabFrame() {
+		long t = FrameStatistics.start();
 		makeCurrentContext();
-		if (store == null) {
-			Console.println("Rendering image sequence to "+grabFilePath);
-			frameCount = 0;
-			int n = _renderer.getExpectedBufferSizeToGrabScreenContents(ImageDataFormat.RGB, PixelDataType.Byte, grabWidth, grabHeight);
-			store = ByteBuffer.allocateDirect(n);
-			store.limit(n);
-		}
-		
+		if (frameGrabber == null)
+			frameGrabber = new FrameGrabber(grabFilePath, grabX, grabY, grabWidth, grabHeight);
 		try {
-			store.position(0);
-			_renderer.finishGraphics();
-			_renderer.grabScreenContents(store, ImageDataFormat.RGB, PixelDataType.UnsignedByte, grabX, grabY, grabWidth, grabHeight);
-			ImageUtil.doFlip(store, grabWidth * 3, grabHeight);
-			BufferedImage bImage = new BufferedImage(grabWidth, grabHeight, BufferedImage.TYPE_3BYTE_BGR);
-			byte[] iData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
-			store.get(iData, 0, iData.length);
-			String filePath = "frame"+String.format("%07d", frameCount)+".png";
-			File file = new File(grabFilePath);
-			if (!file.exists())
-				file.mkdirs();
-			file = new File(file, filePath);
-			ImageOutputStream oStream = new FileImageOutputStream(file);
-			ImageIO.write(bImage, "PNG", oStream);
-			oStream.flush();
-			oStream.close();
-			frameCount ++;
+			frameGrabber.grab(_context.getGL());
 		}
 		catch (Exception e) {
 			e.printStackTrace();
 		}
 		releaseCurrentContext();
+		FrameStatistics.stop(FrameStatistics.FRAME_GRAB, t);
 	}
 	
 	/**
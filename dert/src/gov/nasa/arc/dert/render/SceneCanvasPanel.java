@@ -81,7 +81,7 @@ public class SceneCanvasPanel extends Panel implements Updater {
 			@Override
 			public void display(GLAutoDrawable glautodrawable) {
 //				System.err.println("SceneCanvasPanel.display ");
-				SceneCanvasPanel.this.scene.sceneChanged.set(true);
+				SceneCanvasPanel.this.scene.setChanged();
 			}
 		};
 		canvas.addGLEventListener(listener);
@@ -142,6 +142,10 @@ public class SceneCanvasPanel extends Panel implements Updater {
 		canvasRenderer.enableFrameGrab(grabFilePath, 0, 0, scene.getWidth(), scene.getHeight());
 	}
 	
+	public void pauseFrameGrab(boolean paused) {
+		canvasRenderer.pauseFrameGrab(paused);
+	}
+	
 	public void resize(int x, int y, int width, int height) {
 		canvasWidth = width;
 		canvasHeight = height;
@@ -11,13 +11,22 @@ import com.ardor3d.renderer.jogl.JoglTextureRendererProvider;
 import com.ardor3d.util.Timer;
 
 /**
- * Provides continuous update of Ardor3D windows (SceneCanvasPanel).
+ * Updates Ardor3D windows (SceneCanvasPanel) when something changes. Frames
+ * are requested by changes to the scene graph (see DirtyEventHandler), the
+ * viewpoint, the scenes, input on a canvas, and landscape tiles that finish
+ * loading. Requests that arrive while a frame is waiting or running are
+ * combined into one frame. Frames start at least millisBetweenFrames apart
+ * and further apart when rendering takes more than MAX_FRAME_LOAD of the
+ * event queue. When nothing changes no frames are run.
  *
  */
 public class SceneFramework {
 	
 	public static int millisBetweenFrames = 33;
 
+	// Largest fraction of the event queue time spent on frames
+	public static double MAX_FRAME_LOAD = 0.75;
+
 	private static SceneFramework instance;
 
 	// Handles frame update
@@ -26,20 +35,32 @@ public class SceneFramework {
 	// Flag to stop running
 	private volatile boolean doit;
 
-	// Count of queued events
-	private int count = 0;
+	// A frame was requested, a frame is queued or running
+	private boolean requested, pending;
 	
 	// Framework is suspended
 	private boolean suspended;
-	
+
+	// Minimum time between frames (milliseconds)
+	private int sleepTime;
+
+	// Average frame time and start of the last frame (nanoseconds)
+	private double frameTime;
+	private long frameStart;
 
 	// Execute a single update on the AWT event queue.
 	private final Runnable runnable = new Runnable() {
 		@Override
 		public void run() {
-			frameHandler.updateFrame();
-			World.markClean();
-			count--;
+			long t = System.nanoTime();
+			try {
+				frameHandler.updateFrame();
+				World.markClean();
+			} finally {
+				t = System.nanoTime() - t;
+				FrameStatistics.add(FrameStatistics.FRAME, t);
+				frameDone(t);
+			}
 		}
 	};
 
@@ -61,6 +82,16 @@ public class SceneFramework {
 		return (instance);
 	}
 
+	/**
+	 * Request a frame if the framework has been created. There is no
+	 * framework when the scene graph is used without a display (in tests).
+	 */
+	public static void requestFrameUpdate() {
+		if (instance != null) {
+			instance.requestFrame();
+		}
+	}
+
 	/**
 	 * Constructor
 	 */
@@ -76,40 +107,83 @@ public class SceneFramework {
 	 * Start the frame handler update
 	 * 
 	 * @param sleepTime
-	 *            time to sleep between update events
+	 *            minimum time between frames
 	 */
 	public void startFrameHandlerUpdate(int sleepTime) {
 		doit = true;
 		if (sleepTime <= 0) {
 			sleepTime = millisBetweenFrames;
 		}
-		final int sleepyTime = sleepTime;
+		this.sleepTime = sleepTime;
+		requestFrame();
 		Thread t = new Thread(new Runnable() {
 			@Override
 			public void run() {
 				while (doit) {
 					try {
-						Thread.sleep(sleepyTime);
-						if ((count < 3) && !suspended) {
-							// single assignment should be thread safe - could
-							// make count atomic
-							count++;
-							EventQueue.invokeLater(runnable);
-						}
+						scheduleFrame();
+					} catch (InterruptedException e) {
+						return;
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
 				}
 			}
-		});
+		}, "SceneFramework");
+		t.setDaemon(true);
 		t.start();
 	}
 
+	/**
+	 * Wait for a frame request and queue the frame when it is time.
+	 */
+	private void scheduleFrame() throws InterruptedException {
+		long delay;
+		synchronized (this) {
+			while (doit && (!requested || pending || suspended)) {
+				wait();
+			}
+			if (!doit) {
+				return;
+			}
+			long interval = Math.max(sleepTime * 1000000L, (long) (frameTime / MAX_FRAME_LOAD));
+			delay = frameStart + interval - System.nanoTime();
+		}
+		// requests that arrive while we wait are part of this frame
+		if (delay > 0) {
+			Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+		}
+		synchronized (this) {
+			if (suspended || pending || !doit) {
+				return;
+			}
+			requested = false;
+			pending = true;
+			frameStart = System.nanoTime();
+		}
+		EventQueue.invokeLater(runnable);
+	}
+
+	private synchronized void frameDone(long time) {
+		frameTime = (frameTime == 0) ? time : 0.8 * frameTime + 0.2 * time;
+		pending = false;
+		notifyAll();
+	}
+
+	/**
+	 * Request a frame. May be called from any thread.
+	 */
+	public synchronized void requestFrame() {
+		requested = true;
+		notifyAll();
+	}
+
 	/**
 	 * Stop updating
 	 */
-	public void stopFrameHandlerUpdate() {
+	public synchronized void stopFrameHandlerUpdate() {
 		doit = false;
+		notifyAll();
 	}
 
 	/**
@@ -121,8 +195,15 @@ public class SceneFramework {
 		return (frameHandler);
 	}
 	
-	public void suspend(boolean val) {
+	/**
+	 * Suspend updating. A frame is requested when updating resumes.
+	 * 
+	 * @param val
+	 */
+	public synchronized void suspend(boolean val) {
 		suspended = val;
+		requested |= !val;
+		notifyAll();
 	}
 
 }
@@ -1,6 +1,8 @@
 package gov.nasa.arc.dert.render;
 
 import gov.nasa.arc.dert.landscape.QuadTreeMesh;
+import gov.nasa.arc.dert.scene.featureset.LineBatch;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
 import gov.nasa.arc.dert.util.MathUtil;
 import gov.nasa.arc.dert.util.SpatialPickResults;
 
@@ -60,6 +62,11 @@ public class SelectionHandler {
 		IntersectionRecord record = null;
 		int index = -1;
 		double dist = Double.MAX_VALUE;
+		// lines are picked by distance to the ray, the Feature is found from the vertex
+		// batched markers are picked by instance, the owner is found from the instance
+		Spatial batchPick = null;
+		Vector3 batchPosition = new Vector3();
+		Vector3 tmpPosition = new Vector3();
 		for (int i = 0; i < mesh.length; ++i) {
 			if (terrainOnly) {
 				if (!(mesh[i] instanceof QuadTreeMesh))
@@ -75,6 +82,37 @@ public class SelectionHandler {
 				continue;
 			}
 
+			if (mesh[i] instanceof LineBatch) {
+				LineBatch lineBatch = (LineBatch) mesh[i];
+				int vertex = lineBatch.findPick(pickRay, tmpPosition);
+				if (vertex >= 0) {
+					double d = pickRay.getOrigin().distance(tmpPosition);
+					if (d < dist) {
+						dist = d;
+						batchPick = lineBatch.getFeature(vertex);
+						batchPosition.set(tmpPosition);
+						record = null;
+						meshIndex = -1;
+					}
+				}
+				continue;
+			}
+			if (mesh[i].getParent() instanceof MarkerBatch) {
+				MarkerBatch markerBatch = (MarkerBatch) mesh[i].getParent();
+				int instance = markerBatch.findPick(pickRay, tmpPosition);
+				if (instance >= 0) {
+					double d = pickRay.getOrigin().distance(tmpPosition);
+					if (d < dist) {
+						dist = d;
+						batchPick = markerBatch.getOwner(instance);
+						batchPosition.set(tmpPosition);
+						record = null;
+						meshIndex = -1;
+					}
+				}
+				continue;
+			}
+
 			pickResults = new PrimitivePickResults();
 			PickingUtil.findPick(mesh[i], pickRay, pickResults);
 			if (pickResults.getNumber() > 0) {
@@ -88,10 +126,16 @@ public class SelectionHandler {
 						index = closestIndex;
 						record = ir;
 						meshIndex = i;
+						batchPick = null;
 					}
 				}
 			}
 		}
+		if (batchPick != null) {
+			position.set(batchPosition);
+			normal.set(Vector3.UNIT_Z);
+			return (batchPick);
+		}
 		if (record == null) {
 			return (null);
 		}
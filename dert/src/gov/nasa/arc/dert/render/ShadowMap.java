@@ -136,7 +136,9 @@ public class ShadowMap extends ProjectedDepthTexture {
 	@Override
 	public void doPrerender(Renderer renderer) {
 		if (isEnabled) {
+			long t = FrameStatistics.start();
 			super.doPrerender(renderer);
+			FrameStatistics.stop(FrameStatistics.SHADOW, t);
 		}
 	}
 
@@ -4,9 +4,7 @@ import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.landscape.QuadTree;
 import gov.nasa.arc.dert.scene.MapElement;
-import gov.nasa.arc.dert.scenegraph.FigureMarker;
-import gov.nasa.arc.dert.scenegraph.LineStrip;
-import gov.nasa.arc.dert.scenegraph.Marker;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
 import gov.nasa.arc.dert.state.MapElementState;
 import gov.nasa.arc.dert.state.MapElementState.Type;
 import gov.nasa.arc.dert.util.SpatialUtil;
@@ -44,6 +42,14 @@ public class Feature
 	
 	private boolean labelVisible;
 
+	// The batch with the lines of this feature and their vertex range
+	private LineBatch lineBatch;
+	private int lineStart, lineEnd;
+
+	// The batch with the points of this feature and their instance range
+	private MarkerBatch markerBatch;
+	private int pointStart, pointEnd;
+
 	/**
 	 * Constructor
 	 * 
@@ -83,6 +89,12 @@ public class Feature
 		} else {
 			getSceneHints().setCullHint(CullHint.Always);
 		}
+		if (lineBatch != null) {
+			lineBatch.updateIndices();
+		}
+		if (markerBatch != null) {
+			markerBatch.updateIndices();
+		}
 		markDirty(DirtyType.RenderState);
 	}
 
@@ -117,64 +129,34 @@ public class Feature
 	 */
 	public void setColor(Color color) {
 		this.color = color;
-		setColor(this);
-	}
-
-	private void setColor(Node node) {
-		int n = node.getNumberOfChildren();
-		for (int i = 0; i < n; ++i) {
-			Spatial child = node.getChild(i);
-			if (child instanceof LineStrip) {
-				((LineStrip) child).setColor(color);
-			}
-			else if (child instanceof FigureMarker) {
-				((FigureMarker) child).setColor(color);
-			}
-			else if (child instanceof Node) {
-				setColor((Node) child);
-			}
+		if (markerBatch != null) {
+			markerBatch.setColor(pointStart, pointEnd, color);
 		}
 	}
 
 	/**
-	 * Update the elevation (Z coordinate) for the lines
+	 * Update the elevation (Z coordinate) for the lines and points of this
+	 * feature.
 	 */
 	@Override
 	public boolean updateElevation(QuadTree quadTree) {
 		boolean modified = false;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof LineStrip) {
-				LineStrip lineStrip = (LineStrip) child;
-				if (lineStrip.intersects(quadTree)) {
-					lineStrip.updateElevation(quadTree);
-					modified = true;
-				}
-			}
-			else if (child instanceof FigureMarker) {
-				FigureMarker fm = (FigureMarker)child;
-				modified |= fm.updateElevation(quadTree);
-			}
+		if (lineBatch != null) {
+			modified |= lineBatch.updateElevation(quadTree, lineStart, lineEnd);
+		}
+		if (markerBatch != null) {
+			modified |= markerBatch.updateElevation(quadTree, pointStart, pointEnd);
 		}
 		return (modified);
 	}
 
 	/**
-	 * Set the vertical exaggeration
+	 * Set the vertical exaggeration (does nothing). The batches are
+	 * exaggerated by the FeatureSet.
 	 */
 	@Override
 	public void setVerticalExaggeration(double vertExag, double oldVertExag, double minZ) {
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof LineStrip) {
-				LineStrip lineStrip = (LineStrip) child;
-				lineStrip.setScale(1, 1, vertExag);
-			}
-			else if (child instanceof FigureMarker) {
-				FigureMarker fm = (FigureMarker)child;
-				fm.setVerticalExaggeration(vertExag, oldVertExag, minZ);
-			}
-		}
+		// nothing here
 	}
 
 	/**
@@ -190,18 +172,19 @@ public class Feature
 	 */
 	@Override
 	public double getSeekPointAndDistance(Vector3 point) {
-		Spatial child = getChild(0);
-		double distance = 1;
-		if (child instanceof Marker) {
-			point.set(child.getWorldTranslation());
-			distance = Math.max(((Marker)child).getSize(), 20);
+		if ((lineBatch != null) && (lineEnd > lineStart)) {
+			return (lineBatch.getSeekPointAndDistance(lineStart, lineEnd, point));
+		}
+		if ((markerBatch != null) && (pointEnd > pointStart)) {
+			return (markerBatch.getSeekPointAndDistance(pointStart, pointEnd, point));
 		}
-		else {
-			BoundingVolume bv = child.getWorldBound();
-			point.set(bv.getCenter());
-			distance = bv.getRadius();
+		if (getNumberOfChildren() == 0) {
+			point.set(getWorldTranslation());
+			return (1);
 		}
-		return (distance);
+		BoundingVolume bv = getChild(0).getWorldBound();
+		point.set(bv.getCenter());
+		return (bv.getRadius());
 	}
 
 	/**
@@ -210,19 +193,8 @@ public class Feature
 	@Override
 	public void setLabelVisible(boolean visible) {
 		labelVisible = visible;
-		setLabelVisible(this);
-	}
-
-	private void setLabelVisible(Node node) {
-		int n = node.getNumberOfChildren();
-		for (int i = 0; i < n; ++i) {
-			Spatial child = node.getChild(i);
-			if (child instanceof FigureMarker) {
-				((FigureMarker) child).setLabelVisible(labelVisible);
-			}
-			else if (child instanceof Node) {
-				setLabelVisible((Node) child);
-			}
+		if (markerBatch != null) {
+			markerBatch.setLabelVisible(pointStart, pointEnd, visible);
 		}
 	}
 
@@ -235,37 +207,95 @@ public class Feature
 	}
 	
 	public void setSize(float size) {
-		setSize(this, size);
-	}
-
-	private void setSize(Node node, float size) {
-		int n = node.getNumberOfChildren();
-		for (int i = 0; i < n; ++i) {
-			Spatial child = node.getChild(i);
-			if (child instanceof FigureMarker) {
-				((FigureMarker) child).setSize(size);
-			}
-			else if (child instanceof Node) {
-				setSize((Node) child, size);
-			}
+		if (markerBatch != null) {
+			markerBatch.setSize(pointStart, pointEnd, size);
 		}
 	}
-	
-	public void setLineWidth(float lineWidth) {
-		setLineWidth(this, lineWidth);
-	}
-
-	private void setLineWidth(Node node, float lineWidth) {
-		int n = node.getNumberOfChildren();
-		for (int i = 0; i < n; ++i) {
-			Spatial child = node.getChild(i);
-			if (child instanceof LineStrip) {
-				((LineStrip) child).setLineWidth(lineWidth);
-			}
-			else if (child instanceof Node) {
-				setLineWidth((Node) child, lineWidth);
-			}
-		}
+
+	/**
+	 * Set the range of vertices for the lines of this feature.
+	 * 
+	 * @param lineBatch
+	 *            the batch containing the lines
+	 * @param start
+	 *            the first vertex
+	 * @param end
+	 *            the vertex after the last one
+	 */
+	public void setLineRange(LineBatch lineBatch, int start, int end) {
+		this.lineBatch = lineBatch;
+		lineStart = start;
+		lineEnd = end;
+	}
+
+	/**
+	 * Get the batch containing the lines of this feature.
+	 * 
+	 * @return
+	 */
+	public LineBatch getLineBatch() {
+		return (lineBatch);
+	}
+
+	/**
+	 * Get the first vertex of the lines in the batch.
+	 * 
+	 * @return
+	 */
+	public int getLineStart() {
+		return (lineStart);
+	}
+
+	/**
+	 * Get the vertex after the last one of the lines in the batch.
+	 * 
+	 * @return
+	 */
+	public int getLineEnd() {
+		return (lineEnd);
+	}
+
+	/**
+	 * Set the range of instances for the points of this feature.
+	 * 
+	 * @param markerBatch
+	 *            the batch containing the points
+	 * @param start
+	 *            the first instance
+	 * @param end
+	 *            the instance after the last one
+	 */
+	public void setPointRange(MarkerBatch markerBatch, int start, int end) {
+		this.markerBatch = markerBatch;
+		pointStart = start;
+		pointEnd = end;
+	}
+
+	/**
+	 * Get the batch containing the points of this feature.
+	 * 
+	 * @return
+	 */
+	public MarkerBatch getMarkerBatch() {
+		return (markerBatch);
+	}
+
+	/**
+	 * Get the first instance of the points in the batch.
+	 * 
+	 * @return
+	 */
+	public int getPointStart() {
+		return (pointStart);
+	}
+
+	/**
+	 * Get the instance after the last one of the points in the batch.
+	 * 
+	 * @return
+	 */
+	public int getPointEnd() {
+		return (pointEnd);
 	}
 
 	/**
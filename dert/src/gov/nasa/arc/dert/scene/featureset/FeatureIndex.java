@@ -0,0 +1,238 @@
+package gov.nasa.arc.dert.scene.featureset;
+
+import gov.nasa.arc.dert.landscape.QuadTree;
+import gov.nasa.arc.dert.scenegraph.LineStrip;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Grid bucket index of the line vertices and points of a FeatureSet. The
+ * line and marker batches are split into runs of consecutive vertices or
+ * instances that fall in the same grid cell. When a quad tree changes, only
+ * the runs and points in the cells that overlap it are draped on the new
+ * surface.
+ *
+ */
+public class FeatureIndex {
+
+	// Maximum number of grid cells along a side
+	public static int MAX_CELLS = 256;
+
+	// Average number of vertices in a cell
+	public static int CELL_SIZE = 16;
+
+	/**
+	 * A run of line strip vertices or marker instances in a grid cell.
+	 */
+	protected static class Entry {
+
+		// A LineStrip or a MarkerBatch
+		protected Spatial spatial;
+
+		// The vertex or instance range
+		protected int start, end;
+
+		protected Entry(Spatial spatial, int start, int end) {
+			this.spatial = spatial;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	// Grid origin
+	private double minX, minY;
+
+	// Size of a grid cell
+	private double cellWidth, cellLength;
+
+	// Grid dimensions
+	private int columns, rows;
+
+	// Grid cells, row major
+	private ArrayList<ArrayList<Entry>> cell;
+
+	private Vector3 location = new Vector3();
+
+	/**
+	 * Constructor
+	 *
+	 * @param featureSet
+	 */
+	public FeatureIndex(FeatureSet featureSet) {
+		// find the extent of the vertices and points
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		int count = 0;
+		ArrayList<Spatial> list = getSpatials(featureSet);
+		for (int i = 0; i < list.size(); ++i) {
+			Spatial spatial = list.get(i);
+			if (spatial instanceof LineStrip) {
+				FloatBuffer vertex = ((LineStrip) spatial).getMeshData().getVertexBuffer();
+				int n = vertex.limit();
+				for (int j = 0; j < n; j += 3) {
+					double x = vertex.get(j);
+					double y = vertex.get(j + 1);
+					minX = Math.min(minX, x);
+					minY = Math.min(minY, y);
+					maxX = Math.max(maxX, x);
+					maxY = Math.max(maxY, y);
+				}
+				count += n / 3;
+			} else {
+				MarkerBatch markerBatch = (MarkerBatch) spatial;
+				int n = markerBatch.getInstanceCount();
+				for (int j = 0; j < n; ++j) {
+					markerBatch.getLocation(j, location);
+					minX = Math.min(minX, location.getX());
+					minY = Math.min(minY, location.getY());
+					maxX = Math.max(maxX, location.getX());
+					maxY = Math.max(maxY, location.getY());
+				}
+				count += n;
+			}
+		}
+		if (count == 0) {
+			minX = 0;
+			minY = 0;
+			maxX = 0;
+			maxY = 0;
+		}
+
+		// size the grid for the number of vertices
+		int n = (int) Math.ceil(Math.sqrt((double) count / CELL_SIZE));
+		n = Math.max(1, Math.min(n, MAX_CELLS));
+		columns = n;
+		rows = n;
+		cellWidth = Math.max((maxX - minX) / columns, Double.MIN_NORMAL);
+		cellLength = Math.max((maxY - minY) / rows, Double.MIN_NORMAL);
+		cell = new ArrayList<ArrayList<Entry>>(columns * rows);
+		for (int i = 0; i < columns * rows; ++i) {
+			cell.add(null);
+		}
+
+		// fill the cells
+		for (int i = 0; i < list.size(); ++i) {
+			Spatial spatial = list.get(i);
+			if (spatial instanceof LineStrip) {
+				FloatBuffer vertex = ((LineStrip) spatial).getMeshData().getVertexBuffer();
+				int nv = vertex.limit() / 3;
+				int start = 0;
+				int current = -1;
+				for (int j = 0; j < nv; ++j) {
+					int c = getCell(vertex.get(j * 3), vertex.get(j * 3 + 1));
+					if (c != current) {
+						if (current >= 0) {
+							addEntry(current, new Entry(spatial, start, j));
+						}
+						current = c;
+						start = j;
+					}
+				}
+				if (current >= 0) {
+					addEntry(current, new Entry(spatial, start, nv));
+				}
+			} else {
+				MarkerBatch markerBatch = (MarkerBatch) spatial;
+				int ni = markerBatch.getInstanceCount();
+				int start = 0;
+				int current = -1;
+				for (int j = 0; j < ni; ++j) {
+					markerBatch.getLocation(j, location);
+					int c = getCell(location.getX(), location.getY());
+					if (c != current) {
+						if (current >= 0) {
+							addEntry(current, new Entry(spatial, start, j));
+						}
+						current = c;
+						start = j;
+					}
+				}
+				if (current >= 0) {
+					addEntry(current, new Entry(spatial, start, ni));
+				}
+			}
+		}
+	}
+
+	private ArrayList<Spatial> getSpatials(FeatureSet featureSet) {
+		ArrayList<Spatial> list = new ArrayList<Spatial>();
+		list.addAll(featureSet.getLineBatches());
+		list.addAll(featureSet.getMarkerBatches());
+		return (list);
+	}
+
+	private int getColumn(double x) {
+		int c = (int) Math.floor((x - minX) / cellWidth);
+		return (Math.max(0, Math.min(c, columns - 1)));
+	}
+
+	private int getRow(double y) {
+		int r = (int) Math.floor((y - minY) / cellLength);
+		return (Math.max(0, Math.min(r, rows - 1)));
+	}
+
+	private int getCell(double x, double y) {
+		return (getRow(y) * columns + getColumn(x));
+	}
+
+	private void addEntry(int index, Entry entry) {
+		ArrayList<Entry> list = cell.get(index);
+		if (list == null) {
+			list = new ArrayList<Entry>();
+			cell.set(index, list);
+		}
+		list.add(entry);
+	}
+
+	/**
+	 * Drape the vertices and points that lie in a quad tree on its surface.
+	 *
+	 * @param quadTree
+	 * @return true if any vertex or point was modified
+	 */
+	public boolean updateElevation(QuadTree quadTree) {
+		Vector3[] testPoints = quadTree.getTestPoints();
+		if (testPoints == null) {
+			return (false);
+		}
+		// the quad tree lower left and upper right corners
+		double qMinX = testPoints[0].getX();
+		double qMinY = testPoints[0].getY();
+		double qMaxX = testPoints[2].getX();
+		double qMaxY = testPoints[2].getY();
+		if ((qMaxX < minX) || (qMinX > minX + columns * cellWidth) || (qMaxY < minY)
+			|| (qMinY > minY + rows * cellLength)) {
+			return (false);
+		}
+		int c0 = getColumn(qMinX);
+		int c1 = getColumn(qMaxX);
+		int r0 = getRow(qMinY);
+		int r1 = getRow(qMaxY);
+		boolean modified = false;
+		for (int r = r0; r <= r1; ++r) {
+			for (int c = c0; c <= c1; ++c) {
+				ArrayList<Entry> list = cell.get(r * columns + c);
+				if (list == null) {
+					continue;
+				}
+				for (int i = 0; i < list.size(); ++i) {
+					Entry entry = list.get(i);
+					if (entry.spatial instanceof LineStrip) {
+						modified |= ((LineStrip) entry.spatial).updateElevation(quadTree, entry.start, entry.end);
+					} else {
+						modified |= ((MarkerBatch) entry.spatial).updateElevation(quadTree, entry.start, entry.end);
+					}
+				}
+			}
+		}
+		return (modified);
+	}
+
+}
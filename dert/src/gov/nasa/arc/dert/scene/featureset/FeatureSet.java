@@ -1,13 +1,13 @@
 package gov.nasa.arc.dert.scene.featureset;
 
 import gov.nasa.arc.dert.icon.Icons;
-import gov.nasa.arc.dert.io.geojson.GeoJsonObject;
 import gov.nasa.arc.dert.io.geojson.GeojsonLoader;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.landscape.QuadTree;
 import gov.nasa.arc.dert.raster.SpatialReferenceSystem;
 import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scenegraph.GroupNode;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
 import gov.nasa.arc.dert.state.FeatureSetState;
 import gov.nasa.arc.dert.state.MapElementState;
 import gov.nasa.arc.dert.state.MapElementState.Type;
@@ -18,6 +18,7 @@ import gov.nasa.arc.dert.viewpoint.BasicCamera;
 import gov.nasa.arc.dert.viewpoint.ViewDependent;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Properties;
 
 import javax.swing.Icon;
@@ -58,13 +59,29 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	
 	private float size, lineWidth;
 
+	// Index of vertices and points for updating elevation
+	private FeatureIndex featureIndex;
+
+	// The lines of all features, one batch for each group of features loaded
+	private ArrayList<LineBatch> lineBatchList;
+
+	// The points of all features, one batch for each group of features loaded
+	private ArrayList<MarkerBatch> markerBatchList;
+
+	// Current vertical exaggeration
+	private double vertExag = 1;
+
+	// The loader filling this FeatureSet in the background (null when done)
+	private FeatureSetLoader loader;
+
 	/**
-	 * Constructor
+	 * Constructor for an empty FeatureSet to be filled by a FeatureSetLoader
 	 * 
 	 * @param state
 	 */
 	public FeatureSet(FeatureSetState state) {
-		this(state, null, Landscape.getInstance().getSpatialReferenceSystem());
+		super(state.name);
+		initialize(state);
 	}
 
 	/**
@@ -75,7 +92,20 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	public FeatureSet(FeatureSetState state, String elevAttrName, SpatialReferenceSystem srs) {
 		super(state.name);
+		initialize(state);
+		// Load the vector file into an Ardor3D object.
+		GeojsonLoader jsonLoader = new GeojsonLoader(srs, elevAttrName, state.labelProp, ground, size, lineWidth);
+		jsonLoader.load(filePath, this, color, state.isProjected);
+		if (getNumberOfChildren() == 0) {
+			throw new IllegalStateException("No vectors found.");
+		}
+		
+	}
+	
+	private void initialize(FeatureSetState state) {
 		location = new Vector3();
+		lineBatchList = new ArrayList<LineBatch>();
+		markerBatchList = new ArrayList<MarkerBatch>();
 		this.filePath = state.filePath;
 		ground = state.ground;
 		color = state.color;
@@ -84,14 +114,6 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 		setVisible(state.visible);
 		this.state = state;
 		state.setMapElement(this);
-		// Load the vector file into an Ardor3D object.
-		GeojsonLoader jsonLoader = new GeojsonLoader(srs, elevAttrName, state.labelProp, ground, size, lineWidth);
-		GeoJsonObject gjRoot = jsonLoader.load(filePath);
-		jsonLoader.geoJsonToArdor3D(gjRoot, this, color, state.isProjected);
-		if (getNumberOfChildren() == 0) {
-			throw new IllegalStateException("No vectors found.");
-		}
-		
 	}
 
 	/**
@@ -155,9 +177,112 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public void setColor(Color color) {
 		this.color = color;
 		for (int i=0; i<getNumberOfChildren(); ++i) {
-			Feature feature = (Feature)getChild(i);
-			feature.setColor(color);
+			Spatial child = getChild(i);
+			if (child instanceof Feature)
+				((Feature)child).setColor(color);
 		}
+		for (int i = 0; i < lineBatchList.size(); ++i)
+			lineBatchList.get(i).setColor(color);
+	}
+
+	/**
+	 * Add a batch of feature lines.
+	 * 
+	 * @param lineBatch
+	 */
+	public synchronized void addLineBatch(LineBatch lineBatch) {
+		lineBatchList.add(lineBatch);
+		attachChild(lineBatch);
+		featureIndex = null;
+	}
+
+	/**
+	 * Get the batches with the lines of all features.
+	 * 
+	 * @return
+	 */
+	public ArrayList<LineBatch> getLineBatches() {
+		return (lineBatchList);
+	}
+
+	/**
+	 * Add a batch of feature points.
+	 * 
+	 * @param markerBatch
+	 */
+	public synchronized void addMarkerBatch(MarkerBatch markerBatch) {
+		markerBatchList.add(markerBatch);
+		attachChild(markerBatch);
+		featureIndex = null;
+	}
+
+	/**
+	 * Get the batches with the points of all features.
+	 * 
+	 * @return
+	 */
+	public ArrayList<MarkerBatch> getMarkerBatches() {
+		return (markerBatchList);
+	}
+
+	/**
+	 * Add a group of features converted in the background along with the
+	 * batches holding their lines and points. Settings changed while the
+	 * features were being converted are applied to them.
+	 * 
+	 * @param featureList
+	 * @param lineBatch
+	 *            may be null
+	 * @param markerBatch
+	 *            may be null
+	 */
+	public void addFeatures(ArrayList<Feature> featureList, LineBatch lineBatch, MarkerBatch markerBatch) {
+		if (lineBatch != null) {
+			lineBatch.setColor(color);
+			lineBatch.setLineWidth(lineWidth);
+			lineBatch.setScale(1, 1, vertExag);
+			addLineBatch(lineBatch);
+		}
+		if (markerBatch != null) {
+			markerBatch.setVerticalExaggeration(vertExag);
+			addMarkerBatch(markerBatch);
+		}
+		for (int i = 0; i < featureList.size(); ++i) {
+			Feature feature = featureList.get(i);
+			if (!color.equals(feature.getColor()))
+				feature.setColor(color);
+			feature.setSize(size);
+			feature.setLabelVisible(labelVisible);
+			attachChild(feature);
+		}
+	}
+
+	/**
+	 * Remove all features and the batches with their lines and points.
+	 */
+	public synchronized void removeFeatures() {
+		detachAllChildren();
+		lineBatchList.clear();
+		markerBatchList.clear();
+		featureIndex = null;
+	}
+
+	/**
+	 * Set the loader filling this FeatureSet.
+	 * 
+	 * @param loader
+	 */
+	public void setLoader(FeatureSetLoader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Get the loader filling this FeatureSet.
+	 * 
+	 * @return the loader or null if loading is done
+	 */
+	public FeatureSetLoader getLoader() {
+		return (loader);
 	}
 
 	/**
@@ -176,15 +301,19 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public boolean updateElevation(QuadTree quadTree) {
 		if (!ground)
 			return(false);
-		boolean modified = false;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				modified |= feature.updateElevation(quadTree);
-			}
+		return (getFeatureIndex().updateElevation(quadTree));
+	}
+
+	/**
+	 * Get the index of vertices and points, creating it on first use.
+	 * 
+	 * @return
+	 */
+	public synchronized FeatureIndex getFeatureIndex() {
+		if (featureIndex == null) {
+			featureIndex = new FeatureIndex(this);
 		}
-		return (modified);
+		return (featureIndex);
 	}
 
 	/**
@@ -192,6 +321,11 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	@Override
 	public void setVerticalExaggeration(double vertExag, double oldVertExag, double minZ) {
+		this.vertExag = vertExag;
+		for (int i = 0; i < lineBatchList.size(); ++i)
+			lineBatchList.get(i).setScale(1, 1, vertExag);
+		for (int i = 0; i < markerBatchList.size(); ++i)
+			markerBatchList.get(i).setVerticalExaggeration(vertExag);
 		for (int i = 0; i < getNumberOfChildren(); ++i) {
 			Spatial child = getChild(i);
 			if (child instanceof Feature) {
@@ -269,13 +403,8 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	 */
 	public void setLineWidth(float lineWidth) {
 		this.lineWidth = lineWidth;
-		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Spatial child = getChild(i);
-			if (child instanceof Feature) {
-				Feature feature = (Feature) child;
-				feature.setLineWidth(lineWidth);
-			}
-		}
+		for (int i = 0; i < lineBatchList.size(); ++i)
+			lineBatchList.get(i).setLineWidth(lineWidth);
 	}
 
 	/**
@@ -311,10 +440,17 @@ public class FeatureSet extends GroupNode implements MapElement, ViewDependent {
 	public void update(BasicCamera camera) {
 		if (!isVisible())
 			return;
+		for (int i = 0; i < lineBatchList.size(); ++i)
+			lineBatchList.get(i).update(camera);
+		for (int i = 0; i < markerBatchList.size(); ++i)
+			markerBatchList.get(i).update(camera);
 		for (int i = 0; i < getNumberOfChildren(); ++i) {
-			Feature feature = (Feature)getChild(i);
-			if (feature.isVisible())
-				feature.update(camera);
+			Spatial child = getChild(i);
+			if (child instanceof Feature) {
+				Feature feature = (Feature)child;
+				if (feature.isVisible())
+					feature.update(camera);
+			}
 		}
 	}
 
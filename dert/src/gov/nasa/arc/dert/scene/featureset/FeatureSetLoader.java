@@ -0,0 +1,564 @@
+package gov.nasa.arc.dert.scene.featureset;
+
+import gov.nasa.arc.dert.io.geojson.CoordinateReferenceSystem;
+import gov.nasa.arc.dert.io.geojson.GeoJsonFeature;
+import gov.nasa.arc.dert.io.geojson.GeojsonLoader;
+import gov.nasa.arc.dert.io.geojson.GeojsonReader;
+import gov.nasa.arc.dert.io.geojson.VectorCache;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
+import gov.nasa.arc.dert.state.ConfigurationManager;
+import gov.nasa.arc.dert.state.FeatureSetState;
+import gov.nasa.arc.dert.view.Console;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JTextField;
+
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Loads a GeoJSON file into a FeatureSet in the background. The load is a
+ * pipeline of three stages connected by bounded queues. The first stage parses
+ * the file into GeoJSON features. The second reprojects each feature, builds
+ * its lines and points and drapes them on the landscape. The third builds the
+ * line and marker batches for a group of features. Each group is attached to
+ * the FeatureSet on the render thread so features appear as they are loaded.
+ * 
+ * Features that can't be converted are skipped. If a coordinate reference
+ * system follows the features in the file and changes how they are converted,
+ * the stages are stopped, the features already attached are removed and the
+ * file is loaded again with it.
+ * 
+ * The converted features are written to a VectorCache. When the cache is up
+ * to date the first two stages are replaced by one that reads the cache.
+ *
+ */
+public class FeatureSetLoader {
+
+	// Number of GeoJSON features waiting to be converted
+	public static int QUEUE_SIZE = 1024;
+
+	// Seconds to wait for the stages to stop before loading again
+	public static int RESTART_WAIT = 10;
+
+	// Number of features attached to the FeatureSet together
+	public static int CHUNK_SIZE = 2000;
+
+	// Number of feature groups waiting to be built
+	public static int CHUNK_QUEUE_SIZE = 4;
+
+	/**
+	 * A group of converted features and the batches with their lines and
+	 * points.
+	 */
+	protected static class Chunk {
+
+		protected ArrayList<Feature> featureList;
+		protected LineBatch lineBatch;
+		protected MarkerBatch markerBatch;
+
+		// This is the last chunk
+		protected boolean end;
+
+		// The pass over the file that converted it
+		protected int pass;
+	}
+
+	// Marks the end of the GeoJSON features
+	private static final Object END = new Object();
+
+	// The FeatureSet being loaded
+	private FeatureSet featureSet;
+
+	// Its state
+	private FeatureSetState state;
+
+	// Field for progress and error messages (may be null)
+	private JTextField msgField;
+
+	// Converts GeoJSON to Ardor3D
+	private GeojsonLoader jsonLoader;
+
+	// Cache of the converted features
+	private VectorCache cache;
+
+	// Features are read from the cache
+	private volatile boolean cached;
+
+	// Features are written to the cache
+	private boolean caching;
+
+	// Stage threads
+	private ExecutorService executor;
+
+	// Parsed GeoJSON features and the coordinate reference system
+	private ArrayBlockingQueue<Object> featureQueue;
+
+	// Converted features waiting for their batches to be built
+	private ArrayBlockingQueue<Chunk> chunkQueue;
+
+	// Progress
+	private volatile long bytesRead, length;
+	private volatile int featureCount;
+
+	// Number of features that couldn't be converted
+	private volatile int skipCount;
+
+	// Loading was cancelled or failed
+	private volatile boolean cancelled;
+
+	// The error that stopped loading (if any)
+	private volatile String error;
+
+	// Loading is finished
+	private volatile boolean done;
+
+	// Number of times the file has been loaded again
+	private volatile int pass;
+
+	/**
+	 * Constructor
+	 *
+	 * @param featureSet
+	 *            an empty FeatureSet
+	 * @param msgField
+	 *            field for progress and error messages (may be null)
+	 */
+	public FeatureSetLoader(FeatureSet featureSet, JTextField msgField) {
+		this.featureSet = featureSet;
+		this.msgField = msgField;
+		state = (FeatureSetState) featureSet.getState();
+		jsonLoader = new GeojsonLoader(Landscape.getInstance().getSpatialReferenceSystem(), null, state.labelProp,
+			state.ground, (float) state.size, state.lineWidth);
+		cache = new VectorCache(state.filePath, Landscape.getInstance().getSpatialReferenceSystem(), state.isProjected,
+			state.ground, state.labelProp);
+		featureQueue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+		chunkQueue = new ArrayBlockingQueue<Chunk>(CHUNK_QUEUE_SIZE);
+	}
+
+	/**
+	 * Start loading. A stage that fails while the others are submitted waits
+	 * to cancel them.
+	 */
+	public synchronized void start() {
+		featureSet.setLoader(this);
+		featureSet.setLabelVisible(true);
+		jsonLoader.begin(state.filePath, state.color, state.isProjected);
+		cached = cache.open();
+		if (cached) {
+			Console.println("Loading GeoJSON file " + state.filePath + " from " + cache.getFile().getName() + " ...");
+		} else {
+			Console.println("Loading GeoJSON file " + state.filePath + " ...");
+		}
+		submit();
+	}
+
+	private void submit() {
+		executor = Executors.newFixedThreadPool(3);
+		if (cached) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					readCache();
+				}
+			});
+		} else {
+			caching = cache.create();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					parse();
+				}
+			});
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					convert();
+				}
+			});
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				build();
+			}
+		});
+		executor.shutdown();
+	}
+
+	/**
+	 * Stop loading. The FeatureSet is removed.
+	 */
+	public synchronized void cancel() {
+		if (done || cancelled) {
+			return;
+		}
+		cancelled = true;
+		executor.shutdownNow();
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				finish();
+			}
+		});
+	}
+
+	/**
+	 * Find out if loading is finished.
+	 *
+	 * @return
+	 */
+	public boolean isDone() {
+		return (done);
+	}
+
+	/**
+	 * Find out if loading was cancelled or failed.
+	 *
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return (cancelled);
+	}
+
+	/**
+	 * Get the error that stopped loading.
+	 *
+	 * @return the error message or null
+	 */
+	public String getError() {
+		return (error);
+	}
+
+	/**
+	 * Get the fraction of the file that has been read.
+	 *
+	 * @return
+	 */
+	public double getProgress() {
+		if (cached) {
+			return (cache.getProgress());
+		}
+		if (length <= 0) {
+			return (0);
+		}
+		return (Math.min(1.0, (double) bytesRead / length));
+	}
+
+	/**
+	 * Get the number of features attached to the FeatureSet.
+	 *
+	 * @return
+	 */
+	public int getFeatureCount() {
+		return (featureCount);
+	}
+
+	private void parse() {
+		GeojsonReader.Handler handler = new GeojsonReader.Handler() {
+			@Override
+			public void crs(CoordinateReferenceSystem crs) {
+				put(crs);
+			}
+
+			@Override
+			public void feature(GeoJsonFeature gjFeature) {
+				put(gjFeature);
+			}
+
+			@Override
+			public void progress(long bytesRead, long length) {
+				FeatureSetLoader.this.bytesRead = bytesRead;
+				FeatureSetLoader.this.length = length;
+			}
+
+			private void put(Object item) {
+				try {
+					featureQueue.put(item);
+				} catch (InterruptedException e) {
+					throw new CancellationException();
+				}
+			}
+		};
+		try {
+			File file = new File(state.filePath);
+			length = file.length();
+			FileInputStream fis = new FileInputStream(file);
+			GeojsonReader reader = new GeojsonReader(fis, file.length(), handler);
+			try {
+				reader.read();
+			} finally {
+				reader.close();
+			}
+			featureQueue.put(END);
+		} catch (CancellationException e) {
+			// cancelled
+		} catch (InterruptedException e) {
+			// cancelled
+		} catch (Exception e) {
+			fail("Unable to load GeoJSON file " + state.filePath + ", see log.", e);
+		}
+	}
+
+	private void convert() {
+		try {
+			int count = 0;
+			Chunk chunk = new Chunk();
+			chunk.featureList = new ArrayList<Feature>();
+			while (true) {
+				Object item = featureQueue.take();
+				if (item == END) {
+					chunk.end = true;
+				} else if (item instanceof CoordinateReferenceSystem) {
+					CoordinateReferenceSystem crs = (CoordinateReferenceSystem) item;
+					if (jsonLoader.setCoordinateReferenceSystem(crs) && (count > 0)) {
+						restart(crs);
+						return;
+					}
+					continue;
+				} else {
+					GeoJsonFeature gjFeature = (GeoJsonFeature) item;
+					Feature feature = null;
+					try {
+						feature = jsonLoader.convert(gjFeature, count);
+					} catch (RuntimeException e) {
+						skip(gjFeature, e);
+						continue;
+					}
+					if (feature == null) {
+						continue;
+					}
+					chunk.featureList.add(feature);
+					count++;
+				}
+				if (chunk.end || (chunk.featureList.size() >= CHUNK_SIZE)) {
+					chunk = flush(chunk);
+					if (chunk == null) {
+						return;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// cancelled
+		} catch (Exception e) {
+			fail("Unable to convert GeoJSON file " + state.filePath + ", see log.", e);
+		}
+	}
+
+	private void readCache() {
+		try {
+			Chunk chunk = new Chunk();
+			chunk.featureList = new ArrayList<Feature>();
+			while (true) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (cache.next()) {
+					chunk.featureList.add(jsonLoader.convert(cache));
+				} else {
+					chunk.end = true;
+				}
+				if (chunk.end || (chunk.featureList.size() >= CHUNK_SIZE)) {
+					chunk = flush(chunk);
+					if (chunk == null) {
+						return;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// cancelled
+		} catch (Exception e) {
+			fail("Unable to read " + cache.getFile() + ", see log.", e);
+		}
+	}
+
+	private void skip(GeoJsonFeature gjFeature, RuntimeException e) {
+		skipCount++;
+		if (skipCount <= GeojsonReader.MAX_SKIP_MESSAGES) {
+			Console.println("Skipped GeoJSON feature" + ((gjFeature.getId() == null) ? "" : " " + gjFeature.getId())
+				+ ": " + e.getMessage());
+		}
+	}
+
+	private Chunk flush(Chunk chunk) throws InterruptedException {
+		chunk.pass = pass;
+		chunk.lineBatch = jsonLoader.takeLineBatch();
+		chunk.markerBatch = jsonLoader.takeMarkerBatch();
+		chunkQueue.put(chunk);
+		if (chunk.end) {
+			return (null);
+		}
+		chunk = new Chunk();
+		chunk.featureList = new ArrayList<Feature>();
+		return (chunk);
+	}
+
+	private void build() {
+		try {
+			while (true) {
+				final Chunk chunk = chunkQueue.take();
+				if (chunk.lineBatch != null) {
+					chunk.lineBatch.build();
+				}
+				if (chunk.markerBatch != null) {
+					chunk.markerBatch.build();
+				}
+				if (caching) {
+					writeCache(chunk);
+				}
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						attach(chunk);
+					}
+				});
+				if (chunk.end) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// cancelled
+		} catch (Exception e) {
+			fail("Unable to build GeoJSON file " + state.filePath + ", see log.", e);
+		} finally {
+			if (caching) {
+				cache.discard();
+			}
+		}
+	}
+
+	private void writeCache(Chunk chunk) {
+		try {
+			for (int i = 0; i < chunk.featureList.size(); ++i) {
+				cache.write(chunk.featureList.get(i));
+			}
+			if (chunk.end) {
+				caching = false;
+				cache.commit();
+			}
+		} catch (Exception e) {
+			// loading continues without the cache
+			e.printStackTrace();
+			caching = false;
+			cache.discard();
+		}
+	}
+
+	private void fail(String msg, Exception e) {
+		if (e != null) {
+			e.printStackTrace();
+		}
+		error = msg;
+		cancel();
+	}
+
+	private synchronized void restart(final CoordinateReferenceSystem crs) {
+		if (done || cancelled) {
+			return;
+		}
+		executor.shutdownNow();
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				reload(crs);
+			}
+		});
+	}
+
+	private void reload(CoordinateReferenceSystem crs) {
+		boolean stopped = false;
+		try {
+			stopped = executor.awaitTermination(RESTART_WAIT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			// not stopped
+		}
+		if (!stopped) {
+			fail("Unable to load GeoJSON file " + state.filePath + " again, see log.", null);
+			return;
+		}
+		synchronized (this) {
+			if (done || cancelled) {
+				return;
+			}
+			Console.println("The coordinate reference system of GeoJSON file " + state.filePath
+				+ " follows its features, loading it again.");
+			// chunks of the first pass still waiting to be attached are ignored
+			pass++;
+			featureSet.removeFeatures();
+			featureCount = 0;
+			skipCount = 0;
+			bytesRead = 0;
+			featureQueue.clear();
+			chunkQueue.clear();
+			jsonLoader.begin(state.filePath, state.color, state.isProjected);
+			jsonLoader.setCoordinateReferenceSystem(crs);
+			submit();
+		}
+	}
+
+	private void attach(Chunk chunk) {
+		if (done || cancelled || (chunk.pass != pass)) {
+			return;
+		}
+		// the FeatureSet was removed while loading
+		if (featureSet.getParent() == null) {
+			cancel();
+			return;
+		}
+		featureSet.addFeatures(chunk.featureList, chunk.lineBatch, chunk.markerBatch);
+		featureCount += chunk.featureList.size();
+		if (msgField != null) {
+			msgField.setText("Loaded " + featureCount + " features (" + (int) (getProgress() * 100) + "%)");
+		}
+		if (chunk.end) {
+			finish();
+		}
+	}
+
+	private void finish() {
+		if (done) {
+			return;
+		}
+		done = true;
+		featureSet.setLoader(null);
+		String msg = null;
+		if (cancelled) {
+			msg = (error == null) ? "Cancelled loading GeoJSON file " + state.filePath + "." : error;
+		} else if (featureCount == 0) {
+			cancelled = true;
+			msg = "No vectors found.";
+		}
+		if (msg != null) {
+			Console.println(msg);
+			if (msgField != null) {
+				msgField.setText(msg);
+			}
+			if (featureSet.getParent() != null) {
+				ConfigurationManager.getInstance().getCurrentConfiguration().removeMapElementState(state);
+			}
+			return;
+		}
+		Collections.sort(featureSet.getChildren(), new Comparator<Spatial>() {
+			@Override
+			public int compare(Spatial spat1, Spatial spat2) {
+				return (spat1.getName().compareTo(spat2.getName()));
+			}
+		});
+		Console.println("Found " + featureCount + " features for GeoJSON file " + state.filePath + ".");
+		if (skipCount > 0) {
+			Console.println("Skipped " + skipCount + " GeoJSON features that couldn't be converted.");
+		}
+	}
+
+}
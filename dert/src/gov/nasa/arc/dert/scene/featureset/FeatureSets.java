@@ -29,6 +29,9 @@ public class FeatureSets extends GroupNode {
 
 	// Thread service for updating
 	private ExecutorService executor;
+
+	// Quad trees changed since the last update
+	private ArrayList<QuadTree> changedList;
 	
 	private ZBufferState zBufferState;
 
@@ -41,6 +44,7 @@ public class FeatureSets extends GroupNode {
 		super("FeatureSets");
 		this.featureSetList = featureSetList;
 		executor = Executors.newFixedThreadPool(5);
+		changedList = new ArrayList<QuadTree>();
 	}
 
 	/**
@@ -63,37 +67,61 @@ public class FeatureSets extends GroupNode {
 	}
 
 	/**
-	 * The landscape has changed, update the elevation of all the FeatureSets
+	 * The landscape has changed, update the elevation of all the FeatureSets.
+	 * Changes that arrive before the update starts are handled together.
 	 * 
 	 * @param quadTree
 	 */
 	public void landscapeChanged(final QuadTree quadTree) {
+		synchronized (changedList) {
+			changedList.add(quadTree);
+			if (changedList.size() > 1) {
+				// an update is already pending
+				return;
+			}
+		}
+		Runnable runnable = new Runnable() {
+			@Override
+			public void run() {
+				Thread.yield();
+				updateElevation();
+			}
+		};
+		executor.execute(runnable);
+	}
+
+	private void updateElevation() {
+		QuadTree[] quadTree = null;
+		synchronized (changedList) {
+			quadTree = new QuadTree[changedList.size()];
+			changedList.toArray(quadTree);
+			changedList.clear();
+		}
 		for (int i = 0; i < getNumberOfChildren(); ++i) {
 			final Spatial child = getChild(i);
-			Runnable runnable = new Runnable() {
-				@Override
-				public void run() {
-					Thread.yield();
-					boolean modified = ((FeatureSet) child).updateElevation(quadTree);
-					if (modified) {
-						EventQueue.invokeLater(new Runnable() {
-							@Override
-							public void run() {
-								child.markDirty(DirtyType.Bounding);
-							}
-						});
+			boolean modified = false;
+			for (int j = 0; j < quadTree.length; ++j) {
+				modified |= ((FeatureSet) child).updateElevation(quadTree[j]);
+			}
+			if (modified) {
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						child.markDirty(DirtyType.Bounding);
 					}
-				}
-			};
-			executor.execute(runnable);
+				});
+			}
 		}
 	}
 
 	/**
-	 * Add a FeatureSet to the list
+	 * Add a FeatureSet to the list. The FeatureSet is empty and its features
+	 * are loaded in the background.
 	 * 
 	 * @param state
 	 * @param update
+	 * @param msgField
+	 *            field for loading progress and errors (may be null)
 	 * @return
 	 */
 	public FeatureSet addFeatureSet(FeatureSetState state, boolean update, JTextField msgField) {
@@ -104,6 +132,8 @@ public class FeatureSets extends GroupNode {
 			if (update) {
 				featureSet.updateGeometricState(0, true);
 			}
+			FeatureSetLoader loader = new FeatureSetLoader(featureSet, msgField);
+			loader.start();
 			return (featureSet);
 		} catch (Exception e) {
 			Console.println(e.getMessage());
@@ -0,0 +1,546 @@
+package gov.nasa.arc.dert.scene.featureset;
+
+import gov.nasa.arc.dert.scenegraph.LineStrip;
+import gov.nasa.arc.dert.util.ParallelUtil;
+import gov.nasa.arc.dert.util.SpatialUtil;
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.scenegraph.IndexBufferData;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.scenegraph.hint.LightCombineMode;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * The lines of all the Features in a FeatureSet merged into one mesh. Each
+ * line string is a part, a run of consecutive vertices drawn as line segments.
+ * The parts of a Feature are consecutive so each Feature owns one vertex
+ * range. The Feature for a vertex is found by searching the part ranges.
+ * 
+ * For level of detail each vertex is given a Douglas-Peucker tolerance, the
+ * largest simplification tolerance at which it is kept. Each frame the pixel
+ * size at the part nearest the camera selects the tolerance for the part and
+ * only the vertices above it are drawn.
+ *
+ */
+public class LineBatch extends LineStrip {
+
+	// Pick tolerance as an angle from the pick ray (radians)
+	public static double PICK_ANGLE = 0.005;
+
+	// Simplification tolerance in pixels, 0 to draw all vertices
+	public static double LOD_PIXELS = 1;
+
+	// Minimum number of vertices to compute the tolerances in parallel
+	public static int PARALLEL_THRESHOLD = 65536;
+
+	// Level that draws all vertices
+	private static final int FULL_LEVEL = Integer.MIN_VALUE;
+
+	// Vertices while the batch is being built
+	private float[] vertexArray;
+
+	// Number of vertices
+	private int vertexCount;
+
+	// First vertex of each part, and one past the last part
+	private int[] partStart;
+
+	// The Feature for each part
+	private Feature[] partFeature;
+
+	// Number of parts
+	private int partCount;
+
+	// Douglas-Peucker tolerance of each vertex
+	private float[] tolerance;
+
+	// The tolerances were added with the parts (read from a cache)
+	private boolean hasTolerance;
+
+	// Bounds of each part (minX, minY, minZ, maxX, maxY, maxZ)
+	private float[] partBounds;
+
+	// Level of detail of each part, the tolerance is 2^level
+	private int[] partLevel;
+
+	// Temporary vectors for picking
+	private Vector3 p0 = new Vector3(), p1 = new Vector3();
+
+	// Temporary vector for level of detail
+	private Vector3 closest = new Vector3();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 * @param color
+	 * @param lineWidth
+	 */
+	public LineBatch(String name, Color color, float lineWidth) {
+		super(name, null, null, null, null);
+		getMeshData().setIndexMode(IndexMode.Lines);
+		vertexArray = new float[3 * 1024];
+		partStart = new int[64];
+		partFeature = new Feature[64];
+		setLineWidth(lineWidth);
+		setColor(color);
+		getSceneHints().setLightCombineMode(LightCombineMode.Off);
+	}
+
+	/**
+	 * Add a line string to the batch. Parts for a Feature must be added
+	 * consecutively.
+	 *
+	 * @param feature
+	 * @param vertex
+	 *            X, Y, Z coordinates
+	 * @param start
+	 *            the first vertex to add
+	 * @param count
+	 *            the number of vertices to add
+	 */
+	public void addPart(Feature feature, float[] vertex, int start, int count) {
+		if (count <= 0) {
+			return;
+		}
+		ensureCapacity(count);
+		if (partCount + 1 >= partStart.length) {
+			int[] sArray = new int[2 * partStart.length];
+			System.arraycopy(partStart, 0, sArray, 0, partCount);
+			partStart = sArray;
+			Feature[] fArray = new Feature[2 * partFeature.length];
+			System.arraycopy(partFeature, 0, fArray, 0, partCount);
+			partFeature = fArray;
+		}
+		if (feature.getLineBatch() != this) {
+			feature.setLineRange(this, vertexCount, vertexCount);
+		}
+		partStart[partCount] = vertexCount;
+		partFeature[partCount] = feature;
+		partCount++;
+		System.arraycopy(vertex, 3 * start, vertexArray, 3 * vertexCount, 3 * count);
+		vertexCount += count;
+		feature.setLineRange(this, feature.getLineStart(), vertexCount);
+	}
+
+	/**
+	 * Add a line string along with the tolerance of each vertex, so they are
+	 * not computed again when the batch is built. Either all parts of a batch
+	 * or none have tolerances.
+	 *
+	 * @param feature
+	 * @param vertex
+	 *            X, Y, Z coordinates
+	 * @param tol
+	 *            Douglas-Peucker tolerances
+	 * @param start
+	 *            the first vertex to add
+	 * @param count
+	 *            the number of vertices to add
+	 */
+	public void addPart(Feature feature, float[] vertex, float[] tol, int start, int count) {
+		if (count <= 0) {
+			return;
+		}
+		ensureCapacity(count);
+		if (tolerance == null) {
+			tolerance = new float[vertexArray.length / 3];
+		} else if (tolerance.length < vertexArray.length / 3) {
+			float[] array = new float[vertexArray.length / 3];
+			System.arraycopy(tolerance, 0, array, 0, vertexCount);
+			tolerance = array;
+		}
+		System.arraycopy(tol, start, tolerance, vertexCount, count);
+		hasTolerance = true;
+		addPart(feature, vertex, start, count);
+	}
+
+	private void ensureCapacity(int count) {
+		if (3 * (vertexCount + count) > vertexArray.length) {
+			float[] array = new float[Math.max(2 * vertexArray.length, 3 * (vertexCount + count))];
+			System.arraycopy(vertexArray, 0, array, 0, 3 * vertexCount);
+			vertexArray = array;
+		}
+	}
+
+	/**
+	 * Get the number of vertices.
+	 *
+	 * @return
+	 */
+	public int getVertexCount() {
+		return (vertexCount);
+	}
+
+	/**
+	 * Get the number of parts.
+	 *
+	 * @return
+	 */
+	public int getPartCount() {
+		return (partCount);
+	}
+
+	/**
+	 * Remove the parts added after the first ones, before the batch is
+	 * built.
+	 *
+	 * @param count
+	 *            the number of parts to keep
+	 */
+	public void removeParts(int count) {
+		if (count >= partCount) {
+			return;
+		}
+		vertexCount = partStart[count];
+		for (int i = count; i < partCount; ++i) {
+			partFeature[i] = null;
+		}
+		partCount = count;
+	}
+
+	/**
+	 * Get the first vertex of a part. The part count gives one past the last
+	 * vertex.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int getPartStart(int i) {
+		if (i == partCount) {
+			return (vertexCount);
+		}
+		return (partStart[i]);
+	}
+
+	/**
+	 * Get the Feature that owns a part.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public Feature getPartFeature(int i) {
+		return (partFeature[i]);
+	}
+
+	/**
+	 * Get the Douglas-Peucker tolerance of a vertex (after the batch is
+	 * built).
+	 *
+	 * @param i
+	 * @return
+	 */
+	public float getTolerance(int i) {
+		return (tolerance[i]);
+	}
+
+	/**
+	 * Create the vertex and index buffers after all parts are added.
+	 */
+	public void build() {
+		partStart[partCount] = vertexCount;
+		computeTolerances();
+		partLevel = new int[partCount];
+		for (int i = 0; i < partCount; ++i) {
+			partLevel[i] = FULL_LEVEL;
+		}
+		FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(3 * vertexCount);
+		vertexBuffer.put(vertexArray, 0, 3 * vertexCount);
+		vertexBuffer.flip();
+		vertexArray = null;
+		getMeshData().setVertexBuffer(vertexBuffer);
+		updateIndices();
+		setModelBound(new BoundingBox());
+		updateModelBound();
+	}
+
+	/**
+	 * Compute the tolerance of each vertex and the bounds of each part. Parts
+	 * are divided among threads when there are many vertices.
+	 */
+	private void computeTolerances() {
+		if (!hasTolerance) {
+			tolerance = new float[vertexCount];
+		}
+		partBounds = new float[6 * partCount];
+		int numBands = 1;
+		if (vertexCount >= PARALLEL_THRESHOLD) {
+			numBands = ParallelUtil.NUMBER_OF_THREADS;
+		}
+		try {
+			ParallelUtil.computeBands(partCount, numBands, new ParallelUtil.Band<Object>() {
+				@Override
+				public Object compute(int first, int last) {
+					computeTolerances(first, last);
+					return (null);
+				}
+			});
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to simplify lines.", e);
+		}
+	}
+
+	private void computeTolerances(int first, int last) {
+		int[] stack = new int[64];
+		for (int i = first; i < last; ++i) {
+			int start = partStart[i];
+			int end = partStart[i + 1] - 1;
+			// part bounds
+			float[] b = partBounds;
+			int k = i * 6;
+			b[k] = b[k + 1] = b[k + 2] = Float.MAX_VALUE;
+			b[k + 3] = b[k + 4] = b[k + 5] = -Float.MAX_VALUE;
+			for (int j = start; j <= end; ++j) {
+				for (int c = 0; c < 3; ++c) {
+					b[k + c] = Math.min(b[k + c], vertexArray[j * 3 + c]);
+					b[k + 3 + c] = Math.max(b[k + 3 + c], vertexArray[j * 3 + c]);
+				}
+			}
+			if (hasTolerance) {
+				continue;
+			}
+			// Douglas-Peucker, a vertex is never more tolerant than the vertex that split its span
+			tolerance[start] = Float.MAX_VALUE;
+			tolerance[end] = Float.MAX_VALUE;
+			int top = 0;
+			stack[top++] = start;
+			stack[top++] = end;
+			while (top > 0) {
+				int b1 = stack[--top];
+				int a = stack[--top];
+				if (b1 - a < 2) {
+					continue;
+				}
+				// squared distance of each vertex to the segment from a to b1
+				float[] v = vertexArray;
+				double ax = v[a * 3], ay = v[a * 3 + 1], az = v[a * 3 + 2];
+				double ux = v[b1 * 3] - ax, uy = v[b1 * 3 + 1] - ay, uz = v[b1 * 3 + 2] - az;
+				double c = ux * ux + uy * uy + uz * uz;
+				double maxDist = -1;
+				int m = a + 1;
+				for (int j = a + 1; j < b1; ++j) {
+					double wx = v[j * 3] - ax, wy = v[j * 3 + 1] - ay, wz = v[j * 3 + 2] - az;
+					if (c > 0) {
+						double t = (ux * wx + uy * wy + uz * wz) / c;
+						t = (t < 0) ? 0 : ((t > 1) ? 1 : t);
+						wx -= t * ux;
+						wy -= t * uy;
+						wz -= t * uz;
+					}
+					double d = wx * wx + wy * wy + wz * wz;
+					if (d > maxDist) {
+						maxDist = d;
+						m = j;
+					}
+				}
+				maxDist = Math.sqrt(maxDist);
+				float parent = Math.min(tolerance[a], tolerance[b1]);
+				tolerance[m] = (float) Math.min(maxDist, parent);
+				if (top + 4 > stack.length) {
+					int[] array = new int[2 * stack.length];
+					System.arraycopy(stack, 0, array, 0, top);
+					stack = array;
+				}
+				stack[top++] = a;
+				stack[top++] = m;
+				stack[top++] = m;
+				stack[top++] = b1;
+			}
+		}
+	}
+
+	/**
+	 * Select the level of detail of each part for the camera. The index
+	 * buffer is rebuilt if any level changed.
+	 *
+	 * @param camera
+	 */
+	public void update(BasicCamera camera) {
+		if ((partLevel == null) || (LOD_PIXELS <= 0)) {
+			return;
+		}
+		ReadOnlyTransform transform = getWorldTransform();
+		boolean changed = false;
+		synchronized (this) {
+			for (int i = 0; i < partCount; ++i) {
+				// the point in the part bounds closest to the camera
+				transform.applyInverse(camera.getLocation(), closest);
+				int k = i * 6;
+				closest.set(Math.max(partBounds[k], Math.min(closest.getX(), partBounds[k + 3])),
+					Math.max(partBounds[k + 1], Math.min(closest.getY(), partBounds[k + 4])),
+					Math.max(partBounds[k + 2], Math.min(closest.getZ(), partBounds[k + 5])));
+				transform.applyForward(closest);
+				double pixSize = camera.getPixelSizeAt(closest, true);
+				if (pixSize <= 0) {
+					continue;
+				}
+				int level = (int) Math.floor(Math.log(pixSize * LOD_PIXELS) / Math.log(2));
+				if (level != partLevel[i]) {
+					partLevel[i] = level;
+					changed = true;
+				}
+			}
+		}
+		if (changed) {
+			updateIndices();
+		}
+	}
+
+	/**
+	 * Create the index buffer with the segments of the visible Features at
+	 * their level of detail. Call when the visibility of a Feature changes.
+	 */
+	public synchronized void updateIndices() {
+		int n = 0;
+		for (int i = 0; i < partCount; ++i) {
+			if (SpatialUtil.isDisplayed(partFeature[i])) {
+				n += Math.max(0, partStart[i + 1] - partStart[i] - 1);
+			}
+		}
+		IndexBufferData<?> indices = BufferUtils.createIndexBufferData(2 * n, Math.max(0, vertexCount - 1));
+		n = 0;
+		for (int i = 0; i < partCount; ++i) {
+			if (SpatialUtil.isDisplayed(partFeature[i])) {
+				float tol = (partLevel[i] == FULL_LEVEL) ? -1 : (float) Math.pow(2, partLevel[i]);
+				int prev = partStart[i];
+				for (int j = prev + 1; j < partStart[i + 1]; ++j) {
+					if (tolerance[j] > tol) {
+						indices.put(prev).put(j);
+						prev = j;
+						n++;
+					}
+				}
+			}
+		}
+		indices.flip();
+		getMeshData().setIndices(indices);
+		getSceneHints().setCullHint((n == 0) ? CullHint.Always : CullHint.Inherit);
+	}
+
+	/**
+	 * Get the Feature that owns a vertex.
+	 *
+	 * @param vertex
+	 * @return the Feature or null if the vertex is out of range
+	 */
+	public Feature getFeature(int vertex) {
+		if ((vertex < 0) || (vertex >= vertexCount)) {
+			return (null);
+		}
+		int lo = 0;
+		int hi = partCount - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (partStart[mid] <= vertex) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return (partFeature[lo]);
+	}
+
+	/**
+	 * Get the center and radius of a range of vertices in world coordinates.
+	 *
+	 * @param start
+	 * @param end
+	 * @param center
+	 *            the center
+	 * @return the radius
+	 */
+	public synchronized double getSeekPointAndDistance(int start, int end, Vector3 center) {
+		if (end <= start) {
+			center.set(getWorldBound().getCenter());
+			return (1);
+		}
+		FloatBuffer vertex = getMeshData().getVertexBuffer();
+		ReadOnlyTransform transform = getWorldTransform();
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int i = start; i < end; ++i) {
+			p0.set(vertex.get(i * 3), vertex.get(i * 3 + 1), vertex.get(i * 3 + 2));
+			transform.applyForward(p0);
+			minX = Math.min(minX, p0.getX());
+			minY = Math.min(minY, p0.getY());
+			minZ = Math.min(minZ, p0.getZ());
+			maxX = Math.max(maxX, p0.getX());
+			maxY = Math.max(maxY, p0.getY());
+			maxZ = Math.max(maxZ, p0.getZ());
+		}
+		center.set((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+		p0.set(maxX, maxY, maxZ);
+		return (Math.max(center.distance(p0), 1));
+	}
+
+	/**
+	 * Find the visible segment closest to a pick ray. A segment is a candidate
+	 * if it passes within PICK_ANGLE of the ray.
+	 *
+	 * @param ray
+	 * @param position
+	 *            the picked point on the segment
+	 * @return the first vertex of the segment, or -1 if nothing was picked
+	 */
+	public synchronized int findPick(Ray3 ray, Vector3 position) {
+		IndexBufferData<?> indices = getMeshData().getIndices();
+		if ((indices == null) || (getSceneHints().getCullHint() == CullHint.Always)) {
+			return (-1);
+		}
+		FloatBuffer vertex = getMeshData().getVertexBuffer();
+		ReadOnlyTransform transform = getWorldTransform();
+		ReadOnlyVector3 origin = ray.getOrigin();
+		ReadOnlyVector3 dir = ray.getDirection();
+		double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		int n = indices.limit();
+		int picked = -1;
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < n; i += 2) {
+			int j0 = indices.get(i);
+			int j1 = indices.get(i + 1);
+			p0.set(vertex.get(j0 * 3), vertex.get(j0 * 3 + 1), vertex.get(j0 * 3 + 2));
+			p1.set(vertex.get(j1 * 3), vertex.get(j1 * 3 + 1), vertex.get(j1 * 3 + 2));
+			transform.applyForward(p0);
+			transform.applyForward(p1);
+			// closest points between the ray and the segment
+			double ux = p1.getX() - p0.getX(), uy = p1.getY() - p0.getY(), uz = p1.getZ() - p0.getZ();
+			double wx = ox - p0.getX(), wy = oy - p0.getY(), wz = oz - p0.getZ();
+			double a = dx * dx + dy * dy + dz * dz;
+			double b = dx * ux + dy * uy + dz * uz;
+			double c = ux * ux + uy * uy + uz * uz;
+			double d = dx * wx + dy * wy + dz * wz;
+			double e = ux * wx + uy * wy + uz * wz;
+			double denom = a * c - b * b;
+			double t = 0;
+			if (denom > 1e-12) {
+				t = (a * e - b * d) / denom;
+			}
+			t = Math.max(0, Math.min(1, t));
+			double s = (b * t - d) / a;
+			if ((s <= 0) || (s >= best)) {
+				continue;
+			}
+			double ex = ox + s * dx - (p0.getX() + t * ux);
+			double ey = oy + s * dy - (p0.getY() + t * uy);
+			double ez = oz + s * dz - (p0.getZ() + t * uz);
+			double dist = Math.sqrt(ex * ex + ey * ey + ez * ez);
+			if (dist <= PICK_ANGLE * s * Math.sqrt(a)) {
+				best = s;
+				picked = j0;
+				position.set(p0.getX() + t * ux, p0.getY() + t * uy, p0.getZ() + t * uz);
+			}
+		}
+		return (picked);
+	}
+
+}
@@ -2,8 +2,10 @@ package gov.nasa.arc.dert.scene.tool;
 
 import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.io.CsvWriter;
+import gov.nasa.arc.dert.landscape.CumulativeViewshed;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.landscape.QuadTree;
+import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.HiddenLine;
 import gov.nasa.arc.dert.scenegraph.MotionListener;
 import gov.nasa.arc.dert.scenegraph.Movable;
@@ -106,6 +108,9 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 
 	private Vector3 lowerBound, upperBound, location;
 
+	// Counts the waypoints that see each location (null if none)
+	private CumulativeViewshed viewshed;
+
 	/**
 	 * Constructor
 	 * 
@@ -178,6 +183,9 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 		}
 		updateLabels(null);
 		state.pathDirty();
+		if ((viewshed != null) && (d instanceof Waypoint)) {
+			viewshed.moveObserver(getWaypointIndex((Waypoint) d), pos);
+		}
 	}
 
 	/**
@@ -313,6 +321,7 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 		markDirty(DirtyType.RenderState);
 		
 		newPoints ++;
+		updateViewshed();
 		return (currentWaypoint);
 	}
 
@@ -340,9 +349,47 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 		if (polyIsEnabled)
 			pointSet.updatePolygon(poly);
 		updateGeometricState(0, false);
+		updateViewshed();
 		return (index);
 	}
 
+	/**
+	 * Set the viewshed that counts the waypoints that see each location of
+	 * the landscape.
+	 * 
+	 * @param viewshed
+	 *            the viewshed or null to stop updating it
+	 */
+	public void setViewshed(CumulativeViewshed viewshed) {
+		if ((this.viewshed != null) && (this.viewshed != viewshed)) {
+			this.viewshed.dispose();
+		}
+		this.viewshed = viewshed;
+		updateViewshed();
+	}
+
+	/**
+	 * Get the viewshed that counts the waypoints that see each location of
+	 * the landscape.
+	 * 
+	 * @return the viewshed or null
+	 */
+	public CumulativeViewshed getViewshed() {
+		return (viewshed);
+	}
+
+	private void updateViewshed() {
+		if (viewshed == null) {
+			return;
+		}
+		int n = pointSet.getNumberOfChildren();
+		ReadOnlyVector3[] loc = new ReadOnlyVector3[n];
+		for (int i = 0; i < n; ++i) {
+			loc[i] = ((Waypoint) pointSet.getChild(i)).getTranslation();
+		}
+		viewshed.setObservers(loc);
+	}
+
 	/**
 	 * Set the line width.
 	 * 
@@ -717,7 +764,9 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 	 * Dispose of this map element's resources.
 	 */
 	public void dispose() {
-		// nothing here
+		if (viewshed != null) {
+			viewshed.dispose();
+		}
 	}
 
 	/**
@@ -730,22 +779,35 @@ public class Path extends Node implements MotionListener, Tool, ViewDependent {
 		try {
 			int n = pointSet.getNumberOfChildren();
 			String[] column = { "Index", "Name", "X", "Y", "Z", "Annotation" };
-			csvWriter = new CsvWriter(filename, column);
-			csvWriter.open();
-			String[] value = new String[column.length];
 			Landscape landscape = Landscape.getInstance();
 			Vector3 coord = new Vector3();
+			double[] x = new double[n];
+			double[] y = new double[n];
+			double[] z = new double[n];
 			for (int i = 0; i < n; ++i) {
 				Waypoint wp = (Waypoint) pointSet.getChild(i);
 				coord.set(wp.getTranslation());
-				double elev = landscape.getElevationAtHighestLevel(coord.getX(), coord.getY());
+				z[i] = landscape.getElevationAtHighestLevel(coord.getX(), coord.getY());
 				landscape.localToWorldCoordinate(coord);
-				coord.setZ(elev);
+				x[i] = coord.getX();
+				y[i] = coord.getY();
+			}
+			// convert all way points to lon/lat at once
+			if (World.getInstance().getUseLonLat()) {
+				column[2] = "Lon";
+				column[3] = "Lat";
+				landscape.getSpatialReferenceSystem().getProjection().worldToSpherical(x, y, null, n);
+			}
+			csvWriter = new CsvWriter(filename, column);
+			csvWriter.open();
+			String[] value = new String[column.length];
+			for (int i = 0; i < n; ++i) {
+				Waypoint wp = (Waypoint) pointSet.getChild(i);
 				value[0] = Integer.toString(i);
 				value[1] = wp.getName();
-				value[2] = Double.toString(coord.getX());
-				value[3] = Double.toString(coord.getY());
-				value[4] = Double.toString(coord.getZ());
+				value[2] = Double.toString(x[i]);
+				value[3] = Double.toString(y[i]);
+				value[4] = Double.toString(z[i]);
 				value[5] = wp.getState().getAnnotation();
 				csvWriter.writeLine(value);
 			}
@@ -4,6 +4,7 @@ import gov.nasa.arc.dert.icon.Icons;
 import gov.nasa.arc.dert.io.CsvWriter;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.landscape.QuadTree;
+import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.BillboardMarker;
 import gov.nasa.arc.dert.scenegraph.Marker;
 import gov.nasa.arc.dert.scenegraph.MotionListener;
@@ -534,14 +535,26 @@ public class Profile extends Node implements ViewDependent, Tool {
 	public void saveAsCsv(String filename) {
 		CsvWriter csvWriter = null;
 		String[] column = { "Index", "X", "Y", "Z", "Dist" };
+		// convert all vertices to lon/lat at once
+		double[] x = new double[vertexCount];
+		double[] y = new double[vertexCount];
+		for (int i = 0; i < vertexCount; ++i) {
+			x[i] = vertex[i*3];
+			y[i] = vertex[i*3 + 1];
+		}
+		if (World.getInstance().getUseLonLat()) {
+			column[1] = "Lon";
+			column[2] = "Lat";
+			Landscape.getInstance().getSpatialReferenceSystem().getProjection().worldToSpherical(x, y, null, vertexCount);
+		}
 		try {
 			csvWriter = new CsvWriter(filename, column);
 			csvWriter.open();
 			String[] value = new String[column.length];
 			for (int i = 0; i < vertexCount; ++i) {
 				value[0] = Integer.toString(i);
-				value[1] = Double.toString(vertex[i*3]);
-				value[2] = Double.toString(vertex[i*3 + 1]);
+				value[1] = Double.toString(x[i]);
+				value[2] = Double.toString(y[i]);
 				value[3] = Double.toString(graphVertex[i*2 + 1]);
 				value[4] = Double.toString(graphVertex[i*2]);
 				csvWriter.writeLine(value);
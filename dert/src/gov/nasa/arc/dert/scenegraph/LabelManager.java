@@ -0,0 +1,271 @@
+package gov.nasa.arc.dert.scenegraph;
+
+import gov.nasa.arc.dert.scenegraph.text.RasterText;
+import gov.nasa.arc.dert.util.SpatialUtil;
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Screen space placement of Marker and MarkerBatch labels. Labels that are in view are placed
+ * in order of priority and those that overlap a label already placed are
+ * hidden. Placed labels are tested against a grid of screen cells so the cost
+ * of a placement pass grows with the number of labels in view rather than its
+ * square. Labels shown in the previous pass are placed first so labels don't
+ * flicker as the camera moves.
+ *
+ */
+public class LabelManager {
+
+	// Turn decluttering on or off
+	public static boolean DECLUTTER = true;
+
+	// Size of a screen grid cell in pixels
+	public static int CELL_PIXELS = 64;
+
+	// Empty space around a label in pixels
+	public static int MARGIN = 2;
+
+	/**
+	 * A label to be placed.
+	 */
+	protected static class Candidate {
+
+		// The label
+		protected RasterText label;
+
+		// Placement priority
+		protected int priority;
+
+		// Label was shown in the previous pass
+		protected boolean shown;
+
+		// Depth of the label on the screen
+		protected double depth;
+
+		// Screen rectangle
+		protected double minX, minY, maxX, maxY;
+
+		protected boolean overlaps(Candidate that) {
+			return ((minX < that.maxX) && (that.minX < maxX) && (minY < that.maxY) && (that.minY < maxY));
+		}
+	}
+
+	// Placement order
+	private static Comparator<Candidate> comparator = new Comparator<Candidate>() {
+		@Override
+		public int compare(Candidate c0, Candidate c1) {
+			if (c0.shown != c1.shown) {
+				return (c0.shown ? -1 : 1);
+			}
+			if (c0.priority != c1.priority) {
+				return (c0.priority > c1.priority ? -1 : 1);
+			}
+			return (Double.compare(c0.depth, c1.depth));
+		}
+	};
+
+	// The scene
+	private Node root;
+
+	// Markers and marker batches in the scene
+	private ArrayList<Marker> markerList;
+	private ArrayList<MarkerBatch> batchList;
+
+	// The scene changed and the marker list must be rebuilt
+	private boolean dirty;
+
+	// Labels in view
+	private ArrayList<Candidate> candidateList;
+
+	// Screen grid of placed labels
+	private ArrayList<ArrayList<Candidate>> cell;
+	private int columns, rows;
+
+	private Vector3 screen = new Vector3();
+
+	/**
+	 * Constructor
+	 *
+	 * @param root
+	 */
+	public LabelManager(Node root) {
+		this.root = root;
+		markerList = new ArrayList<Marker>();
+		batchList = new ArrayList<MarkerBatch>();
+		candidateList = new ArrayList<Candidate>();
+		cell = new ArrayList<ArrayList<Candidate>>();
+		dirty = true;
+	}
+
+	/**
+	 * Markers were added to or removed from the scene
+	 */
+	public void setDirty() {
+		dirty = true;
+	}
+
+	/**
+	 * Place the labels for the current camera.
+	 *
+	 * @param camera
+	 */
+	public void update(BasicCamera camera) {
+		if (dirty) {
+			markerList.clear();
+			batchList.clear();
+			findMarkers(root);
+			dirty = false;
+		}
+		if (!DECLUTTER) {
+			for (int i = 0; i < markerList.size(); ++i) {
+				markerList.get(i).getLabelText().setCluttered(false);
+			}
+			for (int i = 0; i < batchList.size(); ++i) {
+				MarkerBatch batch = batchList.get(i);
+				for (int j = 0; j < batch.getInstanceCount(); ++j) {
+					if (batch.getLabel(j) != null) {
+						batch.getLabel(j).setCluttered(false);
+					}
+				}
+			}
+			return;
+		}
+
+		// collect the labels that are in view
+		candidateList.clear();
+		for (int i = 0; i < markerList.size(); ++i) {
+			Marker marker = markerList.get(i);
+			if (marker.isLabelVisible() && isDisplayed(marker)) {
+				addCandidate(marker.getLabelText(), marker.getLabelPriority(), camera);
+			}
+		}
+		for (int i = 0; i < batchList.size(); ++i) {
+			MarkerBatch batch = batchList.get(i);
+			if (!isDisplayed(batch)) {
+				continue;
+			}
+			for (int j = 0; j < batch.getInstanceCount(); ++j) {
+				if (batch.getLabel(j) != null) {
+					addCandidate(batch.getLabel(j), batch.getLabelPriority(), camera);
+				}
+			}
+		}
+		Collections.sort(candidateList, comparator);
+
+		// place the labels
+		resizeGrid(camera.getWidth(), camera.getHeight());
+		for (int i = 0; i < candidateList.size(); ++i) {
+			Candidate candidate = candidateList.get(i);
+			int c0 = getColumn(candidate.minX);
+			int c1 = getColumn(candidate.maxX);
+			int r0 = getRow(candidate.minY);
+			int r1 = getRow(candidate.maxY);
+			boolean overlaps = false;
+			for (int r = r0; (r <= r1) && !overlaps; ++r) {
+				for (int c = c0; (c <= c1) && !overlaps; ++c) {
+					ArrayList<Candidate> list = cell.get(r * columns + c);
+					for (int j = 0; j < list.size(); ++j) {
+						if (candidate.overlaps(list.get(j))) {
+							overlaps = true;
+							break;
+						}
+					}
+				}
+			}
+			candidate.label.setCluttered(overlaps);
+			if (!overlaps) {
+				for (int r = r0; r <= r1; ++r) {
+					for (int c = c0; c <= c1; ++c) {
+						cell.get(r * columns + c).add(candidate);
+					}
+				}
+			}
+		}
+		candidateList.clear();
+	}
+
+	private void addCandidate(RasterText label, int priority, BasicCamera camera) {
+		if (!label.isVisible()) {
+			return;
+		}
+		camera.getScreenCoordinates(label.getWorldTranslation(), screen);
+		double w = label.getPixelWidth() / 2 + MARGIN;
+		double h = label.getHeight() + MARGIN;
+		if ((screen.getZ() < 0) || (screen.getZ() > 1) || (screen.getX() + w < 0)
+			|| (screen.getX() - w > camera.getWidth()) || (screen.getY() + h < 0)
+			|| (screen.getY() - MARGIN > camera.getHeight())) {
+			return;
+		}
+		Candidate candidate = new Candidate();
+		candidate.label = label;
+		candidate.priority = priority;
+		candidate.shown = !label.isCluttered();
+		candidate.depth = screen.getZ();
+		candidate.minX = screen.getX() - w;
+		candidate.maxX = screen.getX() + w;
+		candidate.minY = screen.getY() - MARGIN;
+		candidate.maxY = screen.getY() + h;
+		candidateList.add(candidate);
+	}
+
+	private void findMarkers(Spatial spatial) {
+		if (spatial instanceof MarkerBatch) {
+			batchList.add((MarkerBatch) spatial);
+		} else if (spatial instanceof Marker) {
+			Marker marker = (Marker) spatial;
+			if (marker.getLabelText() != null) {
+				markerList.add(marker);
+			}
+		} else if (spatial instanceof Node) {
+			Node node = (Node) spatial;
+			for (int i = 0; i < node.getNumberOfChildren(); ++i) {
+				findMarkers(node.getChild(i));
+			}
+		}
+	}
+
+	private boolean isDisplayed(Spatial spatial) {
+		while (spatial != null) {
+			if (!SpatialUtil.isDisplayed(spatial)) {
+				return (false);
+			}
+			spatial = spatial.getParent();
+		}
+		return (true);
+	}
+
+	private void resizeGrid(int width, int height) {
+		int c = Math.max(1, (width + CELL_PIXELS - 1) / CELL_PIXELS);
+		int r = Math.max(1, (height + CELL_PIXELS - 1) / CELL_PIXELS);
+		if ((c != columns) || (r != rows)) {
+			columns = c;
+			rows = r;
+			cell.clear();
+			for (int i = 0; i < columns * rows; ++i) {
+				cell.add(new ArrayList<Candidate>());
+			}
+		} else {
+			for (int i = 0; i < cell.size(); ++i) {
+				cell.get(i).clear();
+			}
+		}
+	}
+
+	private int getColumn(double x) {
+		int c = (int) Math.floor(x / CELL_PIXELS);
+		return (Math.max(0, Math.min(c, columns - 1)));
+	}
+
+	private int getRow(double y) {
+		int r = (int) Math.floor(y / CELL_PIXELS);
+		return (Math.max(0, Math.min(r, rows - 1)));
+	}
+
+}
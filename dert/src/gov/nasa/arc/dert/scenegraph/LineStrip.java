@@ -58,6 +58,35 @@ public class LineStrip extends Line {
 		}
 	}
 
+	/**
+	 * Update the elevation of a range of vertices that lie in a quad tree.
+	 *
+	 * @param quadTree
+	 * @param start
+	 *            the first vertex
+	 * @param end
+	 *            the vertex after the last one
+	 * @return true if a vertex was modified
+	 */
+	public synchronized boolean updateElevation(QuadTree quadTree, int start, int end) {
+		FloatBuffer vertex = _meshData.getVertexBuffer();
+		Landscape landscape = Landscape.getInstance();
+		boolean modified = false;
+		for (int i = start * 3; i < end * 3; i += 3) {
+			float x = vertex.get(i);
+			float y = vertex.get(i + 1);
+			if (!quadTree.contains(x, y)) {
+				continue;
+			}
+			double z = landscape.getZ(x, y, quadTree) + 0.1;
+			if (!Double.isNaN(z)) {
+				vertex.put(i + 2, (float) z);
+				modified = true;
+			}
+		}
+		return (modified);
+	}
+
 	/**
 	 * Determine if this line strip intersects with a quad tree.
 	 * 
@@ -60,6 +60,9 @@ public abstract class Marker extends Movable implements ViewDependent {
 	
 	protected boolean labelVisible;
 
+	// placement priority of the label when decluttering, higher goes first
+	protected int labelPriority;
+
 	/**
 	 * Constructor
 	 */
@@ -240,6 +243,33 @@ public abstract class Marker extends Movable implements ViewDependent {
 		return (labelVisible);
 	}
 
+	/**
+	 * Get the label object
+	 * 
+	 * @return
+	 */
+	public RasterText getLabelText() {
+		return (label);
+	}
+
+	/**
+	 * Set the placement priority of the label when decluttering
+	 * 
+	 * @param labelPriority
+	 */
+	public void setLabelPriority(int labelPriority) {
+		this.labelPriority = labelPriority;
+	}
+
+	/**
+	 * Get the placement priority of the label
+	 * 
+	 * @return
+	 */
+	public int getLabelPriority() {
+		return (labelPriority);
+	}
+
 	/**
 	 * Update size depending on camera location.
 	 */
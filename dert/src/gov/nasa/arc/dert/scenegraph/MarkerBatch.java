@@ -0,0 +1,674 @@
+package gov.nasa.arc.dert.scenegraph;
+
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.landscape.QuadTree;
+import gov.nasa.arc.dert.scenegraph.Shape.ShapeType;
+import gov.nasa.arc.dert.scenegraph.text.RasterText;
+import gov.nasa.arc.dert.scenegraph.text.Text.AlignType;
+import gov.nasa.arc.dert.util.SpatialUtil;
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+import gov.nasa.arc.dert.viewpoint.ViewDependent;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.renderer.queue.RenderBucketType;
+import com.ardor3d.renderer.state.BlendState;
+import com.ardor3d.renderer.state.MaterialState;
+import com.ardor3d.renderer.state.MaterialState.ColorMaterial;
+import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.IndexBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.event.DirtyType;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Many point markers of the same shape drawn as one mesh. The location, size
+ * and color of each marker instance are kept in one attribute array and the
+ * shape is copied into the vertex buffer once per instance, so the
+ * whole set is drawn with one set of render states in a single draw call.
+ * Each instance has an owner, the spatial that is returned when the instance
+ * is picked. The instances of an owner should be added consecutively.
+ *
+ * Labels are created only when they are made visible. A label shows the name
+ * of the owner.
+ *
+ */
+public class MarkerBatch extends Node implements ViewDependent {
+
+	// Attributes of an instance (x, y, z, size, red, green, blue, alpha)
+	public static final int STRIDE = 8;
+
+	// Instance attributes
+	private float[] attribute;
+
+	// Number of instances
+	private int instanceCount;
+
+	// The owner of each instance
+	private Spatial[] owner;
+
+	// Current scale of each instance
+	private float[] scale;
+
+	// Labels, created on demand
+	private RasterText[] label;
+	private boolean[] labelVisible;
+
+	// Placement priority of the labels when decluttering
+	private int labelPriority;
+
+	// The shape of an instance
+	private float[] shapeVertex, shapeNormal;
+	private int[] shapeIndex;
+	private int shapeVertexCount;
+	private double shapeRadius;
+	private double labelOffset;
+
+	// Maintain the size in pixels as the viewpoint changes
+	private boolean autoScale;
+
+	// Vertical exaggeration
+	private double vertExag = 1;
+
+	// The mesh with all instances
+	private Mesh mesh;
+
+	// The labels
+	private Node labelNode;
+
+	// Instances in the index buffer
+	private int[] visibleInstance;
+	private int visibleCount;
+
+	private Vector3 tmpVec = new Vector3();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 * @param shapeType
+	 *            the shape of each marker, a shape with a triangle mesh
+	 * @param autoScale
+	 *            maintain the size on the screen as the viewpoint changes
+	 */
+	public MarkerBatch(String name, ShapeType shapeType, boolean autoScale) {
+		super(name);
+		this.autoScale = autoScale;
+		setShape(shapeType);
+		attribute = new float[STRIDE * 256];
+		owner = new Spatial[256];
+
+		mesh = new Mesh("_markers");
+		mesh.getMeshData().setIndexMode(IndexMode.Triangles);
+		// per vertex color for the ambient and diffuse material
+		MaterialState materialState = new MaterialState();
+		materialState.setColorMaterial(ColorMaterial.AmbientAndDiffuse);
+		materialState.setEnabled(true);
+		mesh.setRenderState(materialState);
+		SpatialUtil.setPickHost(mesh, this);
+		attachChild(mesh);
+
+		labelNode = new Node("_labels");
+		attachChild(labelNode);
+
+		// for transparency
+		BlendState bs = new BlendState();
+		bs.setBlendEnabled(true);
+		setRenderState(bs);
+		// turn off textures by default to block inherited textures
+		TextureState textureState = new TextureState();
+		textureState.setEnabled(false);
+		setRenderState(textureState);
+		getSceneHints().setRenderBucketType(RenderBucketType.Transparent);
+	}
+
+	private void setShape(ShapeType shapeType) {
+		Shape shape = Shape.createShape("_shape", shapeType, 1);
+		if (!(shape.getGeometry() instanceof Mesh)) {
+			throw new IllegalArgumentException("Shape " + shapeType + " is not a mesh.");
+		}
+		Mesh geometry = (Mesh) shape.getGeometry();
+		MeshData meshData = geometry.getMeshData();
+		if ((meshData.getIndexMode(0) != IndexMode.Triangles) || (meshData.getNormalBuffer() == null)) {
+			throw new IllegalArgumentException("Shape " + shapeType + " is not a triangle mesh.");
+		}
+		ReadOnlyTransform transform = geometry.getTransform();
+		FloatBuffer vertex = meshData.getVertexBuffer();
+		FloatBuffer normal = meshData.getNormalBuffer();
+		shapeVertexCount = meshData.getVertexCount();
+		shapeVertex = new float[3 * shapeVertexCount];
+		shapeNormal = new float[3 * shapeVertexCount];
+		shapeRadius = 0;
+		for (int i = 0; i < shapeVertexCount; ++i) {
+			tmpVec.set(vertex.get(i * 3), vertex.get(i * 3 + 1), vertex.get(i * 3 + 2));
+			transform.applyForward(tmpVec);
+			shapeVertex[i * 3] = tmpVec.getXf();
+			shapeVertex[i * 3 + 1] = tmpVec.getYf();
+			shapeVertex[i * 3 + 2] = tmpVec.getZf();
+			shapeRadius = Math.max(shapeRadius, tmpVec.length());
+			tmpVec.set(normal.get(i * 3), normal.get(i * 3 + 1), normal.get(i * 3 + 2));
+			transform.applyForwardVector(tmpVec);
+			tmpVec.normalizeLocal();
+			shapeNormal[i * 3] = tmpVec.getXf();
+			shapeNormal[i * 3 + 1] = tmpVec.getYf();
+			shapeNormal[i * 3 + 2] = tmpVec.getZf();
+		}
+		IndexBufferData<?> indices = meshData.getIndices();
+		if (indices == null) {
+			shapeIndex = new int[shapeVertexCount];
+			for (int i = 0; i < shapeVertexCount; ++i) {
+				shapeIndex[i] = i;
+			}
+		} else {
+			shapeIndex = new int[indices.limit()];
+			for (int i = 0; i < shapeIndex.length; ++i) {
+				shapeIndex[i] = indices.get(i);
+			}
+		}
+		labelOffset = Shape.SHAPE_TEXT_OFFSET[shapeType.ordinal()].getY();
+	}
+
+	/**
+	 * Add a marker instance.
+	 *
+	 * @param owner
+	 *            the spatial returned when this instance is picked
+	 * @param location
+	 * @param size
+	 * @param color
+	 * @return the instance index
+	 */
+	public int addInstance(Spatial owner, ReadOnlyVector3 location, double size, Color color) {
+		if (STRIDE * (instanceCount + 1) > attribute.length) {
+			float[] aArray = new float[2 * attribute.length];
+			System.arraycopy(attribute, 0, aArray, 0, STRIDE * instanceCount);
+			attribute = aArray;
+			Spatial[] oArray = new Spatial[2 * this.owner.length];
+			System.arraycopy(this.owner, 0, oArray, 0, instanceCount);
+			this.owner = oArray;
+		}
+		int k = STRIDE * instanceCount;
+		attribute[k] = location.getXf();
+		attribute[k + 1] = location.getYf();
+		attribute[k + 2] = location.getZf();
+		attribute[k + 3] = (float) size;
+		setColorAttribute(k, color);
+		this.owner[instanceCount] = owner;
+		return (instanceCount++);
+	}
+
+	private void setColorAttribute(int k, Color color) {
+		attribute[k + 4] = color.getRed() / 255f;
+		attribute[k + 5] = color.getGreen() / 255f;
+		attribute[k + 6] = color.getBlue() / 255f;
+		attribute[k + 7] = color.getAlpha() / 255f;
+	}
+
+	/**
+	 * Get the number of instances.
+	 *
+	 * @return
+	 */
+	public int getInstanceCount() {
+		return (instanceCount);
+	}
+
+	/**
+	 * Remove the instances added after the first ones, before the batch is
+	 * built.
+	 *
+	 * @param count
+	 *            the number of instances to keep
+	 */
+	public void removeInstances(int count) {
+		for (int i = count; i < instanceCount; ++i) {
+			owner[i] = null;
+		}
+		instanceCount = Math.min(count, instanceCount);
+	}
+
+	/**
+	 * Create the mesh buffers after all instances are added.
+	 */
+	public synchronized void build() {
+		scale = new float[instanceCount];
+		label = new RasterText[instanceCount];
+		labelVisible = new boolean[instanceCount];
+		visibleInstance = new int[instanceCount];
+		int n = instanceCount * shapeVertexCount;
+		MeshData meshData = mesh.getMeshData();
+		meshData.setVertexBuffer(BufferUtils.createFloatBuffer(3 * n));
+		FloatBuffer normal = BufferUtils.createFloatBuffer(3 * n);
+		for (int i = 0; i < instanceCount; ++i) {
+			normal.put(shapeNormal);
+		}
+		normal.flip();
+		meshData.setNormalBuffer(normal);
+		meshData.setColorBuffer(BufferUtils.createFloatBuffer(4 * n));
+		for (int i = 0; i < instanceCount; ++i) {
+			scale[i] = attribute[STRIDE * i + 3];
+			writeVertices(i);
+			writeColors(i);
+		}
+		updateIndices();
+		mesh.setModelBound(new BoundingBox());
+		mesh.updateModelBound();
+	}
+
+	private void writeVertices(int i) {
+		FloatBuffer vertex = mesh.getMeshData().getVertexBuffer();
+		int k = STRIDE * i;
+		float x = attribute[k];
+		float y = attribute[k + 1];
+		float z = (float) (attribute[k + 2] * vertExag);
+		float s = scale[i];
+		int j = 3 * i * shapeVertexCount;
+		for (int v = 0; v < 3 * shapeVertexCount; v += 3) {
+			vertex.put(j + v, x + shapeVertex[v] * s);
+			vertex.put(j + v + 1, y + shapeVertex[v + 1] * s);
+			vertex.put(j + v + 2, z + shapeVertex[v + 2] * s);
+		}
+		if (label[i] != null) {
+			label[i].setTranslation(x, y, z + labelOffset * s);
+		}
+	}
+
+	private void writeColors(int i) {
+		FloatBuffer color = mesh.getMeshData().getColorBuffer();
+		int k = STRIDE * i;
+		float r = attribute[k + 4];
+		float g = attribute[k + 5];
+		float b = attribute[k + 6];
+		int j = 4 * i * shapeVertexCount;
+		for (int v = 0; v < 4 * shapeVertexCount; v += 4) {
+			color.put(j + v, r);
+			color.put(j + v + 1, g);
+			color.put(j + v + 2, b);
+			color.put(j + v + 3, attribute[k + 7]);
+		}
+	}
+
+	private void refresh(boolean vertices) {
+		MeshData meshData = mesh.getMeshData();
+		if (vertices) {
+			meshData.getVertexCoords().setNeedsRefresh(true);
+			mesh.updateModelBound();
+		} else {
+			meshData.getColorCoords().setNeedsRefresh(true);
+		}
+		mesh.markDirty(DirtyType.Bounding);
+	}
+
+	/**
+	 * Create the index buffer with the instances whose owner is displayed.
+	 * Call when the visibility of an owner changes.
+	 */
+	public synchronized void updateIndices() {
+		if (visibleInstance == null) {
+			return;
+		}
+		visibleCount = 0;
+		for (int i = 0; i < instanceCount; ++i) {
+			if (isDisplayed(owner[i])) {
+				visibleInstance[visibleCount++] = i;
+			}
+		}
+		IndexBufferData<?> indices = BufferUtils.createIndexBufferData(visibleCount * shapeIndex.length,
+			Math.max(0, instanceCount * shapeVertexCount - 1));
+		for (int i = 0; i < visibleCount; ++i) {
+			int offset = visibleInstance[i] * shapeVertexCount;
+			for (int j = 0; j < shapeIndex.length; ++j) {
+				indices.put(offset + shapeIndex[j]);
+			}
+		}
+		indices.flip();
+		mesh.getMeshData().setIndices(indices);
+		mesh.getSceneHints().setCullHint((visibleCount == 0) ? CullHint.Always : CullHint.Inherit);
+		for (int i = 0; i < instanceCount; ++i) {
+			if (label[i] != null) {
+				label[i].setVisible(labelVisible[i] && isDisplayed(owner[i]));
+			}
+		}
+	}
+
+	private boolean isDisplayed(Spatial spatial) {
+		while ((spatial != null) && (spatial != this)) {
+			if (!SpatialUtil.isDisplayed(spatial)) {
+				return (false);
+			}
+			spatial = spatial.getParent();
+		}
+		return (true);
+	}
+
+	/**
+	 * Get the owner of an instance.
+	 *
+	 * @param instance
+	 * @return the owner or null if the instance is out of range
+	 */
+	public Spatial getOwner(int instance) {
+		if ((instance < 0) || (instance >= instanceCount)) {
+			return (null);
+		}
+		return (owner[instance]);
+	}
+
+	/**
+	 * Get the location of an instance.
+	 *
+	 * @param instance
+	 * @param store
+	 * @return
+	 */
+	public synchronized Vector3 getLocation(int instance, Vector3 store) {
+		int k = STRIDE * instance;
+		store.set(attribute[k], attribute[k + 1], attribute[k + 2]);
+		return (store);
+	}
+
+	/**
+	 * Get the size of an instance.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	public double getSize(int instance) {
+		return (attribute[STRIDE * instance + 3]);
+	}
+
+	/**
+	 * Set the size of a range of instances.
+	 *
+	 * @param start
+	 *            the first instance
+	 * @param end
+	 *            the instance after the last one
+	 * @param size
+	 */
+	public synchronized void setSize(int start, int end, double size) {
+		for (int i = start; i < end; ++i) {
+			int k = STRIDE * i;
+			if (scale != null) {
+				scale[i] *= size / attribute[k + 3];
+			}
+			attribute[k + 3] = (float) size;
+			if (scale != null) {
+				writeVertices(i);
+			}
+		}
+		if ((scale != null) && (end > start)) {
+			refresh(true);
+		}
+	}
+
+	/**
+	 * Get the color of an instance.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	public Color getColor(int instance) {
+		int k = STRIDE * instance;
+		return (new Color(attribute[k + 4], attribute[k + 5], attribute[k + 6], attribute[k + 7]));
+	}
+
+	/**
+	 * Set the color of a range of instances.
+	 *
+	 * @param start
+	 *            the first instance
+	 * @param end
+	 *            the instance after the last one
+	 * @param color
+	 */
+	public synchronized void setColor(int start, int end, Color color) {
+		for (int i = start; i < end; ++i) {
+			setColorAttribute(STRIDE * i, color);
+			if (scale != null) {
+				writeColors(i);
+			}
+		}
+		if ((scale != null) && (end > start)) {
+			refresh(false);
+		}
+	}
+
+	/**
+	 * Show or hide the labels of a range of instances.
+	 *
+	 * @param start
+	 *            the first instance
+	 * @param end
+	 *            the instance after the last one
+	 * @param visible
+	 */
+	public synchronized void setLabelVisible(int start, int end, boolean visible) {
+		if (label == null) {
+			return;
+		}
+		for (int i = start; i < end; ++i) {
+			labelVisible[i] = visible;
+			if (visible && (label[i] == null)) {
+				label[i] = new RasterText("_label", owner[i].getName(), AlignType.Center, true);
+				label[i].setColor(ColorRGBA.WHITE);
+				labelNode.attachChild(label[i]);
+				writeVertices(i);
+			}
+			if (label[i] != null) {
+				label[i].setVisible(visible && isDisplayed(owner[i]));
+			}
+		}
+	}
+
+	/**
+	 * Get the label of an instance if it has been created.
+	 *
+	 * @param instance
+	 * @return the label or null
+	 */
+	public RasterText getLabel(int instance) {
+		if (label == null) {
+			return (null);
+		}
+		return (label[instance]);
+	}
+
+	/**
+	 * Set the placement priority of the labels when decluttering
+	 * 
+	 * @param labelPriority
+	 */
+	public void setLabelPriority(int labelPriority) {
+		this.labelPriority = labelPriority;
+	}
+
+	/**
+	 * Get the placement priority of the labels
+	 * 
+	 * @return
+	 */
+	public int getLabelPriority() {
+		return (labelPriority);
+	}
+
+	/**
+	 * Set the vertical exaggeration applied to the instance locations. The
+	 * shapes are not exaggerated.
+	 *
+	 * @param vertExag
+	 */
+	public synchronized void setVerticalExaggeration(double vertExag) {
+		this.vertExag = vertExag;
+		if (scale == null) {
+			return;
+		}
+		for (int i = 0; i < instanceCount; ++i) {
+			writeVertices(i);
+		}
+		refresh(true);
+	}
+
+	/**
+	 * Drape a range of instances that lie in a quad tree on its surface.
+	 *
+	 * @param quadTree
+	 * @param start
+	 *            the first instance
+	 * @param end
+	 *            the instance after the last one
+	 * @return true if an instance was moved
+	 */
+	public synchronized boolean updateElevation(QuadTree quadTree, int start, int end) {
+		Landscape landscape = Landscape.getInstance();
+		boolean modified = false;
+		for (int i = start; i < end; ++i) {
+			int k = STRIDE * i;
+			if (!quadTree.contains(attribute[k], attribute[k + 1])) {
+				continue;
+			}
+			double z = landscape.getZ(attribute[k], attribute[k + 1], quadTree);
+			if (!Double.isNaN(z)) {
+				attribute[k + 2] = (float) z;
+				if (scale != null) {
+					writeVertices(i);
+				}
+				modified = true;
+			}
+		}
+		if (modified && (scale != null)) {
+			refresh(true);
+		}
+		return (modified);
+	}
+
+	/**
+	 * Scale the displayed instances to keep their size on the screen.
+	 */
+	@Override
+	public void update(BasicCamera camera) {
+		if (!autoScale || (scale == null)) {
+			return;
+		}
+		ReadOnlyTransform transform = mesh.getWorldTransform();
+		boolean changed = false;
+		synchronized (this) {
+			for (int n = 0; n < visibleCount; ++n) {
+				int i = visibleInstance[n];
+				int k = STRIDE * i;
+				tmpVec.set(attribute[k], attribute[k + 1], attribute[k + 2] * vertExag);
+				transform.applyForward(tmpVec);
+				double pixSize = camera.getPixelSizeAt(tmpVec, true);
+				if (pixSize <= 0) {
+					continue;
+				}
+				float s = (float) (attribute[k + 3] * pixSize * Marker.PIXEL_SIZE);
+				if (Math.abs(s - scale[i]) > 0.0000001) {
+					scale[i] = s;
+					writeVertices(i);
+					changed = true;
+				}
+			}
+			if (changed) {
+				refresh(true);
+			}
+		}
+	}
+
+	/**
+	 * Get the center and radius of a range of instances in world coordinates.
+	 *
+	 * @param start
+	 * @param end
+	 * @param center
+	 *            the center
+	 * @return the radius
+	 */
+	public synchronized double getSeekPointAndDistance(int start, int end, Vector3 center) {
+		if (end <= start) {
+			center.set(getWorldBound().getCenter());
+			return (1);
+		}
+		ReadOnlyTransform transform = mesh.getWorldTransform();
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		double size = 0;
+		for (int i = start; i < end; ++i) {
+			int k = STRIDE * i;
+			tmpVec.set(attribute[k], attribute[k + 1], attribute[k + 2] * vertExag);
+			transform.applyForward(tmpVec);
+			minX = Math.min(minX, tmpVec.getX());
+			minY = Math.min(minY, tmpVec.getY());
+			minZ = Math.min(minZ, tmpVec.getZ());
+			maxX = Math.max(maxX, tmpVec.getX());
+			maxY = Math.max(maxY, tmpVec.getY());
+			maxZ = Math.max(maxZ, tmpVec.getZ());
+			size = Math.max(size, attribute[k + 3]);
+		}
+		center.set((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+		tmpVec.set(maxX, maxY, maxZ);
+		return (Math.max(center.distance(tmpVec), Math.max(size, 20)));
+	}
+
+	/**
+	 * Find the displayed instance closest to the origin of a pick ray. The
+	 * instance shape is tested as a sphere.
+	 *
+	 * @param ray
+	 * @param position
+	 *            the picked point
+	 * @return the instance, or -1 if nothing was picked
+	 */
+	public synchronized int findPick(Ray3 ray, Vector3 position) {
+		if ((scale == null) || (visibleCount == 0)) {
+			return (-1);
+		}
+		ReadOnlyTransform transform = mesh.getWorldTransform();
+		ReadOnlyVector3 origin = ray.getOrigin();
+		ReadOnlyVector3 dir = ray.getDirection();
+		double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double a = dx * dx + dy * dy + dz * dz;
+		int picked = -1;
+		double best = Double.MAX_VALUE;
+		for (int n = 0; n < visibleCount; ++n) {
+			int i = visibleInstance[n];
+			int k = STRIDE * i;
+			tmpVec.set(attribute[k], attribute[k + 1], attribute[k + 2] * vertExag);
+			transform.applyForward(tmpVec);
+			double radius = shapeRadius * scale[i] * transform.getScale().getX();
+			// nearest intersection of the ray with the instance sphere
+			double wx = ox - tmpVec.getX(), wy = oy - tmpVec.getY(), wz = oz - tmpVec.getZ();
+			double b = dx * wx + dy * wy + dz * wz;
+			double c = wx * wx + wy * wy + wz * wz - radius * radius;
+			double disc = b * b - a * c;
+			if (disc < 0) {
+				continue;
+			}
+			double s = (-b - Math.sqrt(disc)) / a;
+			if (s < 0) {
+				s = (-b + Math.sqrt(disc)) / a;
+			}
+			if ((s < 0) || (s >= best)) {
+				continue;
+			}
+			best = s;
+			picked = i;
+			position.set(ox + s * dx, oy + s * dy, oz + s * dz);
+		}
+		return (picked);
+	}
+
+}
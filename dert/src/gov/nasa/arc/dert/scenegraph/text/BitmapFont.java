@@ -24,6 +24,12 @@ public class BitmapFont {
 	protected static int IMAGE_WIDTH = 1024, IMAGE_HEIGHT = 1024;
 	protected static BitmapFont INSTANCE;
 	
+	// Font used when the RasterText.Font property is not set
+	public static final String DEFAULT_NAME = "Courier New";
+	
+	// Font size used when RasterText.FontSize is not set and there is no screen to size it for
+	public static final int DEFAULT_SIZE = 24;
+	
 	private int letterWidth, letterHeight, xOrigin, yOrigin;
 	private int bitmapWidth;
 	private BitmapChar[] chars;
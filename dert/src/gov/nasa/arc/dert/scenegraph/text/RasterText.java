@@ -103,6 +103,15 @@ public class RasterText extends Text {
 		return(BitmapFont.getInstance().getHeight());
 	}
 
+	/**
+	 * Get the width of the text on the screen in pixels
+	 * 
+	 * @return
+	 */
+	public double getPixelWidth() {
+		return (BitmapFont.getInstance().stringLength(textString));
+	}
+
 	@Override
 	protected double getTextWidth() {
 //		System.err.println("RasterText.getWidth "+str+" "+scaleFactor+" "+glut.glutBitmapLength(font, str)+" "+(scaleFactor * glut.glutBitmapLength(font, str)));
@@ -43,6 +43,9 @@ public abstract class Text extends Mesh {
 
 	// For visibility
 	protected CullHint cullHint = CullHint.Inherit;
+
+	// Hidden by the label manager because it overlaps another label
+	protected boolean cluttered;
 	
 	// Cache string dimensions
 	protected double width, height;
@@ -214,6 +217,7 @@ public abstract class Text extends Mesh {
 	@Override
 	public void setVisible(boolean visible) {
 		cullHint = visible ? CullHint.Inherit : CullHint.Always;
+		cluttered = false;
 		getSceneHints().setCullHint(cullHint);
 	}
 
@@ -225,4 +229,27 @@ public abstract class Text extends Mesh {
 		return (cullHint == CullHint.Inherit);
 	}
 
+	/**
+	 * Hide or show this text to declutter the display. This does not change
+	 * the visibility set with setVisible.
+	 * 
+	 * @param cluttered
+	 */
+	public void setCluttered(boolean cluttered) {
+		if (this.cluttered == cluttered) {
+			return;
+		}
+		this.cluttered = cluttered;
+		getSceneHints().setCullHint(cluttered ? CullHint.Always : cullHint);
+	}
+
+	/**
+	 * Determine if this text is hidden to declutter the display
+	 * 
+	 * @return
+	 */
+	public boolean isCluttered() {
+		return (cluttered);
+	}
+
 }
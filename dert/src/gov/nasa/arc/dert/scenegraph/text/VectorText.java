@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.scenegraph.text;
 
 import java.awt.Font;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.Rectangle2D;
 
 import com.ardor3d.renderer.ContextCapabilities;
@@ -11,7 +12,9 @@ import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.util.awt.TextRenderer;
 
 /**
- * A class for drawing text strings that uses a JOGL TextRenderer.
+ * A class for drawing text strings that uses a JOGL TextRenderer. Text is
+ * measured with AWT, and the TextRenderer is created when text is first drawn,
+ * so vector text can be used without an OpenGL context.
  *
  */
 public class VectorText extends Text {
@@ -20,9 +23,31 @@ public class VectorText extends Text {
 	protected final static String FONT_NAME = "Arial";
 	protected final static int FONT_TYPE = Font.BOLD;
 	protected static TextRenderer textRenderer;
-	
-	static {
-		textRenderer = new TextRenderer(new Font(FONT_NAME, FONT_TYPE, FONT_SIZE));
+	protected static Font font = new Font(FONT_NAME, FONT_TYPE, FONT_SIZE);
+
+	// Measures text without an OpenGL context (antialiased with fractional metrics like the TextRenderer)
+	protected static FontRenderContext fontRenderContext = new FontRenderContext(null, true, true);
+
+	/**
+	 * Get the TextRenderer, creating it the first time. Only called when
+	 * drawing.
+	 * 
+	 * @return
+	 */
+	protected static TextRenderer getTextRenderer() {
+		if (textRenderer == null) {
+			textRenderer = new TextRenderer(font);
+		}
+		return (textRenderer);
+	}
+
+	/**
+	 * Get the font used to draw vector text.
+	 * 
+	 * @return
+	 */
+	public static Font getFont() {
+		return (font);
 	}
 
 	/**
@@ -48,13 +73,13 @@ public class VectorText extends Text {
 
 	@Override
 	protected double getTextWidth() {
-		Rectangle2D rect = textRenderer.getBounds(textString);
+		Rectangle2D rect = font.getStringBounds(textString, fontRenderContext);
 		return(rect.getWidth());
 	}
 
 	@Override
 	protected double getTextHeight() {
-		Rectangle2D rect = textRenderer.getBounds(textString);
+		Rectangle2D rect = font.getStringBounds(textString, fontRenderContext);
 		return(rect.getHeight());
 	}
 
@@ -71,10 +96,11 @@ public class VectorText extends Text {
 		}
 		final GL2 gl2 = GLContext.getCurrentGL().getGL2();
 		gl2.glPushMatrix();		
-        textRenderer.begin3DRendering();
-        textRenderer.setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
-        textRenderer.draw3D(textString, position.getXf(), position.getYf(), position.getZf(), (float)scaleFactor);
-        textRenderer.end3DRendering();
+        TextRenderer tr = getTextRenderer();
+        tr.begin3DRendering();
+        tr.setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+        tr.draw3D(textString, position.getXf(), position.getYf(), position.getZf(), (float)scaleFactor);
+        tr.end3DRendering();
 		gl2.glPopMatrix();
 	}
 
@@ -84,10 +110,11 @@ public class VectorText extends Text {
 
 			final GL2 gl2 = GLContext.getCurrentGL().getGL2();
 			gl2.glPushMatrix();
-	        textRenderer.begin3DRendering();
-	        textRenderer.setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
-	        textRenderer.draw3D(textString, position.getXf(), position.getYf(), position.getZf(), (float)scaleFactor);
-	        textRenderer.end3DRendering();
+	        TextRenderer tr = getTextRenderer();
+	        tr.begin3DRendering();
+	        tr.setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+	        tr.draw3D(textString, position.getXf(), position.getYf(), position.getZf(), (float)scaleFactor);
+	        tr.end3DRendering();
 			gl2.glPopMatrix();
 		}
 	}
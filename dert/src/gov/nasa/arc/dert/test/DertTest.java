@@ -201,6 +201,38 @@ public class DertTest {
 		if (!pt.testPersistence(testLoc))
 			System.exit(3);
 		
+		GeojsonTest gt = new GeojsonTest();
+		if (!gt.testGeojson())
+			System.exit(4);
+		
+		ProjectionTest prt = new ProjectionTest();
+		if (!prt.testProjection())
+			System.exit(5);
+		
+		FeatureSetTest fst = new FeatureSetTest();
+		if (!fst.testFeatureSet(testLoc))
+			System.exit(6);
+		
+		HorizonTest ht = new HorizonTest();
+		if (!ht.testHorizon(testLoc))
+			System.exit(7);
+		
+		EphemerisTest et = new EphemerisTest();
+		if (!et.testEphemeris())
+			System.exit(8);
+		
+		ViewshedTest vt = new ViewshedTest();
+		if (!vt.testViewshed(testLoc))
+			System.exit(9);
+		
+		FieldCameraTest fct = new FieldCameraTest();
+		if (!fct.testFieldCamera(testLoc))
+			System.exit(10);
+		
+		FrameStatisticsTest frst = new FrameStatisticsTest();
+		if (!frst.testFrameStatistics())
+			System.exit(11);
+		
 		System.err.println("\nAll tests passed.");
 	}
 }
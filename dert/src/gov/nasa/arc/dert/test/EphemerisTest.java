@@ -0,0 +1,198 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.ephemeris.EphemerisCache;
+import gov.nasa.arc.dert.ephemeris.EphemerisTable;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provided for testing EphemerisTable interpolation and the EphemerisCache
+ * grid interval. Vectors come from a model of the Sun's motion instead of
+ * SPICE.
+ *
+ */
+public class EphemerisTest {
+
+	// Length of a day in the model (milliseconds)
+	private static final double DAY = 86400000;
+
+	// Caches tables of the model and records the grid intervals tried
+	private static class Cache extends EphemerisCache {
+
+		private double wobble;
+		private ArrayList<Long> intervalList = new ArrayList<Long>();
+
+		public Cache(double wobble) {
+			this.wobble = wobble;
+		}
+
+		public EphemerisTable create(long time) {
+			intervalList.clear();
+			return (createTable("Mars", "Sun", 0, 0, 0, time));
+		}
+
+		public ArrayList<Long> getIntervals() {
+			return (intervalList);
+		}
+
+		@Override
+		protected EphemerisTable newTable(String observer, String target, double lon, double lat, double alt,
+			long start, long end, long interval) {
+			intervalList.add(interval);
+			// the same grid as a table computed with SPICE
+			int n = (int) ((end - start + interval - 1) / interval) + 3;
+			double[][] samples = new double[n][];
+			for (int i = 0; i < n; ++i) {
+				samples[i] = getSample(start + (i - 1) * interval, wobble);
+			}
+			return (new EphemerisTable(start - interval, interval, samples));
+		}
+
+		@Override
+		protected double[][] getTargetVectors(String observer, String target, long[] time, double lon, double lat,
+			double alt) {
+			double[][] val = new double[time.length][];
+			for (int i = 0; i < time.length; ++i) {
+				val[i] = getSample(time[i], wobble);
+			}
+			return (val);
+		}
+	}
+
+	public boolean testEphemeris() {
+		System.err.println("Testing ephemeris . . .");
+		if (!testInterpolation()) {
+			System.err.println("Test of EphemerisTable interpolation failed.");
+			return (false);
+		}
+		if (!testErrorHalving()) {
+			System.err.println("Test of EphemerisCache grid interval failed.");
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * The Sun circles the sky once a day with an elevation that rises and
+	 * falls once a day, plus a wobble of the given size with a period of an
+	 * hour. The distance changes linearly.
+	 */
+	private static double[] getSample(long time, double wobble) {
+		double t = time / DAY;
+		double az = 2 * Math.PI * t;
+		double el = 0.4 * Math.sin(2 * Math.PI * t) + wobble * Math.sin(48 * Math.PI * t);
+		double cosEl = Math.cos(el);
+		return (new double[] { cosEl * Math.sin(az), cosEl * Math.cos(az), Math.sin(el), 2.28e8 + 0.01 * t * DAY });
+	}
+
+	private static double getAngle(Vector3 vec, double[] sample) {
+		double dot = vec.getX() * sample[0] + vec.getY() * sample[1] + vec.getZ() * sample[2];
+		return (Math.toDegrees(Math.acos(Math.min(1, dot))));
+	}
+
+	/**
+	 * Check that the table reproduces the grid points and the linear distance,
+	 * that the error between grid points is much smaller than the motion in
+	 * one interval, and that times outside of the table are rejected.
+	 */
+	private boolean testInterpolation() {
+		long interval = 1800000;
+		long start = 1500000000000L;
+		int n = 100;
+		double[][] samples = new double[n][];
+		for (int i = 0; i < n; ++i) {
+			samples[i] = getSample(start + i * interval, 0);
+		}
+		EphemerisTable table = new EphemerisTable(start, interval, samples);
+		if ((table.getStartTime() != start + interval) || (table.getEndTime() != start + (n - 2) * interval)) {
+			System.err.println("EphemerisTest.testInterpolation wrong time range");
+			return (false);
+		}
+		Vector3 vec = new Vector3();
+		double gridError = 0;
+		for (int i = 1; i <= n - 2; ++i) {
+			table.getVector(start + i * interval, vec);
+			gridError = Math.max(gridError, getAngle(vec, samples[i]));
+		}
+		Random random = new Random(3);
+		double error = 0;
+		double distanceError = 0;
+		for (int i = 0; i < 1000; ++i) {
+			long time = table.getStartTime() + (long) (random.nextDouble() * (table.getEndTime() - table.getStartTime()));
+			double distance = table.getVector(time, vec);
+			double[] sample = getSample(time, 0);
+			error = Math.max(error, getAngle(vec, sample));
+			distanceError = Math.max(distanceError, Math.abs(distance - sample[3]));
+		}
+		boolean rejected = false;
+		try {
+			table.getVector(start, vec);
+		} catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		// the Sun moves 7.5 degrees in an interval
+		System.err.println("EphemerisTest.testInterpolation grid error = " + gridError + ", error = " + error
+			+ " degrees, distance error = " + distanceError + " km");
+		return ((gridError < 1.0e-6) && (error < 0.01) && (distanceError < 1.0e-3) && rejected);
+	}
+
+	/**
+	 * Check that the grid interval is halved until the error is within
+	 * EphemerisCache.MAX_ERROR, and that no table is made when it can't be.
+	 */
+	private boolean testErrorHalving() {
+		long time = 1500000000000L;
+		Cache cache = new Cache(0);
+		EphemerisTable table = cache.create(time);
+		if ((table == null) || (cache.getIntervals().size() != 1)
+			|| (table.getInterval() != EphemerisCache.INTERVAL)) {
+			System.err.println("EphemerisTest.testErrorHalving smooth table intervals " + cache.getIntervals());
+			return (false);
+		}
+
+		cache = new Cache(0.002);
+		table = cache.create(time);
+		ArrayList<Long> intervals = cache.getIntervals();
+		if ((table == null) || (intervals.size() < 2)) {
+			System.err.println("EphemerisTest.testErrorHalving wobble table intervals " + intervals);
+			return (false);
+		}
+		for (int i = 0; i < intervals.size(); ++i) {
+			if (intervals.get(i) != (EphemerisCache.INTERVAL >> i)) {
+				System.err.println("EphemerisTest.testErrorHalving intervals not halved " + intervals);
+				return (false);
+			}
+		}
+		Random random = new Random(5);
+		Vector3 vec = new Vector3();
+		double error = 0;
+		for (int i = 0; i < 1000; ++i) {
+			long t = table.getStartTime() + (long) (random.nextDouble() * (table.getEndTime() - table.getStartTime()));
+			table.getVector(t, vec);
+			error = Math.max(error, getAngle(vec, getSample(t, 0.002)));
+		}
+		System.err.println("EphemerisTest.testErrorHalving intervals " + intervals + ", error = " + error + " degrees");
+		// the error is checked at a sample of points
+		if (error > 2 * EphemerisCache.MAX_ERROR) {
+			return (false);
+		}
+
+		// a wobble too fast for the smallest interval
+		long minInterval = EphemerisCache.MIN_INTERVAL;
+		EphemerisCache.MIN_INTERVAL = EphemerisCache.INTERVAL / 2;
+		try {
+			cache = new Cache(0.05);
+			if ((cache.create(time) != null) || (cache.getIntervals().size() != 2)) {
+				System.err.println("EphemerisTest.testErrorHalving table made with intervals " + cache.getIntervals());
+				return (false);
+			}
+		} finally {
+			EphemerisCache.MIN_INTERVAL = minInterval;
+		}
+		return (true);
+	}
+
+}
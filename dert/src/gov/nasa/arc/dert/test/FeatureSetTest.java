@@ -0,0 +1,437 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.geojson.GeoJsonFeature;
+import gov.nasa.arc.dert.io.geojson.GeojsonLoader;
+import gov.nasa.arc.dert.io.geojson.LineString;
+import gov.nasa.arc.dert.io.geojson.Point;
+import gov.nasa.arc.dert.io.geojson.VectorCache;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.landscape.QuadTree;
+import gov.nasa.arc.dert.scene.featureset.Feature;
+import gov.nasa.arc.dert.scene.featureset.FeatureIndex;
+import gov.nasa.arc.dert.scene.featureset.FeatureSet;
+import gov.nasa.arc.dert.scene.featureset.FeatureSetLoader;
+import gov.nasa.arc.dert.scene.featureset.LineBatch;
+import gov.nasa.arc.dert.scenegraph.MarkerBatch;
+import gov.nasa.arc.dert.state.FeatureSetState;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+
+/**
+ * Provided for testing FeatureSet lines and points.
+ *
+ */
+public class FeatureSetTest {
+
+	public boolean testFeatureSet(String testLoc) {
+		System.err.println("Testing FeatureSet . . .");
+		if (!testTolerances()) {
+			System.err.println("Test of LineBatch tolerances failed.");
+			return (false);
+		}
+		if (!testFeatureIndex()) {
+			System.err.println("Test of FeatureIndex failed.");
+			return (false);
+		}
+		if (!testLoader(testLoc)) {
+			System.err.println("Test of FeatureSetLoader failed.");
+			return (false);
+		}
+		if (!testCache(testLoc)) {
+			System.err.println("Test of VectorCache failed.");
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Check the Douglas-Peucker tolerances of random lines against a
+	 * recursive implementation, check that simplifying with them keeps every
+	 * dropped vertex within the tolerance, and check that the parallel
+	 * computation gives the same result.
+	 */
+	private boolean testTolerances() {
+		Random random = new Random(17);
+		int numParts = 200;
+		float[][] part = new float[numParts][];
+		for (int i = 0; i < numParts; ++i) {
+			int n = 2 + random.nextInt(300);
+			part[i] = new float[n * 3];
+			float x = 0, y = 0, z = 0;
+			for (int j = 0; j < n; ++j) {
+				x += random.nextFloat() * 10;
+				y += random.nextFloat() * 10 - 5;
+				z += random.nextFloat() * 2 - 1;
+				part[i][j * 3] = x;
+				part[i][j * 3 + 1] = y;
+				part[i][j * 3 + 2] = z;
+			}
+		}
+		LineBatch batch = createBatch(part);
+		int threshold = LineBatch.PARALLEL_THRESHOLD;
+		LineBatch parallelBatch = null;
+		try {
+			LineBatch.PARALLEL_THRESHOLD = 0;
+			parallelBatch = createBatch(part);
+		} finally {
+			LineBatch.PARALLEL_THRESHOLD = threshold;
+		}
+
+		double maxError = 0;
+		int k = 0;
+		for (int i = 0; i < numParts; ++i) {
+			int n = part[i].length / 3;
+			double[] tol = new double[n];
+			tol[0] = tol[n - 1] = Float.MAX_VALUE;
+			computeTolerances(part[i], 0, n - 1, tol);
+			for (int j = 0; j < n; ++j) {
+				float t = batch.getTolerance(k + j);
+				if (t != parallelBatch.getTolerance(k + j)) {
+					System.err.println("FeatureSetTest.testTolerances parallel tolerance differs at vertex " + (k + j));
+					return (false);
+				}
+				maxError = Math.max(maxError, Math.abs(t - tol[j]) / Math.max(1, tol[j]));
+			}
+			// simplify at several tolerances
+			for (double limit = 0.5; limit < 100; limit *= 2) {
+				if (!checkSimplification(batch, part[i], k, limit)) {
+					System.err.println("FeatureSetTest.testTolerances simplification to " + limit + " failed for part "
+						+ i);
+					return (false);
+				}
+			}
+			k += n;
+		}
+		System.err.println("FeatureSetTest.testTolerances " + k + " vertices, max relative error = " + maxError);
+		return (maxError < 1.0e-5);
+	}
+
+	private LineBatch createBatch(float[][] part) {
+		LineBatch batch = new LineBatch("test", Color.white, 1);
+		for (int i = 0; i < part.length; ++i) {
+			Feature feature = new Feature("part" + i, Color.white, null);
+			batch.addPart(feature, part[i], 0, part[i].length / 3);
+		}
+		batch.build();
+		return (batch);
+	}
+
+	/**
+	 * Recursive Douglas-Peucker where a vertex is no more tolerant than the
+	 * ends of the span it splits.
+	 */
+	private void computeTolerances(float[] v, int a, int b, double[] tol) {
+		if (b - a < 2) {
+			return;
+		}
+		double maxDist = -1;
+		int m = a + 1;
+		for (int j = a + 1; j < b; ++j) {
+			double d = distanceToSegment(v, j, a, b);
+			if (d > maxDist) {
+				maxDist = d;
+				m = j;
+			}
+		}
+		tol[m] = Math.min(maxDist, Math.min(tol[a], tol[b]));
+		computeTolerances(v, a, m, tol);
+		computeTolerances(v, m, b, tol);
+	}
+
+	/**
+	 * Drop the vertices below a tolerance and check the distance of each one
+	 * to the segment between the kept vertices around it.
+	 */
+	private boolean checkSimplification(LineBatch batch, float[] v, int k, double limit) {
+		int n = v.length / 3;
+		int a = 0;
+		for (int b = 1; b < n; ++b) {
+			if (batch.getTolerance(k + b) < limit) {
+				continue;
+			}
+			for (int j = a + 1; j < b; ++j) {
+				if (distanceToSegment(v, j, a, b) > limit * (1 + 1.0e-5)) {
+					return (false);
+				}
+			}
+			a = b;
+		}
+		return (a == n - 1);
+	}
+
+	private double distanceToSegment(float[] v, int j, int a, int b) {
+		double ax = v[a * 3], ay = v[a * 3 + 1], az = v[a * 3 + 2];
+		double ux = v[b * 3] - ax, uy = v[b * 3 + 1] - ay, uz = v[b * 3 + 2] - az;
+		double wx = v[j * 3] - ax, wy = v[j * 3 + 1] - ay, wz = v[j * 3 + 2] - az;
+		double c = ux * ux + uy * uy + uz * uz;
+		if (c > 0) {
+			double t = (ux * wx + uy * wy + uz * wz) / c;
+			t = Math.max(0, Math.min(1, t));
+			wx -= t * ux;
+			wy -= t * uy;
+			wz -= t * uz;
+		}
+		return (Math.sqrt(wx * wx + wy * wy + wz * wz));
+	}
+
+	/**
+	 * Check that draping through the index reaches every line vertex and
+	 * point in a quad tree and nothing outside it.
+	 */
+	private boolean testFeatureIndex() {
+		Landscape landscape = Landscape.getInstance();
+		GeojsonLoader loader = new GeojsonLoader(landscape.getSpatialReferenceSystem(), null, null, false, 1, 1);
+		loader.begin("test", Color.white, true);
+		Random random = new Random(23);
+		ArrayList<Feature> featureList = new ArrayList<Feature>();
+		Vector3 coord = new Vector3();
+		for (int i = 0; i < 600; ++i) {
+			int n = (i % 2 == 0) ? 1 : 2 + random.nextInt(20);
+			double[][] position = new double[n][];
+			double x = random.nextDouble() * 1000 - 500;
+			double y = random.nextDouble() * 1000 - 500;
+			for (int j = 0; j < n; ++j) {
+				coord.set(x, y, 0);
+				landscape.localToWorldCoordinate(coord);
+				// below the landscape so draped vertices can be told apart
+				position[j] = new double[] { coord.getX(), coord.getY(), -5000 };
+				x = Math.max(-500, Math.min(500, x + random.nextDouble() * 100 - 50));
+				y = Math.max(-500, Math.min(500, y + random.nextDouble() * 100 - 50));
+			}
+			GeoJsonFeature gjFeature = null;
+			if (n == 1) {
+				gjFeature = new GeoJsonFeature(null, null, new Point(position[0]));
+			} else {
+				gjFeature = new GeoJsonFeature(null, null, new LineString(position));
+			}
+			featureList.add(loader.convert(gjFeature, i));
+		}
+		LineBatch lineBatch = loader.takeLineBatch();
+		lineBatch.build();
+		MarkerBatch markerBatch = loader.takeMarkerBatch();
+		markerBatch.build();
+		FeatureSet featureSet = new FeatureSet(new FeatureSetState("test", "test", Color.white, true, false, null));
+		featureSet.addFeatures(featureList, lineBatch, markerBatch);
+		FeatureIndex index = featureSet.getFeatureIndex();
+
+		String[] key = { "/1", "/2/3", "/4/1/2", "/3/4/4" };
+		int count = 0;
+		for (int i = 0; i < key.length; ++i) {
+			QuadTree quadTree = landscape.getFactory().getQuadTree(key[i]);
+			FloatBuffer vertex = lineBatch.getMeshData().getVertexBuffer();
+			int nv = vertex.limit() / 3;
+			float[] z = new float[nv];
+			for (int j = 0; j < nv; ++j) {
+				z[j] = vertex.get(j * 3 + 2);
+			}
+			int np = markerBatch.getInstanceCount();
+			float[] pz = new float[np];
+			for (int j = 0; j < np; ++j) {
+				pz[j] = markerBatch.getLocation(j, coord).getZf();
+			}
+			index.updateElevation(quadTree);
+			for (int j = 0; j < nv; ++j) {
+				boolean inside = quadTree.contains(vertex.get(j * 3), vertex.get(j * 3 + 1));
+				if (inside == (z[j] == vertex.get(j * 3 + 2))) {
+					System.err.println("FeatureSetTest.testFeatureIndex line vertex " + j + " in " + key[i] + " = "
+						+ inside + ", z = " + z[j]);
+					return (false);
+				}
+				count += inside ? 1 : 0;
+			}
+			for (int j = 0; j < np; ++j) {
+				markerBatch.getLocation(j, coord);
+				boolean inside = quadTree.contains(coord.getX(), coord.getY());
+				if (inside == (pz[j] == coord.getZf())) {
+					System.err.println("FeatureSetTest.testFeatureIndex point " + j + " in " + key[i] + " = " + inside
+						+ ", z = " + pz[j]);
+					return (false);
+				}
+				count += inside ? 1 : 0;
+			}
+		}
+		System.err.println("FeatureSetTest.testFeatureIndex draped " + count + " vertices and points");
+		return (count > 0);
+	}
+
+	/**
+	 * Load a file with a feature that can't be converted, which is skipped,
+	 * and a file with a coordinate reference system after its features, which
+	 * is loaded again with it.
+	 */
+	private boolean testLoader(String testLoc) {
+		Vector3 coord = new Vector3(10, 20, 0);
+		Landscape.getInstance().localToWorldCoordinate(coord);
+		String point = "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [" + coord.getX()
+			+ ", " + coord.getY() + ", 0]}}";
+		String shortPoint = "{\"type\": \"Feature\", \"id\": \"short\", \"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+			+ coord.getX() + "]}}";
+		String crs = "\"crs\": {\"type\": \"name\", \"properties\": {\"name\": \"EPSG:4326\"}}";
+		boolean enabled = VectorCache.ENABLED;
+		VectorCache.ENABLED = false;
+		try {
+			FeatureSetLoader loader = load(write(testLoc, "skip.json", "{\"type\": \"FeatureCollection\", \"features\": ["
+				+ point + ", " + shortPoint + ", " + point + ", " + point + "]}"));
+			if ((loader == null) || loader.isCancelled() || (loader.getFeatureCount() != 3)) {
+				return (false);
+			}
+			// the point in longitude and latitude
+			Landscape.getInstance().getSpatialReferenceSystem().getProjection().worldToSpherical(coord);
+			String lonLatPoint = "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+				+ coord.getX() + ", " + coord.getY() + "]}}";
+			FeatureSet featureSet = createFeatureSet(write(testLoc, "latecrs.json",
+				"{\"type\": \"FeatureCollection\", \"features\": [" + lonLatPoint + "], " + crs + "}"));
+			loader = load(featureSet);
+			if ((loader == null) || loader.isCancelled() || (loader.getFeatureCount() != 1)
+				|| (featureSet.getMarkerBatches().size() != 1)) {
+				return (false);
+			}
+			featureSet.getMarkerBatches().get(0).getLocation(0, coord);
+			System.err.println("FeatureSetTest.testLoader late crs point at " + coord);
+			if ((Math.abs(coord.getX() - 10) > 0.01) || (Math.abs(coord.getY() - 20) > 0.01)) {
+				return (false);
+			}
+		} finally {
+			VectorCache.ENABLED = enabled;
+		}
+		return (true);
+	}
+
+	/**
+	 * Write a GeoJSON file with two features, load it to create the cache,
+	 * check the cached records, then check that the cache is ignored when the
+	 * load options or the file change.
+	 */
+	private boolean testCache(String testLoc) {
+		Vector3 coord = new Vector3(-30, 40, 0);
+		Landscape.getInstance().localToWorldCoordinate(coord);
+		double x = coord.getX();
+		double y = coord.getY();
+		String json = "{\"type\": \"FeatureCollection\", \"features\": ["
+			+ "{\"type\": \"Feature\", \"properties\": {\"name\": \"line\", \"count\": 7}, \"geometry\": "
+			+ "{\"type\": \"LineString\", \"coordinates\": [[" + x + ", " + y + ", 1], [" + (x + 10) + ", " + y
+			+ ", 2], [" + (x + 10) + ", " + (y + 10) + ", 3]]}}, "
+			+ "{\"type\": \"Feature\", \"properties\": {\"name\": \"point\"}, \"geometry\": "
+			+ "{\"type\": \"Point\", \"coordinates\": [" + x + ", " + y + ", 4]}}]}";
+		File file = write(testLoc, "cache.json", json);
+		if (file == null) {
+			return (false);
+		}
+		String filePath = file.getAbsolutePath();
+		FeatureSetLoader loader = load(file);
+		if ((loader == null) || loader.isCancelled() || (loader.getFeatureCount() != 2)) {
+			return (false);
+		}
+		VectorCache cache = new VectorCache(filePath, Landscape.getInstance().getSpatialReferenceSystem(), true,
+			false, null);
+		if (!cache.getFile().exists() || !cache.open()) {
+			System.err.println("FeatureSetTest.testCache cache was not written");
+			return (false);
+		}
+		int count = 0;
+		boolean match = true;
+		while (cache.next()) {
+			count++;
+			if (cache.getPartCount() == 1) {
+				// Z is translated with the landscape
+				float[] vertex = cache.getVertices();
+				match &= (cache.getPartStart(1) == 3) && (cache.getPointCount() == 0);
+				match &= "line".equals(cache.getProperties().get("name"));
+				match &= Integer.valueOf(7).equals(cache.getProperties().get("count"));
+				match &= (vertex[8] - vertex[2] == 2) && (vertex[3] - vertex[0] == 10);
+			} else if (cache.getPointCount() == 1) {
+				match &= (cache.getPartCount() == 0) && "point".equals(cache.getProperties().get("name"));
+			} else {
+				match = false;
+			}
+		}
+		cache.close();
+		if (!match || (count != 2)) {
+			System.err.println("FeatureSetTest.testCache cached records don't match, count = " + count);
+			return (false);
+		}
+
+		// loading again reads the cache
+		loader = load(file);
+		if ((loader == null) || loader.isCancelled() || (loader.getFeatureCount() != 2)) {
+			return (false);
+		}
+
+		// the key changes with the load options
+		if (new VectorCache(filePath, Landscape.getInstance().getSpatialReferenceSystem(), true, true, null).open()) {
+			System.err.println("FeatureSetTest.testCache cache used with different ground option");
+			return (false);
+		}
+		if (new VectorCache(filePath, Landscape.getInstance().getSpatialReferenceSystem(), true, false, "name").open()) {
+			System.err.println("FeatureSetTest.testCache cache used with different label property");
+			return (false);
+		}
+
+		// and with the file
+		if (write(testLoc, "cache.json", json + " ") == null) {
+			return (false);
+		}
+		file.setLastModified(file.lastModified() + 2000);
+		if (new VectorCache(filePath, Landscape.getInstance().getSpatialReferenceSystem(), true, false, null).open()) {
+			System.err.println("FeatureSetTest.testCache cache used with changed file");
+			return (false);
+		}
+		return (true);
+	}
+
+	private File write(String testLoc, String name, String json) {
+		File file = new File(testLoc, name);
+		try {
+			FileWriter writer = new FileWriter(file);
+			writer.write(json);
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return (null);
+		}
+		return (file);
+	}
+
+	private FeatureSetLoader load(File file) {
+		return (load(createFeatureSet(file)));
+	}
+
+	private FeatureSet createFeatureSet(File file) {
+		if (file == null) {
+			return (null);
+		}
+		String name = file.getName();
+		FeatureSetState state = new FeatureSetState(name, file.getAbsolutePath(), Color.white, true, false, null);
+		FeatureSet featureSet = new FeatureSet(state);
+		// a FeatureSet that is removed while loading is cancelled
+		Node parent = new Node("test");
+		parent.attachChild(featureSet);
+		return (featureSet);
+	}
+
+	private FeatureSetLoader load(FeatureSet featureSet) {
+		if (featureSet == null) {
+			return (null);
+		}
+		FeatureSetLoader loader = new FeatureSetLoader(featureSet, null);
+		loader.start();
+		try {
+			for (int i = 0; (i < 300) && !loader.isDone(); ++i) {
+				Thread.sleep(100);
+			}
+		} catch (InterruptedException e) {
+			return (null);
+		}
+		return (loader.isDone() ? loader : null);
+	}
+
+}
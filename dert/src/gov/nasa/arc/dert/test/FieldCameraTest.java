@@ -0,0 +1,83 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.view.fieldcamera.FieldCameraRenderer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Provided for testing the field camera pose file.
+ *
+ */
+public class FieldCameraTest {
+
+	public boolean testFieldCamera(String testLoc) {
+		System.err.println("Testing field camera poses . . .");
+		try {
+			if (!testReadPoses(testLoc)) {
+				System.err.println("Test of FieldCameraRenderer.readPoses failed.");
+				return (false);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Read a pose file with a header, comments, blank lines, both separators
+	 * and an optional height, then check that bad lines are rejected.
+	 */
+	private boolean testReadPoses(String testLoc) throws IOException {
+		String path = write(testLoc, "poses.csv", "azimuth,elevation,height\n" + "# looking north\n" + "\n"
+			+ "0,10\n" + "  90.5 , -5 , 2.5  \n" + "180 20 3\n" + "270\t45\n");
+		ArrayList<double[]> poseList = FieldCameraRenderer.readPoses(path);
+		double[][] expected = new double[][] { { 0, 10, Double.NaN }, { 90.5, -5, 2.5 }, { 180, 20, 3 },
+			{ 270, 45, Double.NaN } };
+		if (poseList.size() != expected.length) {
+			System.err.println("FieldCameraTest.testReadPoses read " + poseList.size() + " poses");
+			return (false);
+		}
+		for (int i = 0; i < expected.length; ++i) {
+			for (int j = 0; j < 3; ++j) {
+				if (Double.compare(poseList.get(i)[j], expected[i][j]) != 0) {
+					System.err.println("FieldCameraTest.testReadPoses pose " + i + " value " + j + " = "
+						+ poseList.get(i)[j]);
+					return (false);
+				}
+			}
+		}
+
+		// a file without a header
+		path = write(testLoc, "poses.csv", "10,20\n30,40\n");
+		if (FieldCameraRenderer.readPoses(path).size() != 2) {
+			return (false);
+		}
+
+		// only the first line may be a header
+		String[] bad = new String[] { "0,10\nazimuth,elevation\n", "0,10\n45\n", "header\n0,10\n20,x\n" };
+		for (int i = 0; i < bad.length; ++i) {
+			path = write(testLoc, "poses.csv", bad[i]);
+			try {
+				FieldCameraRenderer.readPoses(path);
+				System.err.println("FieldCameraTest.testReadPoses accepted " + bad[i]);
+				return (false);
+			} catch (IOException e) {
+				System.err.println("FieldCameraTest.testReadPoses " + e.getMessage());
+			}
+		}
+		return (true);
+	}
+
+	private String write(String testLoc, String name, String str) throws IOException {
+		File file = new File(testLoc, name);
+		FileWriter writer = new FileWriter(file);
+		writer.write(str);
+		writer.close();
+		return (file.getAbsolutePath());
+	}
+
+}
@@ -0,0 +1,137 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.render.FrameStatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Provided for testing the FrameStatistics percentiles.
+ *
+ */
+public class FrameStatisticsTest {
+
+	public boolean testFrameStatistics() {
+		System.err.println("Testing frame statistics . . .");
+		boolean enabled = FrameStatistics.isEnabled();
+		try {
+			if (!testPercentiles()) {
+				System.err.println("Test of FrameStatistics percentiles failed.");
+				return (false);
+			}
+			if (!testRandomPercentiles()) {
+				System.err.println("Test of FrameStatistics random percentiles failed.");
+				return (false);
+			}
+			if (!testSummary()) {
+				System.err.println("Test of FrameStatistics summary failed.");
+				return (false);
+			}
+		} finally {
+			FrameStatistics.setEnabled(false);
+			FrameStatistics.setEnabled(enabled);
+		}
+		return (true);
+	}
+
+	/**
+	 * Add times that fall in known histogram bins and check the bin bounds
+	 * returned for several percentiles.
+	 */
+	private boolean testPercentiles() {
+		FrameStatistics.setEnabled(false);
+		FrameStatistics.setEnabled(true);
+		int section = FrameStatistics.FRAME;
+		if (FrameStatistics.getPercentile(section, 50) != 0) {
+			System.err.println("FrameStatisticsTest.testPercentiles empty section is not 0");
+			return (false);
+		}
+		// 90 times of 100 microseconds, 9 of 5 milliseconds, 1 of 1 second
+		for (int i = 0; i < 90; ++i) {
+			FrameStatistics.add(section, 100000);
+		}
+		for (int i = 0; i < 9; ++i) {
+			FrameStatistics.add(section, 5000000);
+		}
+		FrameStatistics.add(section, 1000000000);
+		double[] p = { 0, 50, 90, 91, 99, 100 };
+		double[] expected = { 0.128, 0.128, 0.128, 8.192, 8.192, 1048.576 };
+		for (int i = 0; i < p.length; ++i) {
+			double value = FrameStatistics.getPercentile(section, p[i]);
+			if (value != expected[i]) {
+				System.err.println("FrameStatisticsTest.testPercentiles percentile " + p[i] + " = " + value
+					+ ", expected " + expected[i]);
+				return (false);
+			}
+		}
+		// times past the last bin are counted in it
+		FrameStatistics.add(FrameStatistics.UPDATE, 3600000000000L);
+		double last = (1 << (FrameStatistics.NUMBER_OF_BINS - 1)) / 1000.0;
+		if (FrameStatistics.getPercentile(FrameStatistics.UPDATE, 50) != last) {
+			System.err.println("FrameStatisticsTest.testPercentiles long time not in the last bin");
+			return (false);
+		}
+		// nothing is added while disabled
+		FrameStatistics.setEnabled(false);
+		FrameStatistics.add(FrameStatistics.RENDER, 100000);
+		FrameStatistics.setEnabled(true);
+		return (FrameStatistics.getPercentile(FrameStatistics.RENDER, 50) == 0);
+	}
+
+	/**
+	 * Check that each percentile is the upper bound of the bin holding the
+	 * exact percentile of random times.
+	 */
+	private boolean testRandomPercentiles() {
+		FrameStatistics.setEnabled(false);
+		FrameStatistics.setEnabled(true);
+		int section = FrameStatistics.RENDER;
+		Random random = new Random(13);
+		long[] time = new long[10000];
+		for (int i = 0; i < time.length; ++i) {
+			// log uniform from 1 microsecond to 1 second
+			time[i] = (long) (1000 * Math.pow(10, 6 * random.nextDouble()));
+			FrameStatistics.add(section, time[i]);
+		}
+		Arrays.sort(time);
+		double[] p = { 1, 10, 50, 90, 99, 99.9 };
+		for (int i = 0; i < p.length; ++i) {
+			int k = (int) Math.ceil(time.length * p[i] / 100) - 1;
+			double exact = (time[k] / 1000) / 1000.0;
+			double value = FrameStatistics.getPercentile(section, p[i]);
+			if ((value <= exact) || (value > 2 * exact + 0.001)) {
+				System.err.println("FrameStatisticsTest.testRandomPercentiles percentile " + p[i] + " = " + value
+					+ ", exact " + exact);
+				return (false);
+			}
+		}
+		return (true);
+	}
+
+	/**
+	 * Check that the frame time percentile in the overlay is for the frames
+	 * since the last summary.
+	 */
+	private boolean testSummary() {
+		FrameStatistics.setEnabled(false);
+		FrameStatistics.setEnabled(true);
+		long interval = FrameStatistics.SUMMARY_INTERVAL;
+		FrameStatistics.SUMMARY_INTERVAL = 0;
+		try {
+			for (int i = 0; i < 1000; ++i) {
+				FrameStatistics.add(FrameStatistics.FRAME, 100000);
+			}
+			String fast = FrameStatistics.getSummary()[0];
+			for (int i = 0; i < 20; ++i) {
+				FrameStatistics.add(FrameStatistics.FRAME, 5000000);
+			}
+			String slow = FrameStatistics.getSummary()[0];
+			System.err.println("FrameStatisticsTest.testSummary " + slow);
+			return (fast.contains("(p90 0 ms)") && slow.contains("(p90 8 ms)")
+				&& (FrameStatistics.getPercentile(FrameStatistics.FRAME, 90) == 0.128));
+		} finally {
+			FrameStatistics.SUMMARY_INTERVAL = interval;
+		}
+	}
+
+}
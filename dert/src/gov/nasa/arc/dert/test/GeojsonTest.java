@@ -0,0 +1,418 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.io.geojson.CoordinateReferenceSystem;
+import gov.nasa.arc.dert.io.geojson.GeoJsonFeature;
+import gov.nasa.arc.dert.io.geojson.GeojsonLoader;
+import gov.nasa.arc.dert.io.geojson.GeojsonReader;
+import gov.nasa.arc.dert.io.geojson.LineString;
+import gov.nasa.arc.dert.io.geojson.MultiPoint;
+import gov.nasa.arc.dert.io.geojson.Point;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.scene.featureset.Feature;
+import gov.nasa.arc.dert.scene.featureset.FeatureSet;
+import gov.nasa.arc.dert.state.FeatureSetState;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provided for testing the GeoJSON reader and loader.
+ *
+ */
+public class GeojsonTest {
+
+	private ArrayList<GeoJsonFeature> featureList;
+	private ArrayList<Object> itemList;
+	private int skipCount;
+
+	public boolean testGeojson() {
+		System.err.println("Testing GeoJSON . . .");
+		if (!testRoundTrip()) {
+			System.err.println("Test of GeojsonReader round trip failed.");
+			return (false);
+		}
+		if (!testMalformedFeatures()) {
+			System.err.println("Test of GeojsonReader malformed features failed.");
+			return (false);
+		}
+		if (!testSyntaxError()) {
+			System.err.println("Test of GeojsonReader syntax error failed.");
+			return (false);
+		}
+		if (!testLateCrs()) {
+			System.err.println("Test of GeojsonReader late crs failed.");
+			return (false);
+		}
+		if (!testSetCoordinateReferenceSystem()) {
+			System.err.println("Test of GeojsonLoader.setCoordinateReferenceSystem failed.");
+			return (false);
+		}
+		if (!testConvertRollback()) {
+			System.err.println("Test of GeojsonLoader.convert failed.");
+			return (false);
+		}
+		if (!testLoad()) {
+			System.err.println("Test of GeojsonLoader.load failed.");
+			return (false);
+		}
+		return (true);
+	}
+
+	private boolean testRoundTrip() {
+		double[][] line = new double[][] { { 1.5, -2.25, 3 }, { 4, 5.125, -6.5 }, { -7e3, 8.0625e-2, 9 } };
+		double[] point = new double[] { -122.5, 37.25 };
+		// write the features as text and read them back
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"type\": \"FeatureCollection\", \"features\": [\n");
+		sb.append("{\"type\": \"Feature\", \"id\": \"line\", \"properties\": {\"name\": \"a \\\"quoted\\\" name\", \"count\": 3, \"value\": 2.5},\n");
+		sb.append(" \"geometry\": {\"type\": \"LineString\", \"coordinates\": [");
+		for (int i = 0; i < line.length; ++i) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("[" + line[i][0] + ", " + line[i][1] + ", " + line[i][2] + "]");
+		}
+		sb.append("]}},\n");
+		sb.append("{\"type\": \"Feature\", \"id\": 7, \"properties\": null,\n");
+		sb.append(" \"geometry\": {\"type\": \"Point\", \"coordinates\": [" + point[0] + ", " + point[1] + "]}}\n");
+		sb.append("]}");
+		if (!read(sb.toString())) {
+			return (false);
+		}
+		if ((featureList.size() != 2) || (skipCount != 0)) {
+			System.err.println("GeojsonTest.testRoundTrip read " + featureList.size() + " features, skipped " + skipCount);
+			return (false);
+		}
+		GeoJsonFeature feature = featureList.get(0);
+		if (!"line".equals(feature.getId())) {
+			return (false);
+		}
+		HashMap<String, Object> properties = feature.getProperties();
+		if (!"a \"quoted\" name".equals(properties.get("name"))) {
+			System.err.println("GeojsonTest.testRoundTrip name = " + properties.get("name"));
+			return (false);
+		}
+		if (((Number) properties.get("count")).intValue() != 3) {
+			return (false);
+		}
+		if (((Number) properties.get("value")).doubleValue() != 2.5) {
+			return (false);
+		}
+		if (!(feature.getGeometry() instanceof LineString)) {
+			return (false);
+		}
+		double[][] coord = ((LineString) feature.getGeometry()).getCoordinates();
+		if (coord.length != line.length) {
+			return (false);
+		}
+		for (int i = 0; i < line.length; ++i) {
+			for (int j = 0; j < 3; ++j) {
+				if (coord[i][j] != line[i][j]) {
+					System.err.println("GeojsonTest.testRoundTrip coordinate " + coord[i][j] + " != " + line[i][j]);
+					return (false);
+				}
+			}
+		}
+		feature = featureList.get(1);
+		if (!"7".equals(feature.getId())) {
+			System.err.println("GeojsonTest.testRoundTrip id = " + feature.getId());
+			return (false);
+		}
+		if (!(feature.getGeometry() instanceof Point)) {
+			return (false);
+		}
+		double[] pCoord = ((Point) feature.getGeometry()).getCoordinates();
+		return ((pCoord.length == 2) && (pCoord[0] == point[0]) && (pCoord[1] == point[1]));
+	}
+
+	private boolean testMalformedFeatures() {
+		String json = "{\"type\": \"FeatureCollection\", \"features\": [\n"
+			+ "{\"type\": \"Feature\", \"id\": \"good1\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}},\n"
+			// LineString with one position
+			+ "{\"type\": \"Feature\", \"id\": \"short\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2]]}},\n"
+			// type is not a string
+			+ "{\"type\": 5, \"id\": \"type\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}},\n"
+			// geometry type is not a string
+			+ "{\"type\": \"Feature\", \"id\": \"gtype\", \"geometry\": {\"type\": [\"Point\"], \"coordinates\": [1, 2]}},\n"
+			// unknown geometry type
+			+ "{\"type\": \"Feature\", \"id\": \"unknown\", \"geometry\": {\"type\": \"Circle\", \"coordinates\": [1, 2]}},\n"
+			// position is not numbers
+			+ "{\"type\": \"Feature\", \"id\": \"text\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [\"1\", 2]}},\n"
+			// inconsistent nesting
+			+ "{\"type\": \"Feature\", \"id\": \"nesting\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], 3]}},\n"
+			// properties is not an object
+			+ "{\"type\": \"Feature\", \"id\": \"props\", \"properties\": [1], \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}},\n"
+			// not an object
+			+ "42,\n"
+			+ "{\"type\": \"Feature\", \"id\": \"good2\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], [3, 4]]}}\n"
+			+ "]}";
+		if (!read(json)) {
+			return (false);
+		}
+		System.err.println("GeojsonTest.testMalformedFeatures read " + featureList.size() + " features, skipped "
+			+ skipCount);
+		if (featureList.size() != 2) {
+			return (false);
+		}
+		if (!"good1".equals(featureList.get(0).getId()) || !"good2".equals(featureList.get(1).getId())) {
+			return (false);
+		}
+		return (skipCount == 8);
+	}
+
+	private boolean testSyntaxError() {
+		String json = "{\"type\": \"FeatureCollection\", \"features\": [\n"
+			+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}},\n"
+			+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\" \"coordinates\": [1, 2]}}\n" + "]}";
+		try {
+			GeojsonReader reader = createReader(json);
+			reader.read();
+		} catch (IOException e) {
+			System.err.println("GeojsonTest.testSyntaxError " + e.getMessage());
+			return (true);
+		}
+		return (false);
+	}
+
+	private boolean testLateCrs() {
+		String crs = "\"crs\": {\"type\": \"name\", \"properties\": {\"name\": \"urn:ogc:def:crs:OGC:1.3:CRS84\"}}";
+		String features = "\"features\": [{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}}]";
+		if (!read("{\"type\": \"FeatureCollection\", " + crs + ", " + features + "}")) {
+			return (false);
+		}
+		if ((itemList.size() != 2) || !(itemList.get(0) instanceof CoordinateReferenceSystem)) {
+			return (false);
+		}
+		if (!((CoordinateReferenceSystem) itemList.get(0)).isLongitudeLatitude()) {
+			return (false);
+		}
+		// the crs is passed to the handler after the features before it
+		if (!read("{\"type\": \"FeatureCollection\", " + features + ", " + crs + "}")) {
+			return (false);
+		}
+		if ((itemList.size() != 2) || !(itemList.get(1) instanceof CoordinateReferenceSystem)) {
+			return (false);
+		}
+		// the crs name must be a string
+		return (read("{\"type\": \"FeatureCollection\", \"crs\": {\"type\": \"name\", \"properties\": {\"name\": 4326}}, "
+			+ features + "}") && !((CoordinateReferenceSystem) itemList.get(0)).isLongitudeLatitude());
+	}
+
+	private boolean testSetCoordinateReferenceSystem() {
+		Landscape landscape = Landscape.getInstance();
+		GeojsonLoader loader = new GeojsonLoader(landscape.getSpatialReferenceSystem(), null, null, false, 1, 1);
+		loader.begin("test", Color.white, true);
+		CoordinateReferenceSystem lonLat = createCrs("EPSG:4326");
+		CoordinateReferenceSystem other = createCrs("EPSG:32610");
+		// projected coordinates are read as is
+		if (loader.setCoordinateReferenceSystem(null)) {
+			return (false);
+		}
+		// longitude and latitude are projected
+		if (!loader.setCoordinateReferenceSystem(lonLat)) {
+			return (false);
+		}
+		if (loader.setCoordinateReferenceSystem(lonLat)) {
+			return (false);
+		}
+		// unsupported systems use the default
+		if (!loader.setCoordinateReferenceSystem(other)) {
+			return (false);
+		}
+		loader.begin("test", Color.white, false);
+		return (!loader.setCoordinateReferenceSystem(lonLat) && !loader.setCoordinateReferenceSystem(other));
+	}
+
+	private boolean testConvertRollback() {
+		Landscape landscape = Landscape.getInstance();
+		GeojsonLoader loader = new GeojsonLoader(landscape.getSpatialReferenceSystem(), null, "name", false, 1, 1);
+		loader.begin("test", Color.white, true);
+		Vector3 p0 = new Vector3(0, 0, 0);
+		landscape.localToWorldCoordinate(p0);
+		Vector3 p1 = new Vector3(10, 10, 0);
+		landscape.localToWorldCoordinate(p1);
+		double[] c0 = new double[] { p0.getX(), p0.getY() };
+		double[] c1 = new double[] { p1.getX(), p1.getY() };
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("name", "good");
+		if (loader.convert(new GeoJsonFeature("1", properties, new MultiPoint(new double[][] { c0, c1 })), 0) == null) {
+			return (false);
+		}
+		// the second position is short, the first must not be kept
+		try {
+			loader.convert(new GeoJsonFeature("2", null, new MultiPoint(new double[][] { c0, { 1 } })), 1);
+			return (false);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		if (loader.convert(new GeoJsonFeature("3", null, new LineString(new double[][] { c0, c1 })), 1) == null) {
+			return (false);
+		}
+		try {
+			loader.convert(new GeoJsonFeature("4", null, new LineString(new double[][] { c1, { 1 } })), 2);
+			return (false);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		int points = loader.takeMarkerBatch().getInstanceCount();
+		int parts = loader.takeLineBatch().getPartCount();
+		System.err.println("GeojsonTest.testConvertRollback " + points + " points, " + parts + " lines");
+		return ((points == 2) && (parts == 1));
+	}
+
+	/**
+	 * Load a file with a feature that can't be converted and a coordinate
+	 * reference system after the features, and compare it with the same file
+	 * with the coordinate reference system first.
+	 */
+	private boolean testLoad() {
+		Landscape landscape = Landscape.getInstance();
+		Vector3 p0 = new Vector3(10, 20, 0);
+		Vector3 p1 = new Vector3(30, 50, 0);
+		landscape.localToWorldCoordinate(p0);
+		landscape.localToWorldCoordinate(p1);
+		landscape.getSpatialReferenceSystem().getProjection().worldToSpherical(p0);
+		landscape.getSpatialReferenceSystem().getProjection().worldToSpherical(p1);
+		String c0 = "[" + p0.getX() + ", " + p0.getY() + "]";
+		String c1 = "[" + p1.getX() + ", " + p1.getY() + "]";
+		String crs = "\"crs\": {\"type\": \"name\", \"properties\": {\"name\": \"EPSG:4326\"}}";
+		String features = "\"features\": [\n"
+			// no properties for the label
+			+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": " + c0 + "}},\n"
+			// short position
+			+ "{\"type\": \"Feature\", \"id\": \"short\", \"geometry\": {\"type\": \"Point\", \"coordinates\": ["
+			+ p0.getX() + "]}},\n"
+			// second point has a short position, the first must be removed
+			+ "{\"type\": \"Feature\", \"id\": \"points\", \"geometry\": {\"type\": \"MultiPoint\", \"coordinates\": ["
+			+ c1 + ", [" + p1.getX() + "]]}},\n"
+			// second line has a short position, the first must be removed
+			+ "{\"type\": \"Feature\", \"id\": \"multi\", \"geometry\": {\"type\": \"MultiLineString\", \"coordinates\": [["
+			+ c0 + ", " + c1 + "], [" + c0 + ", [" + p1.getX() + "]]]}},\n"
+			+ "{\"type\": \"Feature\", \"properties\": {\"name\": \"line\"}, \"geometry\": "
+			+ "{\"type\": \"LineString\", \"coordinates\": [" + c0 + ", " + c1 + "]}}\n" + "]";
+		FeatureSet first = loadFeatureSet("{\"type\": \"FeatureCollection\", " + crs + ", " + features + "}");
+		FeatureSet late = loadFeatureSet("{\"type\": \"FeatureCollection\", " + features + ", " + crs + "}");
+		if ((first == null) || (late == null)) {
+			return (false);
+		}
+		if ((getFeatureCount(first) != 2) || (getFeatureCount(late) != 2)) {
+			System.err.println("GeojsonTest.testLoad loaded " + getFeatureCount(first) + " and " + getFeatureCount(late)
+				+ " features");
+			return (false);
+		}
+		if ((late.getLineBatches().size() != 1) || (late.getLineBatches().get(0).getPartCount() != 1)
+			|| (late.getLineBatches().get(0).getVertexCount() != 2)) {
+			System.err.println("GeojsonTest.testLoad kept the lines of a skipped feature");
+			return (false);
+		}
+		if ((late.getMarkerBatches().size() != 1) || (late.getMarkerBatches().get(0).getInstanceCount() != 1)) {
+			System.err.println("GeojsonTest.testLoad kept the points of a skipped feature");
+			return (false);
+		}
+		BoundingBox bound0 = (BoundingBox) first.getWorldBound();
+		BoundingBox bound1 = (BoundingBox) late.getWorldBound();
+		System.err.println("GeojsonTest.testLoad bounds " + bound0.getCenter() + " and " + bound1.getCenter());
+		return ((bound0.getCenter().distance(bound1.getCenter()) < 0.01)
+			&& (Math.abs(bound0.getXExtent() - bound1.getXExtent()) < 0.01)
+			&& (Math.abs(bound0.getYExtent() - bound1.getYExtent()) < 0.01));
+	}
+
+	private int getFeatureCount(FeatureSet featureSet) {
+		int count = 0;
+		for (int i = 0; i < featureSet.getNumberOfChildren(); ++i) {
+			if (featureSet.getChild(i) instanceof Feature) {
+				count++;
+			}
+		}
+		return (count);
+	}
+
+	private FeatureSet loadFeatureSet(String json) {
+		try {
+			File file = File.createTempFile("geojsontest", ".json");
+			file.deleteOnExit();
+			FileWriter writer = new FileWriter(file);
+			writer.write(json);
+			writer.close();
+			FeatureSetState state = new FeatureSetState(file.getName(), file.getAbsolutePath(), Color.white, true,
+				false, "name");
+			FeatureSet featureSet = new FeatureSet(state, null, Landscape.getInstance().getSpatialReferenceSystem());
+			featureSet.updateGeometricState(0);
+			return (featureSet);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return (null);
+		}
+	}
+
+	private CoordinateReferenceSystem createCrs(String name) {
+		final CoordinateReferenceSystem[] crs = new CoordinateReferenceSystem[1];
+		try {
+			String json = "{\"type\": \"FeatureCollection\", \"crs\": {\"type\": \"name\", \"properties\": {\"name\": \""
+				+ name + "\"}}, \"features\": []}";
+			GeojsonReader reader = new GeojsonReader(new ByteArrayInputStream(json.getBytes("UTF-8")), json.length(),
+				new GeojsonReader.Handler() {
+					@Override
+					public void crs(CoordinateReferenceSystem fileCrs) {
+						crs[0] = fileCrs;
+					}
+
+					@Override
+					public void feature(GeoJsonFeature feature) {
+					}
+
+					@Override
+					public void progress(long bytesRead, long length) {
+					}
+				});
+			reader.read();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return (crs[0]);
+	}
+
+	private boolean read(String json) {
+		try {
+			GeojsonReader reader = createReader(json);
+			reader.read();
+			skipCount = reader.getSkipCount();
+			return (true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return (false);
+		}
+	}
+
+	private GeojsonReader createReader(String json) throws IOException {
+		featureList = new ArrayList<GeoJsonFeature>();
+		itemList = new ArrayList<Object>();
+		skipCount = 0;
+		byte[] bytes = json.getBytes("UTF-8");
+		return (new GeojsonReader(new ByteArrayInputStream(bytes), bytes.length, new GeojsonReader.Handler() {
+			@Override
+			public void crs(CoordinateReferenceSystem crs) {
+				itemList.add(crs);
+			}
+
+			@Override
+			public void feature(GeoJsonFeature feature) {
+				featureList.add(feature);
+				itemList.add(feature);
+			}
+
+			@Override
+			public void progress(long bytesRead, long length) {
+			}
+		}));
+	}
+
+}
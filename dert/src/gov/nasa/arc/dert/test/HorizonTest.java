@@ -0,0 +1,123 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.landscape.factory.ElevationPyramid;
+import gov.nasa.arc.dert.landscape.factory.HorizonPyramidLayerFactory;
+
+import java.io.IOException;
+
+/**
+ * Provided for testing the horizon angles of HorizonPyramidLayerFactory.
+ *
+ */
+public class HorizonTest {
+
+	// Gives access to the tile computation
+	private static class Factory extends HorizonPyramidLayerFactory {
+
+		public Factory(String landPath, int sectors) throws IOException {
+			super(landPath, sectors);
+			openPyramid(landPath);
+			radius = pyramid.getGlobeRadius();
+			pixelSize = pyramid.getPixelSize();
+		}
+
+		public ElevationPyramid getPyramid() {
+			return (pyramid);
+		}
+
+		public byte[] compute(int level, int column, int row) {
+			int maxLevel = pyramid.getNumberOfLevels() - 1;
+			return (computeTile(level, maxLevel, column, row, pyramid.createSampler()));
+		}
+	}
+
+	public boolean testHorizon(String testLoc) {
+		System.err.println("Testing horizon . . .");
+		Factory factory = null;
+		try {
+			factory = new Factory(testLoc, 8);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+		int maxLevel = factory.getPyramid().getNumberOfLevels() - 1;
+		int n = 1 << maxLevel;
+		if (!testAngles(factory, maxLevel, 0, 0) || !testAngles(factory, maxLevel, n / 2, n / 2 - 1)
+			|| !testAngles(factory, 0, 0, 0)) {
+			System.err.println("Test of horizon angles failed.");
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Compare the horizon angles of a tile with those found by stepping one
+	 * pixel at a time along each ray at the resolution of the tile.
+	 */
+	private boolean testAngles(Factory factory, int level, int column, int row) {
+		ElevationPyramid pyramid = factory.getPyramid();
+		int sectors = 8;
+		int maxLevel = pyramid.getNumberOfLevels() - 1;
+		int tileWidth = pyramid.getTileWidth();
+		int tileLength = pyramid.getTileLength();
+		double pix = pyramid.getPixelSize() * (1 << (maxLevel - level));
+		double radius = pyramid.getGlobeRadius();
+		double width = (1 << level) * tileWidth;
+		double length = (1 << level) * tileLength;
+		byte[] horizon = factory.compute(level, column, row);
+		float[] elev = pyramid.getTile(level, column, row);
+		ElevationPyramid.Sampler sampler = pyramid.createSampler();
+		double maxError = 0;
+		double maxAngle = 0;
+		double sumError = 0;
+		int count = 0;
+		int k = 0;
+		// check every 7th sample of the tile
+		for (int r = 0; r <= tileLength; ++r) {
+			for (int c = 0; c <= tileWidth; ++c, k += sectors) {
+				double z = elev[r * (tileWidth + 1) + c];
+				if (((r * (tileWidth + 1) + c) % 7 != 0) || Double.isNaN(z)) {
+					continue;
+				}
+				double x = column * tileWidth + c;
+				double y = row * tileLength + r;
+				for (int s = 0; s < sectors; ++s) {
+					double az = 2 * Math.PI * s / sectors;
+					double dx = Math.sin(az);
+					double dy = -Math.cos(az);
+					double maxTan = 0;
+					for (double d = 1;; d += 1) {
+						double px = x + dx * d;
+						double py = y + dy * d;
+						if ((px < 0) || (py < 0) || (px > width) || (py > length)) {
+							break;
+						}
+						double zs = sampler.getElevation(level, px, py);
+						if (Double.isNaN(zs)) {
+							continue;
+						}
+						double dm = d * pix;
+						double dz = zs - z;
+						if (!Double.isNaN(radius)) {
+							dz -= dm * dm / (2 * radius);
+						}
+						maxTan = Math.max(maxTan, dz / dm);
+					}
+					double expected = Math.toDegrees(Math.atan(maxTan));
+					double actual = (horizon[k + s] & 0xff) / HorizonPyramidLayerFactory.ANGLE_SCALE;
+					double error = Math.abs(expected - actual);
+					maxError = Math.max(maxError, error);
+					maxAngle = Math.max(maxAngle, expected);
+					sumError += error;
+					count++;
+				}
+			}
+		}
+		double meanError = sumError / count;
+		System.err.println("HorizonTest.testAngles level " + level + " tile " + column + "," + row + " " + count
+			+ " angles up to " + maxAngle + " degrees, max error = " + maxError + ", mean error = " + meanError);
+		// far terrain is sampled from coarser levels
+		return ((count > 0) && (maxAngle > 1) && (maxError < 3) && (meanError < 0.25));
+	}
+
+}
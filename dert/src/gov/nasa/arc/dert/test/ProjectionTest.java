@@ -0,0 +1,75 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.raster.Projection;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Provided for testing projection conversions.
+ *
+ */
+public class ProjectionTest {
+
+	public boolean testProjection() {
+		System.err.println("Testing projection . . .");
+		Projection projection = Landscape.getInstance().getSpatialReferenceSystem().getProjection();
+		if (!testBulkConversion(projection, 1000)) {
+			System.err.println("Test of Projection bulk conversion failed.");
+			return (false);
+		}
+		if (!testBulkConversion(projection, Projection.PARALLEL_THRESHOLD + 1000)) {
+			System.err.println("Test of Projection parallel bulk conversion failed.");
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Convert points across the landscape with the bulk methods and compare
+	 * them with the single point methods and the original points.
+	 */
+	private boolean testBulkConversion(Projection projection, int count) {
+		Landscape landscape = Landscape.getInstance();
+		double[] x = new double[count];
+		double[] y = new double[count];
+		double[] z = new double[count];
+		double[] x0 = new double[count];
+		double[] y0 = new double[count];
+		Vector3 coord = new Vector3();
+		int side = (int) Math.ceil(Math.sqrt(count));
+		for (int i = 0; i < count; ++i) {
+			coord.set(-500 + 1000.0 * (i % side) / side, -500 + 1000.0 * (i / side) / side, 0);
+			landscape.localToWorldCoordinate(coord);
+			x[i] = x0[i] = coord.getX();
+			y[i] = y0[i] = coord.getY();
+			z[i] = i % 10;
+		}
+		projection.worldToSpherical(x, y, z, count);
+		double sphericalError = 0;
+		for (int i = 0; i < count; ++i) {
+			coord.set(x0[i], y0[i], z[i]);
+			projection.worldToSpherical(coord);
+			sphericalError = Math.max(sphericalError, Math.abs(coord.getX() - x[i]));
+			sphericalError = Math.max(sphericalError, Math.abs(coord.getY() - y[i]));
+		}
+		// spherical to world for a sample of points
+		double worldError = 0;
+		for (int i = 0; i < count; i += 97) {
+			coord.set(x[i], y[i], z[i]);
+			projection.sphericalToWorld(coord);
+			worldError = Math.max(worldError, Math.abs(coord.getX() - x0[i]));
+			worldError = Math.max(worldError, Math.abs(coord.getY() - y0[i]));
+		}
+		projection.sphericalToWorld(x, y, z, count);
+		double roundTripError = 0;
+		for (int i = 0; i < count; ++i) {
+			roundTripError = Math.max(roundTripError, Math.abs(x[i] - x0[i]));
+			roundTripError = Math.max(roundTripError, Math.abs(y[i] - y0[i]));
+		}
+		System.err.println("ProjectionTest.testBulkConversion " + count + " points, bulk vs single = " + sphericalError
+			+ " degrees, single round trip = " + worldError + ", bulk round trip = " + roundTripError);
+		return ((sphericalError < 1.0e-12) && (worldError < 1.0e-6) && (roundTripError < 1.0e-6));
+	}
+
+}
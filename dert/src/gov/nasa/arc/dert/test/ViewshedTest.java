@@ -0,0 +1,158 @@
+package gov.nasa.arc.dert.test;
+
+import gov.nasa.arc.dert.landscape.QuadTreeTile;
+import gov.nasa.arc.dert.landscape.factory.ElevationPyramid;
+import gov.nasa.arc.dert.landscape.factory.ViewshedAnalysis;
+import gov.nasa.arc.dert.landscape.factory.ViewshedPyramidLayerFactory;
+import gov.nasa.arc.dert.raster.RasterFile.DataType;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Provided for testing viewshed ray casting and observer moves.
+ *
+ */
+public class ViewshedTest {
+
+	public boolean testViewshed(String testLoc) {
+		System.err.println("Testing viewshed . . .");
+		try {
+			ElevationPyramid pyramid = new ElevationPyramid(testLoc);
+			if (!testRayCasting(pyramid)) {
+				System.err.println("Test of ViewshedAnalysis ray casting failed.");
+				return (false);
+			}
+			if (!testMoveObserver(testLoc, pyramid)) {
+				System.err.println("Test of ViewshedPyramidLayerFactory.moveObserver failed.");
+				return (false);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Compare the visibility of random locations with a line of sight found
+	 * by stepping half a pixel at a time at the highest level.
+	 */
+	private boolean testRayCasting(ElevationPyramid pyramid) throws Exception {
+		int maxLevel = pyramid.getNumberOfLevels() - 1;
+		int width = (1 << maxLevel) * pyramid.getTileWidth();
+		int length = (1 << maxLevel) * pyramid.getTileLength();
+		double pixelSize = pyramid.getPixelSize();
+		double radius = pyramid.getGlobeRadius();
+		double ox = width / 2 + 3.3;
+		double oy = length / 2 - 7.1;
+		double height = 50;
+		ViewshedAnalysis analysis = new ViewshedAnalysis(pyramid, ox, oy, height, 0, true);
+		analysis.compute();
+		ElevationPyramid.Sampler sampler = pyramid.createSampler();
+		double oz = sampler.getElevation(maxLevel, ox, oy) + height;
+		Random random = new Random(11);
+		int count = 0;
+		int visible = 0;
+		int disagree = 0;
+		for (int i = 0; i < 5000; ++i) {
+			double x = random.nextInt(width + 1);
+			double y = random.nextInt(length + 1);
+			double z = sampler.getElevation(maxLevel, x, y);
+			if (Double.isNaN(z)) {
+				continue;
+			}
+			float v = analysis.getVisibility(x, y, z, 1);
+			double dx = x - ox;
+			double dy = y - oy;
+			double d = Math.sqrt(dx * dx + dy * dy);
+			boolean seen = true;
+			// terrain within the target pixel does not hide it
+			for (double s = 0.5; seen && (s < d - 0.5); s += 0.5) {
+				double zs = sampler.getElevation(maxLevel, ox + dx * s / d, oy + dy * s / d);
+				if (Double.isNaN(zs)) {
+					continue;
+				}
+				double sm = s * pixelSize;
+				double tm = d * pixelSize;
+				double dzs = zs - oz - sm * sm / (2 * radius);
+				double dzt = z - oz - tm * tm / (2 * radius);
+				seen = dzs / sm <= dzt / tm;
+			}
+			count++;
+			if (seen) {
+				visible++;
+			}
+			if ((v > 0) != seen) {
+				disagree++;
+			}
+		}
+		double fraction = (double) disagree / count;
+		System.err.println("ViewshedTest.testRayCasting " + count + " locations, " + visible + " visible, "
+			+ disagree + " disagree with line of sight");
+		// far terrain is sampled from coarser levels and rays are
+		// interpolated, so locations right at the horizon may differ
+		return ((count > 0) && (visible > 0) && (visible < count) && (fraction < 0.03));
+	}
+
+	/**
+	 * Move an observer of a viewshed layer and compare it with a layer built
+	 * with the observer at its new location.
+	 */
+	private boolean testMoveObserver(String testLoc, ElevationPyramid pyramid) throws Exception {
+		int maxLevel = pyramid.getNumberOfLevels() - 1;
+		int width = (1 << maxLevel) * pyramid.getTileWidth();
+		int length = (1 << maxLevel) * pyramid.getTileLength();
+		double pixelSize = pyramid.getPixelSize();
+		double[] tiePoint = pyramid.getProjectionInfo().tiePoint;
+		double[] scale = pyramid.getProjectionInfo().scale;
+		double[][] loc = new double[][] { { 0.3, 0.4 }, { 0.6, 0.7 }, { 0.55, 0.25 } };
+		double[][] world = new double[loc.length][];
+		for (int i = 0; i < loc.length; ++i) {
+			world[i] = new double[] { tiePoint[0] + loc[i][0] * width * scale[0],
+				tiePoint[1] - loc[i][1] * length * scale[1] };
+		}
+		double range = 0.3 * width * pixelSize;
+
+		ViewshedPyramidLayerFactory moved = new ViewshedPyramidLayerFactory(testLoc, new double[][] { world[0],
+			world[1] }, 2, range, true);
+		moved.buildPyramid(testLoc, "viewshedmoved", null);
+		moved.moveObserver(testLoc, "viewshedmoved", 1, world[2][0], world[2][1]);
+
+		ViewshedPyramidLayerFactory built = new ViewshedPyramidLayerFactory(testLoc, new double[][] { world[0],
+			world[2] }, 2, range, true);
+		built.buildPyramid(testLoc, "viewshedbuilt", null);
+
+		pyramid = new ElevationPyramid(testLoc);
+		int differ = 0;
+		int samples = 0;
+		for (int level = 0; level <= maxLevel; ++level) {
+			int n = 1 << level;
+			for (int row = 0; row < n; ++row) {
+				for (int column = 0; column < n; ++column) {
+					String key = ElevationPyramid.getKey(level, column, row);
+					QuadTreeTile tile0 = pyramid.getSource().getTile("viewshedmoved", key, DataType.Float);
+					QuadTreeTile tile1 = pyramid.getSource().getTile("viewshedbuilt", key, DataType.Float);
+					if ((tile0 == null) || (tile1 == null)) {
+						if (tile0 != tile1) {
+							return (false);
+						}
+						continue;
+					}
+					FloatBuffer buf0 = tile0.raster.asFloatBuffer();
+					FloatBuffer buf1 = tile1.raster.asFloatBuffer();
+					for (int i = 0; i < buf1.limit(); ++i) {
+						if (Float.compare(buf0.get(i), buf1.get(i)) != 0) {
+							differ++;
+						}
+						samples++;
+					}
+				}
+			}
+		}
+		System.err.println("ViewshedTest.testMoveObserver " + samples + " samples, " + differ
+			+ " differ, visible = " + moved.getVisiblePercent() + "% moved, " + built.getVisiblePercent() + "% built");
+		return ((samples > 0) && (differ == 0) && (moved.getVisiblePercent() == built.getVisiblePercent()));
+	}
+
+}
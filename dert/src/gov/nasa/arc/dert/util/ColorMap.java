@@ -91,6 +91,9 @@ public class ColorMap {
 	// Color map base range
 	private double baseMinimum, baseMaximum, baseRange;
 
+	// Default range for percentage color maps from layer statistics
+	private double autoMinimum = Double.NaN, autoMaximum = Double.NaN;
+
 	// For sorting
 	private Comparator<double[]> comparator;
 
@@ -333,6 +336,49 @@ public class ColorMap {
 		return (maximum);
 	}
 
+	/**
+	 * Set the default range for percentage color maps, usually the low and
+	 * high percentiles of the layer values. The current range is not changed.
+	 * 
+	 * @param min
+	 * @param max
+	 */
+	public void setAutoRange(double min, double max) {
+		if (!(max > min)) {
+			return;
+		}
+		autoMinimum = min;
+		autoMaximum = max;
+	}
+
+	/**
+	 * Determine if this is a percentage color map with a default range from
+	 * layer statistics.
+	 * 
+	 * @return
+	 */
+	public boolean hasAutoRange() {
+		return (isPercent && !Double.isNaN(autoMinimum));
+	}
+
+	/**
+	 * Get the default range minimum
+	 * 
+	 * @return
+	 */
+	public double getAutoMinimum() {
+		return (autoMinimum);
+	}
+
+	/**
+	 * Get the default range maximum
+	 * 
+	 * @return
+	 */
+	public double getAutoMaximum() {
+		return (autoMaximum);
+	}
+
 	/**
 	 * Get the base range minimum
 	 * 
@@ -643,6 +689,9 @@ public class ColorMap {
 			for (int i = 0; i < percent.length; ++i) {
 				percent[i] = (percent[i] - minimum) / range;
 			}
+		} else if (!Double.isNaN(autoMinimum)) {
+			minimum = autoMinimum;
+			maximum = autoMaximum;
 		} else {
 			minimum = baseMinimum;
 			maximum = baseMaximum;
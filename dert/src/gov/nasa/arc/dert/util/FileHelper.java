@@ -163,6 +163,22 @@ public class FileHelper {
 		in.close();
 		out.close();
 	}
+
+	/**
+	 * Delete a file or a directory and its contents.
+	 * 
+	 * @param file
+	 * @return false if something could not be deleted
+	 */
+	public static boolean delete(File file) {
+		File[] child = file.listFiles();
+		if (child != null) {
+			for (int i = 0; i < child.length; ++i) {
+				delete(child[i]);
+			}
+		}
+		return (file.delete() || !file.exists());
+	}
 	
 	public static String getLastFilePath() {
 		return(lastPath);
@@ -0,0 +1,166 @@
+package gov.nasa.arc.dert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides one executor shared by the computations that are split into bands
+ * and run in parallel. A computation started from one of its threads runs in
+ * that thread, so a task never waits for tasks queued behind it.
+ *
+ */
+public class ParallelUtil {
+
+	// Number of threads in the shared executor
+	public static int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Computes a band of items.
+	 */
+	public static interface Band<T> {
+
+		/**
+		 * Compute the items in a band.
+		 *
+		 * @param first
+		 *            the first item
+		 * @param last
+		 *            one past the last item
+		 * @return the result for the band
+		 * @throws Exception
+		 */
+		public T compute(int first, int last) throws Exception;
+	}
+
+	// A thread of the shared executor
+	private static class Worker extends Thread {
+
+		public Worker(Runnable runnable, int index) {
+			super(runnable, "ParallelUtil-" + index);
+			setDaemon(true);
+		}
+	}
+
+	private static ExecutorService executor;
+
+	/**
+	 * Get the shared executor. Its threads are daemons so it is never shut
+	 * down. Tasks that are no longer needed must be cancelled instead.
+	 *
+	 * @return
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Math.max(1, NUMBER_OF_THREADS), new ThreadFactory() {
+				private int count;
+
+				@Override
+				public synchronized Thread newThread(Runnable runnable) {
+					return (new Worker(runnable, count++));
+				}
+			});
+		}
+		return (executor);
+	}
+
+	/**
+	 * Find out if the current thread belongs to the shared executor.
+	 *
+	 * @return
+	 */
+	public static boolean isWorker() {
+		return (Thread.currentThread() instanceof Worker);
+	}
+
+	/**
+	 * Divide items into bands of equal size and compute them in parallel. The
+	 * calling thread computes the first band.
+	 *
+	 * @param count
+	 *            the number of items
+	 * @param numBands
+	 *            the number of bands, 1 to compute all items in the calling
+	 *            thread
+	 * @param band
+	 *            computes a band
+	 * @return the result of each band in order
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             if a band failed, the other bands are cancelled
+	 */
+	public static <T> ArrayList<T> computeBands(int count, int numBands, final Band<T> band)
+		throws InterruptedException, ExecutionException {
+		ArrayList<T> resultList = new ArrayList<T>();
+		if (count <= 0) {
+			return (resultList);
+		}
+		numBands = Math.max(1, Math.min(numBands, count));
+		if (isWorker()) {
+			numBands = 1;
+		}
+		int itemsPerBand = (count + numBands - 1) / numBands;
+		ArrayList<Future<T>> taskList = new ArrayList<Future<T>>();
+		for (int first = itemsPerBand; first < count; first += itemsPerBand) {
+			final int start = first;
+			final int end = Math.min(count, first + itemsPerBand);
+			taskList.add(getExecutor().submit(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return (band.compute(start, end));
+				}
+			}));
+		}
+		try {
+			resultList.add(band.compute(0, Math.min(count, itemsPerBand)));
+		} catch (Exception e) {
+			cancel(taskList);
+			throw new ExecutionException(e);
+		}
+		resultList.addAll(waitFor(taskList));
+		return (resultList);
+	}
+
+	/**
+	 * Wait for tasks to complete.
+	 *
+	 * @param taskList
+	 * @return the result of each task in order
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             if a task failed, the remaining tasks are cancelled
+	 */
+	public static <T> ArrayList<T> waitFor(List<? extends Future<T>> taskList) throws InterruptedException,
+		ExecutionException {
+		ArrayList<T> resultList = new ArrayList<T>(taskList.size());
+		boolean done = false;
+		try {
+			for (int i = 0; i < taskList.size(); ++i) {
+				resultList.add(taskList.get(i).get());
+			}
+			done = true;
+		} finally {
+			if (!done) {
+				cancel(taskList);
+			}
+		}
+		return (resultList);
+	}
+
+	/**
+	 * Cancel tasks, interrupting those that are running.
+	 *
+	 * @param taskList
+	 */
+	public static void cancel(List<? extends Future<?>> taskList) {
+		for (int i = 0; i < taskList.size(); ++i) {
+			taskList.get(i).cancel(true);
+		}
+	}
+
+}
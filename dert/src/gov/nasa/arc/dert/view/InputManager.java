@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.view;
 
 import gov.nasa.arc.dert.render.SceneCanvas;
+import gov.nasa.arc.dert.render.SceneFramework;
 
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -38,6 +39,7 @@ public class InputManager {
 				} else {
 					handler.mouseClick(mouseX, mouseY, event.getButton());
 				}
+				requestFrame();
 			}
 
 			@Override
@@ -53,6 +55,7 @@ public class InputManager {
 				mouseX = event.getX();
 				mouseY = height - event.getY();
 				handler.mousePress(mouseX, mouseY, event.getButton(), event.isControlDown(), event.isShiftDown());
+				requestFrame();
 			}
 
 			@Override
@@ -60,6 +63,7 @@ public class InputManager {
 				mouseX = event.getX();
 				mouseY = height - event.getY();
 				handler.mouseRelease(mouseX, mouseY, event.getButton());
+				requestFrame();
 			}
 		});
 
@@ -67,6 +71,7 @@ public class InputManager {
 			@Override
 			public void mouseWheelMoved(MouseWheelEvent event) {
 				handler.mouseScroll(event.getWheelRotation());
+				requestFrame();
 			}
 		});
 
@@ -80,6 +85,7 @@ public class InputManager {
 				handler.mouseMove(x, y, x - mouseX, y - mouseY, button, event.isControlDown(), event.isShiftDown());
 				mouseX = x;
 				mouseY = y;
+				requestFrame();
 			}
 
 			@Override
@@ -89,6 +95,7 @@ public class InputManager {
 				handler.mouseMove(x, y, x - mouseX, y - mouseY, 0, event.isControlDown(), event.isShiftDown());
 				mouseX = x;
 				mouseY = y;
+				requestFrame();
 			}
 		});
 
@@ -98,6 +105,7 @@ public class InputManager {
 				final int keyCode = event.getKeyCode();
 				final boolean shiftDown = event.isShiftDown();
 				handleStep(keyCode, shiftDown);
+				requestFrame();
 			}
 
 			@Override
@@ -115,6 +123,7 @@ public class InputManager {
 			@Override
 			public void componentResized(ComponentEvent event) {
 				setComponentSize(event.getComponent().getWidth(), event.getComponent().getHeight());
+				requestFrame();
 			}
 		});
 	}
@@ -140,6 +149,13 @@ public class InputManager {
 		}
 	}
 
+	/**
+	 * Input may change the scene, request a frame
+	 */
+	protected void requestFrame() {
+		SceneFramework.requestFrameUpdate();
+	}
+
 	public KeyListener getKeyListener() {
 		return (keyListener);
 	}
@@ -235,7 +235,7 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 	public void mapChanged(ColorMap cMap) {
 		cMap.getColorTable(lutSize, table);
 		colorTable.setImage(colorTableImage);
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -245,7 +245,7 @@ public class ContourScene extends BasicScene implements ColorMapListener {
 	public void rangeChanged(ColorMap cMap) {
 		cMap.getColorTable(lutSize, table);
 		colorTable.setImage(colorTableImage);
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -184,7 +184,7 @@ public class ContourScenePanel extends SceneCanvasPanel {
 	 * The viewpoint changed, redraw the scene.
 	 */
 	public void viewpointChanged() {
-		contourScene.sceneChanged.set(true);
+		contourScene.setChanged();
 	}
 
 	/**
@@ -0,0 +1,386 @@
+package gov.nasa.arc.dert.view.fieldcamera;
+
+import gov.nasa.arc.dert.Dert;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.lighting.Lighting;
+import gov.nasa.arc.dert.render.BasicTextureRenderer;
+import gov.nasa.arc.dert.render.FrameGrabber;
+import gov.nasa.arc.dert.render.SceneCanvasPanel;
+import gov.nasa.arc.dert.render.SceneFramework;
+import gov.nasa.arc.dert.scene.World;
+import gov.nasa.arc.dert.scene.tool.fieldcamera.FieldCamera;
+import gov.nasa.arc.dert.util.ImageUtil;
+import gov.nasa.arc.dert.view.Console;
+import gov.nasa.arc.dert.viewpoint.BasicCamera;
+import gov.nasa.arc.dert.viewpoint.ViewpointController;
+
+import java.awt.EventQueue;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+import com.ardor3d.framework.CanvasRenderer;
+import com.ardor3d.image.Texture;
+import com.ardor3d.image.Texture2D;
+import com.ardor3d.image.TextureStoreFormat;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.util.TextureKey;
+import com.jogamp.opengl.glu.GLU;
+
+/**
+ * Renders the views of a FieldCamera for a list of poses to a PNG image
+ * sequence without opening a view window. A pose is an azimuth, elevation,
+ * and height as saved in the FieldCameraState. The image for pose N is
+ * frameN.png (numbered as in FrameGrabber).
+ *
+ * The views are rendered into one offscreen texture renderer in the OpenGL
+ * context of the main window, so the landscape tiles and the tile cache are
+ * shared with the main view. Updates of the main view are suspended while the
+ * poses are rendered. For each pose, the landscape is updated for the field
+ * camera until all of its tiles are loaded. Frames are read back and written
+ * by a FrameGrabber, so each image is saved while the next pose is rendered.
+ *
+ */
+public class FieldCameraRenderer implements Runnable {
+
+	// Default image width in pixels
+	public static int IMAGE_WIDTH = 1024;
+
+	// The renderer that is running
+	private static FieldCameraRenderer current;
+
+	// The field camera
+	private FieldCamera fieldCamera;
+
+	// Poses (azimuth, elevation, height)
+	private ArrayList<double[]> poseList;
+
+	// Destination directory
+	private String directory;
+
+	// Image dimensions
+	private int width, height;
+
+	// The panel with the OpenGL context
+	private SceneCanvasPanel scenePanel;
+
+	// Offscreen target, its camera, and its texture
+	private BasicTextureRenderer textureRenderer;
+	private BasicCamera camera;
+	private Texture2D texture;
+
+	// Saves the frames
+	private FrameGrabber frameGrabber;
+
+	// The original pose
+	private double azimuth, elevation, tripodHeight;
+
+	// Pose being rendered and result of the last landscape update
+	private int index;
+	private boolean converged;
+
+	// Flag to stop
+	private volatile boolean running;
+
+	private DecimalFormat formatter = new DecimalFormat("00.000");
+
+	/**
+	 * Start rendering views. Must be called on the event queue.
+	 *
+	 * @param fieldCamera
+	 *            the field camera
+	 * @param poseList
+	 *            the poses (azimuth, elevation, height), height may be NaN to
+	 *            keep the current height
+	 * @param directory
+	 *            the destination directory
+	 * @param width
+	 *            the image width in pixels, the height is given by the camera
+	 *            aspect ratio
+	 * @return false if views are already being rendered
+	 */
+	public static boolean render(FieldCamera fieldCamera, ArrayList<double[]> poseList, String directory, int width) {
+		if (current != null) {
+			Console.println("Field camera views are already being rendered.");
+			return (false);
+		}
+		current = new FieldCameraRenderer(fieldCamera, poseList, directory, width);
+		Thread thread = new Thread(current, "FieldCameraRenderer");
+		thread.setDaemon(true);
+		thread.start();
+		return (true);
+	}
+
+	/**
+	 * Stop rendering views after the current pose. Must be called on the event
+	 * queue.
+	 */
+	public static void stop() {
+		if (current != null) {
+			current.running = false;
+		}
+	}
+
+	/**
+	 * Read a list of poses from a file. Each line has an azimuth, elevation,
+	 * and optional height separated by commas or spaces. Blank lines, lines
+	 * starting with #, and a header line are skipped.
+	 *
+	 * @param filePath
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArrayList<double[]> readPoses(String filePath) throws IOException {
+		ArrayList<double[]> poseList = new ArrayList<double[]>();
+		BufferedReader reader = new BufferedReader(new FileReader(filePath));
+		try {
+			String line = null;
+			int lineNumber = 0;
+			boolean first = true;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] token = line.split("[,\\s]+");
+				double[] pose = new double[] { Double.NaN, Double.NaN, Double.NaN };
+				try {
+					if (token.length < 2) {
+						throw new NumberFormatException();
+					}
+					for (int i = 0; (i < token.length) && (i < pose.length); ++i) {
+						pose[i] = Double.parseDouble(token[i]);
+					}
+				} catch (NumberFormatException e) {
+					if (first) {
+						first = false;
+						continue;
+					}
+					throw new IOException("Invalid pose at line " + lineNumber + " of " + filePath);
+				}
+				first = false;
+				poseList.add(pose);
+			}
+		} finally {
+			reader.close();
+		}
+		return (poseList);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param fieldCamera
+	 * @param poseList
+	 * @param directory
+	 * @param width
+	 */
+	protected FieldCameraRenderer(FieldCamera fieldCamera, ArrayList<double[]> poseList, String directory, int width) {
+		this.fieldCamera = fieldCamera;
+		this.poseList = poseList;
+		this.directory = directory;
+		this.width = width;
+		height = (int) Math.round(width / fieldCamera.getCamera().getAspect());
+		running = true;
+	}
+
+	@Override
+	public void run() {
+		long startTime = System.nanoTime();
+		int frameCount = 0;
+		try {
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					begin();
+				}
+			});
+			for (index = 0; running && (index < poseList.size()); ++index) {
+				long t = System.nanoTime();
+				EventQueue.invokeAndWait(new Runnable() {
+					@Override
+					public void run() {
+						move();
+					}
+				});
+				// update the landscape until the tiles for this pose are loaded
+				int updateCount = 0;
+				long waitStart = System.nanoTime();
+				while (running) {
+					EventQueue.invokeAndWait(new Runnable() {
+						@Override
+						public void run() {
+							update();
+						}
+					});
+					updateCount++;
+					if (converged) {
+						break;
+					}
+					if ((System.nanoTime() - waitStart) / 1000000 > ViewpointController.MAX_TILE_WAIT) {
+						Console.println("Pose " + index + " saved before all landscape tiles were loaded.");
+						break;
+					}
+					Thread.sleep(ViewpointController.TILE_POLL_INTERVAL);
+				}
+				if (!running) {
+					break;
+				}
+				EventQueue.invokeAndWait(new Runnable() {
+					@Override
+					public void run() {
+						capture();
+					}
+				});
+				t = System.nanoTime() - t;
+				frameCount++;
+				Console.println("Pose " + index + " of " + poseList.size() + "    "
+					+ formatter.format(t / 1000000000.0) + " sec, " + updateCount + " updates");
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} catch (InvocationTargetException e) {
+			Console.println("Unable to render field camera views, see log.");
+			e.printStackTrace();
+		}
+		final int count = frameCount;
+		final long totalTime = System.nanoTime() - startTime;
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				finish(count, totalTime);
+			}
+		});
+	}
+
+	/**
+	 * Suspend the main view and create the offscreen target.
+	 */
+	private void begin() {
+		scenePanel = Dert.getWorldView().getScenePanel();
+		SceneFramework.getInstance().suspend(true);
+		azimuth = fieldCamera.getAzimuth();
+		elevation = fieldCamera.getElevation();
+		tripodHeight = fieldCamera.getHeight();
+		CanvasRenderer canvasRenderer = scenePanel.getCanvas().getCanvasRenderer();
+		canvasRenderer.makeCurrentContext();
+		try {
+			// the target must fit in a texture
+			int maxSize = ImageUtil.getMaxTextureRendererSize();
+			if ((width > maxSize) || (height > maxSize)) {
+				double s = maxSize / (double) Math.max(width, height);
+				width = (int) (width * s);
+				height = (int) (height * s);
+				Console.println("Field camera images reduced to " + width + "x" + height + " pixels.");
+			}
+			textureRenderer = ImageUtil.createTextureRenderer(width, height, scenePanel.getRenderer(), false);
+			camera = (BasicCamera) textureRenderer.getCamera();
+			texture = new Texture2D();
+			texture.setWrap(Texture.WrapMode.EdgeClamp);
+			texture.setMinificationFilter(Texture.MinificationFilter.NearestNeighborNoMipMaps);
+			texture.setMagnificationFilter(Texture.MagnificationFilter.NearestNeighbor);
+			texture.setTextureStoreFormat(TextureStoreFormat.RGBA8);
+			texture.setTextureKey(TextureKey.getRTTKey(Texture.MinificationFilter.NearestNeighborNoMipMaps));
+			textureRenderer.setupTexture(texture);
+			frameGrabber = new FrameGrabber(directory, 0, 0, width, height);
+			textureRenderer.setFrameGrabber(frameGrabber);
+		} finally {
+			canvasRenderer.releaseCurrentContext();
+		}
+	}
+
+	/**
+	 * Move the field camera to the current pose.
+	 */
+	private void move() {
+		double[] pose = poseList.get(index);
+		fieldCamera.setAzimuth(pose[0]);
+		fieldCamera.setElevation(pose[1]);
+		if (!Double.isNaN(pose[2])) {
+			fieldCamera.setHeight(pose[2]);
+		}
+		fieldCamera.updateGeometricState(0);
+		// the offscreen camera has the field of view of the field camera and
+		// the dimensions of the image
+		camera.set(fieldCamera.getCamera());
+		camera.resize(width, height);
+		camera.setViewPort(0, 1, 0, 1);
+	}
+
+	/**
+	 * Update the landscape tiles for the field camera.
+	 */
+	private void update() {
+		Landscape landscape = Landscape.getInstance();
+		landscape.update(camera);
+		World.getInstance().updateGeometricState(0);
+		converged = landscape.isConverged();
+	}
+
+	/**
+	 * Render the view into the offscreen target and read it back.
+	 */
+	private void capture() {
+		CanvasRenderer canvasRenderer = scenePanel.getCanvas().getCanvasRenderer();
+		canvasRenderer.makeCurrentContext();
+		try {
+			Renderer renderer = scenePanel.getRenderer();
+			World world = World.getInstance();
+			Lighting lighting = world.getLighting();
+			// the shadows depend on the landscape tiles for this pose
+			lighting.prerender(camera, renderer, true);
+			if (index == 0) {
+				Landscape.getInstance().getLayerManager().renderLayers(renderer);
+			}
+			textureRenderer.setBackgroundColor(lighting.getBackgroundColor());
+			fieldCamera.cull();
+			textureRenderer.render(world, texture, Renderer.BUFFER_COLOR_AND_DEPTH);
+			fieldCamera.uncull();
+		} finally {
+			canvasRenderer.releaseCurrentContext();
+		}
+	}
+
+	/**
+	 * Save the last frame, release the offscreen target, and resume the main
+	 * view.
+	 */
+	private void finish(int frameCount, long totalTime) {
+		if (scenePanel != null) {
+			CanvasRenderer canvasRenderer = scenePanel.getCanvas().getCanvasRenderer();
+			canvasRenderer.makeCurrentContext();
+			try {
+				if (frameGrabber != null) {
+					frameGrabber.stop(GLU.getCurrentGL());
+				}
+				if (textureRenderer != null) {
+					textureRenderer.setFrameGrabber(null);
+					scenePanel.getRenderer().deleteTexture(texture);
+					textureRenderer.cleanup();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				canvasRenderer.releaseCurrentContext();
+			}
+			fieldCamera.setAzimuth(azimuth);
+			fieldCamera.setElevation(elevation);
+			fieldCamera.setHeight(tripodHeight);
+			fieldCamera.updateGeometricState(0);
+			SceneFramework.getInstance().suspend(false);
+			scenePanel.getScene().setChanged();
+		}
+		if (frameCount > 0) {
+			double sec = totalTime / 1000000000.0;
+			Console.println("Rendered " + frameCount + " field camera views in " + formatter.format(sec) + " sec, "
+				+ formatter.format(frameCount / sec) + " frames/sec, " + formatter.format(1000 * sec / frameCount)
+				+ " ms/frame");
+		}
+		current = null;
+	}
+
+}
@@ -69,7 +69,7 @@ public class FieldCameraScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setCrosshairVisible(boolean visible) {
 		crosshairVisible = visible;
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -139,7 +139,7 @@ public class FieldCameraScene extends BasicScene implements DirtyEventListener {
 //		case Destroyed:
 //			break;
 //		}
-		sceneChanged.set(true);
+		setChanged();
 		return (false);
 	}
 
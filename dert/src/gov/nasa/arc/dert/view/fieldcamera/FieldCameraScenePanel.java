@@ -168,7 +168,7 @@ public class FieldCameraScenePanel extends SceneCanvasPanel {
 					az -= 360;
 				azSpinner.setValue(az);
 				tiltSpinner.setValue(Math.toDegrees(angle.getY()));	
-				scene.sceneChanged.set(true);
+				scene.setChanged();
 			}
 		};
 		panel.add(seekText);
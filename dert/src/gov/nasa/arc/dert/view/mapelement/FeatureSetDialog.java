@@ -1,6 +1,7 @@
 package gov.nasa.arc.dert.view.mapelement;
 
 import gov.nasa.arc.dert.scene.featureset.FeatureSet;
+import gov.nasa.arc.dert.scene.featureset.FeatureSetLoader;
 import gov.nasa.arc.dert.state.ConfigurationManager;
 import gov.nasa.arc.dert.state.FeatureSetState;
 import gov.nasa.arc.dert.ui.AbstractDialog;
@@ -20,6 +21,7 @@ import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 
 public class FeatureSetDialog
 	extends AbstractDialog {
@@ -30,6 +32,12 @@ public class FeatureSetDialog
 	private JCheckBox ground;
 	private JTextField labelText;
 
+	// Loader for the new FeatureSet
+	private FeatureSetLoader loader;
+
+	// Checks if the loader is done
+	private Timer loadTimer;
+
 	/**
 	 * Constructor
 	 * 
@@ -87,6 +95,19 @@ public class FeatureSetDialog
 		return (loadFile());
 	}
 
+	/**
+	 * Cancel loading the FeatureSet, if in progress.
+	 */
+	@Override
+	public boolean cancelPressed() {
+		if (loader != null) {
+			loadTimer.stop();
+			loader.cancel();
+			loader = null;
+		}
+		return (super.cancelPressed());
+	}
+
 	protected void setFile() {
 		String path = FileHelper.getFilePathForOpen("Select GeoJSON File", "GeoJSON Files", "json");
 		if (path != null) {
@@ -109,9 +130,44 @@ public class FeatureSetDialog
 			labelProp = null;
 		String label = StringUtil.getLabelFromFilePath(filePath);
 		FeatureSetState lsState = new FeatureSetState(label, filePath, FeatureSet.defaultColor, null, isProjected.isSelected(), ground.isSelected(), labelProp);
-		if (ConfigurationManager.getInstance().getCurrentConfiguration().addMapElementState(lsState, messageText) == null)
+		FeatureSet featureSet = (FeatureSet)ConfigurationManager.getInstance().getCurrentConfiguration().addMapElementState(lsState, messageText);
+		if (featureSet == null)
 			return(false);
-		return(true);
+		loader = featureSet.getLoader();
+		if (loader == null)
+			return(true);
+		
+		// keep the dialog open until the features are loaded
+		setLoading(true);
+		loadTimer = new Timer(250, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				checkLoader();
+			}
+		});
+		loadTimer.start();
+		return(false);
+	}
+	
+	private void checkLoader() {
+		if (!loader.isDone())
+			return;
+		loadTimer.stop();
+		boolean cancelled = loader.isCancelled();
+		loader = null;
+		if (cancelled)
+			setLoading(false);
+		else
+			close();
+	}
+	
+	private void setLoading(boolean loading) {
+		okButton.setEnabled(!loading);
+		fileText.setEnabled(!loading);
+		browseButton.setEnabled(!loading);
+		isProjected.setEnabled(!loading);
+		ground.setEnabled(!loading);
+		labelText.setEnabled(!loading);
 	}
 
 }
@@ -4,12 +4,16 @@ import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scene.tool.fieldcamera.FieldCamera;
 import gov.nasa.arc.dert.scene.tool.fieldcamera.FieldCameraInfoManager;
 import gov.nasa.arc.dert.ui.ColorSelectionPanel;
+import gov.nasa.arc.dert.util.FileHelper;
+import gov.nasa.arc.dert.view.Console;
+import gov.nasa.arc.dert.view.fieldcamera.FieldCameraRenderer;
 import gov.nasa.arc.dert.view.fieldcamera.FieldCameraView;
 
 import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -27,7 +31,7 @@ public class FieldCameraPanel extends MapElementBasePanel {
 	private ColorSelectionPanel colorList;
 	private JCheckBox fovCheckBox, lineCheckBox;
 	private JComboBox defCombo;
-	private JButton openButton;
+	private JButton openButton, renderButton;
 
 	// FieldCamera
 	private FieldCamera fieldCamera;
@@ -114,9 +118,42 @@ public class FieldCameraPanel extends MapElementBasePanel {
 		});
 		openButton.setEnabled(false);
 		panel.add(openButton);
+		renderButton = new JButton("Render Poses");
+		renderButton.setToolTipText("save this camera's view for each pose in a file to an image sequence");
+		renderButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				renderPoses();
+			}
+		});
+		renderButton.setEnabled(false);
+		panel.add(renderButton);
 		contents.add(panel);
 	}
 
+	private void renderPoses() {
+		String posePath = FileHelper.getFilePathForOpen("Pose File Selection", "CSV file", "csv");
+		if (posePath == null) {
+			return;
+		}
+		ArrayList<double[]> poseList = null;
+		try {
+			poseList = FieldCameraRenderer.readPoses(posePath);
+		} catch (Exception e) {
+			Console.println(e.getMessage());
+			return;
+		}
+		if (poseList.isEmpty()) {
+			Console.println("No poses found in " + posePath);
+			return;
+		}
+		String sequencePath = FileHelper.getDirectoryPathForSave("Image Sequence Directory");
+		if (sequencePath == null) {
+			return;
+		}
+		FieldCameraRenderer.render(fieldCamera, poseList, sequencePath, FieldCameraRenderer.IMAGE_WIDTH);
+	}
+
 	@Override
 	public void setMapElement(MapElement mapElement) {
 		this.mapElement = mapElement;
@@ -131,6 +168,7 @@ public class FieldCameraPanel extends MapElementBasePanel {
 		fovCheckBox.setSelected(fieldCamera.isFovVisible());
 		lineCheckBox.setSelected(fieldCamera.isLookAtLineVisible());
 		openButton.setEnabled(true);
+		renderButton.setEnabled(true);
 	}
 
 }
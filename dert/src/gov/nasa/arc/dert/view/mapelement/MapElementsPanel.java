@@ -319,12 +319,37 @@ public class MapElementsPanel extends JPanel implements DirtyEventListener {
 			DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(mapElement, true);
 			FeatureSet fSet = (FeatureSet)mapElement;
 			for (int j = 0; j < fSet.getNumberOfChildren(); ++j) {
-				treeNode.add(new DefaultMutableTreeNode(fSet.getChild(j), false));
+				if (fSet.getChild(j) instanceof Feature)
+					treeNode.add(new DefaultMutableTreeNode(fSet.getChild(j), false));
 			}
 			featureSetsNode.add(treeNode);
 			treeModel.nodeStructureChanged(featureSetsNode);
 			tree.setSelectionPath(new TreePath(new Object[] { rootNode, featureSetsNode, treeNode }));
 		}
+		// Add feature to a FeatureSet that is being loaded, in name order
+		else if (mapElement instanceof Feature) {
+			Spatial parent = ((Feature) mapElement).getParent();
+			String name = ((Feature) mapElement).getName();
+			int n = featureSetsNode.getChildCount();
+			for (int i = 0; i < n; ++i) {
+				DefaultMutableTreeNode fsNode = (DefaultMutableTreeNode) featureSetsNode.getChildAt(i);
+				if (fsNode.getUserObject() == parent) {
+					int lo = 0;
+					int hi = fsNode.getChildCount();
+					while (lo < hi) {
+						int mid = (lo + hi) / 2;
+						Feature feature = (Feature) ((DefaultMutableTreeNode) fsNode.getChildAt(mid)).getUserObject();
+						if (feature.getName().compareTo(name) <= 0)
+							lo = mid + 1;
+						else
+							hi = mid;
+					}
+					fsNode.insert(new DefaultMutableTreeNode(mapElement, false), lo);
+					treeModel.nodesWereInserted(fsNode, new int[] { lo });
+					break;
+				}
+			}
+		}
 		// Add waypoint
 		else if (mapElement instanceof Waypoint) {
 			Waypoint waypoint = (Waypoint) mapElement;
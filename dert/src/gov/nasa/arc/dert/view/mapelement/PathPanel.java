@@ -1,7 +1,9 @@
 package gov.nasa.arc.dert.view.mapelement;
 
 import gov.nasa.arc.dert.Dert;
+import gov.nasa.arc.dert.landscape.CumulativeViewshed;
 import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.landscape.factory.ViewshedPyramidLayerFactory;
 import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scene.tool.Path;
 import gov.nasa.arc.dert.scene.tool.Path.BodyType;
@@ -9,11 +11,13 @@ import gov.nasa.arc.dert.scene.tool.Path.LabelType;
 import gov.nasa.arc.dert.scene.tool.Waypoint;
 import gov.nasa.arc.dert.ui.ColorSelectionPanel;
 import gov.nasa.arc.dert.ui.DoubleTextField;
+import gov.nasa.arc.dert.ui.OptionDialog;
 import gov.nasa.arc.dert.util.FileHelper;
 
 import java.awt.Color;
 import java.awt.Dialog;
 import java.awt.FlowLayout;
+import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
@@ -34,7 +38,7 @@ public class PathPanel extends MapElementBasePanel {
 	private ColorSelectionPanel colorList;
 	private JComboBox typeCombo;
 	private JComboBox labelCombo;
-	private JButton saveAsCSV, addPoints, statistics, fly;
+	private JButton saveAsCSV, addPoints, statistics, fly, viewshed;
 	private JCheckBox showWaypoints;
 	private DoubleTextField lineWidthText;
 	private DoubleTextField sizeText;
@@ -177,9 +181,45 @@ public class PathPanel extends MapElementBasePanel {
 			}
 		});
 		panel.add(fly);
+		viewshed = new JButton("Viewshed");
+		viewshed.setToolTipText("create a landscape layer with the number of waypoints that see each location");
+		viewshed.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				if (path.getNumberOfPoints() < 1)
+					return;
+				createViewshed();
+			}
+		});
+		panel.add(viewshed);
 		contents.add(panel);
 	}
 
+	private void createViewshed() {
+		Window window = (Window) getTopLevelAncestor();
+		String result = OptionDialog.showSingleInputDialog(window,
+			"Enter the observer height and maximum range in meters, 0 for no limit (height,range).",
+			ViewshedPyramidLayerFactory.DEFAULT_HEIGHT + ",0");
+		if ((result == null) || result.isEmpty()) {
+			return;
+		}
+		String[] token = result.trim().split(",");
+		double height, range;
+		try {
+			height = Double.parseDouble(token[0].trim());
+			range = (token.length > 1) ? Double.parseDouble(token[1].trim()) : 0;
+		} catch (Exception e) {
+			OptionDialog.showErrorMessageDialog(window, "Invalid entry " + result + ".");
+			return;
+		}
+		CumulativeViewshed cv = path.getViewshed();
+		if (cv == null) {
+			path.setViewshed(new CumulativeViewshed(path.getName() + "_viewshed", height, range));
+		} else {
+			cv.setParameters(height, range);
+		}
+	}
+
 	@Override
 	public void setMapElement(MapElement mapElement) {
 		this.mapElement = mapElement;
@@ -209,6 +249,7 @@ public class PathPanel extends MapElementBasePanel {
 			saveAsCSV.setEnabled(true);
 			addPoints.setEnabled(true);
 			statistics.setEnabled(true);
+			viewshed.setEnabled(true);
 			showWaypoints.setEnabled(true);
 			lineWidthText.setEnabled(true);
 			sizeText.setEnabled(true);
@@ -241,6 +282,7 @@ public class PathPanel extends MapElementBasePanel {
 			saveAsCSV.setEnabled(false);
 			addPoints.setEnabled(true);
 			statistics.setEnabled(false);
+			viewshed.setEnabled(false);
 			showWaypoints.setEnabled(false);
 			lineWidthText.setEnabled(false);
 			sizeText.setEnabled(false);
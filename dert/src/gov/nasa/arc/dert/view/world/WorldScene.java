@@ -4,7 +4,10 @@ import gov.nasa.arc.dert.action.edit.CoordAction;
 import gov.nasa.arc.dert.landscape.Landscape;
 import gov.nasa.arc.dert.lighting.Lighting;
 import gov.nasa.arc.dert.render.BasicScene;
+import gov.nasa.arc.dert.render.FrameStatistics;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
+import gov.nasa.arc.dert.scenegraph.LabelManager;
 import gov.nasa.arc.dert.state.WorldState;
 import gov.nasa.arc.dert.viewpoint.AnaglyphCamera;
 import gov.nasa.arc.dert.viewpoint.BasicCamera;
@@ -35,6 +38,9 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	// List of objects that must be updated when the camera position changes
 	private ArrayList<ViewDependent> viewDependentList;
 
+	// Places the marker labels
+	private LabelManager labelManager;
+
 	// Background color
 	private ColorRGBA backgroundColor = new ColorRGBA(Lighting.defaultBackgroundColor);
 
@@ -83,6 +89,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 			CoordAction.listenerList.remove(viewpointNode);
 		viewpointNode = new ViewpointNode(world.getName() + "_viewpoint", null);
 		viewDependentList = new ArrayList<ViewDependent>();
+		labelManager = new LabelManager(world);
 		world.attachChild(viewpointNode);
 		crosshair = viewpointNode.getCrosshair();
 //		world.attachChild(crosshair);
@@ -108,32 +115,44 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	@Override
 	public void update(ReadOnlyTimer timer) {
-		// update the landscape quad tree
-		Landscape.getInstance().update(viewpointNode.getCamera());
+		long updateTime = FrameStatistics.start();
+		// update the landscape quad tree, continue while it changes
+		if (Landscape.getInstance().update(viewpointNode.getCamera())) {
+			SceneFramework.requestFrameUpdate();
+		}
 		// has the viewpoint changed?
 		boolean viewpointChanged = viewpointNode.changed.getAndSet(false);
 		// if either the viewpoint or landscape changed, update the other view dependent objects
 		if (viewpointChanged) {
+			long t = FrameStatistics.start();
 			for (int i = 0; i < viewDependentList.size(); ++i) {
 				viewDependentList.get(i).update(viewpointNode.getCamera());
 			}
+			FrameStatistics.stop(FrameStatistics.VIEW_DEPENDENT, t);
 		}
 		worldChanged = World.getInstance().getDirtyEventHandler().changed.get();
 		terrainChanged = World.getInstance().getDirtyEventHandler().terrainChanged.get();
 //		System.err.println("WorldScene.update "+viewpointChanged+" "+worldChanged+" "+terrainChanged+" "+Landscape.getInstance().quadTreeChanged+" "+initializingCount);
 		sceneChanged.set(viewpointChanged || worldChanged || terrainChanged || sceneChanged.get());
-		if (sceneChanged.get())
+		if (sceneChanged.get()) {
 			rootNode.updateGeometricState(0);
+			// place the labels at their new locations
+			labelManager.update(viewpointNode.getCamera());
+		}
+		FrameStatistics.stop(FrameStatistics.UPDATE, updateTime);
 	}
 
 	@Override
 	public void preRender(Renderer renderer) {
 		if (rootNode == null)
 			return;
+		long preRenderTime = FrameStatistics.start();
 		Lighting lighting = ((World)rootNode).getLighting();
 		lighting.prerender(viewpointNode.getCamera(), renderer, worldChanged);
 		if (terrainChanged || worldChanged) {
+			long t = FrameStatistics.start();
 			Landscape.getInstance().getLayerManager().renderLayers(renderer);
+			FrameStatistics.stop(FrameStatistics.LAYERS, t);
 		}
 
 		viewpointNode.updateGeometricState(0);
@@ -143,6 +162,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 			renderer.setBackgroundColor(bgCol);
 			backgroundColor.set(bgCol);
 		}
+		FrameStatistics.stop(FrameStatistics.PRERENDER, preRenderTime);
 	}
 
 	private void postRender(Renderer renderer) {
@@ -157,6 +177,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 			crosshair.getSceneHints().setCullHint(CullHint.Always);
 		}
 		if (showTextOverlay) {
+			viewpointNode.setStatisticsText(FrameStatistics.isEnabled() ? FrameStatistics.getSummary() : null);
 			renderer.setOrtho();
 			textOverlay.getSceneHints().setCullHint(CullHint.Never);
 			textOverlay.onDraw(renderer);
@@ -174,6 +195,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 
 	@Override
 	public void render(Renderer renderer) {
+		long t = FrameStatistics.start();
 		if (viewpointNode.getCamera() instanceof AnaglyphCamera) {
 			AnaglyphCamera camera = (AnaglyphCamera) viewpointNode.getCamera();
 			camera.setupLeftRightCameras();
@@ -193,7 +215,10 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 			renderer.clearBuffers(Renderer.BUFFER_COLOR_AND_DEPTH);
 			renderer.draw(rootNode);
 		}
+		FrameStatistics.stop(FrameStatistics.RENDER, t);
+		t = FrameStatistics.start();
 		postRender(renderer);
+		FrameStatistics.stop(FrameStatistics.POSTRENDER, t);
 	}
 
 	/**
@@ -207,10 +232,12 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 		switch (type) {
 		case Attached:
 			addViewDependents(spatial);
+			labelManager.setDirty();
 			viewpointNode.setSceneBounds();
 			break;
 		case Detached:
 			removeViewDependents(spatial);
+			labelManager.setDirty();
 			viewpointNode.setSceneBounds();
 			break;
 		case Bounding:
@@ -222,7 +249,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 		case Destroyed:
 			break;
 		}
-		sceneChanged.set(true);
+		setChanged();
 		return (false);
 	}
 
@@ -275,7 +302,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowCrosshair(boolean show) {
 		showCrosshair = show;
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -294,7 +321,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowTextOverlay(boolean show) {
 		showTextOverlay = show;
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -306,6 +333,26 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 		return (showTextOverlay);
 	}
 
+	/**
+	 * Set frame statistics collection. The statistics are shown in the text
+	 * overlay.
+	 * 
+	 * @param show
+	 */
+	public void setShowFrameStatistics(boolean show) {
+		FrameStatistics.setEnabled(show);
+		setChanged();
+	}
+
+	/**
+	 * Get frame statistics collection
+	 * 
+	 * @return
+	 */
+	public boolean getShowFrameStatistics() {
+		return (FrameStatistics.isEnabled());
+	}
+
 	/**
 	 * Set center scale visibility
 	 * 
@@ -313,7 +360,7 @@ public class WorldScene extends BasicScene implements DirtyEventListener {
 	 */
 	public void setShowCenterScale(boolean show) {
 		showCenterScale = show;
-		sceneChanged.set(true);
+		setChanged();
 	}
 
 	/**
@@ -121,7 +121,7 @@ public class WorldScenePanel extends SceneCanvasPanel {
 				canvasRenderer.setCamera(bc);
 			}
 		}
-		worldScene.sceneChanged.set(true);
+		worldScene.setChanged();
 	}
 
 	/**
@@ -169,6 +169,24 @@ public class WorldScenePanel extends SceneCanvasPanel {
 		return (worldScene.getShowTextOverlay());
 	}
 
+	/**
+	 * Set frame statistics visibility
+	 * 
+	 * @param show
+	 */
+	public void setShowFrameStatistics(boolean show) {
+		worldScene.setShowFrameStatistics(show);
+	}
+
+	/**
+	 * Get frame statistics visibility
+	 * 
+	 * @return
+	 */
+	public boolean isShowFrameStatistics() {
+		return (worldScene.getShowFrameStatistics());
+	}
+
 	/**
 	 * Set center scale visibility
 	 * 
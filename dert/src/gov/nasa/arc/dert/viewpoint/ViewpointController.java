@@ -1,18 +1,23 @@
 package gov.nasa.arc.dert.viewpoint;
 
 import gov.nasa.arc.dert.Dert;
+import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.SceneCanvasPanel;
 import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scene.tool.Path;
 import gov.nasa.arc.dert.scenegraph.Ray3WithLine;
 import gov.nasa.arc.dert.state.PathState;
+import gov.nasa.arc.dert.view.Console;
 import gov.nasa.arc.dert.view.viewpoint.FlyThroughDialog;
 import gov.nasa.arc.dert.viewpoint.ViewpointNode.ViewpointMode;
 
 import java.awt.Dialog;
+import java.awt.EventQueue;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.lang.reflect.InvocationTargetException;
 import java.text.DecimalFormat;
 import java.util.Vector;
 
@@ -32,6 +37,12 @@ public class ViewpointController {
 	// Determines if dolly/magnification is with or against scroll direction
 	public static int mouseScrollDirection = -1;
 
+	// Longest time to wait for the landscape tiles of an image sequence frame (milliseconds)
+	public static int MAX_TILE_WAIT = 30000;
+
+	// Time between checks for the landscape tiles of an image sequence frame (milliseconds)
+	public static int TILE_POLL_INTERVAL = 5;
+
 	// Mouse position
 	private double mouseX, mouseY;
 
@@ -59,7 +70,9 @@ public class ViewpointController {
 	private double timeConstant = 325;
 
 	// Fly through
+	private boolean flyThroughStarted;
 	private Timer flyThroughTimer;
+	private OfflineRenderer flyThroughRenderer;
 	private Vector<ViewpointStore> flyList;
 	private int flyIndex;
 	private FlyThroughDialog flyThroughDialog;
@@ -413,9 +426,13 @@ public class ViewpointController {
 	 * Stop flight
 	 */
 	public void stopFlyThrough() {
-		if (flyThroughTimer == null)
+		if (!flyThroughStarted)
 			return;
-		flyThroughTimer.stop();
+		flyThroughStarted = false;
+		if (flyThroughTimer != null)
+			flyThroughTimer.stop();
+		flyThroughTimer = null;
+		flyThroughRenderer = null;
 		flyIndex = 0;
 		Dert.getWorldView().getScenePanel().enableFrameGrab(null);
 		// start the rendering framework again
@@ -423,7 +440,6 @@ public class ViewpointController {
 		// put us back where we were
 		if (oldViewpoint != null)
 			viewpointNode.setViewpoint(oldViewpoint, true, false);
-		flyThroughTimer = null;
 		flyThroughDialog.enableParameters(true);
 	}
 
@@ -433,48 +449,201 @@ public class ViewpointController {
 	public void pauseFlyThrough() {
 		if (flyThroughTimer != null)
 			flyThroughTimer.stop();
+		// the image sequence renderer stops before its next step
+		flyThroughRenderer = null;
 	}
 
 	/**
 	 * Start flight
-	 * A timer is used to run the flight. If frames are grabbed, each time a frame is rendered,
-	 * it is saved to a file.
+	 * A timer is used to run the flight. If frames are grabbed, the flight is rendered
+	 * offline instead. Each frame is saved to a file once all of its landscape tiles are loaded.
 	 */
 	public void startFlyThrough() {
-		if (flyThroughTimer == null) {
+		if (!flyThroughStarted) {
+			flyThroughStarted = true;
 			if (flyParams.grab) {
 				Dert.getWorldView().getScenePanel().enableFrameGrab(flyParams.imageSequencePath);
 			}
 			// Pause the rendering framework so it won't interfere.
 			SceneFramework.getInstance().suspend(true);
-			// make time step at least 1 second if we are grabbing frames
-			final int millis = (flyParams.grab && (flyParams.millisPerFrame < 1000)) ? 1000 : flyParams.millisPerFrame;
+			final int millis = flyParams.millisPerFrame;
 			flyIndex = 0;
 			oldViewpoint = viewpointNode.getViewpoint(oldViewpoint);
-			flyThroughTimer = new Timer(millis, new ActionListener() {
-				@Override
-				public void actionPerformed(ActionEvent event) {
-					viewpointNode.setViewpoint(flyList.get(flyIndex), true, false);
-					SceneFramework.getInstance().getFrameHandler().updateFrame();
-					double t = (flyIndex * millis) / 1000.0;
-					int hr = (int) (t / 3600);
-					t -= hr * 3600;
-					int min = (int) (t / 60);
-					double sec = t - (min * 60);
-					if (flyThroughDialog != null)
-						flyThroughDialog.setStatus(formatter1.format(hr) + ":" + formatter1.format(min) + ":"
-								+ formatter2.format(sec) + "    Frame " + flyIndex);
-					flyIndex++;
-					if (flyIndex == flyList.size()) {
-						if (!flyParams.loop)
-							stopFlyThrough();
-						flyIndex = 0;
+			if (!flyParams.grab) {
+				flyThroughTimer = new Timer(millis, new ActionListener() {
+					@Override
+					public void actionPerformed(ActionEvent event) {
+						viewpointNode.setViewpoint(flyList.get(flyIndex), true, false);
+						SceneFramework.getInstance().getFrameHandler().updateFrame();
+						double t = (flyIndex * millis) / 1000.0;
+						int hr = (int) (t / 3600);
+						t -= hr * 3600;
+						int min = (int) (t / 60);
+						double sec = t - (min * 60);
+						if (flyThroughDialog != null)
+							flyThroughDialog.setStatus(formatter1.format(hr) + ":" + formatter1.format(min) + ":"
+									+ formatter2.format(sec) + "    Frame " + flyIndex);
+						flyIndex++;
+						if (flyIndex == flyList.size()) {
+							if (!flyParams.loop)
+								stopFlyThrough();
+							flyIndex = 0;
+						}
+					}
+				});
+			}
+		}
+		if (flyThroughTimer != null) {
+			flyThroughTimer.start();
+		} else if (flyThroughRenderer == null) {
+			flyThroughRenderer = new OfflineRenderer();
+			Thread thread = new Thread(flyThroughRenderer, "Fly Through Renderer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Renders the fly list to an image sequence one frame at a time. The
+	 * camera is moved to a viewpoint and the scene is updated until the
+	 * landscape has loaded every tile it needs there. Only then is the frame
+	 * rendered and saved, so the sequence does not depend on how fast the
+	 * tiles load. Each step runs on the AWT event queue while this thread
+	 * waits for it.
+	 */
+	private class OfflineRenderer implements Runnable {
+
+		// Result of the last step
+		private boolean running, converged;
+
+		// Frame being rendered
+		private int index;
+
+		// Frames rendered and the time spent on them
+		private int frameCount;
+		private long totalTime;
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					long t = System.nanoTime();
+					EventQueue.invokeAndWait(new Runnable() {
+						@Override
+						public void run() {
+							move();
+						}
+					});
+					if (!running)
+						return;
+					// update the scene until the tiles for this viewpoint are loaded
+					int updateCount = 0;
+					long waitStart = System.nanoTime();
+					while (true) {
+						EventQueue.invokeAndWait(new Runnable() {
+							@Override
+							public void run() {
+								update();
+							}
+						});
+						if (!running)
+							return;
+						updateCount++;
+						if (converged)
+							break;
+						if ((System.nanoTime() - waitStart) / 1000000 > MAX_TILE_WAIT) {
+							Console.println("Frame " + index + " saved before all landscape tiles were loaded.");
+							break;
+						}
+						Thread.sleep(TILE_POLL_INTERVAL);
 					}
+					EventQueue.invokeAndWait(new Runnable() {
+						@Override
+						public void run() {
+							capture();
+						}
+					});
+					if (!running)
+						return;
+					t = System.nanoTime() - t;
+					frameCount++;
+					totalTime += t;
+					final String status = "Frame " + index + " of " + flyList.size() + "    "
+						+ formatter2.format(t / 1000000000.0) + " sec, " + updateCount + " updates    "
+						+ formatter2.format(frameCount / (totalTime / 1000000000.0)) + " frames/sec";
+					Console.println(status);
+					EventQueue.invokeAndWait(new Runnable() {
+						@Override
+						public void run() {
+							next(status);
+						}
+					});
+					if (!running)
+						return;
 				}
-			});
-			flyThroughTimer.setDelay(millis);
+			} catch (InterruptedException e) {
+				// stopped
+			} catch (InvocationTargetException e) {
+				e.printStackTrace();
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (flyThroughRenderer == OfflineRenderer.this)
+							stopFlyThrough();
+					}
+				});
+			}
+		}
+
+		private boolean isCurrent() {
+			running = (flyThroughRenderer == this);
+			return (running);
+		}
+
+		private void move() {
+			if (!isCurrent())
+				return;
+			index = flyIndex;
+			getScenePanel().pauseFrameGrab(true);
+			viewpointNode.setViewpoint(flyList.get(index), true, false);
+		}
+
+		private void update() {
+			if (!isCurrent())
+				return;
+			SceneFramework.getInstance().getFrameHandler().updateFrame();
+			World.markClean();
+			converged = Landscape.getInstance().isConverged();
+		}
+
+		private void capture() {
+			if (!isCurrent())
+				return;
+			SceneCanvasPanel scenePanel = getScenePanel();
+			scenePanel.getScene().setChanged();
+			scenePanel.pauseFrameGrab(false);
+			SceneFramework.getInstance().getFrameHandler().updateFrame();
+			World.markClean();
+			scenePanel.pauseFrameGrab(true);
+		}
+
+		private void next(String status) {
+			if (!isCurrent())
+				return;
+			if (flyThroughDialog != null)
+				flyThroughDialog.setStatus(status);
+			flyIndex++;
+			if (flyIndex == flyList.size()) {
+				Console.println("Rendered " + frameCount + " frames in " + formatter2.format(totalTime / 1000000000.0)
+					+ " sec");
+				stopFlyThrough();
+				running = false;
+			}
+		}
+
+		private SceneCanvasPanel getScenePanel() {
+			return (Dert.getWorldView().getScenePanel());
 		}
-		flyThroughTimer.start();
 	}
 
 	/**
@@ -3,6 +3,7 @@ package gov.nasa.arc.dert.viewpoint;
 import gov.nasa.arc.dert.Dert;
 import gov.nasa.arc.dert.action.edit.CoordListener;
 import gov.nasa.arc.dert.landscape.Landscape;
+import gov.nasa.arc.dert.render.SceneFramework;
 import gov.nasa.arc.dert.scene.MapElement;
 import gov.nasa.arc.dert.scene.World;
 import gov.nasa.arc.dert.scenegraph.Marker;
@@ -72,6 +73,7 @@ public class ViewpointNode
 	private RGBAxes crosshair;
 	private Node overlay;
 	private RasterText corText, magText, altText, locText, azElText;
+	private RasterText[] statText;
 	private double textSize = 14;
 	private CenterScale centerScale;
 	private ViewpointMode mode = ViewpointMode.Nominal;
@@ -107,7 +109,7 @@ public class ViewpointNode
 			updateWorldTransform(true);
 			camera.setFrustum(sceneBounds);
 			updateGeometricState(0);
-			changed.set(true);
+			setChanged();
 		}
 	}
 	
@@ -162,7 +164,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	/**
@@ -227,7 +229,7 @@ public class ViewpointNode
 	
 	public void coordDisplayChanged() {
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	private void updateOverlay() {
@@ -283,6 +285,42 @@ public class ViewpointNode
 		return(overlay);
 	}
 	
+	/**
+	 * Set the frame statistics lines shown above the text overlay
+	 * 
+	 * @param line
+	 *            the lines, null to hide them
+	 */
+	public void setStatisticsText(String[] line) {
+		if (line == null) {
+			if (statText != null) {
+				for (int i = 0; i < statText.length; ++i) {
+					statText[i].setText("");
+				}
+			}
+			return;
+		}
+		if ((statText == null) || (statText.length != line.length)) {
+			if (statText != null) {
+				for (int i = 0; i < statText.length; ++i) {
+					overlay.detachChild(statText[i]);
+				}
+			}
+			statText = new RasterText[line.length];
+			for (int i = 0; i < line.length; ++i) {
+				statText[i] = new RasterText("_stat"+i, "", AlignType.Left, false);
+				statText[i].setColor(ColorRGBA.WHITE);
+				statText[i].setVisible(true);
+				statText[i].setTranslation(0, (5+line.length-1-i)*textSize, 0);
+				overlay.attachChild(statText[i]);
+			}
+			overlay.updateGeometricState(0);
+		}
+		for (int i = 0; i < line.length; ++i) {
+			statText[i].setText(line[i]);
+		}
+	}
+	
 	public Node getCenterScale() {
 		return(centerScale);
 	}
@@ -326,7 +364,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -337,7 +375,7 @@ public class ViewpointNode
 		sceneBounds.setRadius(bounds.getRadius());
 		sceneBounds.setCenter(bounds.getCenter());
 		closestDistance = 0.0001 * sceneBounds.getRadius();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -361,7 +399,7 @@ public class ViewpointNode
 		updateCrosshair();
 		centerScale.setTranslation(camera.getWidth()/2.0, camera.getHeight()/2.0, 0);
 		centerScale.updateGeometricState(0);
-		changed.set(true);
+		setChanged();
 	}
 	
 	public int getCenterX() {
@@ -399,7 +437,7 @@ public class ViewpointNode
 		updateCrosshair();
 		Dert.getMainWindow().updateCompass(azimuth);
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 //		System.err.println("ViewpointNode.reset B: sceneBounds="+sceneBounds+" closestDistance="+closestDistance+" hikeMode="+hikeMode);
 //		System.err.println("ViewpointNode.reset B: rotate="+rotate+" azimuth="+azimuth+" elevation="+elevation);
 //		System.err.println("ViewpointNode.reset B: lookAt="+lookAt+" location="+location+" magnification="+camera.getMagnification());
@@ -451,7 +489,7 @@ public class ViewpointNode
 			updateGeometricState(0);
 			updateCrosshair();
 			updateOverlay();
-			changed.set(true);
+			setChanged();
 		}
 	}
 
@@ -515,7 +553,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	/**
@@ -605,7 +643,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 		Dert.getMainWindow().updateCompass(azimuth);
 	}
 
@@ -629,7 +667,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 		Dert.getMainWindow().updateCompass(azimuth);
 	}
 
@@ -649,7 +687,7 @@ public class ViewpointNode
 		updateFromCamera();
 		updateGeometricState(0);
 		updateCrosshair();
-		changed.set(true);
+		setChanged();
 		return (true);
 	}
 	
@@ -674,7 +712,7 @@ public class ViewpointNode
 		updateFromCamera();
 		updateGeometricState(0);
 		updateCrosshair();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -695,7 +733,7 @@ public class ViewpointNode
 		updateFromCamera();
 		updateGeometricState(0);
 		updateCrosshair();
-		changed.set(true);
+		setChanged();
 		return (true);
 	}
 
@@ -760,7 +798,7 @@ public class ViewpointNode
 		camera.magnify(val);
 		updateGeometricState(0);
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -773,7 +811,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -789,7 +827,7 @@ public class ViewpointNode
 		updateGeometricState(0);
 		updateCrosshair();
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 
 	/**
@@ -809,7 +847,7 @@ public class ViewpointNode
 			centerScale.showText(true);
 		}
 		updateOverlay();
-		changed.set(true);
+		setChanged();
 	}
 	
 	public boolean setMode(ViewpointMode mode) {
@@ -841,7 +879,7 @@ public class ViewpointNode
 			updateGeometricState(0);
 			updateCrosshair();
 			updateOverlay();
-			changed.set(true);			
+			setChanged();			
 		}
 		else {
 			camera.setMaxNearPlane(Float.MAX_VALUE);
@@ -850,11 +888,19 @@ public class ViewpointNode
 			else
 				this.mode = mode;
 		}
-		changed.set(true);
+		setChanged();
 		return(true);
 	}
 	
 	public ViewpointMode getMode() {
 		return(mode);
 	}
+
+	/**
+	 * The viewpoint changed, request a frame
+	 */
+	protected void setChanged() {
+		changed.set(true);
+		SceneFramework.requestFrameUpdate();
+	}
 }